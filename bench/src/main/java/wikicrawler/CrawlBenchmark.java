@@ -0,0 +1,130 @@
+package wikicrawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CrawlBenchmark class
+ *
+ * The crawler's own work on generated wiki-like pages: scanning a page held in
+ * memory, writing the graph of a finished crawl, and whole crawls of the pages
+ * served by an in-process LocalPageServer with the politeness policy off.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CrawlBenchmark {
+
+	@Param({ "2000" })
+	int pages;
+
+	@Param({ "30" })
+	int links;
+
+	@Param({ "200" })
+	int crawlPages;
+
+	private byte[][] html;
+	private final ArrayList<String> topics = new ArrayList<String>();
+	private final Map<String, ArrayList<String>> crawled = new LinkedHashMap<String, ArrayList<String>>();
+	private LocalPageServer server;
+	private File out;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		String[] topicWords = { "complexity" };
+		topics.add("complexity");
+		Map<String, String> generated = PageGenerator.generate(pages, links, topicWords, 0.9, 311);
+		html = new byte[pages][];
+		for (int i = 0; i < pages; i++) {
+			String title = PageGenerator.title(i);
+			html[i] = generated.get(title).getBytes(StandardCharsets.UTF_8);
+			crawled.put("/wiki/" + title, PageScanner.scanLinks(new ByteArrayInputStream(html[i]), new ArrayList<String>()));
+		}
+		server = new LocalPageServer(generated);
+		server.start(4);
+		out = File.createTempFile("crawl_benchmark", ".txt");
+		out.deleteOnExit();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		server.stop();
+	}
+
+	/**
+	 * The position of each benchmark thread in the list of pages
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+	}
+
+	@Benchmark
+	public ArrayList<String> scanLinks(Cursor cursor) throws IOException {
+		int i = cursor.next++ % pages;
+		return PageScanner.scanLinks(new ByteArrayInputStream(html[i]), topics);
+	}
+
+	/**
+	 * The graph writing that WikiCrawler does at the end of a crawl
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long writeGraph() throws IOException {
+		GraphWriter writer = new GraphWriter();
+		for (Map.Entry<String, ArrayList<String>> page : crawled.entrySet()) {
+			writer.addPage(page.getKey(), page.getValue());
+		}
+		return writer.write(out.getAbsolutePath());
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long crawl() throws IOException, InterruptedException {
+		return crawl(false);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long crawlConcurrent() throws IOException, InterruptedException {
+		return crawl(true);
+	}
+
+	private long crawl(boolean concurrent) throws IOException, InterruptedException {
+		WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), crawlPages,
+				topics, out.getAbsolutePath());
+		crawler.setPoliteness(0, 0);
+		if (concurrent) {
+			crawler.setConcurrentFetching(16, false);
+		}
+		crawler.crawl();
+		return crawler.getPagesAccepted();
+	}
+}
@@ -0,0 +1,119 @@
+package wikicrawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * QueryBenchmark class
+ *
+ * The single-vertex NetworkInfluence queries on a generated power-law graph,
+ * for each storage backend. The query cache is off so every query does its
+ * search, and each invocation takes the next of a fixed list of random
+ * vertices.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class QueryBenchmark {
+
+	@Param({ "20000" })
+	int vertices;
+
+	@Param({ "8" })
+	int degree;
+
+	@Param({ "lists", "compressed", "offHeap" })
+	String backend;
+
+	private NetworkInfluence network;
+	private String[] sources;
+	private String[] targets;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File graph = File.createTempFile("query_benchmark", ".txt");
+		graph.deleteOnExit();
+		GraphGenerator.writePowerLawGraph(graph.getAbsolutePath(), vertices, degree, 311);
+		if (backend.equals("compressed")) {
+			network = NetworkInfluence.loadCompressed(graph.getAbsolutePath(), 0);
+		} else if (backend.equals("offHeap")) {
+			network = NetworkInfluence.loadOffHeap(graph.getAbsolutePath(), null, 0);
+		} else {
+			network = new NetworkInfluence(graph.getAbsolutePath(), 0);
+		}
+
+		Random random = new Random(311);
+		sources = new String[1024];
+		targets = new String[sources.length];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = network.nameOf(random.nextInt(network.vertexCount()));
+			targets[i] = network.nameOf(random.nextInt(network.vertexCount()));
+		}
+	}
+
+	/**
+	 * The position of each benchmark thread in the list of vertices
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			return next++ & 1023;
+		}
+	}
+
+	@Benchmark
+	public int outDegree(Cursor cursor) {
+		return network.outDegree(sources[cursor.next()]);
+	}
+
+	@Benchmark
+	public int distance(Cursor cursor) {
+		int i = cursor.next();
+		return network.distance(sources[i], targets[i]);
+	}
+
+	@Benchmark
+	public ArrayList<String> shortestPath(Cursor cursor) {
+		int i = cursor.next();
+		return network.shortestPath(sources[i], targets[i]);
+	}
+
+	@Benchmark
+	public float influence(Cursor cursor) {
+		return network.influence(sources[cursor.next()]);
+	}
+
+	@Benchmark
+	public float influenceApproximate(Cursor cursor) {
+		return network.influence(sources[cursor.next()], 0.01);
+	}
+
+	@Benchmark
+	public double pageRank(Cursor cursor) {
+		return network.pageRank(sources[cursor.next()]);
+	}
+}
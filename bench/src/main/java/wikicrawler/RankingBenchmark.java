@@ -0,0 +1,100 @@
+package wikicrawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RankingBenchmark class
+ *
+ * The top-k rankings of NetworkInfluence. The rankings that search from every
+ * vertex run on a smaller graph than the others, as in BenchmarkSuite.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class RankingBenchmark {
+
+	@Param({ "20000" })
+	int vertices;
+
+	@Param({ "1000" })
+	int rankVertices;
+
+	@Param({ "8" })
+	int degree;
+
+	@Param({ "5" })
+	int k;
+
+	private NetworkInfluence network;
+	private NetworkInfluence small;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		network = new NetworkInfluence(graph(vertices), 0);
+		small = new NetworkInfluence(graph(rankVertices), 0);
+	}
+
+	private String graph(int n) throws IOException {
+		File graph = File.createTempFile("ranking_benchmark", ".txt");
+		graph.deleteOnExit();
+		GraphGenerator.writePowerLawGraph(graph.getAbsolutePath(), n, degree, 311);
+		return graph.getAbsolutePath();
+	}
+
+	@Benchmark
+	public ArrayList<String> degree() {
+		return network.mostInfluentialDegree(k);
+	}
+
+	@Benchmark
+	public ArrayList<String> pageRank() {
+		return network.mostInfluentialPageRank(k);
+	}
+
+	@Benchmark
+	public ArrayList<String> hub() {
+		return network.mostInfluentialHub(k);
+	}
+
+	@Benchmark
+	public ArrayList<String> modular() {
+		return small.mostInfluentialModular(k);
+	}
+
+	@Benchmark
+	public ArrayList<String> modularApproximate() {
+		return small.mostInfluentialModular(k, 0.01);
+	}
+
+	@Benchmark
+	public ArrayList<String> subModular() {
+		return small.mostInfluentialSubModular(k);
+	}
+
+	@Benchmark
+	public ArrayList<String> closenessApproximate() {
+		return network.mostInfluentialCloseness(k, 0.1, 0.1);
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * AdaptiveConcurrencyLimiter class
+ *
+ * Limits how many requests may be in flight at once, and adjusts that limit
+ * with additive-increase/multiplicative-decrease (AIMD), the same rule TCP uses
+ * for its congestion window. Every request that succeeds reasonably fast while
+ * the limit is fully used raises the limit by about one per round of requests.
+ * A failure, or a latency well above the fastest recently seen, multiplies the
+ * limit by DECREASE_FACTOR. The limit always stays between 1 and the maximum
+ * given at construction, which is how the politeness policy caps it.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	/**
+	 * Factor the limit is multiplied by when the server shows signs of overload
+	 */
+	static final double DECREASE_FACTOR = 0.7;
+
+	/**
+	 * A request slower than this multiple of the baseline latency counts as a
+	 * sign of overload
+	 */
+	static final double LATENCY_TOLERANCE = 2.0;
+
+	/**
+	 * Number of samples after which the baseline latency is re-measured, so it
+	 * follows the server if it becomes slower for good
+	 */
+	private static final int BASELINE_WINDOW = 256;
+
+	// the most requests ever allowed in flight
+	private final int maxLimit;
+	// the current limit; fractional so additive increases can accumulate
+	private double limit;
+	// number of requests currently in flight
+	private int inFlight;
+
+	// fastest latency of the previous window, the "uncongested" latency
+	private long baselineNanos = Long.MAX_VALUE;
+	// fastest latency of the current window, and its number of samples
+	private long windowMinNanos = Long.MAX_VALUE;
+	private int windowSamples;
+	// time of the last decrease, so one burst of slow responses only counts once
+	private long lastDecreaseNanos;
+
+	/**
+	 * Constructs a new limiter starting at the given limit
+	 *
+	 * @param initialLimit
+	 *            The number of requests allowed in flight at first
+	 * @param maxLimit
+	 *            The most requests ever allowed in flight
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+		if (maxLimit < 1) {
+			throw new IllegalArgumentException("The maximum limit must be at least 1: " + maxLimit);
+		}
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(1, Math.min(initialLimit, maxLimit));
+	}
+
+	/**
+	 * Waits until another request may be sent, and counts it as in flight
+	 *
+	 * @throws InterruptedException
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (inFlight >= (int) limit) {
+			wait();
+		}
+		inFlight++;
+	}
+
+	/**
+	 * Reports that a request acquired earlier has finished, adjusting the limit
+	 *
+	 * @param latencyNanos
+	 *            How long the server took to answer the request
+	 * @param failed
+	 *            Whether the request failed
+	 */
+	public synchronized void release(long latencyNanos, boolean failed) {
+		// whether the limit is fully used as this request finishes; the limit may
+		// have changed since it was sent
+		boolean saturated = inFlight >= (int) limit;
+		inFlight--;
+
+		if (!failed) {
+			windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+			if (baselineNanos == Long.MAX_VALUE) {
+				baselineNanos = latencyNanos;
+			}
+			if (++windowSamples == BASELINE_WINDOW) {
+				baselineNanos = windowMinNanos;
+				windowMinNanos = Long.MAX_VALUE;
+				windowSamples = 0;
+			}
+		}
+
+		long now = System.nanoTime();
+		boolean overloaded = failed || latencyNanos > LATENCY_TOLERANCE * baselineNanos;
+		if (overloaded) {
+			// back off at most once per baseline latency
+			if (now - lastDecreaseNanos > Math.min(baselineNanos, latencyNanos)) {
+				limit = Math.max(1, limit * DECREASE_FACTOR);
+				lastDecreaseNanos = now;
+			}
+		} else if (saturated) {
+			limit = Math.min(maxLimit, limit + 1.0 / limit);
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * @return The number of requests currently allowed in flight
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * @return The number of requests currently in flight
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return The most requests ever allowed in flight
+	 */
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+}
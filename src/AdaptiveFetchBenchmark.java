@@ -0,0 +1,65 @@
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * AdaptiveFetchBenchmark class
+ *
+ * Crawls generated pages on a LocalPageServer with injected latency, once
+ * fetching one page at a time, once with the adaptive concurrent fetch stage
+ * and once with hedging as well, and reports throughput and fetch latency.
+ *
+ * Usage: AdaptiveFetchBenchmark [maxPages] [baseLatencyMs] [slowFraction]
+ * [slowLatencyMs]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class AdaptiveFetchBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int max = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+		long base = args.length > 1 ? Long.parseLong(args[1]) : 5;
+		double slowFraction = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+		long slow = args.length > 3 ? Long.parseLong(args[3]) : 250;
+
+		// a third of the pages mention the topic, so many fetches are rejected
+		String[] topicWords = { "complexity" };
+		LocalPageServer server = new LocalPageServer(PageGenerator.generate(max * 4, 30, topicWords, 0.3, 311));
+		server.start(64);
+		server.setLatency(base, slowFraction, slow);
+		System.out.printf("Injected latency: %d ms, %.0f%% of responses %d ms%n", base, slowFraction * 100, slow);
+
+		run("sequential", server, max, 0, false);
+		run("adaptive", server, max, 32, false);
+		run("adaptive + hedging", server, max, 32, true);
+
+		server.stop();
+	}
+
+	private static void run(String label, LocalPageServer server, int max, int concurrency, boolean hedge)
+			throws Exception {
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		File out = File.createTempFile("adaptive_fetch_benchmark", ".txt");
+		out.deleteOnExit();
+
+		WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), max, topics,
+				out.getAbsolutePath());
+		crawler.setPoliteness(0, 0);
+		if (concurrency > 0) {
+			crawler.setConcurrentFetching(concurrency, hedge);
+		}
+
+		long requestsBefore = server.getRequestCount();
+		long start = System.nanoTime();
+		crawler.crawl();
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+		long requests = server.getRequestCount() - requestsBefore;
+
+		System.out.printf("%-20s %7.2f s, %7.1f requests/sec (%d requests)%n", label, seconds, requests / seconds,
+				requests);
+		if (crawler.getFetchStage() != null) {
+			System.out.println("  " + crawler.getFetchStage());
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * AdjacencyStore interface
+ *
+ * Read access to the successors of every vertex of a directed graph whose
+ * vertices are numbered from 0. NetworkInfluence runs its searches through
+ * this interface, so the edges can be kept as adjacency lists while the graph
+ * may still change, or in a more compact read-only form such as
+ * CompressedGraph.
+ *
+ * Implementations must allow several threads to read at once.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+interface AdjacencyStore {
+
+	/**
+	 * @return The number of vertices
+	 */
+	int vertexCount();
+
+	/**
+	 * @return The number of edges
+	 */
+	long edgeCount();
+
+	/**
+	 * @param v
+	 *            The index of a vertex
+	 * @return The number of successors of v
+	 */
+	int outDegree(int v);
+
+	/**
+	 * @return The largest out-degree of any vertex, the size of array that
+	 *         successors() always fits in
+	 */
+	int maxOutDegree();
+
+	/**
+	 * Copies the successors of a vertex into an array
+	 *
+	 * @param v
+	 *            The index of a vertex
+	 * @param into
+	 *            The array to copy them to; at least outDegree(v) long
+	 * @return The number of successors copied
+	 */
+	int successors(int v, int[] into);
+}
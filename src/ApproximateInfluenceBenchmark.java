@@ -0,0 +1,80 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * ApproximateInfluenceBenchmark class
+ *
+ * Times influence(u, epsilon) against the exact influence(u) for a sample of
+ * vertices, for a few values of epsilon, and reports the largest error
+ * observed. The graphs are a graph file, or else the graph of a generated
+ * XML dump as a crawl would find it, plus a few long chains where most of an
+ * exact BFS is spent on contributions far below epsilon.
+ *
+ * Usage: ApproximateInfluenceBenchmark [graphFile | pages] [samples]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ApproximateInfluenceBenchmark {
+
+	private static final double[] EPSILONS = { 1e-4, 1e-2, 1 };
+
+	public static void main(String[] args) throws Exception {
+		int samples = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		if (args.length > 0 && new File(args[0]).isFile()) {
+			run(args[0], args[0], samples);
+			return;
+		}
+		int pages = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+		String[] topicWords = { "complexity" };
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		File dump = File.createTempFile("approximate_influence_benchmark", ".xml.gz");
+		File crawled = File.createTempFile("approximate_influence_benchmark", ".txt");
+		dump.deleteOnExit();
+		crawled.deleteOnExit();
+		PageGenerator.writeXmlDump(dump.getAbsolutePath(), pages, 30, topicWords, 0.5, 311);
+		new DumpIngester(topics, 1).ingest(dump, crawled.getAbsolutePath());
+		run("crawled", crawled.getAbsolutePath(), samples);
+
+		File chains = File.createTempFile("approximate_influence_benchmark", ".txt");
+		chains.deleteOnExit();
+		GraphGenerator.writeChainGraph(chains.getAbsolutePath(), 4, pages / 4);
+		run("chains", chains.getAbsolutePath(), samples);
+	}
+
+	private static void run(String label, String graphFile, int samples) throws Exception {
+		NetworkInfluence network = new NetworkInfluence(graphFile, 0);
+		int n = network.vertexCount();
+		Random random = new Random(311);
+		String[] sample = new String[samples];
+		for (int i = 0; i < samples; i++) {
+			sample[i] = network.nameOf(random.nextInt(n));
+		}
+
+		// the exact influence, once to warm up and once timed
+		float[] exact = new float[samples];
+		for (int i = 0; i < samples; i++) {
+			exact[i] = network.influence(sample[i]);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < samples; i++) {
+			exact[i] = network.influence(sample[i]);
+		}
+		double exactMillis = (System.nanoTime() - start) / 1e6 / samples;
+		System.out.printf("%s: %d vertices, exact %.3f ms per vertex%n", label, n, exactMillis);
+
+		for (double epsilon : EPSILONS) {
+			double maxError = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < samples; i++) {
+				maxError = Math.max(maxError, exact[i] - network.influence(sample[i], epsilon));
+			}
+			double millis = (System.nanoTime() - start) / 1e6 / samples;
+			System.out.printf("%s: epsilon %g, %.3f ms per vertex, %.1fx faster, max error %.3g%n", label, epsilon,
+					millis, exactMillis / millis, maxError);
+		}
+	}
+}
@@ -0,0 +1,523 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * BenchmarkSuite class
+ *
+ * A suite of microbenchmarks covering the crawler and every NetworkInfluence
+ * query, run in the manner of JMH: each benchmark is warmed up for a number of
+ * timed iterations, then measured for a number more, and its average time per
+ * operation is reported with the spread across the measured iterations.
+ * Operations run in batches between two reads of the timer, sized so that
+ * reading it is a negligible part of each batch. Their results are kept, and
+ * only consumed by a sink after the batch has been timed, so the JIT can't
+ * discard the work and consuming it isn't measured.
+ *
+ * The inputs are generated, so runs need no network and are repeatable: a
+ * power-law graph of the given size, a smaller one for the rankings that run a
+ * BFS from every vertex, and wiki-like pages served by an in-process
+ * LocalPageServer. The crawl benchmark measures a whole crawl of those pages,
+ * with the politeness policy off.
+ *
+ * All benchmarks share one JVM, so for the cleanest figures run one group at a
+ * time with a filter, or use the JMH benchmarks in bench/, which fork a JVM per
+ * benchmark.
+ *
+ * Usage: BenchmarkSuite [-wi warmupIterations] [-i iterations] [-t
+ * secondsPerIteration] [-p name=value]... [-l] [filterRegex]
+ *
+ * The parameters are vertices, degree and rankVertices for the graphs, pages,
+ * links and crawlPages for the pages, and k for the rankings. -l lists the
+ * benchmarks.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class BenchmarkSuite {
+
+	/**
+	 * Longest batch of operations between two timer reads
+	 */
+	private static final int MAX_BATCH = 1 << 20;
+
+	// the results of operations end up here so their work isn't optimised away
+	private static volatile int sink;
+
+	// the results of the batch being timed, consumed once it is
+	private Object[] results = new Object[1];
+
+	private final Map<String, Operation> benchmarks = new LinkedHashMap<String, Operation>();
+	private final Map<String, String> params = new LinkedHashMap<String, String>();
+	private final List<Runnable> teardowns = new ArrayList<Runnable>();
+
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private double iterationSeconds = 1.0;
+
+	/**
+	 * One benchmarked operation
+	 */
+	interface Operation {
+
+		/**
+		 * Runs the operation once
+		 *
+		 * @param i
+		 *            The number of the invocation, for varying the input
+		 * @return The result, which is consumed
+		 */
+		Object run(int i) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkSuite suite = new BenchmarkSuite();
+		suite.params.put("vertices", "20000");
+		suite.params.put("degree", "8");
+		suite.params.put("rankVertices", "1000");
+		suite.params.put("pages", "2000");
+		suite.params.put("links", "30");
+		suite.params.put("crawlPages", "200");
+		suite.params.put("k", "5");
+
+		String filter = ".*";
+		boolean list = false;
+		for (int a = 0; a < args.length; a++) {
+			if (args[a].equals("-wi")) {
+				suite.warmupIterations = Integer.parseInt(args[++a]);
+			} else if (args[a].equals("-i")) {
+				suite.iterations = Integer.parseInt(args[++a]);
+			} else if (args[a].equals("-t")) {
+				suite.iterationSeconds = Double.parseDouble(args[++a]);
+			} else if (args[a].equals("-p")) {
+				String[] param = args[++a].split("=", 2);
+				if (!suite.params.containsKey(param[0])) {
+					throw new IllegalArgumentException("Unknown parameter " + param[0]);
+				}
+				suite.params.put(param[0], param[1]);
+			} else if (args[a].equals("-l")) {
+				list = true;
+			} else {
+				filter = args[a];
+			}
+		}
+
+		try {
+			suite.setUp();
+			if (list) {
+				for (String name : suite.benchmarks.keySet()) {
+					System.out.println(name);
+				}
+			} else {
+				suite.run(Pattern.compile(filter));
+			}
+		} finally {
+			suite.tearDown();
+		}
+	}
+
+	private int param(String name) {
+		return Integer.parseInt(params.get(name));
+	}
+
+	/**
+	 * Generates the inputs and registers every benchmark
+	 */
+	private void setUp() throws Exception {
+		final int pages = param("pages");
+		final int crawlPages = param("crawlPages");
+		final int k = param("k");
+		final Random random = new Random(311);
+
+		// graphs
+		File graphFile = File.createTempFile("benchmark_suite", ".txt");
+		graphFile.deleteOnExit();
+		final String graph = graphFile.getAbsolutePath();
+		GraphGenerator.writePowerLawGraph(graph, param("vertices"), param("degree"), 311);
+		File rankFile = File.createTempFile("benchmark_suite", ".txt");
+		rankFile.deleteOnExit();
+		GraphGenerator.writePowerLawGraph(rankFile.getAbsolutePath(), param("rankVertices"), param("degree"), 311);
+
+		// the query cache is off so every query does its search
+		final NetworkInfluence network = new NetworkInfluence(graph, 0);
+		final NetworkInfluence small = new NetworkInfluence(rankFile.getAbsolutePath(), 0);
+		final String[] sources = new String[1024];
+		final String[] targets = new String[sources.length];
+		final List<ArrayList<String>> sets = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = network.nameOf(random.nextInt(network.vertexCount()));
+			targets[i] = network.nameOf(random.nextInt(network.vertexCount()));
+			ArrayList<String> set = new ArrayList<String>();
+			for (int j = 0; j < k; j++) {
+				set.add(network.nameOf(random.nextInt(network.vertexCount())));
+			}
+			sets.add(set);
+		}
+		final int mask = sources.length - 1;
+
+		// pages, served locally with no added latency
+		final String[] topicWords = { "complexity" };
+		final ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		final ArrayList<String> noTopics = new ArrayList<String>();
+		final LocalPageServer server = new LocalPageServer(
+				PageGenerator.generate(pages, param("links"), topicWords, 0.9, 311));
+		server.start(4);
+		teardowns.add(new Runnable() {
+			@Override
+			public void run() {
+				server.stop();
+			}
+		});
+		final String base = server.getBaseUrl();
+
+		// the links of every page, as a crawl would have collected them
+		final Map<String, ArrayList<String>> crawled = new LinkedHashMap<String, ArrayList<String>>();
+		for (int i = 0; i < pages; i++) {
+			String title = PageGenerator.title(i);
+			crawled.put("/wiki/" + title, new PageScanner(base + "/wiki/" + title).getLinks(noTopics));
+		}
+		final File out = File.createTempFile("benchmark_suite", ".txt");
+		out.deleteOnExit();
+
+		// crawling
+		add("scanner.getLinks", new Operation() {
+			public Object run(int i) throws Exception {
+				return new PageScanner(base + "/wiki/" + PageGenerator.title(i % pages)).getLinks(noTopics);
+			}
+		});
+		add("scanner.scanPage", new Operation() {
+			public Object run(int i) throws Exception {
+				return new PageScanner(base + "/wiki/" + PageGenerator.title(i % pages)).scanPage(topics);
+			}
+		});
+		// the graph writing that WikiCrawler.constructGraph does at the end of a crawl
+		add("crawler.constructGraph", new Operation() {
+			public Object run(int i) throws Exception {
+				GraphWriter writer = new GraphWriter();
+				for (Map.Entry<String, ArrayList<String>> page : crawled.entrySet()) {
+					writer.addPage(page.getKey(), page.getValue());
+				}
+				return writer.write(out.getAbsolutePath());
+			}
+		});
+		add("crawler.crawl", new Operation() {
+			public Object run(int i) throws Exception {
+				WikiCrawler crawler = new WikiCrawler(base, "/wiki/" + PageGenerator.title(0), crawlPages, topics,
+						out.getAbsolutePath());
+				crawler.setPoliteness(0, 0);
+				crawler.crawl();
+				return crawler.getPagesAccepted();
+			}
+		});
+		add("crawler.crawlConcurrent", new Operation() {
+			public Object run(int i) throws Exception {
+				WikiCrawler crawler = new WikiCrawler(base, "/wiki/" + PageGenerator.title(0), crawlPages, topics,
+						out.getAbsolutePath());
+				crawler.setPoliteness(0, 0);
+				crawler.setConcurrentFetching(16, false);
+				crawler.crawl();
+				return crawler.getPagesAccepted();
+			}
+		});
+
+		// loading
+		add("load.lists", new Operation() {
+			public Object run(int i) throws Exception {
+				return new NetworkInfluence(graph, 0);
+			}
+		});
+		add("load.compressed", new Operation() {
+			public Object run(int i) throws Exception {
+				return NetworkInfluence.loadCompressed(graph, 0);
+			}
+		});
+		add("load.offHeap", new Operation() {
+			public Object run(int i) throws Exception {
+				NetworkInfluence loaded = NetworkInfluence.loadOffHeap(graph, null, 0);
+				return loaded.vertexCount();
+			}
+		});
+
+		// queries
+		add("query.outDegree", new Operation() {
+			public Object run(int i) {
+				return network.outDegree(sources[i & mask]);
+			}
+		});
+		add("query.distance", new Operation() {
+			public Object run(int i) {
+				return network.distance(sources[i & mask], targets[i & mask]);
+			}
+		});
+		add("query.distanceFromSet", new Operation() {
+			public Object run(int i) {
+				return network.distance(sets.get(i & mask), targets[i & mask]);
+			}
+		});
+		add("query.shortestPath", new Operation() {
+			public Object run(int i) {
+				return network.shortestPath(sources[i & mask], targets[i & mask]);
+			}
+		});
+		add("query.influence", new Operation() {
+			public Object run(int i) {
+				return network.influence(sources[i & mask]);
+			}
+		});
+		add("query.influenceApproximate", new Operation() {
+			public Object run(int i) {
+				return network.influence(sources[i & mask], 0.01);
+			}
+		});
+		add("query.influenceOfSet", new Operation() {
+			public Object run(int i) {
+				return network.influence(sets.get(i & mask));
+			}
+		});
+		add("query.pageRank", new Operation() {
+			public Object run(int i) {
+				return network.pageRank(sources[i & mask]);
+			}
+		});
+		add("query.hubScore", new Operation() {
+			public Object run(int i) {
+				return network.hubScore(sources[i & mask]);
+			}
+		});
+		add("query.authorityScore", new Operation() {
+			public Object run(int i) {
+				return network.authorityScore(sources[i & mask]);
+			}
+		});
+
+		// rankings; those that search from every vertex use the small graph
+		add("rank.degree", new Operation() {
+			public Object run(int i) {
+				return network.mostInfluentialDegree(k);
+			}
+		});
+		add("rank.pageRank", new Operation() {
+			public Object run(int i) {
+				return network.mostInfluentialPageRank(k);
+			}
+		});
+		add("rank.hub", new Operation() {
+			public Object run(int i) {
+				return network.mostInfluentialHub(k);
+			}
+		});
+		add("rank.authority", new Operation() {
+			public Object run(int i) {
+				return network.mostInfluentialAuthority(k);
+			}
+		});
+		add("rank.betweennessApproximate", new Operation() {
+			public Object run(int i) {
+				return network.mostInfluentialBetweenness(k, 0.1, 0.1);
+			}
+		});
+		add("rank.closenessApproximate", new Operation() {
+			public Object run(int i) {
+				return network.mostInfluentialCloseness(k, 0.1, 0.1);
+			}
+		});
+		add("rank.modular", new Operation() {
+			public Object run(int i) {
+				return small.mostInfluentialModular(k);
+			}
+		});
+		add("rank.modularApproximate", new Operation() {
+			public Object run(int i) {
+				return small.mostInfluentialModular(k, 0.01);
+			}
+		});
+		add("rank.subModular", new Operation() {
+			public Object run(int i) {
+				return small.mostInfluentialSubModular(k);
+			}
+		});
+		add("rank.subModularApproximate", new Operation() {
+			public Object run(int i) {
+				return small.mostInfluentialSubModular(k, 0.01);
+			}
+		});
+		add("rank.betweenness", new Operation() {
+			public Object run(int i) {
+				return small.mostInfluentialBetweenness(k);
+			}
+		});
+		add("rank.closeness", new Operation() {
+			public Object run(int i) {
+				return small.mostInfluentialCloseness(k);
+			}
+		});
+	}
+
+	private void add(String name, Operation operation) {
+		benchmarks.put(name, operation);
+	}
+
+	private void tearDown() {
+		for (Runnable teardown : teardowns) {
+			teardown.run();
+		}
+	}
+
+	/**
+	 * Runs every benchmark whose name matches the filter and prints a table of
+	 * the results
+	 */
+	private void run(Pattern filter) throws Exception {
+		System.out.println("# Parameters: " + params);
+		System.out.printf("# Warmup: %d x %.1f s, measurement: %d x %.1f s%n", warmupIterations, iterationSeconds,
+				iterations, iterationSeconds);
+		List<String> rows = new ArrayList<String>();
+		for (Map.Entry<String, Operation> benchmark : benchmarks.entrySet()) {
+			if (!filter.matcher(benchmark.getKey()).find()) {
+				continue;
+			}
+			System.out.println("# Benchmark: " + benchmark.getKey());
+			int batch = batchSize(benchmark.getValue());
+			System.out.printf("# Batch: %d operations per timer read%n", batch);
+			double[] scores = new double[iterations];
+			for (int w = 0; w < warmupIterations; w++) {
+				System.out.printf("# Warmup Iteration %d: %s%n", w + 1,
+						format(iteration(benchmark.getValue(), batch)));
+			}
+			for (int m = 0; m < iterations; m++) {
+				scores[m] = iteration(benchmark.getValue(), batch);
+				System.out.printf("Iteration %d: %s%n", m + 1, format(scores[m]));
+			}
+			rows.add(row(benchmark.getKey(), scores));
+		}
+
+		System.out.println();
+		System.out.printf("%-32s %4s %14s %12s  %s%n", "Benchmark", "Cnt", "Score", "Error", "Units");
+		for (String row : rows) {
+			System.out.println(row);
+		}
+	}
+
+	/**
+	 * Finds the number of operations to run between two timer reads: the
+	 * smallest power of two that takes at least a hundredth of an iteration
+	 */
+	private int batchSize(Operation operation) throws Exception {
+		long target = (long) (iterationSeconds * 1000000000L / 100);
+		int batch = 1;
+		while (batch < MAX_BATCH && runBatch(operation, 0, batch) < target) {
+			batch *= 2;
+		}
+		return batch;
+	}
+
+	/**
+	 * Runs the operation in batches for one iteration, always at least one batch
+	 *
+	 * @return The average nanoseconds per operation
+	 */
+	private double iteration(Operation operation, int batch) throws Exception {
+		long budget = (long) (iterationSeconds * 1000000000L);
+		int ops = 0;
+		long elapsed = 0;
+		do {
+			elapsed += runBatch(operation, ops, batch);
+			ops += batch;
+		} while (elapsed < budget);
+		return (double) elapsed / ops;
+	}
+
+	/**
+	 * Runs one batch of operations, timing only the operations themselves, and
+	 * then consumes their results
+	 *
+	 * @param first
+	 *            The number of the first invocation of the batch
+	 * @return The nanoseconds the batch took
+	 */
+	private long runBatch(Operation operation, int first, int batch) throws Exception {
+		if (results.length < batch) {
+			results = new Object[batch];
+		}
+		Object[] batchResults = results;
+		long start = System.nanoTime();
+		for (int j = 0; j < batch; j++) {
+			batchResults[j] = operation.run(first + j);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		int hash = 0;
+		for (int j = 0; j < batch; j++) {
+			Object result = batchResults[j];
+			hash ^= result == null ? 0 : result.hashCode();
+			batchResults[j] = null;
+		}
+		sink ^= hash;
+		return elapsed;
+	}
+
+	/**
+	 * Formats a result row, giving the error as the half-width of a 99.9%
+	 * confidence interval as JMH does
+	 */
+	private static String row(String name, double[] scores) {
+		double mean = 0;
+		for (double score : scores) {
+			mean += score;
+		}
+		mean /= scores.length;
+		double variance = 0;
+		for (double score : scores) {
+			variance += (score - mean) * (score - mean);
+		}
+		double error = scores.length < 2 ? Double.NaN
+				: studentT999(scores.length - 1) * Math.sqrt(variance / (scores.length - 1) / scores.length);
+
+		String units = units(mean);
+		double scale = scale(units);
+		return String.format("%-32s %4d %14.3f %s %10.3f  %s", name, scores.length, mean / scale,
+				Double.isNaN(error) ? "   " : "+- ", error / scale, units);
+	}
+
+	/**
+	 * @return The two-sided 99.9% quantile of Student's t distribution with the
+	 *         given degrees of freedom
+	 */
+	private static double studentT999(int df) {
+		final double[] T = { 636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59, 4.44, 4.32, 4.22, 4.14,
+				4.07, 4.01, 3.97, 3.92, 3.88, 3.85, 3.82, 3.79, 3.77, 3.75, 3.73, 3.71, 3.69, 3.67, 3.66, 3.65 };
+		return df <= T.length ? T[df - 1] : 3.29;
+	}
+
+	private static String units(double nanos) {
+		if (nanos >= 1e9) {
+			return "s/op";
+		} else if (nanos >= 1e6) {
+			return "ms/op";
+		} else if (nanos >= 1e3) {
+			return "us/op";
+		}
+		return "ns/op";
+	}
+
+	private static double scale(String units) {
+		if (units.equals("s/op")) {
+			return 1e9;
+		} else if (units.equals("ms/op")) {
+			return 1e6;
+		} else if (units.equals("us/op")) {
+			return 1e3;
+		}
+		return 1;
+	}
+
+	private static String format(double nanos) {
+		String units = units(nanos);
+		return String.format("%.3f %s", nanos / scale(units), units);
+	}
+}
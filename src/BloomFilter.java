@@ -0,0 +1,93 @@
+/**
+ * BloomFilter class
+ *
+ * A Bloom filter over 64-bit fingerprints. It answers "definitely not present"
+ * or "maybe present" using a few bits per entry. With about 10 bits and 7 hash
+ * functions per expected entry, roughly 1% of absent fingerprints are reported
+ * as maybe present. Adding more entries than expected keeps the filter correct
+ * but raises that rate.
+ *
+ * The k bit positions are derived from the fingerprint by double hashing, so
+ * no further hashing of the original key is needed.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class BloomFilter {
+
+	/**
+	 * Bits used per expected entry
+	 */
+	static final int BITS_PER_ENTRY = 10;
+
+	/**
+	 * Number of bits set per entry; optimal for BITS_PER_ENTRY is ln(2) * 10, about
+	 * 7
+	 */
+	static final int HASHES = 7;
+
+	// the bit array
+	private final long[] bits;
+	// number of bits in the array, a power of two
+	private final long numBits;
+
+	/**
+	 * Constructs a new, empty filter sized for the given number of entries
+	 *
+	 * @param expectedEntries
+	 *            The number of entries the filter should hold at its target
+	 *            false-positive rate
+	 */
+	public BloomFilter(long expectedEntries) {
+		long wanted = Math.max(64, expectedEntries * BITS_PER_ENTRY);
+		long size = Long.highestOneBit(wanted - 1) << 1;
+		if (size / 64 > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many entries for one filter: " + expectedEntries);
+		}
+		numBits = size;
+		bits = new long[(int) (size / 64)];
+	}
+
+	/**
+	 * Adds a fingerprint to the filter
+	 *
+	 * @param fingerprint
+	 *            A well-mixed 64-bit hash of the key
+	 */
+	public void add(long fingerprint) {
+		long h1 = fingerprint;
+		long h2 = (fingerprint >>> 32) | 1;
+		long mask = numBits - 1;
+		for (int i = 0; i < HASHES; i++) {
+			long bit = (h1 + i * h2) & mask;
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Checks whether a fingerprint may have been added
+	 *
+	 * @param fingerprint
+	 *            A well-mixed 64-bit hash of the key
+	 * @return false if the fingerprint was certainly never added
+	 */
+	public boolean mightContain(long fingerprint) {
+		long h1 = fingerprint;
+		long h2 = (fingerprint >>> 32) | 1;
+		long mask = numBits - 1;
+		for (int i = 0; i < HASHES; i++) {
+			long bit = (h1 + i * h2) & mask;
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The memory used by the bit array, in bytes
+	 */
+	public long sizeInBytes() {
+		return numBits / 8;
+	}
+}
@@ -0,0 +1,253 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Centrality class
+ *
+ * Implements sampled betweenness and harmonic closeness centrality over a
+ * CsrGraph. Betweenness uses Brandes' algorithm from a random sample of source
+ * vertices. Closeness runs BFS over the reversed edges from a random sample of
+ * target vertices. The samples are split across the common fork-join pool.
+ * Each task keeps its own BFS work arrays and score accumulator, and the
+ * accumulators are only summed once all tasks are done.
+ *
+ * Error bound: both estimators average, over the sampled vertices, a
+ * per-sample value that lies in [0, 1] once normalized (the dependency of a
+ * source divided by n - 2, or 1 / distance). By Hoeffding's inequality and a
+ * union bound over all n vertices, samplesFor(n, epsilon, delta) samples make
+ * every normalized score accurate to within epsilon with probability at least
+ * 1 - delta. The normalized scores are betweenness / (n * (n - 2)) and
+ * closeness / n. When the sample size reaches n every vertex is used and the
+ * scores are exact.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+class Centrality {
+
+	/**
+	 * Default absolute error of the normalized scores
+	 */
+	static final double DEFAULT_EPSILON = 0.05;
+
+	/**
+	 * Default probability that some score misses the error bound
+	 */
+	static final double DEFAULT_DELTA = 0.1;
+
+	/**
+	 * Returns the number of samples needed for every normalized score to be
+	 * within epsilon of its true value with probability at least 1 - delta
+	 *
+	 * @param n
+	 *            The number of vertices
+	 * @param epsilon
+	 *            The absolute error of the normalized scores
+	 * @param delta
+	 *            The allowed failure probability
+	 * @return The sample size, at most n
+	 */
+	static int samplesFor(int n, double epsilon, double delta) {
+		if (epsilon <= 0 || delta <= 0 || delta >= 1) {
+			throw new IllegalArgumentException("Need epsilon > 0 and 0 < delta < 1: " + epsilon + ", " + delta);
+		}
+		double samples = Math.ceil(Math.log(2.0 * n / delta) / (2 * epsilon * epsilon));
+		return (int) Math.min(n, samples);
+	}
+
+	/**
+	 * Estimates the betweenness of every vertex from the given number of sampled
+	 * sources, scaled up to the full graph
+	 *
+	 * @param g
+	 *            The graph
+	 * @param samples
+	 *            The number of sources; n or more gives exact betweenness
+	 * @param seed
+	 *            Seed for choosing the sources
+	 * @return The estimated number of shortest paths through every vertex
+	 */
+	static double[] betweenness(final CsrGraph g, int samples, long seed) {
+		final int n = g.vertices;
+		final int[] sources = sample(n, samples, seed);
+		double[] scores = runParallel(n, sources, new SampleTask() {
+			public void run(int[] chunk, double[] acc) {
+				// Brandes' work arrays, reused for every source of this task
+				int[] dist = new int[n];
+				double[] sigma = new double[n];
+				double[] dependency = new double[n];
+				int[] order = new int[n];
+				Arrays.fill(dist, -1);
+
+				for (int s : chunk) {
+					// BFS from s, counting shortest paths; order doubles as the queue
+					int head = 0;
+					int tail = 0;
+					order[tail++] = s;
+					dist[s] = 0;
+					sigma[s] = 1;
+					while (head < tail) {
+						int x = order[head++];
+						for (int i = g.outOffsets[x]; i < g.outOffsets[x + 1]; i++) {
+							int y = g.outTargets[i];
+							if (dist[y] < 0) {
+								dist[y] = dist[x] + 1;
+								order[tail++] = y;
+							}
+							if (dist[y] == dist[x] + 1) {
+								sigma[y] += sigma[x];
+							}
+						}
+					}
+
+					// walk back in reverse BFS order, pulling dependencies over in-edges
+					// instead of keeping predecessor lists
+					for (int j = tail - 1; j > 0; j--) {
+						int w = order[j];
+						double coefficient = (1 + dependency[w]) / sigma[w];
+						for (int i = g.inOffsets[w]; i < g.inOffsets[w + 1]; i++) {
+							int v = g.inSources[i];
+							if (dist[v] >= 0 && dist[v] == dist[w] - 1) {
+								dependency[v] += sigma[v] * coefficient;
+							}
+						}
+						acc[w] += dependency[w];
+					}
+
+					// reset only what this BFS touched
+					for (int j = 0; j < tail; j++) {
+						int v = order[j];
+						dist[v] = -1;
+						sigma[v] = 0;
+						dependency[v] = 0;
+					}
+				}
+			}
+		});
+
+		scale(scores, n, sources.length);
+		return scores;
+	}
+
+	/**
+	 * Estimates the harmonic closeness of every vertex, the sum over all other
+	 * vertices u of 1 / distance(v, u), from the given number of sampled targets
+	 *
+	 * @param g
+	 *            The graph
+	 * @param samples
+	 *            The number of targets; n or more gives exact closeness
+	 * @param seed
+	 *            Seed for choosing the targets
+	 * @return The estimated harmonic closeness of every vertex
+	 */
+	static double[] harmonicCloseness(final CsrGraph g, int samples, long seed) {
+		final int n = g.vertices;
+		final int[] targets = sample(n, samples, seed);
+		double[] scores = runParallel(n, targets, new SampleTask() {
+			public void run(int[] chunk, double[] acc) {
+				int[] dist = new int[n];
+				int[] queue = new int[n];
+				Arrays.fill(dist, -1);
+
+				for (int t : chunk) {
+					// BFS over the reversed edges finds distance(v, t) for every v
+					int head = 0;
+					int tail = 0;
+					queue[tail++] = t;
+					dist[t] = 0;
+					while (head < tail) {
+						int x = queue[head++];
+						for (int i = g.inOffsets[x]; i < g.inOffsets[x + 1]; i++) {
+							int y = g.inSources[i];
+							if (dist[y] < 0) {
+								dist[y] = dist[x] + 1;
+								queue[tail++] = y;
+								acc[y] += 1.0 / dist[y];
+							}
+						}
+					}
+
+					for (int j = 0; j < tail; j++) {
+						dist[queue[j]] = -1;
+					}
+				}
+			}
+		});
+
+		scale(scores, n, targets.length);
+		return scores;
+	}
+
+	/**
+	 * Work done for one chunk of sampled vertices, adding into a private
+	 * accumulator
+	 */
+	private interface SampleTask {
+		void run(int[] chunk, double[] acc);
+	}
+
+	/**
+	 * Splits the samples into one chunk per worker thread, runs the task on each
+	 * chunk with its own accumulator and returns the sum of the accumulators
+	 */
+	private static double[] runParallel(final int n, final int[] samples, final SampleTask task) {
+		int parallelism = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+		final int tasks = Math.max(1, Math.min(parallelism, samples.length));
+		final double[][] accumulators = new double[tasks][];
+
+		IntStream.range(0, tasks).parallel().forEach(t -> {
+			int from = (int) ((long) samples.length * t / tasks);
+			int to = (int) ((long) samples.length * (t + 1) / tasks);
+			double[] acc = new double[n];
+			task.run(Arrays.copyOfRange(samples, from, to), acc);
+			accumulators[t] = acc;
+		});
+
+		double[] total = accumulators[0];
+		for (int t = 1; t < tasks; t++) {
+			for (int v = 0; v < n; v++) {
+				total[v] += accumulators[t][v];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Scales scores summed over sampled vertices up to the whole graph
+	 */
+	private static void scale(double[] scores, int n, int samples) {
+		if (samples == 0 || samples == n) {
+			return;
+		}
+		double factor = (double) n / samples;
+		for (int v = 0; v < n; v++) {
+			scores[v] *= factor;
+		}
+	}
+
+	/**
+	 * Picks k distinct vertices uniformly at random, or all of them if k >= n
+	 */
+	private static int[] sample(int n, int k, long seed) {
+		int[] all = new int[n];
+		for (int v = 0; v < n; v++) {
+			all[v] = v;
+		}
+		if (k >= n) {
+			return all;
+		}
+
+		// partial Fisher-Yates shuffle
+		Random random = new Random(seed);
+		for (int i = 0; i < k; i++) {
+			int j = i + random.nextInt(n - i);
+			int temp = all[i];
+			all[i] = all[j];
+			all[j] = temp;
+		}
+		return Arrays.copyOf(all, Math.max(0, k));
+	}
+}
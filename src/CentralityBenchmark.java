@@ -0,0 +1,67 @@
+import java.io.File;
+
+/**
+ * CentralityBenchmark class
+ *
+ * Times the centrality rankings of NetworkInfluence on a graph file, or on a
+ * generated power-law graph of the given size.
+ *
+ * Usage: CentralityBenchmark [graphFile | vertices] [avgDegree]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class CentralityBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String graphFile;
+		if (args.length > 0 && new File(args[0]).isFile()) {
+			graphFile = args[0];
+		} else {
+			int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+			int degree = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+			File f = File.createTempFile("centrality_benchmark", ".txt");
+			f.deleteOnExit();
+			graphFile = f.getAbsolutePath();
+			long genStart = System.nanoTime();
+			GraphGenerator.writePowerLawGraph(graphFile, vertices, degree, 311);
+			System.out.printf("Time to generate graph: %f seconds%n", elapsed(genStart));
+		}
+
+		long loadStart = System.nanoTime();
+		NetworkInfluence network = new NetworkInfluence(graphFile);
+		System.out.printf("Time to load graph: %f seconds%n", elapsed(loadStart));
+
+		long csrStart = System.nanoTime();
+		CsrGraph g = network.csr();
+		System.out.printf("Time to build CSR (%d vertices, %d edges): %f seconds%n", g.vertices, g.edges(),
+				elapsed(csrStart));
+
+		long prStart = System.nanoTime();
+		System.out.println("PageRank top 5: " + network.mostInfluentialPageRank(5));
+		System.out.printf("Time for PageRank: %f seconds%n", elapsed(prStart));
+
+		long hitsStart = System.nanoTime();
+		System.out.println("Authority top 5: " + network.mostInfluentialAuthority(5));
+		System.out.println("Hub top 5: " + network.mostInfluentialHub(5));
+		System.out.printf("Time for HITS: %f seconds%n", elapsed(hitsStart));
+
+		long betweennessStart = System.nanoTime();
+		System.out.printf("Betweenness samples: %d%n",
+				Centrality.samplesFor(g.vertices, Centrality.DEFAULT_EPSILON, Centrality.DEFAULT_DELTA));
+		System.out.println("Betweenness top 5: " + network.mostInfluentialBetweenness(5));
+		System.out.printf("Time for betweenness: %f seconds%n", elapsed(betweennessStart));
+
+		long closenessStart = System.nanoTime();
+		System.out.println("Closeness top 5: " + network.mostInfluentialCloseness(5));
+		System.out.printf("Time for closeness: %f seconds%n", elapsed(closenessStart));
+
+		long degreeStart = System.nanoTime();
+		System.out.println("Degree top 5: " + network.mostInfluentialDegree(5));
+		System.out.printf("Time for degree ranking: %f seconds%n", elapsed(degreeStart));
+	}
+
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1000000000.0;
+	}
+}
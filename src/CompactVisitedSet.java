@@ -0,0 +1,209 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * CompactVisitedSet class
+ *
+ * A VisitedSet for very large crawls. It stores a 64-bit fingerprint of each
+ * title instead of the title itself, in an open-addressing table of primitive
+ * longs with linear probing. That table can optionally live off the Java heap
+ * in a direct buffer. A BloomFilter in front of the table answers most lookups
+ * of unseen titles without touching the table. Each title costs about 12 to 24
+ * bytes (table slots at 37-75% load, plus 10 filter bits), against well over
+ * 100 bytes for a String in a HashSet.
+ *
+ * False positives: two different titles with the same 64-bit fingerprint are
+ * treated as the same title, so the second one would be skipped as already
+ * visited. For n titles this happens with probability about n^2 / 2^65, which is
+ * around 3 in a million for a whole crawl of 10 million titles. Titles are never
+ * reported as missing once added.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class CompactVisitedSet implements VisitedSet {
+
+	// fingerprint marking an empty slot; real fingerprints of 0 are remapped
+	private static final long EMPTY = 0;
+
+	// the table grows once it is this full
+	private static final double MAX_LOAD = 0.75;
+
+	// whether the table is kept off the Java heap
+	private final boolean offHeap;
+	// filter answering most negative lookups
+	private final BloomFilter filter;
+
+	// the table of fingerprints; its capacity is a power of two
+	private LongBuffer table;
+	private int capacity;
+	private long size;
+
+	/**
+	 * Constructs a new, empty set sized for the given number of titles
+	 *
+	 * @param expectedTitles
+	 *            The number of titles expected; the set grows beyond it if needed
+	 * @param offHeap
+	 *            Whether to keep the fingerprint table in a direct buffer outside
+	 *            the Java heap
+	 */
+	public CompactVisitedSet(long expectedTitles, boolean offHeap) {
+		this.offHeap = offHeap;
+		this.filter = new BloomFilter(expectedTitles);
+		long wanted = (long) (Math.max(16, expectedTitles) / MAX_LOAD) + 1;
+		allocate(tableSizeFor(wanted));
+	}
+
+	@Override
+	public boolean add(String title) {
+		return addFingerprint(fingerprint(title));
+	}
+
+	@Override
+	public boolean contains(String title) {
+		return containsFingerprint(fingerprint(title));
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return The memory used by the table and the filter, in bytes
+	 */
+	public long sizeInBytes() {
+		return (long) capacity * 8 + filter.sizeInBytes();
+	}
+
+	/**
+	 * Adds a fingerprint to the set
+	 *
+	 * @param fp
+	 *            The fingerprint
+	 * @return true if it was not in the set before
+	 */
+	boolean addFingerprint(long fp) {
+		if (containsFingerprint(fp)) {
+			return false;
+		}
+		if (size + 1 > capacity * MAX_LOAD) {
+			grow();
+		}
+		insert(table, capacity, fp);
+		filter.add(fp);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Checks whether a fingerprint is in the set
+	 *
+	 * @param fp
+	 *            The fingerprint
+	 * @return true if it is in the set
+	 */
+	boolean containsFingerprint(long fp) {
+		if (!filter.mightContain(fp)) {
+			return false;
+		}
+		int mask = capacity - 1;
+		int slot = (int) mix(fp) & mask;
+		while (true) {
+			long current = table.get(slot);
+			if (current == fp) {
+				return true;
+			}
+			if (current == EMPTY) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Returns the 64-bit fingerprint of a title: FNV-1a over its chars, followed
+	 * by a final mixing step so every bit depends on the whole title. Hashing the
+	 * chars directly avoids encoding the title on every lookup.
+	 *
+	 * @param title
+	 *            The page title
+	 * @return Its fingerprint, never EMPTY
+	 */
+	static long fingerprint(String title) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < title.length(); i++) {
+			h ^= title.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h = mix(h);
+		return h == EMPTY ? 1 : h;
+	}
+
+	/**
+	 * The MurmurHash3 64-bit finalizer
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Stores a fingerprint known to be absent in the first free slot of its probe
+	 * sequence
+	 */
+	private static void insert(LongBuffer table, int capacity, long fp) {
+		int mask = capacity - 1;
+		int slot = (int) mix(fp) & mask;
+		while (table.get(slot) != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		table.put(slot, fp);
+	}
+
+	/**
+	 * Doubles the table, re-inserting every fingerprint
+	 */
+	private void grow() {
+		LongBuffer old = table;
+		int oldCapacity = capacity;
+		allocate(tableSizeFor((long) oldCapacity * 2));
+		for (int i = 0; i < oldCapacity; i++) {
+			long fp = old.get(i);
+			if (fp != EMPTY) {
+				insert(table, capacity, fp);
+			}
+		}
+	}
+
+	/**
+	 * Allocates an empty table with the given number of slots
+	 */
+	private void allocate(int slots) {
+		capacity = slots;
+		if (offHeap) {
+			// direct buffers start zeroed, that is all EMPTY
+			table = ByteBuffer.allocateDirect(slots * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+		} else {
+			table = LongBuffer.wrap(new long[slots]);
+		}
+	}
+
+	/**
+	 * Rounds up to a power of two that a single buffer can hold
+	 */
+	private static int tableSizeFor(long slots) {
+		// a direct buffer is limited to 2^31 - 1 bytes
+		long limit = 1L << 27;
+		if (slots > limit) {
+			throw new IllegalStateException("Visited set is full: " + slots + " slots needed");
+		}
+		return (int) Math.max(16, Long.highestOneBit(slots - 1) << 1);
+	}
+}
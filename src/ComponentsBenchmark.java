@@ -0,0 +1,71 @@
+import java.io.File;
+import java.util.Random;
+
+/**
+ * ComponentsBenchmark class
+ *
+ * Times the strongly connected component computation on large synthetic
+ * graphs, and compares distance queries between unreachable vertices with and
+ * without the component check.
+ *
+ * Usage: ComponentsBenchmark [vertices] [avgDegree]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ComponentsBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int degree = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		File powerLaw = File.createTempFile("components_benchmark", ".txt");
+		powerLaw.deleteOnExit();
+		GraphGenerator.writePowerLawGraph(powerLaw.getAbsolutePath(), vertices, degree, 311);
+		run("power-law", powerLaw.getAbsolutePath());
+
+		// a handful of very long chains; a recursive DFS would overflow the stack here
+		File chains = File.createTempFile("components_benchmark_chains", ".txt");
+		chains.deleteOnExit();
+		GraphGenerator.writeChainGraph(chains.getAbsolutePath(), 4, vertices / 4);
+		run("chains", chains.getAbsolutePath());
+	}
+
+	private static void run(String label, String graphFile) throws Exception {
+		NetworkInfluence network = new NetworkInfluence(graphFile, 0);
+		CsrGraph g = network.csr();
+
+		long sccStart = System.nanoTime();
+		StronglyConnectedComponents sccs = new StronglyConnectedComponents(g);
+		System.out.printf("%s: %d vertices, %d edges, %d components; SCC time %f seconds%n", label, g.vertices,
+				g.edges(), sccs.count(), elapsed(sccStart));
+
+		// pick pairs the components prove unreachable and time rejecting them
+		Random random = new Random(311);
+		int rejected = 0;
+		long rejectStart = System.nanoTime();
+		for (int i = 0; i < 100000; i++) {
+			int u = random.nextInt(g.vertices);
+			int v = random.nextInt(g.vertices);
+			if (!sccs.mayReach(sccs.componentOf(u), sccs.componentOf(v))) {
+				rejected++;
+			}
+		}
+		double rejectElapsed = elapsed(rejectStart);
+		System.out.printf("%s: %d of 100000 random pairs rejected in O(1), %f ns per check%n", label, rejected,
+				rejectElapsed * 1e9 / 100000);
+
+		// time a few full distance queries, which now include the component check
+		long queryStart = System.nanoTime();
+		int queries = 20;
+		for (int i = 0; i < queries; i++) {
+			network.distance(GraphGenerator.vertexName(random.nextInt(g.vertices)),
+					GraphGenerator.vertexName(random.nextInt(g.vertices)));
+		}
+		System.out.printf("%s: %f ms per distance query%n", label, elapsed(queryStart) * 1000 / queries);
+	}
+
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1000000000.0;
+	}
+}
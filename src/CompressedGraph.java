@@ -0,0 +1,628 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * CompressedGraph class
+ *
+ * A read-only AdjacencyStore that keeps the successor lists compressed in the
+ * style of the WebGraph framework (Boldi and Vigna, 2004), for link graphs too
+ * large to hold as adjacency lists or even as CSR arrays. Link graphs compress
+ * well because pages mostly link to pages numbered close to them, and pages
+ * numbered close to each other tend to link to the same pages.
+ *
+ * Each list is sorted, and written as a byte-aligned record of variable-length
+ * integers (7 bits per byte):
+ *
+ * - the out-degree d; nothing else follows if it is 0,
+ *
+ * - the reference r: 0, or how many vertices back the list is that this one
+ * copies from; that list is at most WINDOW vertices back, and chains of
+ * references are at most MAX_REF_CHAIN long, which bounds the decoding work,
+ *
+ * - if r &gt; 0, the copy blocks: their number, then the lengths of alternating
+ * runs of the referenced list to copy and to skip, starting with a copy run.
+ * The last run is implied and reaches the end of the list,
+ *
+ * - if successors are left that weren't copied: the intervals, the runs of at
+ * least MIN_INTERVAL consecutive numbers among them, as a count followed by
+ * the gap to each run's start and its length, and
+ *
+ * - the remaining successors as gaps: the first relative to the vertex itself
+ * (zig-zag coded, since it may be negative), the others relative to the one
+ * before.
+ *
+ * The encoder tries every allowed reference and keeps the shortest record. An
+ * index of one long per 64 vertices and one int per vertex gives the start of
+ * every record, so lists are decoded independently of each other. Records are
+ * stored in segments of up to 1 GB, so the graph isn't limited to one array.
+ *
+ * Several threads may decode at once; each uses its own scratch buffers.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+class CompressedGraph implements AdjacencyStore {
+
+	/**
+	 * How many vertices back a list may copy from
+	 */
+	static final int WINDOW = 7;
+
+	/**
+	 * Longest chain of references to follow when decoding one list
+	 */
+	static final int MAX_REF_CHAIN = 3;
+
+	/**
+	 * Shortest run of consecutive successors coded as an interval
+	 */
+	static final int MIN_INTERVAL = 4;
+
+	/**
+	 * Record positions are the segment number shifted by this, plus the offset
+	 */
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	/**
+	 * Vertices per entry of the coarse index
+	 */
+	private static final int INDEX_SHIFT = 6;
+
+	private final int vertices;
+	private final long edges;
+	private final int maxOutDegree;
+	private final byte[][] segments;
+	private final long dataBytes;
+
+	/**
+	 * Position of the record of vertex v: base[v &gt;&gt; INDEX_SHIFT] + offset[v]
+	 */
+	private final long[] base;
+	private final int[] offset;
+
+	/**
+	 * Decoding buffers of each thread
+	 */
+	private final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+
+	private CompressedGraph(Builder builder) {
+		vertices = builder.vertices;
+		edges = builder.edges;
+		maxOutDegree = builder.maxOutDegree;
+		segments = builder.finishSegments();
+		long bytes = 0;
+		for (byte[] segment : segments) {
+			bytes += segment.length;
+		}
+		dataBytes = bytes;
+		base = Arrays.copyOf(builder.base, (vertices >> INDEX_SHIFT) + 1);
+		offset = Arrays.copyOf(builder.offset, vertices);
+	}
+
+	/**
+	 * Compresses the given graph
+	 *
+	 * @param graph
+	 *            The graph
+	 * @return Its compressed form
+	 */
+	static CompressedGraph of(AdjacencyStore graph) {
+		Builder builder = new Builder();
+		int[] successors = new int[graph.maxOutDegree()];
+		for (int v = 0; v < graph.vertexCount(); v++) {
+			builder.add(successors, 0, graph.successors(v, successors));
+		}
+		return builder.build();
+	}
+
+	@Override
+	public int vertexCount() {
+		return vertices;
+	}
+
+	@Override
+	public long edgeCount() {
+		return edges;
+	}
+
+	@Override
+	public int maxOutDegree() {
+		return maxOutDegree;
+	}
+
+	@Override
+	public int outDegree(int v) {
+		long position = position(v);
+		byte[] data = segments[(int) (position >>> SEGMENT_BITS)];
+		int pos = (int) (position & SEGMENT_MASK);
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = data[pos++];
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Copies the successors of v into an array, in increasing order
+	 */
+	@Override
+	public int successors(int v, int[] into) {
+		return decoders.get().decode(v, into, 0);
+	}
+
+	/**
+	 * @return The bytes taken by the compressed lists
+	 */
+	long getDataBytes() {
+		return dataBytes;
+	}
+
+	/**
+	 * @return The bytes taken by the index of record positions
+	 */
+	long getIndexBytes() {
+		return 8L * base.length + 4L * offset.length;
+	}
+
+	/**
+	 * @return The bits per edge of the compressed lists, without the index
+	 */
+	double bitsPerEdge() {
+		return edges == 0 ? 0 : 8.0 * dataBytes / edges;
+	}
+
+	private long position(int v) {
+		return base[v >> INDEX_SHIFT] + offset[v];
+	}
+
+	private static int zigzag(int x) {
+		return (x << 1) ^ (x >> 31);
+	}
+
+	private static int unzigzag(int x) {
+		return (x >>> 1) ^ -(x & 1);
+	}
+
+	/**
+	 * Reads records for one thread. Following a reference decodes the referenced
+	 * list one level deeper, into that level's buffers.
+	 */
+	private class Decoder {
+
+		private byte[] data;
+		private int pos;
+
+		// per level: the referenced list, the successors not copied from it, and
+		// the residuals among those
+		private final int[][] refs = new int[MAX_REF_CHAIN + 1][];
+		private final int[][] extras = new int[MAX_REF_CHAIN + 1][];
+		private final int[][] residuals = new int[MAX_REF_CHAIN + 1][];
+		// per level: the start and length of every interval
+		private final int[][] intervals = new int[MAX_REF_CHAIN + 1][];
+
+		private int readInt() {
+			int value = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = data[pos++];
+				value |= (b & 0x7f) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		}
+
+		private int decode(int v, int[] into, int level) {
+			long position = position(v);
+			data = segments[(int) (position >>> SEGMENT_BITS)];
+			pos = (int) (position & SEGMENT_MASK);
+
+			int degree = readInt();
+			if (degree == 0) {
+				return 0;
+			}
+			int reference = readInt();
+
+			// the successors copied from the referenced list, compacted at its front
+			int[] ref = null;
+			int copied = 0;
+			if (reference > 0) {
+				ref = buffer(refs, level);
+				byte[] savedData = data;
+				int savedPos = pos;
+				int length = decode(v - reference, ref, level + 1);
+				data = savedData;
+				pos = savedPos;
+
+				int blocks = readInt();
+				int next = 0;
+				boolean copy = true;
+				for (int b = 0; b < blocks; b++) {
+					int run = readInt() + (b == 0 ? 0 : 1);
+					if (copy) {
+						System.arraycopy(ref, next, ref, copied, run);
+						copied += run;
+					}
+					next += run;
+					copy = !copy;
+				}
+				if (copy) {
+					System.arraycopy(ref, next, ref, copied, length - next);
+					copied += length - next;
+				}
+			}
+
+			int extra = degree - copied;
+			if (extra == 0) {
+				System.arraycopy(ref, 0, into, 0, copied);
+				return copied;
+			}
+			// the successors that weren't copied go straight into the result when
+			// nothing needs merging with them
+			int[] out = copied == 0 ? into : buffer(extras, level);
+
+			int numIntervals = readInt();
+			int previous = v;
+			if (numIntervals == 0) {
+				readResiduals(out, 0, extra, v);
+			} else {
+				int[] runs = intervals[level];
+				if (runs == null || runs.length < 2 * numIntervals) {
+					runs = intervals[level] = new int[Math.max(2 * numIntervals, 16)];
+				}
+				int inIntervals = 0;
+				for (int i = 0; i < numIntervals; i++) {
+					int start = i == 0 ? v + unzigzag(readInt()) : previous + readInt() + 1;
+					int length = readInt() + MIN_INTERVAL;
+					runs[2 * i] = start;
+					runs[2 * i + 1] = length;
+					previous = start + length;
+					inIntervals += length;
+				}
+				int[] residual = buffer(residuals, level);
+				int numResiduals = extra - inIntervals;
+				readResiduals(residual, 0, numResiduals, v);
+
+				// merge the intervals with the residuals
+				int k = 0;
+				int r = 0;
+				for (int i = 0; i < numIntervals; i++) {
+					int start = runs[2 * i];
+					int end = start + runs[2 * i + 1];
+					while (r < numResiduals && residual[r] < start) {
+						out[k++] = residual[r++];
+					}
+					for (int x = start; x < end; x++) {
+						out[k++] = x;
+					}
+				}
+				while (r < numResiduals) {
+					out[k++] = residual[r++];
+				}
+			}
+
+			if (copied == 0) {
+				return extra;
+			}
+			// merge the copied successors with the others
+			int i = 0;
+			int j = 0;
+			int k = 0;
+			while (i < copied && j < extra) {
+				into[k++] = ref[i] < out[j] ? ref[i++] : out[j++];
+			}
+			while (i < copied) {
+				into[k++] = ref[i++];
+			}
+			while (j < extra) {
+				into[k++] = out[j++];
+			}
+			return k;
+		}
+
+		private void readResiduals(int[] into, int from, int count, int v) {
+			if (count == 0) {
+				return;
+			}
+			int previous = v + unzigzag(readInt());
+			into[from] = previous;
+			for (int i = 1; i < count; i++) {
+				previous += readInt() + 1;
+				into[from + i] = previous;
+			}
+		}
+
+		private int[] buffer(int[][] buffers, int level) {
+			if (buffers[level] == null) {
+				buffers[level] = new int[maxOutDegree];
+			}
+			return buffers[level];
+		}
+	}
+
+	/**
+	 * Builds a CompressedGraph from the successor lists of vertices 0, 1, 2 and
+	 * so on, given in that order. Only the last WINDOW lists are kept
+	 * uncompressed, so graphs can be compressed while they are read.
+	 */
+	static class Builder {
+
+		private int vertices;
+		private long edges;
+		private int maxOutDegree;
+
+		// the last WINDOW lists, sorted, by vertex modulo WINDOW + 1, and the
+		// length of each one's chain of references
+		private final int[][] window = new int[WINDOW + 1][];
+		private final int[] windowLength = new int[WINDOW + 1];
+		private final int[] windowChain = new int[WINDOW + 1];
+
+		// the finished segments, and the one being filled
+		private final ArrayList<byte[]> full = new ArrayList<byte[]>();
+		private byte[] segment = new byte[1 << 16];
+		private int segmentLength;
+
+		private long[] base = new long[16];
+		private int[] offset = new int[1024];
+
+		// records of the candidate references, and the shortest so far
+		private final Record candidate = new Record();
+		private final Record best = new Record();
+
+		/**
+		 * Adds the successors of the next vertex. They may be in any order, and
+		 * duplicates are kept once.
+		 *
+		 * @param successors
+		 *            The array holding the successors
+		 * @param from
+		 *            Where the successors start in it
+		 * @param count
+		 *            The number of successors
+		 */
+		void add(int[] successors, int from, int count) {
+			int v = vertices;
+			int slot = v % (WINDOW + 1);
+			int[] list = window[slot];
+			if (list == null || list.length < count) {
+				list = window[slot] = new int[Math.max(count, 16)];
+			}
+			System.arraycopy(successors, from, list, 0, count);
+			Arrays.sort(list, 0, count);
+			int d = 0;
+			for (int i = 0; i < count; i++) {
+				if (d == 0 || list[i] != list[d - 1]) {
+					list[d++] = list[i];
+				}
+			}
+			windowLength[slot] = d;
+
+			// try every reference in the window and keep the shortest record
+			encode(v, list, d, 0, null, 0, best);
+			int chain = 0;
+			for (int r = 1; r <= WINDOW && r <= v; r++) {
+				int refSlot = (v - r) % (WINDOW + 1);
+				if (d == 0 || windowChain[refSlot] >= MAX_REF_CHAIN) {
+					continue;
+				}
+				encode(v, list, d, r, window[refSlot], windowLength[refSlot], candidate);
+				if (candidate.length < best.length) {
+					best.copyFrom(candidate);
+					chain = windowChain[refSlot] + 1;
+				}
+			}
+			windowChain[slot] = chain;
+
+			append(v, best);
+			vertices++;
+			edges += d;
+			maxOutDegree = Math.max(maxOutDegree, d);
+		}
+
+		/**
+		 * @return The compressed graph of the lists added
+		 */
+		CompressedGraph build() {
+			return new CompressedGraph(this);
+		}
+
+		/**
+		 * Writes the record of v for its sorted, distinct successors, copying from
+		 * ref if r &gt; 0
+		 */
+		private static void encode(int v, int[] list, int d, int r, int[] ref, int refLength, Record out) {
+			out.length = 0;
+			out.writeInt(d);
+			if (d == 0) {
+				return;
+			}
+			out.writeInt(r);
+
+			// mark which successors are copied, and write the runs of the reference
+			boolean[] copiedFlags = out.copied(d);
+			int copied = 0;
+			if (r > 0) {
+				int[] runs = out.runs(refLength + 1);
+				int numRuns = 0;
+				int run = 0;
+				boolean copying = true;
+				int j = 0;
+				for (int i = 0; i < refLength; i++) {
+					while (j < d && list[j] < ref[i]) {
+						j++;
+					}
+					boolean inList = j < d && list[j] == ref[i];
+					if (inList != copying) {
+						runs[numRuns++] = run;
+						run = 0;
+						copying = !copying;
+					}
+					run++;
+					if (inList) {
+						copiedFlags[j] = true;
+						copied++;
+					}
+				}
+				// the last run is implied
+				out.writeInt(numRuns);
+				for (int b = 0; b < numRuns; b++) {
+					out.writeInt(b == 0 ? runs[b] : runs[b] - 1);
+				}
+			}
+
+			int extra = d - copied;
+			if (extra == 0) {
+				return;
+			}
+
+			// find the intervals among the successors that weren't copied
+			int[] extras = out.extras(extra);
+			int e = 0;
+			for (int i = 0; i < d; i++) {
+				if (!copiedFlags[i]) {
+					extras[e++] = list[i];
+				}
+			}
+			int[] runs = out.runs(extra + 1);
+			int numIntervals = 0;
+			for (int i = 0; i < extra;) {
+				int j = i + 1;
+				while (j < extra && extras[j] == extras[j - 1] + 1) {
+					j++;
+				}
+				if (j - i >= MIN_INTERVAL) {
+					runs[numIntervals++] = i;
+					runs[numIntervals++] = j - i;
+				}
+				i = j;
+			}
+			out.writeInt(numIntervals / 2);
+			int previous = v;
+			for (int k = 0; k < numIntervals; k += 2) {
+				int start = extras[runs[k]];
+				out.writeInt(k == 0 ? zigzag(start - v) : start - previous - 1);
+				out.writeInt(runs[k + 1] - MIN_INTERVAL);
+				previous = start + runs[k + 1];
+			}
+
+			// and the residuals between them
+			int next = 0;
+			boolean first = true;
+			previous = v;
+			for (int i = 0; i < extra; i++) {
+				if (next < numIntervals && i == runs[next]) {
+					i += runs[next + 1] - 1;
+					next += 2;
+					continue;
+				}
+				out.writeInt(first ? zigzag(extras[i] - v) : extras[i] - previous - 1);
+				previous = extras[i];
+				first = false;
+			}
+		}
+
+		/**
+		 * Appends the record of v to the current segment, starting a new segment
+		 * if it doesn't fit
+		 */
+		private void append(int v, Record record) {
+			if (segmentLength + record.length > (1 << SEGMENT_BITS)) {
+				if (record.length > (1 << SEGMENT_BITS)) {
+					throw new IllegalArgumentException("The successors of vertex " + v + " don't fit in a segment");
+				}
+				full.add(Arrays.copyOf(segment, segmentLength));
+				segment = new byte[1 << 16];
+				segmentLength = 0;
+			}
+			if (segmentLength + record.length > segment.length) {
+				long grown = Math.max(2L * segment.length, segmentLength + record.length);
+				segment = Arrays.copyOf(segment, (int) Math.min(grown, 1 << SEGMENT_BITS));
+			}
+			System.arraycopy(record.bytes, 0, segment, segmentLength, record.length);
+
+			long position = ((long) full.size() << SEGMENT_BITS) + segmentLength;
+			segmentLength += record.length;
+			int block = v >> INDEX_SHIFT;
+			if (block == base.length) {
+				base = Arrays.copyOf(base, 2 * block);
+			}
+			if (v == offset.length) {
+				offset = Arrays.copyOf(offset, 2 * v);
+			}
+			if ((v & ((1 << INDEX_SHIFT) - 1)) == 0) {
+				base[block] = position;
+			}
+			long relative = position - base[block];
+			if (relative > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("The successors of vertices near " + v + " are too large to index");
+			}
+			offset[v] = (int) relative;
+		}
+
+		private byte[][] finishSegments() {
+			byte[][] segments = new byte[full.size() + 1][];
+			for (int i = 0; i < full.size(); i++) {
+				segments[i] = full.get(i);
+			}
+			segments[full.size()] = Arrays.copyOf(segment, segmentLength);
+			return segments;
+		}
+	}
+
+	/**
+	 * A record being encoded, and the scratch arrays for encoding it
+	 */
+	private static class Record {
+
+		private byte[] bytes = new byte[64];
+		private int length;
+		private boolean[] copied = new boolean[16];
+		private int[] runs = new int[16];
+		private int[] extras = new int[16];
+
+		private void writeInt(int value) {
+			if (length + 5 > bytes.length) {
+				bytes = Arrays.copyOf(bytes, 2 * bytes.length + 5);
+			}
+			while ((value & ~0x7f) != 0) {
+				bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		private void copyFrom(Record other) {
+			if (bytes.length < other.length) {
+				bytes = new byte[other.bytes.length];
+			}
+			System.arraycopy(other.bytes, 0, bytes, 0, other.length);
+			length = other.length;
+		}
+
+		private boolean[] copied(int d) {
+			if (copied.length < d) {
+				copied = new boolean[2 * d];
+			} else {
+				Arrays.fill(copied, 0, d, false);
+			}
+			return copied;
+		}
+
+		private int[] runs(int n) {
+			if (runs.length < n) {
+				runs = new int[2 * n];
+			}
+			return runs;
+		}
+
+		private int[] extras(int n) {
+			if (extras.length < n) {
+				extras = new int[2 * n];
+			}
+			return extras;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * CompressionBenchmark class
+ *
+ * Compresses graphs into CompressedGraph and compares them with plain CSR
+ * arrays: the bits each edge takes, and the edges per second a BFS covers
+ * over each. Three graphs are measured: a generated power-law graph, whose
+ * links go to random vertices; the same graph renumbered in BFS order; and the
+ * graph of a generated XML dump as a crawl would find it. A graph file given
+ * on the command line is measured instead.
+ *
+ * Usage: CompressionBenchmark [graphFile | vertices] [avgDegree]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class CompressionBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && new File(args[0]).isFile()) {
+			run(args[0], new NetworkInfluence(args[0], 0));
+			return;
+		}
+		int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int degree = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		File powerLaw = File.createTempFile("compression_benchmark", ".txt");
+		powerLaw.deleteOnExit();
+		GraphGenerator.writePowerLawGraph(powerLaw.getAbsolutePath(), vertices, degree, 311);
+		run("power-law", new NetworkInfluence(powerLaw.getAbsolutePath(), 0));
+		NetworkInfluence reordered = new NetworkInfluence(powerLaw.getAbsolutePath(), 0);
+		reordered.reorder(VertexOrdering.BFS);
+		run("power-law, BFS order", reordered);
+		reordered = null;
+
+		String[] topicWords = { "complexity" };
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		File dump = File.createTempFile("compression_benchmark", ".xml.gz");
+		File crawled = File.createTempFile("compression_benchmark", ".txt");
+		dump.deleteOnExit();
+		crawled.deleteOnExit();
+		PageGenerator.writeXmlDump(dump.getAbsolutePath(), vertices / 5, 30, topicWords, 0.5, 311);
+		new DumpIngester(topics, 1).ingest(dump, crawled.getAbsolutePath());
+		run("crawled", new NetworkInfluence(crawled.getAbsolutePath(), 0));
+
+		// loading straight into compressed form skips the adjacency lists
+		System.gc();
+		long before = usedMemory();
+		long start = System.nanoTime();
+		NetworkInfluence loaded = NetworkInfluence.loadCompressed(powerLaw.getAbsolutePath(), 0);
+		double seconds = elapsed(start);
+		System.gc();
+		System.out.printf("loadCompressed of the power-law graph: %.1f s, %.0f MB retained including names%n",
+				seconds, (usedMemory() - before) / 1048576.0);
+		System.out.println("PageRank top 3 of the loaded graph: " + loaded.mostInfluentialPageRank(3));
+	}
+
+	private static void run(String label, NetworkInfluence network) {
+		CsrGraph csr = network.csr();
+		long start = System.nanoTime();
+		CompressedGraph compressed = CompressedGraph.of(csr);
+		double compressSeconds = elapsed(start);
+
+		long edges = csr.edgeCount();
+		// CSR of the successors alone: one int per edge and per vertex
+		double csrBits = 32.0 * (edges + csr.vertices + 1) / edges;
+		double indexBits = 8.0 * compressed.getIndexBytes() / edges;
+		System.out.printf("%s: %d vertices, %d edges; compressed in %.1f s%n", label, csr.vertices, edges,
+				compressSeconds);
+		System.out.printf("%s: CSR %.1f bits/edge; compressed %.2f bits/edge + %.2f for the index = %.2f%n", label,
+				csrBits, compressed.bitsPerEdge(), indexBits, compressed.bitsPerEdge() + indexBits);
+
+		Random random = new Random(311);
+		int[] sources = new int[10];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = random.nextInt(csr.vertices);
+		}
+		// once to warm up, once timed
+		bfs(csr, sources);
+		bfs(compressed, sources);
+		start = System.nanoTime();
+		long csrEdges = bfs(csr, sources);
+		double csrSeconds = elapsed(start);
+		start = System.nanoTime();
+		long compressedEdges = bfs(compressed, sources);
+		double compressedSeconds = elapsed(start);
+		System.out.printf("%s: BFS over CSR %.0f M edges/s, over compressed %.0f M edges/s (%.1fx slower)%s%n",
+				label, csrEdges / csrSeconds / 1e6, compressedEdges / compressedSeconds / 1e6,
+				(compressedEdges / compressedSeconds > 0 ? (csrEdges / csrSeconds) / (compressedEdges / compressedSeconds)
+						: 0),
+				csrEdges == compressedEdges ? "" : " MISMATCH");
+	}
+
+	/**
+	 * Runs a BFS from each source and returns the number of edges scanned
+	 */
+	private static long bfs(AdjacencyStore graph, int[] sources) {
+		int n = graph.vertexCount();
+		int[] successors = new int[graph.maxOutDegree()];
+		int[] queue = new int[n];
+		boolean[] visited = new boolean[n];
+		long scanned = 0;
+		for (int source : sources) {
+			java.util.Arrays.fill(visited, false);
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = source;
+			visited[source] = true;
+			while (head < tail) {
+				int count = graph.successors(queue[head++], successors);
+				scanned += count;
+				for (int i = 0; i < count; i++) {
+					int y = successors[i];
+					if (!visited[y]) {
+						visited[y] = true;
+						queue[tail++] = y;
+					}
+				}
+			}
+		}
+		return scanned;
+	}
+
+	private static long usedMemory() {
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1000000000.0;
+	}
+}
@@ -0,0 +1,119 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConcurrentQueryBenchmark class
+ *
+ * Measures the query throughput of a FrozenNetworkInfluence shared by 1 to 64
+ * concurrent client threads, each issuing random distance and influence
+ * queries for a fixed amount of time. Also times the batch API for
+ * comparison.
+ *
+ * Usage: ConcurrentQueryBenchmark [graphFile] [secondsPerRun]. Without a graph
+ * file a synthetic power-law graph is generated.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ConcurrentQueryBenchmark {
+
+	private static final int[] CLIENTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+	public static void main(String[] args) throws Exception {
+		String graphFile;
+		if (args.length > 0 && !args[0].isEmpty()) {
+			graphFile = args[0];
+		} else {
+			File f = File.createTempFile("concurrent_query_benchmark", ".txt");
+			f.deleteOnExit();
+			graphFile = f.getAbsolutePath();
+			GraphGenerator.writePowerLawGraph(graphFile, 20000, 8, 311);
+		}
+		final long runNanos = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 2.0) * 1000000000L);
+
+		// disable the query cache so every query does a full BFS
+		NetworkInfluence network = new NetworkInfluence(graphFile, 0);
+		final FrozenNetworkInfluence frozen = network.freeze();
+		final String[] names = vertexNames(graphFile);
+
+		System.out.printf("%d vertices, %d processors%n", names.length, Runtime.getRuntime().availableProcessors());
+		System.out.printf("%8s %14s %14s%n", "clients", "queries/sec", "mean ms");
+
+		for (int clients : CLIENTS) {
+			final AtomicLong queries = new AtomicLong();
+			final AtomicLong busyNanos = new AtomicLong();
+			final CountDownLatch done = new CountDownLatch(clients);
+
+			for (int c = 0; c < clients; c++) {
+				final long seed = c;
+				new Thread(() -> {
+					Random random = new Random(seed);
+					long end = System.nanoTime() + runNanos;
+					long count = 0;
+					long busy = 0;
+					while (System.nanoTime() < end) {
+						String u = names[random.nextInt(names.length)];
+						String v = names[random.nextInt(names.length)];
+						long start = System.nanoTime();
+						if ((count & 1) == 0) {
+							frozen.distance(u, v);
+						} else {
+							frozen.influence(u);
+						}
+						busy += System.nanoTime() - start;
+						count++;
+					}
+					queries.addAndGet(count);
+					busyNanos.addAndGet(busy);
+					done.countDown();
+				}).start();
+			}
+			done.await();
+
+			double seconds = runNanos / 1000000000.0;
+			System.out.printf("%8d %14.1f %14.3f%n", clients, queries.get() / seconds,
+					busyNanos.get() / 1000000.0 / Math.max(1, queries.get()));
+		}
+
+		// time the batch API against issuing the same queries one at a time
+		List<String> batch = new ArrayList<String>();
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			batch.add(names[random.nextInt(names.length)]);
+		}
+
+		long serialStart = System.nanoTime();
+		for (String u : batch) {
+			frozen.influence(u);
+		}
+		double serialElapsed = (System.nanoTime() - serialStart) / 1000000000.0;
+
+		long batchStart = System.nanoTime();
+		frozen.influenceBatch(batch).join();
+		double batchElapsed = (System.nanoTime() - batchStart) / 1000000000.0;
+
+		System.out.printf("%d influence queries: serial %f seconds, batch %f seconds%n", batch.size(), serialElapsed,
+				batchElapsed);
+		frozen.close();
+	}
+
+	/**
+	 * Reads the distinct vertex names of a graph file, in order of appearance
+	 */
+	private static String[] vertexNames(String graphFile) throws Exception {
+		LinkedHashSet<String> names = new LinkedHashSet<String>();
+		Scanner s = new Scanner(new File(graphFile));
+		s.nextLine();
+		while (s.hasNext()) {
+			names.add(s.next());
+		}
+		s.close();
+		return names.toArray(new String[names.size()]);
+	}
+}
@@ -0,0 +1,317 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * CrawlMetrics class
+ *
+ * What a WikiCrawler has done and where its time went: how many pages it
+ * fetched and how many it rejected for missing a topic, the bytes it read,
+ * how long pages took to download and to scan, the size of the frontier, the
+ * time spent sleeping for the politeness policy, and how long the graph took
+ * to write once the crawl was done. The figures are cleared
+ * when a crawl starts, and can be read while it runs, in code or through JMX
+ * once register() has been called.
+ *
+ * The download time of a page runs from its request until the response
+ * starts, plus the time spent waiting for the rest of its body while it is
+ * scanned; the scan time is the rest of the scan. Bytes are counted after any
+ * gzip decoding.
+ *
+ * Every page is also a JFR event, wikicrawler.PageFetch, recorded only when a
+ * flight recording enables it.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+
+	private final LatencyHistogram fetchLatencies = new LatencyHistogram();
+	private final LatencyHistogram parseTimes = new LatencyHistogram();
+	private final AtomicLong pages = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong throttleNanos = new AtomicLong();
+	private volatile long frontierSize;
+	private volatile long graphWriteNanos;
+
+	// time the current crawl started
+	private volatile long startNanos = System.nanoTime();
+
+	/**
+	 * Wraps the body of a page so the time spent waiting for it and its bytes
+	 * are counted
+	 *
+	 * @param in
+	 *            The body as the fetcher returned it
+	 * @return The counting stream
+	 */
+	static CountingInputStream count(InputStream in) {
+		return new CountingInputStream(in);
+	}
+
+	/**
+	 * Records a page that was fetched and scanned
+	 *
+	 * @param url
+	 *            The URL of the page
+	 * @param requestNanos
+	 *            The System.nanoTime() the request was sent
+	 * @param scanStartNanos
+	 *            The System.nanoTime() the scan of the body started
+	 * @param body
+	 *            The body the page was scanned from, as returned by count()
+	 * @param accepted
+	 *            Whether the page contained all the topics
+	 */
+	void pageScanned(String url, long requestNanos, long scanStartNanos, CountingInputStream body,
+			boolean accepted) {
+		long scanNanos = System.nanoTime() - scanStartNanos - body.readNanos;
+		long fetchNanos = scanStartNanos - requestNanos + body.readNanos;
+		fetchLatencies.record(fetchNanos);
+		parseTimes.record(scanNanos);
+		pages.incrementAndGet();
+		bytes.addAndGet(body.bytes);
+		if (!accepted) {
+			rejected.incrementAndGet();
+		}
+
+		PageEvent event = new PageEvent();
+		if (event.isEnabled()) {
+			event.url = url;
+			event.bytes = body.bytes;
+			event.fetch = fetchNanos;
+			event.parse = scanNanos;
+			event.accepted = accepted;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Records a page whose fetch or scan failed
+	 */
+	void pageFailed() {
+		failures.incrementAndGet();
+	}
+
+	/**
+	 * Records a pause of the politeness policy
+	 *
+	 * @param nanos
+	 *            The length of the pause
+	 */
+	void throttled(long nanos) {
+		throttleNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * Records the current size of the frontier
+	 */
+	void frontierSize(long size) {
+		frontierSize = size;
+	}
+
+	/**
+	 * Records the writing of the graph file at the end of a crawl
+	 *
+	 * @param nanos
+	 *            The time it took
+	 */
+	void graphWritten(long nanos) {
+		graphWriteNanos = nanos;
+	}
+
+	/**
+	 * @return The download time of every page
+	 */
+	public LatencyHistogram getFetchLatencies() {
+		return fetchLatencies;
+	}
+
+	/**
+	 * @return The scan time of every page
+	 */
+	public LatencyHistogram getParseTimes() {
+		return parseTimes;
+	}
+
+	@Override
+	public long getPagesFetched() {
+		return pages.get();
+	}
+
+	@Override
+	public long getPagesRejected() {
+		return rejected.get();
+	}
+
+	@Override
+	public double getTopicRejectRate() {
+		long fetched = pages.get();
+		return fetched == 0 ? 0 : (double) rejected.get() / fetched;
+	}
+
+	@Override
+	public long getFailures() {
+		return failures.get();
+	}
+
+	@Override
+	public long getBytesDownloaded() {
+		return bytes.get();
+	}
+
+	@Override
+	public double getPagesPerSecond() {
+		double seconds = (System.nanoTime() - startNanos) / 1000000000.0;
+		return seconds <= 0 ? 0 : pages.get() / seconds;
+	}
+
+	@Override
+	public double getFetchP50Millis() {
+		return fetchLatencies.percentileMillis(0.50);
+	}
+
+	@Override
+	public double getFetchP99Millis() {
+		return fetchLatencies.percentileMillis(0.99);
+	}
+
+	@Override
+	public double getParseP50Millis() {
+		return parseTimes.percentileMillis(0.50);
+	}
+
+	@Override
+	public double getParseP99Millis() {
+		return parseTimes.percentileMillis(0.99);
+	}
+
+	@Override
+	public long getFrontierSize() {
+		return frontierSize;
+	}
+
+	@Override
+	public double getThrottleSeconds() {
+		return throttleNanos.get() / 1000000000.0;
+	}
+
+	@Override
+	public double getGraphWriteSeconds() {
+		return graphWriteNanos / 1000000000.0;
+	}
+
+	@Override
+	public void reset() {
+		fetchLatencies.reset();
+		parseTimes.reset();
+		pages.set(0);
+		rejected.set(0);
+		failures.set(0);
+		bytes.set(0);
+		throttleNanos.set(0);
+		frontierSize = 0;
+		graphWriteNanos = 0;
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Makes these metrics readable through the platform MBean server, as
+	 * wikicrawler:type=CrawlMetrics,name=name
+	 *
+	 * @param name
+	 *            A name telling this crawler apart from others in the same JVM
+	 * @return The name the metrics were registered under
+	 * @throws JMException
+	 *             If the name is taken or invalid
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("wikicrawler:type=CrawlMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%d pages at %.1f pages/sec, %.1f%% rejected, %d failed, %.1f MB read, fetch p50 %.1f ms p99 %.1f ms, scan p50 %.2f ms p99 %.2f ms, %.1f s throttled, graph written in %.3f s",
+				getPagesFetched(), getPagesPerSecond(), 100 * getTopicRejectRate(), getFailures(),
+				getBytesDownloaded() / 1048576.0, getFetchP50Millis(), getFetchP99Millis(), getParseP50Millis(),
+				getParseP99Millis(), getThrottleSeconds(), getGraphWriteSeconds());
+	}
+
+	/**
+	 * A page body that counts its bytes and the time spent waiting in read()
+	 */
+	static class CountingInputStream extends FilterInputStream {
+
+		private long bytes;
+		private long readNanos;
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			long start = System.nanoTime();
+			int b = super.read();
+			readNanos += System.nanoTime() - start;
+			if (b >= 0) {
+				bytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			long start = System.nanoTime();
+			int n = super.read(buffer, offset, length);
+			readNanos += System.nanoTime() - start;
+			if (n > 0) {
+				bytes += n;
+			}
+			return n;
+		}
+	}
+
+	@Name("wikicrawler.PageFetch")
+	@Label("Page Fetch")
+	@Category("WikiCrawler")
+	@Description("A page fetched and scanned by a WikiCrawler")
+	static class PageEvent extends Event {
+
+		@Label("URL")
+		String url;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Fetch Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long fetch;
+
+		@Label("Parse Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long parse;
+
+		@Label("Accepted")
+		boolean accepted;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * CrawlMetricsMXBean interface
+ *
+ * The attributes CrawlMetrics shows through JMX.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public interface CrawlMetricsMXBean {
+
+	/**
+	 * @return The number of pages fetched and scanned, whether or not they
+	 *         contained the topics
+	 */
+	long getPagesFetched();
+
+	/**
+	 * @return The number of fetched pages that didn't contain all the topics
+	 */
+	long getPagesRejected();
+
+	/**
+	 * @return The fraction of the fetched pages that didn't contain all the
+	 *         topics
+	 */
+	double getTopicRejectRate();
+
+	/**
+	 * @return The number of pages whose fetch or scan failed
+	 */
+	long getFailures();
+
+	/**
+	 * @return The bytes of page content read
+	 */
+	long getBytesDownloaded();
+
+	/**
+	 * @return The pages fetched per second since the crawl started
+	 */
+	double getPagesPerSecond();
+
+	/**
+	 * @return The median time to download a page, in milliseconds
+	 */
+	double getFetchP50Millis();
+
+	/**
+	 * @return The 99th percentile time to download a page, in milliseconds
+	 */
+	double getFetchP99Millis();
+
+	/**
+	 * @return The median time to scan a page, in milliseconds
+	 */
+	double getParseP50Millis();
+
+	/**
+	 * @return The 99th percentile time to scan a page, in milliseconds
+	 */
+	double getParseP99Millis();
+
+	/**
+	 * @return The number of pages waiting in the frontier
+	 */
+	long getFrontierSize();
+
+	/**
+	 * @return The seconds spent sleeping for the politeness policy
+	 */
+	double getThrottleSeconds();
+
+	/**
+	 * @return The seconds it took to write the graph file, or 0 until the crawl
+	 *         has written it
+	 */
+	double getGraphWriteSeconds();
+
+	/**
+	 * Clears all figures
+	 */
+	void reset();
+}
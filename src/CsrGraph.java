@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+
+/**
+ * CsrGraph class
+ *
+ * Immutable compressed sparse row (CSR) snapshot of a directed graph. The
+ * successors of vertex v are outTargets[outOffsets[v]] up to (but not
+ * including) outTargets[outOffsets[v + 1]], and likewise the predecessors of v
+ * are stored in inSources. Keeping the edges in flat int arrays lets the
+ * iterative algorithms run over the graph without boxing or pointer chasing.
+ * At 4 bytes per edge and direction it is also the uncompressed baseline
+ * CompressedGraph is measured against.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+class CsrGraph implements AdjacencyStore {
+
+	/**
+	 * Number of vertices in the graph
+	 */
+	final int vertices;
+
+	/**
+	 * Start of each vertex's successors in outTargets; has vertices + 1 entries
+	 */
+	final int[] outOffsets;
+
+	/**
+	 * Successors of every vertex, grouped by source vertex
+	 */
+	final int[] outTargets;
+
+	/**
+	 * Start of each vertex's predecessors in inSources; has vertices + 1 entries
+	 */
+	final int[] inOffsets;
+
+	/**
+	 * Predecessors of every vertex, grouped by target vertex
+	 */
+	final int[] inSources;
+
+	/**
+	 * Largest out-degree of any vertex
+	 */
+	private final int maxOutDegree;
+
+	/**
+	 * Builds a CSR snapshot of the given adjacency list
+	 *
+	 * @param adjList
+	 *            The adjacency list; entry v holds the successors of vertex v
+	 */
+	CsrGraph(ArrayList<ArrayList<Integer>> adjList) {
+		this(new ListAdjacency(adjList));
+	}
+
+	/**
+	 * Builds a CSR snapshot of the given graph
+	 *
+	 * @param graph
+	 *            The graph, such as a compressed one
+	 */
+	CsrGraph(AdjacencyStore graph) {
+		vertices = graph.vertexCount();
+		outOffsets = new int[vertices + 1];
+		inOffsets = new int[vertices + 1];
+		maxOutDegree = graph.maxOutDegree();
+		int[] successors = new int[maxOutDegree];
+
+		// count the out- and in-degrees
+		int edges = 0;
+		for (int u = 0; u < vertices; u++) {
+			int count = graph.successors(u, successors);
+			edges += count;
+			outOffsets[u + 1] = edges;
+			for (int i = 0; i < count; i++) {
+				inOffsets[successors[i] + 1]++;
+			}
+		}
+		for (int v = 0; v < vertices; v++) {
+			inOffsets[v + 1] += inOffsets[v];
+		}
+
+		// fill in the edges in both directions
+		outTargets = new int[edges];
+		inSources = new int[edges];
+		int[] next = new int[vertices];
+		System.arraycopy(inOffsets, 0, next, 0, vertices);
+		for (int u = 0; u < vertices; u++) {
+			int count = graph.successors(u, successors);
+			int base = outOffsets[u];
+			for (int i = 0; i < count; i++) {
+				int v = successors[i];
+				outTargets[base + i] = v;
+				inSources[next[v]++] = u;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of edges in the graph
+	 */
+	int edges() {
+		return outTargets.length;
+	}
+
+	/**
+	 * @param v
+	 *            The index of the vertex
+	 * @return The out-degree of v
+	 */
+	public int outDegree(int v) {
+		return outOffsets[v + 1] - outOffsets[v];
+	}
+
+	/**
+	 * @param v
+	 *            The index of the vertex
+	 * @return The in-degree of v
+	 */
+	int inDegree(int v) {
+		return inOffsets[v + 1] - inOffsets[v];
+	}
+
+	@Override
+	public int vertexCount() {
+		return vertices;
+	}
+
+	@Override
+	public long edgeCount() {
+		return outTargets.length;
+	}
+
+	@Override
+	public int maxOutDegree() {
+		return maxOutDegree;
+	}
+
+	@Override
+	public int successors(int v, int[] into) {
+		int from = outOffsets[v];
+		int count = outOffsets[v + 1] - from;
+		System.arraycopy(outTargets, from, into, 0, count);
+		return count;
+	}
+}
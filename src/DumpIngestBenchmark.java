@@ -0,0 +1,74 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * DumpIngestBenchmark class
+ *
+ * Generates a gzipped XML dump and a directory of saved HTML pages, ingests
+ * both with DumpIngester, and reports the rate in pages per hour. The graph
+ * written from the HTML pages is loaded into NetworkInfluence as a check.
+ *
+ * Usage: DumpIngestBenchmark [xml pages] [html pages] [threads]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class DumpIngestBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int xmlPages = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int htmlPages = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		String[] topicWords = { "complexity" };
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+
+		File xml = File.createTempFile("dump_ingest_benchmark", ".xml.gz");
+		xml.deleteOnExit();
+		PageGenerator.writeXmlDump(xml.getAbsolutePath(), xmlPages, 30, topicWords, 0.5, 311);
+		System.out.printf("XML dump: %d articles, %.1f MB gzipped%n", xmlPages, xml.length() / 1048576.0);
+		run("XML dump", new DumpIngester(topics, threads), xml);
+
+		File dir = Files.createTempDirectory("dump_ingest_benchmark").toFile();
+		Map<String, String> pages = PageGenerator.generate(htmlPages, 30, topicWords, 0.5, 311);
+		for (Map.Entry<String, String> page : pages.entrySet()) {
+			try (FileOutputStream out = new FileOutputStream(new File(dir, page.getKey() + ".html"))) {
+				out.write(page.getValue().getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		System.out.printf("HTML directory: %d pages%n", htmlPages);
+		File graph = run("HTML directory", new DumpIngester(topics, threads), dir);
+		NetworkInfluence influence = new NetworkInfluence(graph.getAbsolutePath());
+		System.out.println("Loaded the graph of the HTML directory, top pages by PageRank: "
+				+ influence.mostInfluentialPageRank(3));
+
+		delete(dir);
+	}
+
+	private static File run(String label, DumpIngester ingester, File dump) throws Exception {
+		File out = File.createTempFile("dump_ingest_benchmark", ".txt");
+		out.deleteOnExit();
+
+		long start = System.nanoTime();
+		int kept = ingester.ingest(dump, out.getAbsolutePath());
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+
+		System.out.printf("%-16s %d pages read, %d kept, %d edges, %.2f s, %.1f MB/s, %.2fM pages/hour%n", label,
+				ingester.getPagesRead(), kept, ingester.getEdgeCount(), seconds,
+				ingester.getBytesRead() / seconds / 1048576.0, ingester.getPagesRead() / seconds * 3600 / 1000000.0);
+		return out;
+	}
+
+	private static void delete(File dir) throws IOException {
+		for (File file : dir.listFiles()) {
+			Files.delete(file.toPath());
+		}
+		Files.delete(dir.toPath());
+	}
+}
@@ -0,0 +1,446 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * DumpIngester class
+ *
+ * Builds the graph WikiCrawler would write, but from a local copy of the
+ * pages instead of fetching them one by one. Two kinds of dumps are read:
+ *
+ * - a MediaWiki pages-articles XML dump, plain, gzipped (".gz") or bzipped
+ * (".bz2", decompressed by the system's bzip2 command), and
+ *
+ * - a directory of saved HTML pages, named "xxx" or "xxx.html" for the page
+ * "/wiki/xxx", the same layout LocalPageServer serves.
+ *
+ * Every page is kept if it mentions all of the topics, and the graph holds the
+ * links between kept pages. Saved HTML pages are scanned by PageScanner, so
+ * exactly the rules of getLinks apply. In XML dumps the pages are wikitext:
+ * only articles (namespace 0) are read, "[[xxx]]" and "[[xxx|text]]" are the
+ * links, and links containing "#" or ":" are skipped just like getLinks does.
+ * Redirect pages aren't kept, but links to them count as links to the page
+ * they redirect to.
+ *
+ * The dump is read by the calling thread and the pages are parsed by a pool
+ * of worker threads. A bounded queue sits between them, so a slow parser stalls
+ * the reader instead of filling the memory with unparsed pages. Each parser
+ * collects its pages in a GraphWriter of its own, merged into the graph when
+ * the dump has been read, so the parsers never wait on each other.
+ *
+ * Usage: DumpIngester dump output [topics...]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class DumpIngester {
+
+	/**
+	 * Pages the queue between the reader and the parsers holds per parser
+	 */
+	private static final int QUEUE_PAGES_PER_THREAD = 64;
+
+	// the topics every kept page must mention
+	private final ArrayList<String> topics;
+	// the number of parser threads
+	private final int threads;
+
+	private final AtomicLong pagesRead = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private long edges;
+
+	/**
+	 * Constructs a new DumpIngester
+	 *
+	 * @param topics
+	 *            The topics every page in the graph must mention
+	 * @param threads
+	 *            The number of threads parsing pages
+	 */
+	public DumpIngester(ArrayList<String> topics, int threads) {
+		this.topics = topics == null ? new ArrayList<String>() : topics;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Reads a dump and writes the graph of its pages to fileName. A directory is
+	 * read as saved HTML pages, and a file as an XML dump.
+	 *
+	 * @param dump
+	 *            The dump file or directory
+	 * @param fileName
+	 *            The file the graph is written to
+	 * @return The number of pages kept in the graph
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public int ingest(File dump, String fileName) throws IOException, InterruptedException {
+		final GraphWriter graph = new GraphWriter();
+		final BlockingQueue<RawPage> queue = new ArrayBlockingQueue<RawPage>(threads * QUEUE_PAGES_PER_THREAD);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		Thread[] parsers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			parsers[t] = new Thread(() -> {
+				GraphWriter pages = new GraphWriter();
+				try {
+					RawPage page;
+					while ((page = queue.take()) != RawPage.END) {
+						// after a failure keep draining, so the reader never blocks on a
+						// full queue
+						if (failure.get() == null) {
+							try {
+								parse(page, pages);
+							} catch (Throwable e) {
+								failure.compareAndSet(null, e);
+							}
+						}
+					}
+					if (failure.get() == null) {
+						try {
+							graph.addAll(pages);
+						} catch (Throwable e) {
+							failure.compareAndSet(null, e);
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "dump-parser-" + t);
+			parsers[t].setDaemon(true);
+			parsers[t].start();
+		}
+
+		try {
+			if (dump.isDirectory()) {
+				readHtmlDirectory(dump, queue, failure);
+			} else {
+				readXml(dump, queue, graph, failure);
+			}
+		} finally {
+			for (int t = 0; t < threads; t++) {
+				queue.put(RawPage.END);
+			}
+			for (Thread parser : parsers) {
+				parser.join();
+			}
+		}
+
+		Throwable error = failure.get();
+		if (error instanceof IOException) {
+			throw (IOException) error;
+		}
+		if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		}
+		if (error != null) {
+			throw new IOException(error);
+		}
+
+		edges = graph.write(fileName);
+		return graph.getPageCount();
+	}
+
+	/**
+	 * @return The number of pages read from the dump by the last ingest, kept or
+	 *         not
+	 */
+	public long getPagesRead() {
+		return pagesRead.get();
+	}
+
+	/**
+	 * @return The number of bytes of page content read by the last ingest
+	 */
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	/**
+	 * @return The number of edges written by the last ingest
+	 */
+	public long getEdgeCount() {
+		return edges;
+	}
+
+	/**
+	 * Queues every page of a directory of saved HTML pages
+	 */
+	private void readHtmlDirectory(File dir, BlockingQueue<RawPage> queue, AtomicReference<Throwable> failure)
+			throws IOException, InterruptedException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Cannot list " + dir);
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			if (failure.get() != null) {
+				return;
+			}
+			String name = file.getName();
+			if (!file.isFile() || name.startsWith(".")) {
+				continue;
+			}
+			String title = name.endsWith(".html") ? name.substring(0, name.length() - ".html".length()) : name;
+			queue.put(new RawPage(title, null, Files.readAllBytes(file.toPath())));
+		}
+	}
+
+	/**
+	 * Queues every article of an XML dump, and registers its redirects
+	 */
+	private void readXml(File dump, BlockingQueue<RawPage> queue, GraphWriter graph,
+			AtomicReference<Throwable> failure) throws IOException, InterruptedException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		// dumps hold far more escaped characters than the default limit allows
+		factory.setProperty("jdk.xml.totalEntitySizeLimit", 0);
+
+		try (DumpStream in = openDump(dump)) {
+			XMLStreamReader xml = factory.createXMLStreamReader(in, "UTF-8");
+			String title = null;
+			String namespace = null;
+			String redirect = null;
+			while (xml.hasNext() && failure.get() == null) {
+				if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+				switch (xml.getLocalName()) {
+				case "page":
+					title = null;
+					namespace = null;
+					redirect = null;
+					break;
+				case "title":
+					title = xml.getElementText();
+					break;
+				case "ns":
+					namespace = xml.getElementText();
+					break;
+				case "redirect":
+					redirect = xml.getAttributeValue(null, "title");
+					break;
+				case "text":
+					String text = xml.getElementText();
+					if (title == null || !"0".equals(namespace)) {
+						break;
+					}
+					if (redirect != null) {
+						graph.addRedirect(normalizeTitle(title), normalizeTitle(redirect));
+					} else {
+						queue.put(new RawPage(normalizeTitle(title), text, null));
+					}
+					break;
+				default:
+					break;
+				}
+			}
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("Cannot parse " + dump + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Opens a dump file, decompressing it if its name ends in ".gz" or ".bz2"
+	 */
+	private static DumpStream openDump(File dump) throws IOException {
+		String name = dump.getName();
+		if (name.endsWith(".gz")) {
+			return new DumpStream(new GZIPInputStream(new FileInputStream(dump), 1 << 16), null);
+		}
+		if (name.endsWith(".bz2")) {
+			// the JDK has no bzip2 decoder; the system's is also much faster than a
+			// Java one would be, and runs in parallel with the parsing
+			Process bzip2 = new ProcessBuilder("bzip2", "-dc", dump.getAbsolutePath())
+					.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			return new DumpStream(new BufferedInputStream(bzip2.getInputStream(), 1 << 16), bzip2);
+		}
+		return new DumpStream(new BufferedInputStream(new FileInputStream(dump), 1 << 16), null);
+	}
+
+	/**
+	 * Finds the links of a page and adds it to the graph if it mentions all of
+	 * the topics
+	 */
+	private void parse(RawPage page, GraphWriter graph) throws IOException {
+		pagesRead.incrementAndGet();
+		ArrayList<String> links;
+		if (page.html != null) {
+			bytesRead.addAndGet(page.html.length);
+			links = PageScanner.scanLinks(new ByteArrayInputStream(page.html), topics);
+		} else {
+			bytesRead.addAndGet(page.wikitext.length());
+			links = wikiLinks(page.wikitext, topics);
+		}
+		if (links != null) {
+			graph.addPage(page.title, links);
+		}
+	}
+
+	/**
+	 * Returns the article links in wikitext, or null if the text doesn't mention
+	 * all of the topics
+	 *
+	 * @param text
+	 *            The wikitext of a page
+	 * @param topics
+	 *            The topics the page must mention
+	 * @return The titles linked to, or null
+	 */
+	static ArrayList<String> wikiLinks(String text, ArrayList<String> topics) {
+		for (String topic : topics) {
+			if (!text.contains(topic)) {
+				return null;
+			}
+		}
+
+		ArrayList<String> links = new ArrayList<String>();
+		for (int start = text.indexOf("[["); start >= 0; start = text.indexOf("[[", start + 2)) {
+			int end = start + 2;
+			while (end < text.length()) {
+				char c = text.charAt(end);
+				if (c == '|' || c == ']' || c == '[' || c == '\n') {
+					break;
+				}
+				end++;
+			}
+			String target = text.substring(start + 2, end);
+			// the same rule as getLinks: no sections, no other namespaces
+			if (!target.isEmpty() && !(target.contains("#") || target.contains(":"))) {
+				String title = normalizeTitle(target);
+				if (!title.isEmpty()) {
+					links.add(title);
+				}
+			}
+		}
+		return links;
+	}
+
+	/**
+	 * Turns a title as written in wikitext into its form in "/wiki/xxx" URLs:
+	 * spaces become underscores and the first letter is capitalized
+	 */
+	static String normalizeTitle(String title) {
+		String trimmed = title.trim().replace(' ', '_');
+		if (trimmed.isEmpty() || Character.isUpperCase(trimmed.charAt(0))) {
+			return trimmed;
+		}
+		return Character.toUpperCase(trimmed.charAt(0)) + trimmed.substring(1);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("Usage: DumpIngester dump output [topics...]");
+			return;
+		}
+		ArrayList<String> topics = new ArrayList<String>();
+		for (int i = 2; i < args.length; i++) {
+			topics.add(args[i]);
+		}
+
+		DumpIngester ingester = new DumpIngester(topics, Runtime.getRuntime().availableProcessors());
+		long start = System.nanoTime();
+		int kept = ingester.ingest(new File(args[0]), args[1]);
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+		System.out.printf("%d pages read, %d kept, %d edges in %.1f s (%.0f pages/hour)%n", ingester.getPagesRead(),
+				kept, ingester.getEdgeCount(), seconds, ingester.getPagesRead() / seconds * 3600);
+	}
+
+	/**
+	 * The contents of a dump file, and the process decompressing it if there is
+	 * one. Closing it once it has been read to the end waits for the process and
+	 * fails if the process did; closing it before, as when an ingest is aborted,
+	 * kills the process instead.
+	 */
+	private static class DumpStream extends FilterInputStream {
+
+		private final Process decompressor;
+		private boolean ended;
+		private boolean closed;
+
+		private DumpStream(InputStream in, Process decompressor) {
+			super(in);
+			this.decompressor = decompressor;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			ended |= b < 0;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			ended |= n < 0;
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			// the XML reader closes it at the end of the document, and then the
+			// ingest does
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (decompressor != null && !ended) {
+				decompressor.destroyForcibly();
+			}
+			super.close();
+			if (decompressor == null || !ended) {
+				return;
+			}
+			try {
+				int status = decompressor.waitFor();
+				if (status != 0) {
+					throw new IOException("bzip2 exited with status " + status);
+				}
+			} catch (InterruptedException e) {
+				decompressor.destroyForcibly();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for bzip2");
+			}
+		}
+	}
+
+	/**
+	 * A page read from the dump, waiting to be parsed: either wikitext or HTML
+	 */
+	private static class RawPage {
+
+		// marks the end of the dump for one parser
+		private static final RawPage END = new RawPage(null, null, null);
+
+		private final String title;
+		private final String wikitext;
+		private final byte[] html;
+
+		private RawPage(String title, String wikitext, byte[] html) {
+			this.title = title;
+			this.wikitext = wikitext;
+			this.html = html;
+		}
+	}
+}
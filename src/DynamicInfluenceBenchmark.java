@@ -0,0 +1,96 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * DynamicInfluenceBenchmark class
+ *
+ * Edits a generated power-law graph in small batches and times keeping the
+ * influence ranking up to date with DynamicNetworkInfluence against
+ * recomputing the influence of every vertex. After each batch it checks that
+ * both give the same scores.
+ *
+ * Usage: DynamicInfluenceBenchmark [vertices] [avgDegree]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class DynamicInfluenceBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int degree = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		File f = File.createTempFile("dynamic_influence_benchmark", ".txt");
+		f.deleteOnExit();
+		GraphGenerator.writePowerLawGraph(f.getAbsolutePath(), vertices, degree, 311);
+		DynamicNetworkInfluence network = new DynamicNetworkInfluence(f.getAbsolutePath(), 0);
+
+		long start = System.nanoTime();
+		ArrayList<String> top = network.mostInfluentialModular(10);
+		System.out.printf("Initial ranking of %d vertices: %.3f s, top 3 %s%n", network.vertexCount(), elapsed(start),
+				top.subList(0, 3));
+
+		Random random = new Random(311);
+		for (int batch : new int[] { 1, 10, 100 }) {
+			for (int i = 0; i < batch; i++) {
+				edit(network, random);
+			}
+
+			long before = network.getRecomputations();
+			start = System.nanoTime();
+			ArrayList<String> incremental = network.mostInfluentialModular(10);
+			double incrementalSeconds = elapsed(start);
+			long recomputed = network.getRecomputations() - before;
+			float[] scores = scores(network);
+
+			network.invalidateScores();
+			start = System.nanoTime();
+			ArrayList<String> full = network.mostInfluentialModular(10);
+			double fullSeconds = elapsed(start);
+
+			int mismatches = 0;
+			for (int v = 0; v < scores.length; v++) {
+				if (scores[v] != network.influence(network.nameOf(v))) {
+					mismatches++;
+				}
+			}
+			System.out.printf(
+					"%3d edits: incremental %.3f s (%d of %d vertices recomputed), full %.3f s, %.0fx faster; "
+							+ "%d score mismatches, same top 10: %b%n",
+					batch, incrementalSeconds, recomputed, scores.length, fullSeconds, fullSeconds / incrementalSeconds,
+					mismatches, incremental.equals(full));
+		}
+	}
+
+	/**
+	 * Removes a random edge or adds one between random vertices, half the time
+	 * each
+	 */
+	private static void edit(DynamicNetworkInfluence network, Random random) {
+		int n = network.vertexCount();
+		if (random.nextBoolean()) {
+			int u;
+			do {
+				u = random.nextInt(n);
+			} while (network.neighbours(u).isEmpty());
+			ArrayList<Integer> out = network.neighbours(u);
+			network.removeEdge(network.nameOf(u), network.nameOf(out.get(random.nextInt(out.size()))));
+		} else {
+			network.addEdge(network.nameOf(random.nextInt(n)),
+					network.nameOf(GraphGenerator.skewedTarget(random, n)));
+		}
+	}
+
+	private static float[] scores(DynamicNetworkInfluence network) {
+		float[] scores = new float[network.vertexCount()];
+		for (int v = 0; v < scores.length; v++) {
+			scores[v] = network.influence(network.nameOf(v));
+		}
+		return scores;
+	}
+
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1000000000.0;
+	}
+}
@@ -0,0 +1,438 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * DynamicNetworkInfluence class
+ *
+ * A NetworkInfluence whose graph can change after it has been loaded, through
+ * addVertex, addEdge, removeEdge and applyDelta. It keeps the influence of
+ * every vertex and updates only the scores an edit can have changed, so the
+ * influence rankings stay cheap while a crawl keeps adding to the graph.
+ *
+ * Inf(u) depends only on the distances from u. Adding or removing the edge
+ * (a, b) changes a distance from u only if the edge is on a shortest path
+ * from u, or would become one: removing it matters when dist(u, a) + 1 equals
+ * dist(u, b), and adding it when dist(u, a) + 1 is less than dist(u, b). Each
+ * edit finds those vertices with two BFSs over the reversed edges, from a and
+ * from b, and marks them stale. The stale scores are recomputed with a full BFS
+ * each, but only when they are next asked for: influence(u) recomputes the
+ * score of u alone, and a ranking every stale score, so a batch of edits costs
+ * at most one recomputation per vertex it affected.
+ *
+ * The searches don't prune with the strongly connected components, as
+ * NetworkInfluence's do, since those would be rebuilt over the whole graph
+ * after every edit.
+ *
+ * Like the other mutations of NetworkInfluence, the edits must not run while
+ * other threads query this object; freeze() a copy for that.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class DynamicNetworkInfluence extends NetworkInfluence {
+
+	/**
+	 * The vertices linking to each vertex, the reverse of the adjacency list;
+	 * null once compressed
+	 */
+	private ArrayList<ArrayList<Integer>> reverse;
+
+	/**
+	 * Influence of every vertex, valid where stale is false
+	 */
+	private double[] scores;
+
+	/**
+	 * Whether each score must be recomputed, and how many must. The list holds
+	 * every vertex marked since the last ranking, once each, including those a
+	 * point query has recomputed since.
+	 */
+	private boolean[] stale;
+	private int staleCount;
+	private boolean[] listed;
+	private int[] staleList;
+	private int listedCount;
+
+	/**
+	 * Distances to a and to b found by the BFSs of the last edit, valid where
+	 * the stamp matches
+	 */
+	private int[] distToA;
+	private int[] distToB;
+	private int[] stampA;
+	private int[] stampB;
+	private int stamp;
+	private int[] queue;
+
+	/**
+	 * Number of influence BFSs run so far, for measuring the savings
+	 */
+	private long recomputations;
+
+	/**
+	 * Constructs a new DynamicNetworkInfluence from the graph stored at graphData.
+	 * The influence of every vertex is computed on the first query.
+	 *
+	 * @param graphData
+	 *            The absolute file path of the file that stores the graph
+	 * @throws FileNotFoundException
+	 */
+	public DynamicNetworkInfluence(String graphData) throws FileNotFoundException {
+		this(graphData, DEFAULT_QUERY_CACHE_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new DynamicNetworkInfluence from the graph stored at
+	 * graphData, keeping up to queryCacheCapacity query results in its cache.
+	 *
+	 * @param graphData
+	 *            The absolute file path of the file that stores the graph
+	 * @param queryCacheCapacity
+	 *            The number of query results to cache; 0 disables the cache
+	 * @throws FileNotFoundException
+	 */
+	public DynamicNetworkInfluence(String graphData, int queryCacheCapacity) throws FileNotFoundException {
+		super(graphData, queryCacheCapacity);
+		int n = vertexCount();
+		reverse = new ArrayList<ArrayList<Integer>>(n);
+		for (int v = 0; v < n; v++) {
+			reverse.add(new ArrayList<Integer>());
+		}
+		for (int u = 0; u < n; u++) {
+			for (int v : neighbours(u)) {
+				reverse.get(v).add(u);
+			}
+		}
+
+		int capacity = Math.max(16, n);
+		scores = new double[capacity];
+		stale = new boolean[capacity];
+		listed = new boolean[capacity];
+		staleList = new int[capacity];
+		distToA = new int[capacity];
+		distToB = new int[capacity];
+		stampA = new int[capacity];
+		stampB = new int[capacity];
+		queue = new int[capacity];
+		invalidateScores();
+	}
+
+	/**
+	 * Adds a vertex without any edges, if there is none of that name yet
+	 *
+	 * @param v
+	 *            The name of the vertex
+	 * @return Whether the vertex is new
+	 */
+	public synchronized boolean addVertex(String v) {
+		if (indexOf(v) != null) {
+			return false;
+		}
+		vertex(v);
+		graphChanged();
+		return true;
+	}
+
+	/**
+	 * Adds the edge from u to v, creating either vertex if needed. Adding an edge
+	 * that is already in the graph does nothing.
+	 *
+	 * @param u
+	 *            The vertex the edge leaves
+	 * @param v
+	 *            The vertex the edge enters
+	 * @return Whether the edge is new
+	 */
+	public synchronized boolean addEdge(String u, String v) {
+		int a = vertex(u);
+		int b = vertex(v);
+		if (neighbours(a).contains(b)) {
+			return false;
+		}
+		if (a != b) {
+			markAffected(a, b, false);
+		}
+		neighbours(a).add(b);
+		reverse.get(b).add(a);
+		graphChanged();
+		return true;
+	}
+
+	/**
+	 * Removes the edge from u to v. The vertices stay in the graph even if they
+	 * lose their last edge.
+	 *
+	 * @param u
+	 *            The vertex the edge leaves
+	 * @param v
+	 *            The vertex the edge enters
+	 * @return Whether the edge was in the graph
+	 */
+	public synchronized boolean removeEdge(String u, String v) {
+		Integer a = indexOf(u);
+		Integer b = indexOf(v);
+		if (a == null || b == null || !neighbours(a).contains(b)) {
+			return false;
+		}
+		if (a.intValue() != b.intValue()) {
+			markAffected(a, b, true);
+		}
+		neighbours(a).remove(b);
+		reverse.get(b).remove(a);
+		graphChanged();
+		return true;
+	}
+
+	/**
+	 * Applies the edits of a recrawl one edge at a time, so only the influence of
+	 * the vertices they affect is recomputed
+	 */
+	@Override
+	public synchronized void applyDelta(GraphDelta delta) {
+		requireLists();
+		for (String[] edge : delta.getRemoved()) {
+			removeEdge(edge[0], edge[1]);
+		}
+		for (String[] edge : delta.getAdded()) {
+			addEdge(edge[0], edge[1]);
+		}
+	}
+
+	/**
+	 * Compresses the graph as NetworkInfluence.compress() does. Like any
+	 * compressed graph it can't be edited afterwards, so the reversed edges and
+	 * the BFS arrays the edits need are dropped too; the scores are kept and
+	 * still answer influence and rankings.
+	 */
+	@Override
+	public synchronized void compress() {
+		super.compress();
+		if (isCompressed()) {
+			reverse = null;
+			distToA = null;
+			distToB = null;
+			stampA = null;
+			stampB = null;
+			queue = null;
+		}
+	}
+
+	/**
+	 * Returns Inf(u), recomputing it only if an edit since it was last computed
+	 * may have changed it. The other stale scores are left for later.
+	 */
+	@Override
+	public synchronized float influence(String u) {
+		long queryStart = System.nanoTime();
+		int v = indexOf(u);
+		if (stale[v]) {
+			scores[v] = computeInfluence(v);
+			stale[v] = false;
+			staleCount--;
+			recomputations++;
+		}
+		float influence = (float) scores[v];
+		getQueryMetrics().record(QueryMetrics.INFLUENCE, queryStart);
+		return influence;
+	}
+
+	/**
+	 * Returns the k vertices of highest influence from the maintained scores,
+	 * ties broken as in topVertices. Only the scores made stale by edits since
+	 * the last ranking are recomputed.
+	 */
+	@Override
+	public synchronized ArrayList<String> mostInfluentialModular(int k) {
+		long queryStart = System.nanoTime();
+		refresh();
+		ArrayList<String> top = topVertices(Arrays.copyOf(scores, vertexCount()), k);
+		getQueryMetrics().record(QueryMetrics.RANKING, queryStart);
+		return top;
+	}
+
+	/**
+	 * @return The number of influence BFSs run so far, by the first queries and
+	 *         by the updates after edits
+	 */
+	public synchronized long getRecomputations() {
+		return recomputations;
+	}
+
+	/**
+	 * @return The number of vertices whose influence will be recomputed when it
+	 *         is next asked for
+	 */
+	public synchronized int getStaleCount() {
+		return staleCount;
+	}
+
+	/**
+	 * Marks every score stale, so the next query recomputes them all as a fresh
+	 * instance would
+	 */
+	synchronized void invalidateScores() {
+		for (int v = 0; v < vertexCount(); v++) {
+			markStale(v);
+		}
+	}
+
+	/**
+	 * Moves the reversed edges and the scores to the new vertex numbers
+	 */
+	@Override
+	void renumbered(int[] newIds) {
+		int n = vertexCount();
+		ArrayList<ArrayList<Integer>> renumbered = new ArrayList<ArrayList<Integer>>(n);
+		for (int v = 0; v < n; v++) {
+			renumbered.add(null);
+		}
+		double[] movedScores = new double[scores.length];
+		boolean[] movedStale = new boolean[stale.length];
+		boolean[] movedListed = new boolean[listed.length];
+		for (int old = 0; old < n; old++) {
+			ArrayList<Integer> predecessors = reverse.get(old);
+			ArrayList<Integer> list = new ArrayList<Integer>(predecessors.size());
+			for (int i = 0; i < predecessors.size(); i++) {
+				list.add(newIds[predecessors.get(i)]);
+			}
+			renumbered.set(newIds[old], list);
+			movedScores[newIds[old]] = scores[old];
+			movedStale[newIds[old]] = stale[old];
+			movedListed[newIds[old]] = listed[old];
+		}
+		for (int v = 0; v < n; v++) {
+			reverse.set(v, renumbered.get(v));
+		}
+		for (int i = 0; i < listedCount; i++) {
+			staleList[i] = newIds[staleList[i]];
+		}
+		scores = movedScores;
+		stale = movedStale;
+		listed = movedListed;
+		Arrays.fill(stampA, 0);
+		Arrays.fill(stampB, 0);
+		stamp = 0;
+	}
+
+	/**
+	 * Recomputes the stale scores
+	 */
+	private void refresh() {
+		for (int i = 0; i < listedCount; i++) {
+			int v = staleList[i];
+			listed[v] = false;
+			if (stale[v]) {
+				scores[v] = computeInfluence(v);
+				stale[v] = false;
+				recomputations++;
+			}
+		}
+		listedCount = 0;
+		staleCount = 0;
+	}
+
+	/**
+	 * Marks the vertices whose distances change when the edge (a, b) is added or
+	 * removed: those reaching a with dist(u, a) + 1 less than dist(u, b) for an
+	 * addition, or equal to it for a removal. The edge must be in the graph for a
+	 * removal and not in it for an addition.
+	 */
+	private void markAffected(int a, int b, boolean removal) {
+		stamp++;
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(stampA, 0);
+			Arrays.fill(stampB, 0);
+			stamp = 1;
+		}
+		reverseBfs(b, distToB, stampB);
+		int reached = reverseBfs(a, distToA, stampA);
+		for (int i = 0; i < reached; i++) {
+			int u = queue[i];
+			int viaEdge = distToA[u] + 1;
+			boolean affected;
+			if (stampB[u] != stamp) {
+				// b is unreachable from u without the edge
+				affected = !removal;
+			} else {
+				affected = removal ? viaEdge == distToB[u] : viaEdge < distToB[u];
+			}
+			if (affected) {
+				markStale(u);
+			}
+		}
+	}
+
+	/**
+	 * BFS over the reversed edges from target, recording every vertex's distance
+	 * to target. The vertices reached are left in queue in BFS order.
+	 *
+	 * @return The number of vertices reached
+	 */
+	private int reverseBfs(int target, int[] dist, int[] stamps) {
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = target;
+		dist[target] = 0;
+		stamps[target] = stamp;
+		while (head < tail) {
+			int x = queue[head++];
+			for (int y : reverse.get(x)) {
+				if (stamps[y] != stamp) {
+					stamps[y] = stamp;
+					dist[y] = dist[x] + 1;
+					queue[tail++] = y;
+				}
+			}
+		}
+		return tail;
+	}
+
+	private void markStale(int v) {
+		if (!stale[v]) {
+			stale[v] = true;
+			staleCount++;
+			if (!listed[v]) {
+				listed[v] = true;
+				staleList[listedCount++] = v;
+			}
+		}
+	}
+
+	/**
+	 * Searches without the components, which would otherwise be rebuilt over the
+	 * whole graph by the first search after each edit
+	 */
+	@Override
+	StronglyConnectedComponents searchComponents() {
+		return null;
+	}
+
+	/**
+	 * Returns the index of a vertex, adding it with the influence of a vertex
+	 * without edges if it is new
+	 */
+	private int vertex(String name) {
+		Integer existing = indexOf(name);
+		if (existing != null) {
+			return existing;
+		}
+		requireLists();
+		int v = checkVertex(name);
+		reverse.add(new ArrayList<Integer>());
+		if (v == scores.length) {
+			int capacity = 2 * v;
+			scores = Arrays.copyOf(scores, capacity);
+			stale = Arrays.copyOf(stale, capacity);
+			listed = Arrays.copyOf(listed, capacity);
+			staleList = Arrays.copyOf(staleList, capacity);
+			distToA = Arrays.copyOf(distToA, capacity);
+			distToB = Arrays.copyOf(distToB, capacity);
+			stampA = Arrays.copyOf(stampA, capacity);
+			stampB = Arrays.copyOf(stampB, capacity);
+			queue = Arrays.copyOf(queue, capacity);
+		}
+		scores[v] = 1.0;
+		return v;
+	}
+}
@@ -0,0 +1,93 @@
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * FetchBenchmark class
+ *
+ * Compares ways of fetching and scanning pages from a LocalPageServer: a new
+ * URL.openStream() connection per page (how PageScanner used to work), the
+ * pooled, gzip-enabled PageFetcher used blocking, and the PageFetcher's
+ * asynchronous path with several requests in flight.
+ *
+ * Usage: FetchBenchmark [savedPagesDirectory | numPages] [inFlight]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class FetchBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		LocalPageServer server;
+		List<String> titles = new ArrayList<String>();
+		if (args.length > 0 && new File(args[0]).isDirectory()) {
+			File dir = new File(args[0]);
+			server = new LocalPageServer(dir);
+			for (String name : dir.list()) {
+				titles.add(name.endsWith(".html") ? name.substring(0, name.length() - 5) : name);
+			}
+		} else {
+			int numPages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+			server = new LocalPageServer(PageGenerator.generate(numPages, 60, new String[0], 0, 311));
+			for (int i = 0; i < numPages; i++) {
+				titles.add(PageGenerator.title(i));
+			}
+		}
+		int inFlight = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		server.start(8);
+		final String base = server.getBaseUrl() + "/wiki/";
+		final ArrayList<String> topics = new ArrayList<String>();
+
+		// warm up every path once so the comparison isn't skewed by JIT compilation
+		for (int i = 0; i < Math.min(200, titles.size()); i++) {
+			PageScanner.scanLinks(new URL(base + titles.get(i)).openStream(), topics);
+			new PageScanner(base + titles.get(i)).getLinks(topics);
+		}
+
+		long start = System.nanoTime();
+		long links = 0;
+		for (String title : titles) {
+			links += PageScanner.scanLinks(new URL(base + title).openStream(), topics).size();
+		}
+		report("URL.openStream per page", titles.size(), links, start);
+
+		long bytesBefore = server.getBytesSent();
+		start = System.nanoTime();
+		links = 0;
+		for (String title : titles) {
+			links += new PageScanner(base + title).getLinks(topics).size();
+		}
+		report("PageFetcher blocking", titles.size(), links, start);
+		System.out.printf("  %.1f KB per page on the wire with gzip%n",
+				(server.getBytesSent() - bytesBefore) / 1024.0 / titles.size());
+
+		ExecutorService parsers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		final Semaphore window = new Semaphore(inFlight);
+		List<CompletableFuture<ArrayList<String>>> futures = new ArrayList<CompletableFuture<ArrayList<String>>>();
+		start = System.nanoTime();
+		for (String title : titles) {
+			window.acquire();
+			CompletableFuture<ArrayList<String>> f = new PageScanner(base + title).getLinksAsync(topics, parsers);
+			f.whenComplete((result, error) -> window.release());
+			futures.add(f);
+		}
+		links = 0;
+		for (CompletableFuture<ArrayList<String>> f : futures) {
+			links += f.join().size();
+		}
+		report("PageFetcher async, " + inFlight + " in flight", titles.size(), links, start);
+
+		parsers.shutdown();
+		server.stop();
+	}
+
+	private static void report(String label, int pages, long links, long start) {
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+		System.out.printf("%-32s %8.1f pages/sec (%d pages, %d links)%n", label, pages / seconds, pages, links);
+	}
+}
@@ -0,0 +1,287 @@
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * FetchStage class
+ *
+ * The concurrent fetch stage of WikiCrawler. Pages are fetched through
+ * PageScanner.getLinksAsync, with the number in flight controlled by an
+ * AdaptiveConcurrencyLimiter. Optionally, a request that is still running
+ * after the 95th percentile of the latencies seen so far is hedged: a second
+ * copy is sent and whichever answers first is used, so one slow response
+ * doesn't hold up the crawl.
+ *
+ * The stage records the latency of every page, from the request to the end of
+ * its scan, and the achieved page rate. The limiter is only told how long each
+ * request took to get its response headers, so waiting for a parser thread
+ * and scanning don't count as a slow server.
+ *
+ * A caller may cancel the future of a page it no longer needs. The request
+ * itself keeps running, so it keeps its place in the concurrency limit until it
+ * has finished, and it counts neither as a page nor as a failure.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class FetchStage {
+
+	/**
+	 * Latencies needed before the 95th percentile is trusted for hedging
+	 */
+	private static final int MIN_SAMPLES_FOR_HEDGING = 50;
+
+	/**
+	 * Quantile of past latencies after which a request is hedged
+	 */
+	private static final double HEDGE_QUANTILE = 0.95;
+
+	// the fetcher pages are downloaded through
+	private final PageFetcher fetcher;
+	// the limiter deciding how many pages may be in flight
+	private final AdaptiveConcurrencyLimiter limiter;
+	// whether slow requests are hedged
+	private final boolean hedging;
+	// asked before each hedge is sent, so hedges respect the politeness policy
+	private final BooleanSupplier hedgePermit;
+
+	// threads the pages are scanned on
+	private final ExecutorService parsers;
+	// timer thread sending the hedges
+	private final ScheduledExecutorService scheduler;
+
+	// latency of every page, including the benefit of hedging
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final AtomicLong pages = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+
+	// requests and hedges sent whose scan hasn't finished
+	private final AtomicInteger inFlight = new AtomicInteger();
+	// set by shutdown; the threads stop once nothing is in flight
+	private volatile boolean stopping;
+
+	// time the first page was requested
+	private volatile long startNanos;
+
+	// the metrics every page is recorded in, or null
+	private volatile CrawlMetrics metrics;
+
+	/**
+	 * Constructs a new fetch stage
+	 *
+	 * @param fetcher
+	 *            The fetcher pages are downloaded through
+	 * @param maxConcurrency
+	 *            The most requests ever in flight, as allowed by the politeness
+	 *            policy
+	 * @param hedging
+	 *            Whether requests slower than the 95th percentile are hedged
+	 * @param hedgePermit
+	 *            Asked before each hedge; a hedge is only sent if it returns true
+	 */
+	public FetchStage(PageFetcher fetcher, int maxConcurrency, boolean hedging, BooleanSupplier hedgePermit) {
+		this.fetcher = fetcher;
+		this.limiter = new AdaptiveConcurrencyLimiter(Math.min(2, maxConcurrency), maxConcurrency);
+		this.hedging = hedging;
+		this.hedgePermit = hedgePermit;
+		this.parsers = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+			Thread t = new Thread(r, "fetch-stage-parser");
+			t.setDaemon(true);
+			return t;
+		});
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "fetch-stage-hedger");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Makes the stage record the download and scan of every page, hedges
+	 * included, in the given metrics
+	 *
+	 * @param metrics
+	 *            The metrics of the crawl, or null to record nothing
+	 */
+	public void setMetrics(CrawlMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Starts fetching and scanning the given page. Blocks while the concurrency
+	 * limit is reached.
+	 *
+	 * @param url
+	 *            The full URL of the page
+	 * @param topics
+	 *            The topics the page must contain
+	 * @return A future of the links on the page, or of null if it doesn't contain
+	 *         all of the topics
+	 * @throws InterruptedException
+	 */
+	public CompletableFuture<ArrayList<String>> fetch(final String url, final ArrayList<String> topics)
+			throws InterruptedException {
+		if (stopping) {
+			throw new IllegalStateException("The fetch stage was shut down");
+		}
+		limiter.acquire();
+		final long start = System.nanoTime();
+		if (startNanos == 0) {
+			startNanos = start;
+		}
+
+		// completed by the primary request or a hedge, whichever answers first;
+		// cancelling it leaves the requests running
+		final CompletableFuture<ArrayList<String>> result = new CompletableFuture<ArrayList<String>>();
+		// time to the response headers of the primary request, once they arrived
+		final AtomicLong responseNanos = new AtomicLong(-1);
+		send(url, topics, responseNanos::set).whenComplete((links, error) -> {
+			if (error == null) {
+				result.complete(links);
+			} else {
+				result.completeExceptionally(error);
+			}
+			// the slot is free only once the request is, even if the page was cancelled
+			long latency = responseNanos.get();
+			limiter.release(latency >= 0 ? latency : System.nanoTime() - start,
+					error != null && !isCancellation(error));
+		});
+
+		if (hedging && latencies.getCount() >= MIN_SAMPLES_FOR_HEDGING) {
+			scheduler.schedule(() -> {
+				if (result.isDone() || stopping || !hedgePermit.getAsBoolean()) {
+					return;
+				}
+				hedges.incrementAndGet();
+				send(url, topics, null).whenComplete((links, error) -> {
+					// a failed hedge is ignored; the primary request still decides
+					if (error == null && result.complete(links)) {
+						hedgeWins.incrementAndGet();
+					}
+				});
+			}, latencies.percentileNanos(HEDGE_QUANTILE), TimeUnit.NANOSECONDS);
+		}
+
+		result.whenComplete((links, error) -> {
+			if (error != null && isCancellation(error)) {
+				return;
+			}
+			latencies.record(System.nanoTime() - start);
+			pages.incrementAndGet();
+			if (error != null) {
+				failures.incrementAndGet();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Sends one request for the page and scans it, counting it in flight until
+	 * the scan has finished
+	 */
+	private CompletableFuture<ArrayList<String>> send(String url, ArrayList<String> topics,
+			LongConsumer responseNanos) {
+		inFlight.incrementAndGet();
+		CompletableFuture<ArrayList<String>> links = scanner(url).getLinksAsync(topics, parsers, responseNanos);
+		links.whenComplete((result, error) -> {
+			if (inFlight.decrementAndGet() == 0 && stopping) {
+				parsers.shutdown();
+			}
+		});
+		return links;
+	}
+
+	/**
+	 * @return Whether a future failed because it was cancelled
+	 */
+	static boolean isCancellation(Throwable error) {
+		return error instanceof CancellationException
+				|| (error instanceof CompletionException && error.getCause() instanceof CancellationException);
+	}
+
+	private PageScanner scanner(String url) {
+		PageScanner scanner = new PageScanner(url, fetcher);
+		scanner.setMetrics(metrics);
+		return scanner;
+	}
+
+	/**
+	 * Stops the stage. No more hedges are sent, and the parser threads stop once
+	 * the requests still in flight have been scanned. Pages can't be fetched
+	 * afterwards, but the figures stay readable.
+	 */
+	public void shutdown() {
+		stopping = true;
+		scheduler.shutdownNow();
+		if (inFlight.get() == 0) {
+			parsers.shutdown();
+		}
+	}
+
+	/**
+	 * @return Whether shutdown() was called
+	 */
+	public boolean isShutdown() {
+		return stopping;
+	}
+
+	/**
+	 * @return The latency of every page fetched so far
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * @return The limiter controlling the number of requests in flight
+	 */
+	public AdaptiveConcurrencyLimiter getLimiter() {
+		return limiter;
+	}
+
+	public long getPageCount() {
+		return pages.get();
+	}
+
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	public long getHedgeCount() {
+		return hedges.get();
+	}
+
+	public long getHedgeWinCount() {
+		return hedgeWins.get();
+	}
+
+	/**
+	 * @return The number of pages fetched per second since the first request
+	 */
+	public double getPagesPerSecond() {
+		long start = startNanos;
+		if (start == 0) {
+			return 0;
+		}
+		return pages.get() / ((System.nanoTime() - start) / 1000000000.0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%d pages at %.1f pages/sec, fetch latency p50 %.1f ms, p99 %.1f ms, concurrency limit %d, %d hedged (%d won), %d failed",
+				getPageCount(), getPagesPerSecond(), latencies.percentileMillis(0.50), latencies.percentileMillis(0.99),
+				limiter.getLimit(), getHedgeCount(), getHedgeWinCount(), getFailureCount());
+	}
+}
@@ -0,0 +1,63 @@
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * FocusedCrawlBenchmark class
+ *
+ * Crawls a generated corpus of pages split into subjects, where only pages of
+ * one subject tend to contain the topics, once in BFS order and once
+ * best-first. Reports how many requests each needed to find max relevant pages
+ * and its acceptance rate, the fraction of fetched pages that were relevant.
+ * Both crawls fetch every page at most once, rejected pages included, so the
+ * requests are unique pages and the difference comes from the order links are
+ * followed in alone.
+ *
+ * Usage: FocusedCrawlBenchmark [maxPages] [pages in corpus] [subjects]
+ * [locality]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class FocusedCrawlBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int max = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int numPages = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int subjects = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		double locality = args.length > 3 ? Double.parseDouble(args[3]) : 0.6;
+
+		String[] topicWords = { "complexity", "emergence" };
+		LocalPageServer server = new LocalPageServer(
+				PageGenerator.generateTopical(numPages, 30, topicWords, subjects, locality, 311));
+		server.start(8);
+		System.out.printf("Corpus: %d pages, %d subjects, %.0f%% of links within a subject%n", numPages, subjects,
+				locality * 100);
+
+		run("BFS", server, max, topicWords, false);
+		run("best-first", server, max, topicWords, true);
+
+		server.stop();
+	}
+
+	private static void run(String label, LocalPageServer server, int max, String[] topicWords, boolean focused)
+			throws Exception {
+		ArrayList<String> topics = new ArrayList<String>();
+		for (String topic : topicWords) {
+			topics.add(topic);
+		}
+		File out = File.createTempFile("focused_crawl_benchmark", ".txt");
+		out.deleteOnExit();
+
+		WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), max, topics,
+				out.getAbsolutePath());
+		crawler.setPoliteness(0, 0);
+		crawler.setFocusedCrawl(focused);
+
+		long start = System.nanoTime();
+		crawler.crawl();
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+
+		System.out.printf("%-12s %d relevant pages, %6d requests, acceptance rate %5.1f%%, %.2f s%n", label,
+				crawler.getPagesAccepted(), crawler.getPagesRequested(), crawler.getAcceptanceRate() * 100, seconds);
+	}
+}
@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * FocusedFrontier class
+ *
+ * The frontier of a focused (best-first) crawl. Instead of pages to expand in
+ * BFS order, it holds the links not yet fetched, and hands out the most
+ * promising one first. A link is scored from signals that cost nothing to
+ * compute before fetching it:
+ *
+ * - how many of the topic words appear in its anchor text,
+ * - how many of the topic words appear in its title,
+ * - how densely the page it was found on mentions the topics.
+ *
+ * A link found on several pages keeps its best score, plus a small bonus for
+ * each extra page linking to it. Links with equal scores come out in the order
+ * they were first found, so without any signal the crawl falls back to BFS
+ * order.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class FocusedFrontier {
+
+	/**
+	 * Weight of the fraction of topic words in a link's anchor text
+	 */
+	static final double ANCHOR_WEIGHT = 2.0;
+
+	/**
+	 * Weight of the fraction of topic words in a link's title
+	 */
+	static final double TITLE_WEIGHT = 1.0;
+
+	/**
+	 * Weight of the linking page's topic density, squashed into [0, 1)
+	 */
+	static final double PARENT_WEIGHT = 1.0;
+
+	/**
+	 * Score added for every page linking to a link after the first
+	 */
+	static final double INLINK_BONUS = 0.05;
+
+	// the lower-case words of all the topics
+	private final ArrayList<String> topicWords = new ArrayList<String>();
+
+	// every link offered and not yet removed, with its current score
+	private final HashMap<String, Candidate> candidates = new HashMap<String, Candidate>();
+	// the candidates by score; a candidate whose score rose has a stale entry,
+	// which is skipped when it comes out
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+	// order in which links were first offered, to break ties
+	private long nextSequence;
+
+	/**
+	 * Constructs a new, empty frontier scoring links against the given topics
+	 *
+	 * @param topics
+	 *            The topics the crawl looks for
+	 */
+	public FocusedFrontier(ArrayList<String> topics) {
+		if (topics != null) {
+			for (String topic : topics) {
+				for (String word : topic.toLowerCase(Locale.ROOT).split("[\\s_]+")) {
+					if (!word.isEmpty()) {
+						topicWords.add(word);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Offers every link of a fetched page that isn't in visited
+	 *
+	 * @param page
+	 *            The page the links were found on
+	 * @param visited
+	 *            The pages already fetched
+	 */
+	public void offerLinks(ScannedPage page, VisitedSet visited) {
+		double parentScore = PARENT_WEIGHT * squash(page.getTopicDensity());
+		for (int i = 0; i < page.links.size(); i++) {
+			String link = page.links.get(i);
+			if (!visited.contains(link)) {
+				offer(link, parentScore + ANCHOR_WEIGHT * topicFraction(page.anchors.get(i))
+						+ TITLE_WEIGHT * topicFraction(link.replace('_', ' ')));
+			}
+		}
+	}
+
+	/**
+	 * Offers a link with the given score
+	 *
+	 * @param link
+	 *            The link, minus "/wiki/"
+	 * @param score
+	 *            How promising this occurrence of the link is
+	 */
+	public void offer(String link, double score) {
+		Candidate candidate = candidates.get(link);
+		if (candidate == null) {
+			candidate = new Candidate(nextSequence++, score);
+			candidates.put(link, candidate);
+		} else {
+			candidate.inlinks++;
+			candidate.best = Math.max(candidate.best, score);
+		}
+		queue.add(new Entry(link, candidate.sequence, candidate.score()));
+	}
+
+	/**
+	 * Removes the most promising link
+	 *
+	 * @return The link with the highest score, or null if there is none
+	 */
+	public String remove() {
+		Entry entry;
+		while ((entry = queue.poll()) != null) {
+			Candidate candidate = candidates.get(entry.link);
+			// skip entries of links already removed or whose score has since risen
+			if (candidate != null && candidate.score() == entry.score) {
+				candidates.remove(entry.link);
+				return entry.link;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return Whether there are no links left
+	 */
+	public boolean isEmpty() {
+		return candidates.isEmpty();
+	}
+
+	/**
+	 * @return The number of links waiting to be fetched
+	 */
+	public int size() {
+		return candidates.size();
+	}
+
+	/**
+	 * Returns the fraction of the topic words that occur in the given text
+	 */
+	double topicFraction(String text) {
+		if (topicWords.isEmpty() || text.isEmpty()) {
+			return 0;
+		}
+		String lower = text.toLowerCase(Locale.ROOT);
+		int found = 0;
+		for (String word : topicWords) {
+			if (lower.contains(word)) {
+				found++;
+			}
+		}
+		return (double) found / topicWords.size();
+	}
+
+	/**
+	 * Maps a topic density in [0, infinity) to [0, 1)
+	 */
+	private static double squash(double density) {
+		return density / (density + 1);
+	}
+
+	/**
+	 * A link waiting in the frontier
+	 */
+	private static class Candidate {
+
+		// order in which the link was first offered
+		private final long sequence;
+		// best score of any occurrence of the link
+		private double best;
+		// number of pages the link was found on
+		private int inlinks = 1;
+
+		private Candidate(long sequence, double best) {
+			this.sequence = sequence;
+			this.best = best;
+		}
+
+		private double score() {
+			return best + INLINK_BONUS * (inlinks - 1);
+		}
+	}
+
+	/**
+	 * An entry of the priority queue: higher scores first, then older links
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		private final String link;
+		private final long sequence;
+		private final double score;
+
+		private Entry(String link, long sequence, double score) {
+			this.link = link;
+			this.sequence = sequence;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byScore = Double.compare(other.score, score);
+			return byScore != 0 ? byScore : Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Frontier interface
+ * 
+ * The queue of accepted pages whose links the crawler has yet to follow.
+ * Implementations must hand pages back in the order they were added, so the
+ * crawl stays a breadth-first search. MemoryFrontier keeps every page on the
+ * heap; SpillingFrontier moves older pages to disk.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public interface Frontier extends Closeable {
+
+	/**
+	 * Adds a page to the back of the frontier
+	 * 
+	 * @param page
+	 *            The title of the page
+	 * @param links
+	 *            The links on the page
+	 * @throws IOException
+	 */
+	void add(String page, ArrayList<String> links) throws IOException;
+
+	/**
+	 * Removes the page at the front of the frontier
+	 * 
+	 * @return The oldest page in the frontier
+	 * @throws IOException
+	 */
+	FrontierPage remove() throws IOException;
+
+	/**
+	 * @return Whether the frontier holds no pages
+	 */
+	boolean isEmpty();
+
+	/**
+	 * @return The number of pages in the frontier
+	 */
+	long size();
+}
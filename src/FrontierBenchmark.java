@@ -0,0 +1,163 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FrontierBenchmark class
+ *
+ * Compares the throughput of MemoryFrontier and SpillingFrontier under the
+ * access pattern of a BFS crawl: every page removed adds a few new pages to
+ * the back, each with freshly built links. The frontier first grows to the given number of pages and then
+ * drains. Both runs check that pages come back out in the order they went in.
+ *
+ * In crawl mode it instead runs whole WikiCrawler crawls of generated pages
+ * served locally, with each frontier, and reports the most heap the crawl
+ * retained beyond what the server holds, sampled after a full GC every half
+ * second, after a first crawl to warm up. Every page is accepted, so the
+ * frontier and the graph both grow.
+ *
+ * Usage: FrontierBenchmark [pages] [links per page] [memory budget in MB], or
+ * FrontierBenchmark crawl [pages] [links per page] [memory budget in MB]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class FrontierBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("crawl")) {
+			int pages = args.length > 1 ? Integer.parseInt(args[1]) : 40000;
+			int linksPerPage = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+			long budget = (args.length > 3 ? Long.parseLong(args[3]) : 16) << 20;
+			crawl(pages, linksPerPage, budget);
+			return;
+		}
+
+		int pages = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int linksPerPage = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long budget = (args.length > 2 ? Long.parseLong(args[2]) : 64) << 20;
+		File dir = new File(System.getProperty("java.io.tmpdir"));
+
+		// warm up both before measuring
+		int warmUp = Math.min(pages / 10, 100000);
+		run("warm-up", new MemoryFrontier(), warmUp, linksPerPage);
+		run("warm-up", new SpillingFrontier(dir, budget / 10), warmUp, linksPerPage);
+
+		SpillingFrontier spilling = new SpillingFrontier(dir, budget);
+		run("spilling", spilling, pages, linksPerPage);
+		System.out.printf("%-10s %d pages spilled, %.1f MB written, budget %d MB%n", "spilling",
+				spilling.getSpilledPages(), spilling.getSpilledBytes() / 1048576.0, budget >> 20);
+
+		try {
+			run("memory", new MemoryFrontier(), pages, linksPerPage);
+		} catch (OutOfMemoryError e) {
+			System.out.printf("%-10s ran out of memory (max heap %d MB)%n", "memory",
+					Runtime.getRuntime().maxMemory() >> 20);
+		}
+	}
+
+	/**
+	 * Adds pages until the given number have been added, removing one for every
+	 * three added, then drains the frontier
+	 */
+	private static void run(String label, Frontier frontier, int pages, int linksPerPage) throws IOException {
+		long start = System.nanoTime();
+		int added = 0;
+		int removed = 0;
+		long maxSize = 0;
+		try {
+			while (added < pages || !frontier.isEmpty()) {
+				for (int i = 0; i < 3 && added < pages; i++) {
+					frontier.add(PageGenerator.title(added), links(added, linksPerPage));
+					added++;
+				}
+				maxSize = Math.max(maxSize, frontier.size());
+				FrontierPage page = frontier.remove();
+				if (!page.getPage().equals(PageGenerator.title(removed++))) {
+					throw new IllegalStateException("Out of order: " + page.getPage());
+				}
+			}
+		} finally {
+			frontier.close();
+		}
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+
+		if (!label.equals("warm-up")) {
+			System.out.printf("%-10s %d pages (up to %d queued), %.0f pages/sec%n", label, pages, maxSize,
+					2 * pages / seconds);
+		}
+	}
+
+	/**
+	 * Builds the links of a page as new strings, as scanning a page would
+	 */
+	private static ArrayList<String> links(int page, int linksPerPage) {
+		ArrayList<String> links = new ArrayList<String>(linksPerPage);
+		for (int i = 0; i < linksPerPage; i++) {
+			links.add(PageGenerator.title(page + i));
+		}
+		return links;
+	}
+
+	/**
+	 * Crawls every page of a generated site with each frontier and prints the
+	 * heap the crawls retained
+	 */
+	private static void crawl(int pages, int linksPerPage, long budget) throws Exception {
+		LocalPageServer server = new LocalPageServer(
+				PageGenerator.generate(pages, linksPerPage, new String[0], 0, 311));
+		server.start(4);
+		File dir = new File(System.getProperty("java.io.tmpdir"));
+		File out = File.createTempFile("frontier_benchmark", ".txt");
+		out.deleteOnExit();
+		try {
+			// the first crawl warms up the JIT and the server's cache of gzipped pages
+			for (int run = 0; run < 3; run++) {
+				boolean spill = run == 2;
+				long baseline = retainedHeap();
+				final AtomicLong peak = new AtomicLong();
+				Thread sampler = new Thread(() -> {
+					try {
+						while (true) {
+							Thread.sleep(500);
+							peak.accumulateAndGet(retainedHeap(), Math::max);
+						}
+					} catch (InterruptedException e) {
+						// crawl finished
+					}
+				});
+				sampler.setDaemon(true);
+
+				WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), pages,
+						new ArrayList<String>(), out.getAbsolutePath());
+				crawler.setPoliteness(0, 0);
+				if (spill) {
+					crawler.setSpillingFrontier(dir, budget);
+				}
+				long start = System.nanoTime();
+				sampler.start();
+				crawler.crawl();
+				sampler.interrupt();
+				sampler.join();
+				if (run == 0) {
+					continue;
+				}
+				System.out.printf("%-10s %d pages accepted in %.1f s, peak retained heap %.1f MB%n",
+						spill ? "spilling" : "memory", crawler.getPagesAccepted(),
+						(System.nanoTime() - start) / 1000000000.0, (peak.get() - baseline) / 1048576.0);
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * @return The heap in use after a full GC
+	 */
+	private static long retainedHeap() {
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+
+/**
+ * FrontierPage class
+ * 
+ * A page waiting in a Frontier, coupled with the links found on it.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class FrontierPage {
+
+	// the title of the page
+	final String page;
+	// the links on the page
+	final ArrayList<String> links;
+
+	/**
+	 * Constructs a new FrontierPage
+	 * 
+	 * @param page
+	 *            The title of the page
+	 * @param links
+	 *            The links on the page
+	 */
+	public FrontierPage(String page, ArrayList<String> links) {
+		this.page = page;
+		this.links = links;
+	}
+
+	public String getPage() {
+		return page;
+	}
+
+	public ArrayList<String> getLinks() {
+		return links;
+	}
+}
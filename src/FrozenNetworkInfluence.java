@@ -0,0 +1,397 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * FrozenNetworkInfluence class
+ *
+ * Implements an immutable, thread-safe query facade over a NetworkInfluence
+ * graph. It is created by NetworkInfluence.freeze(), which hands it a private
+ * copy of the graph that nothing else can reach, so any number of threads may
+ * query it at once. Every query of NetworkInfluence is offered, including the
+ * approximate ones and the link analysis and centrality rankings; the scores
+ * behind those rankings are computed once, by the first query that needs them.
+ *
+ * Besides the blocking queries it offers asynchronous and batch versions that
+ * run on a bounded executor owned by this object. When the executor's queue is
+ * full, the submitting thread runs the query itself, which throttles callers
+ * instead of queueing without limit. Call close() once the facade is no longer
+ * needed to stop the executor.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public final class FrozenNetworkInfluence implements AutoCloseable {
+
+	/**
+	 * Number of queued asynchronous queries allowed per executor thread
+	 */
+	private static final int QUEUE_SLOTS_PER_THREAD = 64;
+
+	/**
+	 * The private copy of the graph; never mutated after construction
+	 */
+	private final NetworkInfluence graph;
+
+	/**
+	 * Executor that runs the asynchronous queries
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Constructs a new facade over the given graph. Only called by
+	 * NetworkInfluence.freeze(), which guarantees graph is a copy nobody else
+	 * holds.
+	 *
+	 * @param graph
+	 *            The graph to answer queries on
+	 * @param threads
+	 *            The number of threads used to answer asynchronous queries
+	 */
+	FrozenNetworkInfluence(NetworkInfluence graph, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one query thread is needed: " + threads);
+		}
+		this.graph = graph;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * QUEUE_SLOTS_PER_THREAD), new QueryThreadFactory(),
+				(r, pool) -> {
+					// run the query in the caller while open; once closed, refuse it
+					if (pool.isShutdown()) {
+						throw new RejectedExecutionException("Closed");
+					}
+					r.run();
+				});
+	}
+
+	/**
+	 * @see NetworkInfluence#outDegree(String)
+	 */
+	public int outDegree(String v) {
+		return graph.outDegree(v);
+	}
+
+	/**
+	 * @see NetworkInfluence#shortestPath(String, String)
+	 */
+	public ArrayList<String> shortestPath(String u, String v) {
+		return graph.shortestPath(u, v);
+	}
+
+	/**
+	 * @see NetworkInfluence#distance(String, String)
+	 */
+	public int distance(String u, String v) {
+		return graph.distance(u, v);
+	}
+
+	/**
+	 * @see NetworkInfluence#distance(ArrayList, String)
+	 */
+	public int distance(ArrayList<String> s, String v) {
+		return graph.distance(s, v);
+	}
+
+	/**
+	 * @see NetworkInfluence#influence(String)
+	 */
+	public float influence(String u) {
+		return graph.influence(u);
+	}
+
+	/**
+	 * @see NetworkInfluence#influence(ArrayList)
+	 */
+	public float influence(ArrayList<String> s) {
+		return graph.influence(s);
+	}
+
+	/**
+	 * @see NetworkInfluence#influence(String, double)
+	 */
+	public float influence(String u, double epsilon) {
+		return graph.influence(u, epsilon);
+	}
+
+	/**
+	 * @see NetworkInfluence#influence(ArrayList, double)
+	 */
+	public float influence(ArrayList<String> s, double epsilon) {
+		return graph.influence(s, epsilon);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialDegree(int)
+	 */
+	public ArrayList<String> mostInfluentialDegree(int k) {
+		return graph.mostInfluentialDegree(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialModular(int)
+	 */
+	public ArrayList<String> mostInfluentialModular(int k) {
+		return graph.mostInfluentialModular(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialSubModular(int)
+	 */
+	public ArrayList<String> mostInfluentialSubModular(int k) {
+		return graph.mostInfluentialSubModular(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialModular(int, double)
+	 */
+	public ArrayList<String> mostInfluentialModular(int k, double epsilon) {
+		return graph.mostInfluentialModular(k, epsilon);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialSubModular(int, double)
+	 */
+	public ArrayList<String> mostInfluentialSubModular(int k, double epsilon) {
+		return graph.mostInfluentialSubModular(k, epsilon);
+	}
+
+	/**
+	 * @see NetworkInfluence#pageRank(String)
+	 */
+	public double pageRank(String v) {
+		return graph.pageRank(v);
+	}
+
+	/**
+	 * @see NetworkInfluence#hubScore(String)
+	 */
+	public double hubScore(String v) {
+		return graph.hubScore(v);
+	}
+
+	/**
+	 * @see NetworkInfluence#authorityScore(String)
+	 */
+	public double authorityScore(String v) {
+		return graph.authorityScore(v);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialPageRank(int)
+	 */
+	public ArrayList<String> mostInfluentialPageRank(int k) {
+		return graph.mostInfluentialPageRank(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialHub(int)
+	 */
+	public ArrayList<String> mostInfluentialHub(int k) {
+		return graph.mostInfluentialHub(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialAuthority(int)
+	 */
+	public ArrayList<String> mostInfluentialAuthority(int k) {
+		return graph.mostInfluentialAuthority(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialBetweenness(int)
+	 */
+	public ArrayList<String> mostInfluentialBetweenness(int k) {
+		return graph.mostInfluentialBetweenness(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialBetweenness(int, double, double)
+	 */
+	public ArrayList<String> mostInfluentialBetweenness(int k, double epsilon, double delta) {
+		return graph.mostInfluentialBetweenness(k, epsilon, delta);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialCloseness(int)
+	 */
+	public ArrayList<String> mostInfluentialCloseness(int k) {
+		return graph.mostInfluentialCloseness(k);
+	}
+
+	/**
+	 * @see NetworkInfluence#mostInfluentialCloseness(int, double, double)
+	 */
+	public ArrayList<String> mostInfluentialCloseness(int k, double epsilon, double delta) {
+		return graph.mostInfluentialCloseness(k, epsilon, delta);
+	}
+
+	/**
+	 * @return The cache shared by all queries on this facade
+	 */
+	public QueryCache getQueryCache() {
+		return graph.getQueryCache();
+	}
+
+	/**
+	 * Computes shortestPath(u, v) on the query executor
+	 *
+	 * @param u
+	 *            The first vertex of the path
+	 * @param v
+	 *            The last vertex of the path
+	 * @return A future completed with the path, or exceptionally if either vertex
+	 *         is unknown
+	 */
+	public CompletableFuture<ArrayList<String>> shortestPathAsync(final String u, final String v) {
+		return submit(() -> graph.shortestPath(u, v));
+	}
+
+	/**
+	 * Computes distance(u, v) on the query executor
+	 *
+	 * @param u
+	 *            The start vertex
+	 * @param v
+	 *            The end vertex
+	 * @return A future completed with the distance
+	 */
+	public CompletableFuture<Integer> distanceAsync(final String u, final String v) {
+		return submit(() -> graph.distance(u, v));
+	}
+
+	/**
+	 * Computes influence(u) on the query executor
+	 *
+	 * @param u
+	 *            The vertex to get the influence of
+	 * @return A future completed with the influence
+	 */
+	public CompletableFuture<Float> influenceAsync(final String u) {
+		return submit(() -> graph.influence(u));
+	}
+
+	/**
+	 * Computes the influence of every given vertex, spreading the independent
+	 * queries across the query executor
+	 *
+	 * @param vertices
+	 *            The vertices to get the influence of
+	 * @return A future completed with the influences, in the same order as
+	 *         vertices
+	 */
+	public CompletableFuture<List<Float>> influenceBatch(List<String> vertices) {
+		List<CompletableFuture<Float>> futures = new ArrayList<CompletableFuture<Float>>(vertices.size());
+		for (String u : vertices) {
+			futures.add(influenceAsync(u));
+		}
+		return allOf(futures);
+	}
+
+	/**
+	 * Computes distance(sources[i], targets[i]) for every i, spreading the
+	 * independent queries across the query executor
+	 *
+	 * @param sources
+	 *            The start vertices
+	 * @param targets
+	 *            The end vertices; must be the same length as sources
+	 * @return A future completed with the distances, in the same order as the
+	 *         input lists
+	 */
+	public CompletableFuture<List<Integer>> distanceBatch(List<String> sources, List<String> targets) {
+		if (sources.size() != targets.size()) {
+			throw new IllegalArgumentException(
+					"Mismatched batch: " + sources.size() + " sources, " + targets.size() + " targets");
+		}
+		List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>(sources.size());
+		for (int i = 0; i < sources.size(); i++) {
+			futures.add(distanceAsync(sources.get(i), targets.get(i)));
+		}
+		return allOf(futures);
+	}
+
+	/**
+	 * Computes shortestPath(sources[i], targets[i]) for every i, spreading the
+	 * independent queries across the query executor
+	 *
+	 * @param sources
+	 *            The first vertices of the paths
+	 * @param targets
+	 *            The last vertices of the paths; must be the same length as
+	 *            sources
+	 * @return A future completed with the paths, in the same order as the input
+	 *         lists
+	 */
+	public CompletableFuture<List<ArrayList<String>>> shortestPathBatch(List<String> sources, List<String> targets) {
+		if (sources.size() != targets.size()) {
+			throw new IllegalArgumentException(
+					"Mismatched batch: " + sources.size() + " sources, " + targets.size() + " targets");
+		}
+		List<CompletableFuture<ArrayList<String>>> futures = new ArrayList<CompletableFuture<ArrayList<String>>>(
+				sources.size());
+		for (int i = 0; i < sources.size(); i++) {
+			futures.add(shortestPathAsync(sources.get(i), targets.get(i)));
+		}
+		return allOf(futures);
+	}
+
+	/**
+	 * Stops the query executor. Queries that were already submitted still
+	 * complete; blocking queries keep working after close, while asynchronous
+	 * and batch queries return futures that fail with an IllegalStateException.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Runs a query on the executor, or returns a failed future if the facade is
+	 * closed
+	 */
+	private <T> CompletableFuture<T> submit(Supplier<T> query) {
+		try {
+			return CompletableFuture.supplyAsync(query, executor);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(new IllegalStateException("FrozenNetworkInfluence is closed", e));
+		}
+	}
+
+	/**
+	 * Combines a list of futures into one future of the list of their results
+	 */
+	private static <T> CompletableFuture<List<T>> allOf(final List<CompletableFuture<T>> futures) {
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(done -> {
+			List<T> results = new ArrayList<T>(futures.size());
+			for (CompletableFuture<T> f : futures) {
+				results.add(f.join());
+			}
+			return results;
+		});
+	}
+
+	/**
+	 * Private internal class naming the executor threads and making them daemons,
+	 * so a forgotten close() doesn't keep the JVM alive
+	 *
+	 */
+	private static class QueryThreadFactory implements ThreadFactory {
+
+		// used to number the threads
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "network-influence-query-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+/**
+ * GraphDelta class
+ * 
+ * The edges added to and removed from a graph between two crawls, as produced
+ * by IncrementalRecrawl and applied by NetworkInfluence.applyDelta. Vertex
+ * names are written as in graph files, "/wiki/xxx".
+ * 
+ * In a delta file every line is one edge: "+ from to" for an added edge and
+ * "- from to" for a removed one.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class GraphDelta {
+
+	// the edges added, as {from, to}
+	private final ArrayList<String[]> added = new ArrayList<String[]>();
+	// the edges removed, as {from, to}
+	private final ArrayList<String[]> removed = new ArrayList<String[]>();
+
+	/**
+	 * Records an added edge
+	 * 
+	 * @param from
+	 *            The name of the vertex the edge starts at
+	 * @param to
+	 *            The name of the vertex the edge ends at
+	 */
+	public void addEdge(String from, String to) {
+		added.add(new String[] { from, to });
+	}
+
+	/**
+	 * Records a removed edge
+	 * 
+	 * @param from
+	 *            The name of the vertex the edge starts at
+	 * @param to
+	 *            The name of the vertex the edge ends at
+	 */
+	public void removeEdge(String from, String to) {
+		removed.add(new String[] { from, to });
+	}
+
+	/**
+	 * @return The edges added, each as {from, to}
+	 */
+	public ArrayList<String[]> getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return The edges removed, each as {from, to}
+	 */
+	public ArrayList<String[]> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return Whether the delta changes nothing
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty();
+	}
+
+	/**
+	 * Writes the delta to a file
+	 * 
+	 * @param fileName
+	 *            The file to write
+	 * @throws IOException
+	 */
+	public void write(String fileName) throws IOException {
+		PrintWriter writer = new PrintWriter(fileName, "UTF-8");
+		for (String[] edge : removed) {
+			writer.println("- " + edge[0] + " " + edge[1]);
+		}
+		for (String[] edge : added) {
+			writer.println("+ " + edge[0] + " " + edge[1]);
+		}
+		writer.close();
+	}
+
+	/**
+	 * Reads a delta written by write
+	 * 
+	 * @param fileName
+	 *            The file to read
+	 * @return The delta
+	 * @throws FileNotFoundException
+	 */
+	public static GraphDelta read(String fileName) throws FileNotFoundException {
+		GraphDelta delta = new GraphDelta();
+		Scanner s = new Scanner(new File(fileName), "UTF-8");
+		while (s.hasNextLine()) {
+			String line = s.nextLine();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] components = line.split("\\s+");
+			if (components.length != 3 || !(components[0].equals("+") || components[0].equals("-"))) {
+				s.close();
+				throw new IllegalArgumentException("Delta file misformatted: " + line);
+			}
+			if (components[0].equals("+")) {
+				delta.addEdge(components[1], components[2]);
+			} else {
+				delta.removeEdge(components[1], components[2]);
+			}
+		}
+		s.close();
+		return delta;
+	}
+
+	@Override
+	public String toString() {
+		return "+" + added.size() + " -" + removed.size() + " edges";
+	}
+}
@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * GraphGenerator class
+ *
+ * Generates synthetic graph files in the format read by NetworkInfluence, for
+ * use by the benchmarks. The generated graphs have a power-law-like in-degree
+ * distribution, so that a few pages are linked to from most others, similar to
+ * a crawled link graph.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class GraphGenerator {
+
+	/**
+	 * Skew of the target distribution; higher values concentrate more links on
+	 * the lowest-numbered pages
+	 */
+	private static final double SKEW = 3.0;
+
+	/**
+	 * Returns the name used for the vertex with the given index
+	 *
+	 * @param i
+	 *            The index of the vertex
+	 * @return The vertex name
+	 */
+	public static String vertexName(int i) {
+		return "/wiki/Page_" + i;
+	}
+
+	/**
+	 * Writes a graph with numVertices vertices and about numVertices * avgDegree
+	 * edges to fileName. Every vertex has at least one out-edge, so every vertex
+	 * appears in the file as NetworkInfluence requires.
+	 *
+	 * @param fileName
+	 *            The file to write the graph to
+	 * @param numVertices
+	 *            The number of vertices in the graph; at least 2
+	 * @param avgDegree
+	 *            The average out-degree of a vertex; at least 1
+	 * @param seed
+	 *            Seed of the random generator, so runs are repeatable
+	 * @throws IOException
+	 */
+	public static void writePowerLawGraph(String fileName, int numVertices, int avgDegree, long seed)
+			throws IOException {
+		if (numVertices < 2 || avgDegree < 1) {
+			throw new IllegalArgumentException("Need at least 2 vertices and degree 1: " + numVertices + ", " + avgDegree);
+		}
+
+		Random random = new Random(seed);
+		PrintWriter writer = new PrintWriter(fileName, "UTF-8");
+		writer.println(numVertices);
+
+		HashSet<Integer> targets = new HashSet<Integer>();
+		for (int u = 0; u < numVertices; u++) {
+			// pick the out-degree uniformly between 1 and 2 * avgDegree - 1
+			int degree = 1 + random.nextInt(2 * avgDegree - 1);
+			degree = Math.min(degree, numVertices - 1);
+
+			targets.clear();
+			while (targets.size() < degree) {
+				int v = skewedTarget(random, numVertices);
+				if (v != u) {
+					targets.add(v);
+				}
+			}
+			for (int v : targets) {
+				writer.println(vertexName(u) + " " + vertexName(v));
+			}
+		}
+		writer.close();
+	}
+
+	/**
+	 * Writes a graph made of numChains directed paths of chainLength vertices each.
+	 * Every other chain is closed into a cycle, so the graph mixes one large
+	 * component per cycle with many single-vertex components, and its depth-first
+	 * searches are chainLength deep.
+	 *
+	 * @param fileName
+	 *            The file to write the graph to
+	 * @param numChains
+	 *            The number of chains
+	 * @param chainLength
+	 *            The number of vertices in each chain; at least 2
+	 * @throws IOException
+	 */
+	public static void writeChainGraph(String fileName, int numChains, int chainLength) throws IOException {
+		PrintWriter writer = new PrintWriter(fileName, "UTF-8");
+		writer.println(numChains * chainLength);
+		for (int c = 0; c < numChains; c++) {
+			int first = c * chainLength;
+			for (int i = 0; i < chainLength - 1; i++) {
+				writer.println(vertexName(first + i) + " " + vertexName(first + i + 1));
+			}
+			if (c % 2 == 1) {
+				writer.println(vertexName(first + chainLength - 1) + " " + vertexName(first));
+			}
+		}
+		writer.close();
+	}
+
+	/**
+	 * Picks a vertex index, favouring low indices
+	 */
+	static int skewedTarget(Random random, int numVertices) {
+		int v = (int) (numVertices * Math.pow(random.nextDouble(), SKEW));
+		return Math.min(v, numVertices - 1);
+	}
+
+	/**
+	 * Writes a graph with the sizes given on the command line: output file,
+	 * number of vertices, average degree and optional seed.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: GraphGenerator <file> <vertices> <avgDegree> [seed]");
+			return;
+		}
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 311;
+		writePowerLawGraph(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), seed);
+	}
+}
@@ -0,0 +1,257 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * GraphWriter class
+ *
+ * Collects pages and their links and writes the graph they form in the format
+ * NetworkInfluence reads: the number of vertices on the first line, followed by
+ * one "/wiki/from /wiki/to" line per edge. Only links between two collected
+ * pages become edges. Each edge is written once, and links from a page to
+ * itself are left out.
+ *
+ * Titles are numbered as they are first seen and links are stored as those
+ * numbers. Writing then takes time proportional to the number of links, rather
+ * than comparing every pair of pages. Redirects can be registered, so links to
+ * a redirect become edges to the page it points to.
+ *
+ * The vertex count on the first line counts the pages that appear in at least
+ * one edge, since NetworkInfluence only learns about vertices from edges.
+ *
+ * Threads adding many pages at once should each fill a GraphWriter of their
+ * own and merge it with addAll, since addPage holds the lock while it numbers
+ * every link.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class GraphWriter {
+
+	// the number of every title seen so far, as a page or as a link
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	// the title of every number
+	private final ArrayList<String> titles = new ArrayList<String>();
+	// whether each title is a collected page
+	private boolean[] isPage = new boolean[1024];
+	// the title each title redirects to, or -1
+	private int[] redirectTo = new int[1024];
+
+	// the collected pages in order, and where each one's links start in targets
+	private int[] pages = new int[1024];
+	private int[] offsets = new int[1025];
+	private int numPages;
+	// the distinct links of every page, as title numbers
+	private int[] targets = new int[4096];
+	private int numTargets;
+
+	// page number that last added each title to its links, to skip duplicates
+	private int[] lastLinkedFrom = new int[1024];
+
+	/**
+	 * Constructs a new, empty GraphWriter
+	 */
+	public GraphWriter() {
+		Arrays.fill(redirectTo, -1);
+	}
+
+	/**
+	 * Adds a page and its links. A page added more than once keeps the links it
+	 * was first added with.
+	 *
+	 * @param title
+	 *            The title of the page, without "/wiki/"
+	 * @param links
+	 *            The links on the page, without "/wiki/"
+	 */
+	public synchronized void addPage(String title, List<String> links) {
+		int page = id(title);
+		if (isPage[page]) {
+			return;
+		}
+		isPage[page] = true;
+
+		if (numPages == pages.length) {
+			pages = Arrays.copyOf(pages, 2 * numPages);
+			offsets = Arrays.copyOf(offsets, 2 * numPages + 1);
+		}
+		pages[numPages] = page;
+		// pages are numbered from 1 here, so 0 in lastLinkedFrom means never
+		int stamp = numPages + 1;
+		for (int i = 0; i < links.size(); i++) {
+			int target = id(links.get(i));
+			if (target != page && lastLinkedFrom[target] != stamp) {
+				lastLinkedFrom[target] = stamp;
+				if (numTargets == targets.length) {
+					targets = Arrays.copyOf(targets, 2 * numTargets);
+				}
+				targets[numTargets++] = target;
+			}
+		}
+		numPages++;
+		offsets[numPages] = numTargets;
+	}
+
+	/**
+	 * Adds the pages and redirects of another GraphWriter, as if they had been
+	 * added here. Each of its titles is looked up once, however many links name
+	 * it. The other GraphWriter must not change while this runs.
+	 *
+	 * @param other
+	 *            The GraphWriter whose pages are added
+	 */
+	public synchronized void addAll(GraphWriter other) {
+		// this graph's number for each of the other's titles
+		int[] map = new int[other.titles.size()];
+		for (int t = 0; t < map.length; t++) {
+			map[t] = id(other.titles.get(t));
+		}
+		for (int t = 0; t < map.length; t++) {
+			if (other.redirectTo[t] >= 0 && map[t] != map[other.redirectTo[t]]) {
+				redirectTo[map[t]] = map[other.redirectTo[t]];
+			}
+		}
+
+		if (numTargets + other.numTargets > targets.length) {
+			targets = Arrays.copyOf(targets, Math.max(2 * targets.length, numTargets + other.numTargets));
+		}
+		for (int p = 0; p < other.numPages; p++) {
+			int page = map[other.pages[p]];
+			if (isPage[page]) {
+				continue;
+			}
+			isPage[page] = true;
+
+			if (numPages == pages.length) {
+				pages = Arrays.copyOf(pages, 2 * numPages);
+				offsets = Arrays.copyOf(offsets, 2 * numPages + 1);
+			}
+			pages[numPages] = page;
+			// the other's links are already distinct and never the page itself
+			for (int i = other.offsets[p]; i < other.offsets[p + 1]; i++) {
+				targets[numTargets++] = map[other.targets[i]];
+			}
+			numPages++;
+			offsets[numPages] = numTargets;
+		}
+	}
+
+	/**
+	 * Registers a redirect, so links to from become edges to to. Only one level
+	 * of redirects is followed.
+	 *
+	 * @param from
+	 *            The title of the redirect, without "/wiki/"
+	 * @param to
+	 *            The title it redirects to, without "/wiki/"
+	 */
+	public synchronized void addRedirect(String from, String to) {
+		int f = id(from);
+		int t = id(to);
+		if (f != t) {
+			redirectTo[f] = t;
+		}
+	}
+
+	/**
+	 * @return The number of pages added
+	 */
+	public synchronized int getPageCount() {
+		return numPages;
+	}
+
+	/**
+	 * Writes the graph of the pages added so far to the given file
+	 *
+	 * @param fileName
+	 *            The file the graph is written to
+	 * @return The number of edges written
+	 * @throws IOException
+	 */
+	public synchronized long write(String fileName) throws IOException {
+		int numTitles = titles.size();
+		// whether each title appears in an edge, and how many do
+		boolean[] inGraph = new boolean[numTitles];
+		int numVertices = 0;
+		long numEdges = 0;
+		// the page that last had an edge to each title, as links to two redirects
+		// of the same page would otherwise repeat an edge; pages are stamped p + 1
+		// while counting and -(p + 1) while writing
+		int[] linked = new int[numTitles];
+		for (int p = 0; p < numPages; p++) {
+			for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+				int target = resolve(pages[p], targets[i]);
+				if (target >= 0 && linked[target] != p + 1) {
+					linked[target] = p + 1;
+					numEdges++;
+					if (!inGraph[pages[p]]) {
+						inGraph[pages[p]] = true;
+						numVertices++;
+					}
+					if (!inGraph[target]) {
+						inGraph[target] = true;
+						numVertices++;
+					}
+				}
+			}
+		}
+
+		String newline = System.getProperty("line.separator");
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 16)) {
+			writer.write(numVertices + newline);
+			for (int p = 0; p < numPages; p++) {
+				String from = "/wiki/" + titles.get(pages[p]) + " /wiki/";
+				for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+					int target = resolve(pages[p], targets[i]);
+					if (target >= 0 && linked[target] != -(p + 1)) {
+						linked[target] = -(p + 1);
+						writer.write(from);
+						writer.write(titles.get(target));
+						writer.write(newline);
+					}
+				}
+			}
+		}
+		return numEdges;
+	}
+
+	/**
+	 * Returns the page a link leads to after following a redirect, or -1 if it
+	 * doesn't lead to another collected page
+	 */
+	private int resolve(int page, int target) {
+		if (!isPage[target] && redirectTo[target] >= 0) {
+			target = redirectTo[target];
+		}
+		return isPage[target] && target != page ? target : -1;
+	}
+
+	/**
+	 * Returns the number of a title, numbering it if it is new
+	 */
+	private int id(String title) {
+		Integer id = ids.get(title);
+		if (id != null) {
+			return id;
+		}
+		int next = titles.size();
+		ids.put(title, next);
+		titles.add(title);
+		if (next == isPage.length) {
+			isPage = Arrays.copyOf(isPage, 2 * next);
+			int[] grown = Arrays.copyOf(redirectTo, 2 * next);
+			Arrays.fill(grown, next, grown.length, -1);
+			redirectTo = grown;
+			lastLinkedFrom = Arrays.copyOf(lastLinkedFrom, 2 * next);
+		}
+		return next;
+	}
+}
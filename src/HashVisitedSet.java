@@ -0,0 +1,31 @@
+import java.util.HashSet;
+
+/**
+ * HashVisitedSet class
+ * 
+ * Exact VisitedSet keeping every title in a HashSet. This is what the crawler
+ * uses by default.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class HashVisitedSet implements VisitedSet {
+
+	// the titles themselves
+	private HashSet<String> titles = new HashSet<String>();
+
+	@Override
+	public boolean add(String title) {
+		return titles.add(title);
+	}
+
+	@Override
+	public boolean contains(String title) {
+		return titles.contains(title);
+	}
+
+	@Override
+	public long size() {
+		return titles.size();
+	}
+}
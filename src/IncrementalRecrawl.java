@@ -0,0 +1,342 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Scanner;
+
+/**
+ * IncrementalRecrawl class
+ *
+ * Refreshes the graph of an earlier crawl without crawling it again from the
+ * seed. Every page of the earlier graph is revalidated with a conditional
+ * request, using the ETag and Last-Modified validators stored in a revision
+ * file at the last refresh. Only pages that changed are downloaded and parsed
+ * again; the links of unchanged pages come from the revision file. A page
+ * that no longer exists or no longer contains all the topics is dropped with
+ * all its edges. A page whose revalidation fails, because the request failed,
+ * timed out or got an unexpected status, is kept as it was and counted, so one
+ * bad answer doesn't abort the refresh.
+ *
+ * The result is the GraphDelta between the old and the new graph, which
+ * NetworkInfluence.applyDelta can apply to a loaded graph, plus the new graph
+ * file and the updated revision file. New pages are not discovered; that still
+ * takes a full crawl.
+ *
+ * A revision file has one line per page: its title, its ETag, its
+ * Last-Modified date ("-" for either if the server sent none) and its links,
+ * separated by tabs. Without a revision file, every page is fetched once, and
+ * the revision file is created. The pages are then taken from the edges of the
+ * graph file, which doesn't name a page without any edges, so such pages are
+ * left out of the refreshed graph; once a revision file exists, every page of
+ * the graph is in it.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class IncrementalRecrawl {
+
+	// the base URL prefixed to every page
+	private final String baseUrl;
+	private final ArrayList<String> topics;
+	// the graph of the earlier crawl, and the revisions of its pages
+	private final String graphFile;
+	private final String revisionFile;
+	// the fetcher pages are revalidated through
+	private PageFetcher fetcher = PageFetcher.shared();
+
+	// politeness policy, as in WikiCrawler
+	private PolitenessThrottle throttle = new PolitenessThrottle(25, 3000, null);
+
+	// what the last refresh did
+	private int pagesChecked;
+	private int pagesChanged;
+	private int pagesDropped;
+	private int pagesFailed;
+
+	/**
+	 * Constructs a new IncrementalRecrawl of the graph in graphFile
+	 *
+	 * @param baseUrl
+	 *            The base URL prefixed to every "/wiki/xxx" link
+	 * @param topics
+	 *            The keywords every page in the graph contains
+	 * @param graphFile
+	 *            The graph written by the earlier crawl or refresh
+	 * @param revisionFile
+	 *            The revision file written by the last refresh; it need not exist
+	 */
+	public IncrementalRecrawl(String baseUrl, ArrayList<String> topics, String graphFile, String revisionFile) {
+		this.baseUrl = baseUrl;
+		this.topics = topics;
+		this.graphFile = graphFile;
+		this.revisionFile = revisionFile;
+	}
+
+	/**
+	 * Changes the politeness policy, as in WikiCrawler.setPoliteness
+	 *
+	 * @param requestsPerPause
+	 *            The number of requests made between pauses, or 0 for no pauses
+	 * @param pauseMillis
+	 *            The length of each pause
+	 */
+	public void setPoliteness(int requestsPerPause, long pauseMillis) {
+		throttle = new PolitenessThrottle(requestsPerPause, pauseMillis, null);
+	}
+
+	/**
+	 * Makes the refresh fetch pages through the given fetcher instead of the
+	 * shared one
+	 *
+	 * @param fetcher
+	 *            The fetcher
+	 */
+	public void setFetcher(PageFetcher fetcher) {
+		this.fetcher = fetcher;
+	}
+
+	/**
+	 * Revalidates every page of the graph, writes the new graph to newGraphFile
+	 * and the new revisions over the revision file
+	 *
+	 * @param newGraphFile
+	 *            The file the refreshed graph is written to; may be the old one
+	 * @return The edges added and removed since the earlier graph
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public GraphDelta recrawl(String newGraphFile) throws IOException, InterruptedException {
+		pagesChecked = 0;
+		pagesChanged = 0;
+		pagesDropped = 0;
+		pagesFailed = 0;
+
+		// the old edges by page; pages of the revision file may have no edges
+		LinkedHashMap<String, LinkedHashSet<String>> oldEdges = readGraph(graphFile);
+		HashMap<String, Revision> oldRevisions = readRevisions(revisionFile);
+		for (String title : oldRevisions.keySet()) {
+			if (!oldEdges.containsKey(title)) {
+				oldEdges.put(title, new LinkedHashSet<String>());
+			}
+		}
+
+		LinkedHashMap<String, Revision> revisions = new LinkedHashMap<String, Revision>();
+		for (String title : oldEdges.keySet()) {
+			Revision known = oldRevisions.get(title);
+			throttle.acquire();
+			pagesChecked++;
+			Revalidation answer;
+			ArrayList<String> links = null;
+			try {
+				answer = fetcher.openIfModified(baseUrl + "/wiki/" + title,
+						known == null ? null : new Revalidation(false, null, known.etag, known.lastModified));
+				if (answer.isModified() && answer.getBody() != null) {
+					try (InputStream body = answer.getBody()) {
+						links = PageScanner.scanLinks(body, topics);
+					}
+				}
+			} catch (IOException e) {
+				// keep the page as it was; without validators it is fetched in full
+				// next time
+				pagesFailed++;
+				revisions.put(title, known != null ? known
+						: new Revision(null, null, new ArrayList<String>(oldEdges.get(title))));
+				continue;
+			}
+
+			if (!answer.isModified()) {
+				revisions.put(title, known);
+				continue;
+			}
+			pagesChanged++;
+			if (links == null) {
+				// gone, or no longer about the topics
+				pagesDropped++;
+				continue;
+			}
+			revisions.put(title, new Revision(answer.getEtag(), answer.getLastModified(), links));
+		}
+
+		// the edges between the pages that are left, and how they differ from before
+		GraphDelta delta = new GraphDelta();
+		GraphWriter graph = new GraphWriter();
+		for (String title : revisions.keySet()) {
+			ArrayList<String> links = revisions.get(title).links;
+			graph.addPage(title, links);
+			LinkedHashSet<String> old = oldEdges.get(title);
+			LinkedHashSet<String> current = new LinkedHashSet<String>();
+			for (String link : links) {
+				if (!link.equals(title) && revisions.containsKey(link) && current.add(link) && !old.contains(link)) {
+					delta.addEdge("/wiki/" + title, "/wiki/" + link);
+				}
+			}
+			for (String link : old) {
+				if (!current.contains(link)) {
+					delta.removeEdge("/wiki/" + title, "/wiki/" + link);
+				}
+			}
+		}
+		for (String title : oldEdges.keySet()) {
+			if (!revisions.containsKey(title)) {
+				for (String link : oldEdges.get(title)) {
+					delta.removeEdge("/wiki/" + title, "/wiki/" + link);
+				}
+			}
+		}
+
+		graph.write(newGraphFile);
+		writeRevisions(revisionFile, revisions);
+		return delta;
+	}
+
+	/**
+	 * @return The number of pages revalidated by the last refresh
+	 */
+	public int getPagesChecked() {
+		return pagesChecked;
+	}
+
+	/**
+	 * @return The number of pages that changed since the refresh before, or were
+	 *         fetched for the first time
+	 */
+	public int getPagesChanged() {
+		return pagesChanged;
+	}
+
+	/**
+	 * @return The number of pages dropped from the graph by the last refresh
+	 */
+	public int getPagesDropped() {
+		return pagesDropped;
+	}
+
+	/**
+	 * @return The number of pages the last refresh couldn't revalidate, and kept
+	 *         unchanged
+	 */
+	public int getPagesFailed() {
+		return pagesFailed;
+	}
+
+	/**
+	 * Reads the edges of a graph file by page title, without "/wiki/"
+	 */
+	private static LinkedHashMap<String, LinkedHashSet<String>> readGraph(String fileName)
+			throws FileNotFoundException {
+		LinkedHashMap<String, LinkedHashSet<String>> edges = new LinkedHashMap<String, LinkedHashSet<String>>();
+		Scanner s = new Scanner(new File(fileName), "UTF-8");
+		// the vertex count isn't needed
+		if (s.hasNextLine()) {
+			s.nextLine();
+		}
+		while (s.hasNextLine()) {
+			String[] components = s.nextLine().split("\\s+");
+			if (components.length != 2) {
+				continue;
+			}
+			String from = stripPrefix(components[0]);
+			String to = stripPrefix(components[1]);
+			if (!edges.containsKey(from)) {
+				edges.put(from, new LinkedHashSet<String>());
+			}
+			if (!edges.containsKey(to)) {
+				edges.put(to, new LinkedHashSet<String>());
+			}
+			edges.get(from).add(to);
+		}
+		s.close();
+		return edges;
+	}
+
+	private static String stripPrefix(String vertex) {
+		return vertex.startsWith("/wiki/") ? vertex.substring("/wiki/".length()) : vertex;
+	}
+
+	/**
+	 * Reads a revision file, or returns no revisions if it doesn't exist
+	 */
+	private static HashMap<String, Revision> readRevisions(String fileName) throws FileNotFoundException {
+		HashMap<String, Revision> revisions = new HashMap<String, Revision>();
+		File file = new File(fileName);
+		if (!file.exists()) {
+			return revisions;
+		}
+		Scanner s = new Scanner(file, "UTF-8");
+		while (s.hasNextLine()) {
+			String[] fields = s.nextLine().split("\t");
+			if (fields.length < 3) {
+				continue;
+			}
+			ArrayList<String> links = new ArrayList<String>(fields.length - 3);
+			for (int i = 3; i < fields.length; i++) {
+				links.add(fields[i]);
+			}
+			revisions.put(fields[0], new Revision(fields[1].equals("-") ? null : fields[1],
+					fields[2].equals("-") ? null : fields[2], links));
+		}
+		s.close();
+		return revisions;
+	}
+
+	/**
+	 * Writes a revision file
+	 */
+	private static void writeRevisions(String fileName, LinkedHashMap<String, Revision> revisions)
+			throws IOException {
+		PrintWriter writer = new PrintWriter(fileName, "UTF-8");
+		for (String title : revisions.keySet()) {
+			Revision revision = revisions.get(title);
+			StringBuilder line = new StringBuilder(title);
+			line.append('\t').append(revision.etag == null ? "-" : revision.etag);
+			line.append('\t').append(revision.lastModified == null ? "-" : revision.lastModified);
+			for (String link : revision.links) {
+				line.append('\t').append(link);
+			}
+			writer.println(line);
+		}
+		writer.close();
+	}
+
+	/**
+	 * Refreshes a graph: base URL, graph file, revision file, delta file and the
+	 * topics. The graph file is overwritten with the new graph.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.out.println("Usage: IncrementalRecrawl baseUrl graph revisions delta [topics...]");
+			return;
+		}
+		ArrayList<String> topics = new ArrayList<String>();
+		for (int i = 4; i < args.length; i++) {
+			topics.add(args[i]);
+		}
+		IncrementalRecrawl recrawl = new IncrementalRecrawl(args[0], topics, args[1], args[2]);
+		GraphDelta delta = recrawl.recrawl(args[1]);
+		delta.write(args[3]);
+		System.out.printf("%d pages checked, %d changed, %d dropped, %d failed, delta %s%n",
+				recrawl.getPagesChecked(), recrawl.getPagesChanged(), recrawl.getPagesDropped(),
+				recrawl.getPagesFailed(), delta);
+	}
+
+	/**
+	 * The validators and links of a page when it was last fetched
+	 */
+	private static class Revision {
+
+		private final String etag;
+		private final String lastModified;
+		private final ArrayList<String> links;
+
+		private Revision(String etag, String lastModified, ArrayList<String> links) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.links = links;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram class
+ *
+ * A fixed-size, lock-free histogram of latencies. Values are kept in
+ * log-linear buckets: each power of two is split into 16 sub-buckets, so
+ * percentiles are accurate to within about 6% over the whole range from one
+ * microsecond to several hours, using a few kilobytes of memory.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class LatencyHistogram {
+
+	// sub-buckets per power of two, as a power of two
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	// number of powers of two covered; values are recorded in microseconds
+	private static final int MAGNITUDES = 40;
+
+	// count of every bucket
+	private final AtomicLongArray counts = new AtomicLongArray(MAGNITUDES * SUB_BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records one latency
+	 *
+	 * @param nanos
+	 *            The latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos / 1000));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+
+		long max;
+		while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+			// retry until our value or a larger one is stored
+		}
+	}
+
+	/**
+	 * @return The number of recorded latencies
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return The mean latency in nanoseconds, or 0 if nothing was recorded
+	 */
+	public double getMeanNanos() {
+		long c = count.get();
+		return c == 0 ? 0 : (double) totalNanos.get() / c;
+	}
+
+	/**
+	 * @return The largest recorded latency in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Returns the latency below which the given fraction of the recorded
+	 * latencies fall
+	 *
+	 * @param quantile
+	 *            The fraction, between 0 and 1, for example 0.99 for p99
+	 * @return The latency in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long percentileNanos(double quantile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * total);
+		long seen = 0;
+		for (int b = 0; b < counts.length(); b++) {
+			seen += counts.get(b);
+			if (seen >= Math.max(1, rank)) {
+				return Math.min(upperBound(b) * 1000, maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	/**
+	 * @see #percentileNanos(double)
+	 */
+	public double percentileMillis(double quantile) {
+		return percentileNanos(quantile) / 1000000.0;
+	}
+
+	/**
+	 * Forgets every recorded latency
+	 */
+	public void reset() {
+		for (int b = 0; b < counts.length(); b++) {
+			counts.set(b, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.3fms p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms", getCount(),
+				getMeanNanos() / 1000000.0, percentileMillis(0.50), percentileMillis(0.95), percentileMillis(0.99),
+				getMaxNanos() / 1000000.0);
+	}
+
+	/**
+	 * Returns the bucket a value in microseconds falls into
+	 */
+	private static int bucket(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS + 1;
+		if (magnitude >= MAGNITUDES) {
+			return MAGNITUDES * SUB_BUCKETS - 1;
+		}
+		int sub = (int) (micros >>> (magnitude - 1)) - SUB_BUCKETS;
+		return magnitude * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the largest value in microseconds that falls into a bucket
+	 */
+	private static long upperBound(int bucket) {
+		int magnitude = bucket / SUB_BUCKETS;
+		int sub = bucket % SUB_BUCKETS;
+		if (magnitude == 0) {
+			return sub;
+		}
+		return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - 1)) - 1;
+	}
+}
@@ -0,0 +1,208 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * LinkAnalysis class
+ *
+ * Implements the PageRank and HITS (hub and authority) link analysis
+ * algorithms over a CsrGraph. Both are power iterations over primitive double
+ * arrays. Each iteration pulls the new score of a vertex from its incoming
+ * edges, so every vertex is written by exactly one thread and the vertices can
+ * be split across cores without any locking.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+class LinkAnalysis {
+
+	/**
+	 * Probability that the random surfer follows a link rather than jumping
+	 */
+	static final double DEFAULT_DAMPING = 0.85;
+
+	/**
+	 * Iteration stops once the L1 change of the scores falls below this
+	 */
+	static final double DEFAULT_TOLERANCE = 1e-9;
+
+	/**
+	 * Iteration stops after this many rounds even if it hasn't converged
+	 */
+	static final int DEFAULT_MAX_ITERATIONS = 100;
+
+	/**
+	 * Number of vertices handled by one parallel task; large enough to amortize
+	 * the task overhead, small enough to balance skewed in-degrees
+	 */
+	private static final int CHUNK = 4096;
+
+	/**
+	 * Computes the PageRank of every vertex. Rank held by vertices without
+	 * out-edges is spread evenly over all vertices.
+	 *
+	 * @param g
+	 *            The graph
+	 * @param damping
+	 *            The damping factor, between 0 and 1
+	 * @param tolerance
+	 *            The L1 change below which the iteration has converged
+	 * @param maxIterations
+	 *            The maximum number of iterations
+	 * @return The PageRank of every vertex; the ranks sum to 1
+	 */
+	static double[] pageRank(final CsrGraph g, final double damping, double tolerance, int maxIterations) {
+		final int n = g.vertices;
+		if (n == 0) {
+			return new double[0];
+		}
+
+		final double[] rank = new double[n];
+		final double[] next = new double[n];
+		// rank[u] / outDegree(u), the amount u pushes along each out-edge
+		final double[] share = new double[n];
+
+		Arrays.fill(rank, 1.0 / n);
+
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			// precompute each vertex's share, collecting the rank of dangling vertices
+			double dangling = sumChunks(n, (from, to) -> {
+				double lost = 0;
+				for (int u = from; u < to; u++) {
+					int degree = g.outDegree(u);
+					if (degree == 0) {
+						share[u] = 0;
+						lost += rank[u];
+					} else {
+						share[u] = rank[u] / degree;
+					}
+				}
+				return lost;
+			});
+
+			// pull the new rank of every vertex from its predecessors
+			final double base = (1.0 - damping) / n + damping * dangling / n;
+			double change = sumChunks(n, (from, to) -> {
+				double diff = 0;
+				for (int v = from; v < to; v++) {
+					double sum = 0;
+					for (int i = g.inOffsets[v]; i < g.inOffsets[v + 1]; i++) {
+						sum += share[g.inSources[i]];
+					}
+					next[v] = base + damping * sum;
+					diff += Math.abs(next[v] - rank[v]);
+				}
+				return diff;
+			});
+
+			System.arraycopy(next, 0, rank, 0, n);
+			if (change < tolerance) {
+				break;
+			}
+		}
+
+		return rank;
+	}
+
+	/**
+	 * Computes the HITS hub and authority scores of every vertex. A good
+	 * authority is linked to by many good hubs, and a good hub links to many good
+	 * authorities.
+	 *
+	 * @param g
+	 *            The graph
+	 * @param tolerance
+	 *            The L1 change below which the iteration has converged
+	 * @param maxIterations
+	 *            The maximum number of iterations
+	 * @return An array of two arrays: the hub scores and the authority scores,
+	 *         each normalized to unit length
+	 */
+	static double[][] hits(final CsrGraph g, double tolerance, int maxIterations) {
+		final int n = g.vertices;
+		final double[] hub = new double[n];
+		final double[] authority = new double[n];
+		final double[] nextHub = new double[n];
+		final double[] nextAuthority = new double[n];
+
+		Arrays.fill(hub, 1.0 / Math.sqrt(Math.max(1, n)));
+		Arrays.fill(authority, 1.0 / Math.sqrt(Math.max(1, n)));
+
+		for (int iteration = 0; iteration < maxIterations && n > 0; iteration++) {
+			// authorities pull from the hubs linking to them
+			double authorityNorm = Math.sqrt(sumChunks(n, (from, to) -> {
+				double squares = 0;
+				for (int v = from; v < to; v++) {
+					double sum = 0;
+					for (int i = g.inOffsets[v]; i < g.inOffsets[v + 1]; i++) {
+						sum += hub[g.inSources[i]];
+					}
+					nextAuthority[v] = sum;
+					squares += sum * sum;
+				}
+				return squares;
+			}));
+
+			// hubs pull from the authorities they link to
+			double hubNorm = Math.sqrt(sumChunks(n, (from, to) -> {
+				double squares = 0;
+				for (int u = from; u < to; u++) {
+					double sum = 0;
+					for (int i = g.outOffsets[u]; i < g.outOffsets[u + 1]; i++) {
+						sum += nextAuthority[g.outTargets[i]];
+					}
+					nextHub[u] = sum;
+					squares += sum * sum;
+				}
+				return squares;
+			}));
+
+			// a graph without edges has no hubs or authorities
+			if (authorityNorm == 0 || hubNorm == 0) {
+				Arrays.fill(hub, 0);
+				Arrays.fill(authority, 0);
+				break;
+			}
+
+			// normalize, measuring how far the scores moved
+			final double aScale = 1.0 / authorityNorm;
+			final double hScale = 1.0 / hubNorm;
+			double change = sumChunks(n, (from, to) -> {
+				double diff = 0;
+				for (int v = from; v < to; v++) {
+					double a = nextAuthority[v] * aScale;
+					double h = nextHub[v] * hScale;
+					diff += Math.abs(a - authority[v]) + Math.abs(h - hub[v]);
+					authority[v] = a;
+					hub[v] = h;
+				}
+				return diff;
+			});
+
+			if (change < tolerance) {
+				break;
+			}
+		}
+
+		return new double[][] { hub, authority };
+	}
+
+	/**
+	 * Splits the vertex range [0, n) into chunks, runs body on each chunk in
+	 * parallel and returns the sum of the results
+	 */
+	private static double sumChunks(int n, final ChunkBody body) {
+		final int chunks = (n + CHUNK - 1) / CHUNK;
+		if (chunks == 1) {
+			return body.run(0, n);
+		}
+		return IntStream.range(0, chunks).parallel()
+				.mapToDouble(c -> body.run(c * CHUNK, Math.min(n, (c + 1) * CHUNK))).sum();
+	}
+
+	/**
+	 * Work done on one chunk of vertices
+	 */
+	private interface ChunkBody {
+		double run(int from, int to);
+	}
+}
@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+
+/**
+ * ListAdjacency class
+ *
+ * An AdjacencyStore view of the adjacency lists NetworkInfluence keeps while
+ * its graph may change. The view reads the lists themselves, so it sees every
+ * change made after it was created, except that maxOutDegree() is fixed when
+ * the view is created.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+class ListAdjacency implements AdjacencyStore {
+
+	private final ArrayList<ArrayList<Integer>> adjList;
+	private final int maxOutDegree;
+
+	/**
+	 * Constructs a view of the given lists
+	 *
+	 * @param adjList
+	 *            The adjacency list; entry v holds the successors of vertex v
+	 */
+	ListAdjacency(ArrayList<ArrayList<Integer>> adjList) {
+		this.adjList = adjList;
+		int max = 0;
+		for (int v = 0; v < adjList.size(); v++) {
+			max = Math.max(max, adjList.get(v).size());
+		}
+		maxOutDegree = max;
+	}
+
+	@Override
+	public int vertexCount() {
+		return adjList.size();
+	}
+
+	@Override
+	public long edgeCount() {
+		long edges = 0;
+		for (int v = 0; v < adjList.size(); v++) {
+			edges += adjList.get(v).size();
+		}
+		return edges;
+	}
+
+	@Override
+	public int outDegree(int v) {
+		return adjList.get(v).size();
+	}
+
+	@Override
+	public int maxOutDegree() {
+		return maxOutDegree;
+	}
+
+	@Override
+	public int successors(int v, int[] into) {
+		ArrayList<Integer> successors = adjList.get(v);
+		int count = successors.size();
+		for (int i = 0; i < count; i++) {
+			into[i] = successors.get(i);
+		}
+		return count;
+	}
+}
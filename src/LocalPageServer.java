@@ -0,0 +1,291 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * LocalPageServer class
+ *
+ * A small HTTP server standing in for Wikipedia in tests and benchmarks. It
+ * serves pages under "/wiki/xxx", either from memory or from a directory of
+ * saved pages (named "xxx" or "xxx.html"), and gzips them for clients that
+ * ask for it. Every page has an ETag derived from its content, and conditional
+ * requests for an unchanged page are answered with 304 Not Modified. It only
+ * listens on the loopback interface.
+ *
+ * The JDK's built-in server only speaks HTTP/1.1, so clients talking to it
+ * fall back from HTTP/2 to pooled keep-alive connections.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class LocalPageServer {
+
+	// the pages served from memory, keyed by title
+	private final Map<String, byte[]> pages;
+	// directory of saved pages, or null if serving from memory
+	private final File directory;
+	// gzipped copies of the pages, made on first request
+	private final Map<String, byte[]> gzipped = new ConcurrentHashMap<String, byte[]>();
+
+	// number of requests served, including misses
+	private final AtomicLong requests = new AtomicLong();
+	// number of body bytes written
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	// injected latency: every response is delayed by baseLatencyMillis, and a
+	// fraction slowFraction of them by slowLatencyMillis instead
+	private volatile long baseLatencyMillis;
+	private volatile double slowFraction;
+	private volatile long slowLatencyMillis;
+	// pause halfway through every body
+	private volatile long stallMillis;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Constructs a server for the given in-memory pages
+	 *
+	 * @param pages
+	 *            The HTML of every page, keyed by title
+	 */
+	public LocalPageServer(Map<String, String> pages) {
+		this.pages = new ConcurrentHashMap<String, byte[]>();
+		for (Map.Entry<String, String> page : pages.entrySet()) {
+			this.pages.put(page.getKey(), page.getValue().getBytes(StandardCharsets.UTF_8));
+		}
+		this.directory = null;
+	}
+
+	/**
+	 * Constructs a server for the saved pages in the given directory
+	 *
+	 * @param directory
+	 *            The directory holding one file per page
+	 */
+	public LocalPageServer(File directory) {
+		this.pages = new ConcurrentHashMap<String, byte[]>();
+		this.directory = directory;
+	}
+
+	/**
+	 * Starts the server on a free port of the loopback interface
+	 *
+	 * @param threads
+	 *            The number of threads answering requests
+	 * @throws IOException
+	 */
+	public void start(int threads) throws IOException {
+		// without TCP_NODELAY, small responses on kept-alive connections wait out
+		// the client's delayed ACK, adding about 40 ms to every request
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.createContext("/wiki/", exchange -> {
+			try {
+				handle(exchange);
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * Stops the server
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return The base URL of the server, to be used in place of
+	 *         WikiCrawler.BASE_URL
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Makes the server answer more slowly, to test how clients cope with latency
+	 * and its tail
+	 *
+	 * @param baseLatencyMillis
+	 *            The delay added to every response
+	 * @param slowFraction
+	 *            The fraction of responses, between 0 and 1, that are slow
+	 * @param slowLatencyMillis
+	 *            The delay added to the slow responses instead
+	 */
+	public void setLatency(long baseLatencyMillis, double slowFraction, long slowLatencyMillis) {
+		this.baseLatencyMillis = baseLatencyMillis;
+		this.slowFraction = slowFraction;
+		this.slowLatencyMillis = slowLatencyMillis;
+	}
+
+	/**
+	 * Makes the server stop halfway through every body it sends, to test how
+	 * clients cope with a server that stalls after the headers
+	 *
+	 * @param stallMillis
+	 *            The length of the pause, or 0 for none
+	 */
+	public void setStall(long stallMillis) {
+		this.stallMillis = stallMillis;
+	}
+
+	/**
+	 * Adds or replaces an in-memory page, for example to test a recrawl
+	 *
+	 * @param title
+	 *            The title of the page
+	 * @param html
+	 *            Its new HTML
+	 */
+	public void putPage(String title, String html) {
+		pages.put(title, html.getBytes(StandardCharsets.UTF_8));
+		gzipped.remove(title);
+	}
+
+	/**
+	 * Removes an in-memory page, so it is answered with 404
+	 *
+	 * @param title
+	 *            The title of the page
+	 */
+	public void removePage(String title) {
+		pages.remove(title);
+		gzipped.remove(title);
+	}
+
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/**
+	 * Answers one request
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		delay();
+		String title = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring("/wiki/".length()),
+				"UTF-8");
+
+		byte[] body = page(title);
+		if (body == null) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+
+		String etag = etag(body);
+		exchange.getResponseHeaders().set("ETag", etag);
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			byte[] compressed = gzipped.get(title);
+			if (compressed == null) {
+				compressed = gzip(body);
+				gzipped.put(title, compressed);
+			}
+			body = compressed;
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		long stall = stallMillis;
+		if (stall > 0) {
+			out.write(body, 0, body.length / 2);
+			out.flush();
+			sleep(stall);
+			out.write(body, body.length / 2, body.length - body.length / 2);
+		} else {
+			out.write(body);
+		}
+		out.close();
+		bytesSent.addAndGet(body.length);
+	}
+
+	/**
+	 * Returns the body of the given page, or null if there is no such page
+	 */
+	private byte[] page(String title) throws IOException {
+		byte[] body = pages.get(title);
+		if (body != null || directory == null || title.contains("/") || title.contains("..")) {
+			return body;
+		}
+
+		File file = new File(directory, title);
+		if (!file.isFile()) {
+			file = new File(directory, title + ".html");
+		}
+		if (!file.isFile()) {
+			return null;
+		}
+		body = Files.readAllBytes(file.toPath());
+		pages.put(title, body);
+		return body;
+	}
+
+	/**
+	 * Sleeps for the injected latency of one response
+	 */
+	private void delay() {
+		long millis = ThreadLocalRandom.current().nextDouble() < slowFraction ? slowLatencyMillis : baseLatencyMillis;
+		if (millis > 0) {
+			sleep(millis);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the entity tag of a page body: a quoted checksum of its content
+	 */
+	private static String etag(byte[] body) {
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		return String.format("\"%08x-%x\"", crc.getValue(), body.length);
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 3);
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(body);
+		out.close();
+		return bytes.toByteArray();
+	}
+}
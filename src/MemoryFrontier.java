@@ -0,0 +1,42 @@
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * MemoryFrontier class
+ * 
+ * Frontier keeping every page in an in-memory queue. This is what the crawler
+ * uses by default.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class MemoryFrontier implements Frontier {
+
+	// the pages, oldest first
+	private LinkedList<FrontierPage> queue = new LinkedList<FrontierPage>();
+
+	@Override
+	public void add(String page, ArrayList<String> links) {
+		queue.addLast(new FrontierPage(page, links));
+	}
+
+	@Override
+	public FrontierPage remove() {
+		return queue.removeFirst();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	@Override
+	public long size() {
+		return queue.size();
+	}
+
+	@Override
+	public void close() {
+		queue.clear();
+	}
+}
@@ -0,0 +1,127 @@
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * MetricsBenchmark class
+ *
+ * Shows the crawl and query metrics at work and what they cost. A crawl of a
+ * generated corpus served locally, with a short politeness pause, reports its
+ * CrawlMetrics, read both directly and through JMX. Then influence queries on
+ * a generated graph are timed with no flight recording and with one capturing
+ * the query events, and the cost of recording one query in QueryMetrics is
+ * measured on its own.
+ *
+ * Usage: MetricsBenchmark [maxPages] [vertices] [queries]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class MetricsBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int max = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int vertices = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+
+		crawl(max);
+		query(vertices, queries);
+	}
+
+	private static void crawl(int max) throws Exception {
+		String[] topicWords = { "complexity" };
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		LocalPageServer server = new LocalPageServer(
+				PageGenerator.generateTopical(20000, 30, topicWords, 10, 0.6, 311));
+		server.setLatency(2, 0.05, 20);
+		server.start(8);
+		try {
+			File out = File.createTempFile("metrics_benchmark", ".txt");
+			out.deleteOnExit();
+			WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), max,
+					topics, out.getAbsolutePath());
+			crawler.setPoliteness(200, 100);
+			ObjectName name = crawler.getMetrics().register("benchmark");
+			crawler.crawl();
+
+			System.out.println("Crawl: " + crawler.getMetrics());
+			MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+			System.out.printf("Through JMX: %s pages, %s bytes, frontier %s, reject rate %.3f%n",
+					mbeans.getAttribute(name, "PagesFetched"), mbeans.getAttribute(name, "BytesDownloaded"),
+					mbeans.getAttribute(name, "FrontierSize"), mbeans.getAttribute(name, "TopicRejectRate"));
+			System.out.printf("Server: %d requests, %d bytes sent%n", server.getRequestCount(), server.getBytesSent());
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static void query(int vertices, int queries) throws Exception {
+		File f = File.createTempFile("metrics_benchmark", ".txt");
+		f.deleteOnExit();
+		GraphGenerator.writePowerLawGraph(f.getAbsolutePath(), vertices, 10, 311);
+		NetworkInfluence network = new NetworkInfluence(f.getAbsolutePath(), 0);
+		Random random = new Random(311);
+		String[] sources = new String[queries];
+		for (int i = 0; i < queries; i++) {
+			sources[i] = network.nameOf(random.nextInt(vertices));
+		}
+		time(network, sources);
+		network.getQueryMetrics().reset();
+
+		double off = time(network, sources);
+		Path dump = Files.createTempFile("metrics_benchmark", ".jfr");
+		dump.toFile().deleteOnExit();
+		double on;
+		try (Recording recording = new Recording()) {
+			recording.enable("wikicrawler.GraphQuery");
+			recording.enable("wikicrawler.GraphSearch");
+			recording.start();
+			on = time(network, sources);
+			recording.stop();
+			recording.dump(dump);
+		}
+		int events = 0;
+		for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+			if (event.getEventType().getName().startsWith("wikicrawler.")) {
+				events++;
+			}
+		}
+		System.out.println("Queries: " + network.getQueryMetrics());
+		System.out.printf("influence mean %.3f ms without a recording, %.3f ms while recording %d events%n", off, on,
+				events);
+
+		// the cost of the bookkeeping alone, with no recording
+		QueryMetrics metrics = new QueryMetrics();
+		int calls = 10000000;
+		long start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			metrics.record(QueryMetrics.INFLUENCE, System.nanoTime());
+			metrics.searched(QueryMetrics.INFLUENCE, i);
+		}
+		System.out.printf("Recording one query and its search costs %.0f ns%n",
+				(double) (System.nanoTime() - start) / calls);
+	}
+
+	/**
+	 * @return The mean time of an influence query from each source, in
+	 *         milliseconds
+	 */
+	private static double time(NetworkInfluence network, String[] sources) {
+		long start = System.nanoTime();
+		for (String source : sources) {
+			network.influence(source);
+		}
+		return (System.nanoTime() - start) / 1e6 / sources.length;
+	}
+}
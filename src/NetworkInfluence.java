@@ -1,7 +1,11 @@
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Scanner;
@@ -13,6 +17,10 @@ import java.util.Scanner;
  * to be used in conjunction with the WikiCrawler class to analyze different
  * wikipages and their links.
  * 
+ * Queries only read the graph, so one instance may be queried from several
+ * threads as long as nothing mutates it at the same time. Use freeze() to get
+ * a copy that is guaranteed never to change and can be shared freely.
+ * 
  * @author Jacob Feddersen, Luke Heilman, John Wahlig
  *
  */
@@ -34,10 +42,62 @@ public class NetworkInfluence {
 	private int vertices;
 
 	/**
-	 * Adjacency list used to store the graph edges
+	 * Adjacency list used to store the graph edges; null once compressed
 	 */
 	private ArrayList<ArrayList<Integer>> adjList;
 
+	/**
+	 * Compressed, read-only form of the edges, replacing adjList after compress()
+	 */
+	private CompressedGraph compressedGraph;
+
+	/**
+	 * Off-heap, read-only form of the edges and names, replacing adjList and the
+	 * name maps in a graph loaded by loadOffHeap() or openOffHeap()
+	 */
+	private OffHeapGraph offHeapGraph;
+
+	/**
+	 * Default number of query results kept by the query cache
+	 */
+	public static final int DEFAULT_QUERY_CACHE_CAPACITY = 4096;
+
+	/**
+	 * Seed for the sampled centrality measures, so repeated rankings agree
+	 */
+	private static final long SAMPLING_SEED = 311;
+
+	/**
+	 * Cache of recent influence, distance and shortest path results
+	 */
+	private QueryCache queryCache;
+
+	/**
+	 * CSR snapshot of adjList used by the iterative algorithms, built on first use
+	 */
+	private CsrGraph csr;
+
+	/**
+	 * PageRank of every vertex, computed on first use
+	 */
+	private double[] pageRanks;
+
+	/**
+	 * HITS hub and authority scores of every vertex, computed on first use
+	 */
+	private double[][] hitsScores;
+
+	/**
+	 * Strongly connected components of the graph, computed on first use and used
+	 * to reject unreachable queries without a search
+	 */
+	private volatile StronglyConnectedComponents components;
+
+	/**
+	 * Latency of the queries answered and work of the searches run
+	 */
+	private final QueryMetrics queryMetrics = new QueryMetrics();
+
 	/**
 	 * Constructs a new NetworkInfluence object based on the graph stored at
 	 * graphData.
@@ -51,6 +111,24 @@ public class NetworkInfluence {
 	 * @throws FileNotFoundException
 	 */
 	public NetworkInfluence(String graphData) throws FileNotFoundException {
+		this(graphData, DEFAULT_QUERY_CACHE_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new NetworkInfluence object based on the graph stored at
+	 * graphData, keeping up to queryCacheCapacity query results in its cache.
+	 * An edge the file lists more than once is kept once.
+	 * 
+	 * @param graphData
+	 *            The absolute file path of the file that stores the graph to be
+	 *            analyzed.
+	 * @param queryCacheCapacity
+	 *            The number of query results to cache; 0 disables the cache
+	 * @throws FileNotFoundException
+	 */
+	public NetworkInfluence(String graphData, int queryCacheCapacity) throws FileNotFoundException {
+		queryCache = new QueryCache(queryCacheCapacity);
+
 		// Open the input file for parsing
 		File inputFile = new File(graphData);
 		Scanner s = new Scanner(inputFile);
@@ -98,8 +176,385 @@ public class NetworkInfluence {
 		if (vertices != numVertices) {
 			throw new IllegalArgumentException("The wrong number of vertices were found in the file: " + vertices);
 		}
+
+		// Keep an edge the file lists more than once only the first time, as every
+		// other backend does; each successor is marked with its source
+		int[] seenFrom = new int[vertices];
+		Arrays.fill(seenFrom, -1);
+		for (int u = 0; u < vertices; u++) {
+			ArrayList<Integer> successors = adjList.get(u);
+			int kept = 0;
+			for (int i = 0; i < successors.size(); i++) {
+				Integer v = successors.get(i);
+				if (seenFrom[v] != u) {
+					seenFrom[v] = u;
+					successors.set(kept++, v);
+				}
+			}
+			successors.subList(kept, successors.size()).clear();
+		}
 	}
 	
+	/**
+	 * Constructs a deep copy of the given graph with its own, empty query cache.
+	 * Used by freeze() so the frozen copy can never observe later changes to the
+	 * original.
+	 * 
+	 * @param other
+	 *            The graph to copy
+	 * @param queryCacheCapacity
+	 *            The number of query results the copy may cache
+	 */
+	NetworkInfluence(NetworkInfluence other, int queryCacheCapacity) {
+		queryCache = new QueryCache(queryCacheCapacity);
+		vertices = other.vertices;
+		if (other.offHeapGraph != null) {
+			// never changes either
+			offHeapGraph = other.offHeapGraph;
+			return;
+		}
+		intToVertexName = new HashMap<Integer, String>(other.intToVertexName);
+		vertexNameToInt = new HashMap<String, Integer>(other.vertexNameToInt);
+		if (other.compressedGraph != null) {
+			// never changes, so the copy can share it
+			compressedGraph = other.compressedGraph;
+			return;
+		}
+		adjList = new ArrayList<ArrayList<Integer>>(vertices);
+		for (int i = 0; i < vertices; i++) {
+			adjList.add(new ArrayList<Integer>(other.adjList.get(i)));
+		}
+	}
+
+	/**
+	 * Constructs an empty graph, to be filled in by loadCompressed
+	 */
+	private NetworkInfluence(int queryCacheCapacity) {
+		queryCache = new QueryCache(queryCacheCapacity);
+		intToVertexName = new HashMap<Integer, String>();
+		vertexNameToInt = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Loads the graph stored at graphData straight into compressed form, as
+	 * compress() leaves it. The edges are read twice and held as one int each in
+	 * between, instead of as adjacency lists of boxed integers, so graphs many
+	 * times larger fit in memory.
+	 * 
+	 * @param graphData
+	 *            The absolute file path of the file that stores the graph
+	 * @param queryCacheCapacity
+	 *            The number of query results to cache; 0 disables the cache
+	 * @return The loaded graph, which can't be changed
+	 * @throws IOException
+	 */
+	public static NetworkInfluence loadCompressed(String graphData, int queryCacheCapacity) throws IOException {
+		NetworkInfluence network = new NetworkInfluence(queryCacheCapacity);
+		HashMap<String, Integer> ids = network.vertexNameToInt;
+
+		// First pass: number the vertices and count their out-degrees
+		int numVertices;
+		int[] degrees = new int[1024];
+		long numEdges = 0;
+		try (BufferedReader reader = new BufferedReader(new FileReader(graphData))) {
+			numVertices = Integer.parseInt(reader.readLine().trim());
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] components = line.split("\\s+");
+				if (components.length != 2) {
+					throw new IllegalArgumentException("Input file misformatted: " + line);
+				}
+				int u = network.nameVertex(components[0]);
+				network.nameVertex(components[1]);
+				if (u >= degrees.length || network.vertices > degrees.length) {
+					degrees = Arrays.copyOf(degrees, 2 * Math.max(degrees.length, network.vertices));
+				}
+				degrees[u]++;
+				numEdges++;
+			}
+		}
+		if (network.vertices != numVertices) {
+			throw new IllegalArgumentException(
+					"The wrong number of vertices were found in the file: " + network.vertices);
+		}
+		if (numEdges > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many edges to load at once: " + numEdges);
+		}
+
+		// Second pass: place every edge in its source's slice of targets
+		int[] offsets = new int[numVertices + 1];
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] = offsets[v] + degrees[v];
+		}
+		degrees = null;
+		int[] next = Arrays.copyOf(offsets, numVertices);
+		int[] targets = new int[(int) numEdges];
+		try (BufferedReader reader = new BufferedReader(new FileReader(graphData))) {
+			reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] components = line.split("\\s+");
+				targets[next[ids.get(components[0])]++] = ids.get(components[1]);
+			}
+		}
+		next = null;
+
+		CompressedGraph.Builder builder = new CompressedGraph.Builder();
+		for (int v = 0; v < numVertices; v++) {
+			builder.add(targets, offsets[v], offsets[v + 1] - offsets[v]);
+		}
+		network.compressedGraph = builder.build();
+		return network;
+	}
+
+	/**
+	 * Constructs a graph whose edges and names are all kept in the given
+	 * off-heap graph
+	 */
+	private NetworkInfluence(OffHeapGraph graph, int queryCacheCapacity) {
+		queryCache = new QueryCache(queryCacheCapacity);
+		offHeapGraph = graph;
+		vertices = graph.vertexCount();
+	}
+
+	/**
+	 * Loads the graph stored at graphData into memory outside the Java heap, so
+	 * that the heap holds nothing whose size depends on the graph and the
+	 * garbage collector never has to scan or move it. The memory is mapped from
+	 * mappedFile if one is given, and that file can be opened again later with
+	 * openOffHeap().
+	 * 
+	 * Influence and distance queries search the off-heap tables without
+	 * allocating; shortest paths and queries of a set of vertices still allocate
+	 * arrays for their search, and the rankings by PageRank or HITS build a CSR
+	 * copy of the graph on the heap. The searches don't use the strongly
+	 * connected components unless getComponents() has been called, since those
+	 * too take memory on the heap for every vertex. The graph can't be changed.
+	 * 
+	 * @param graphData
+	 *            The absolute file path of the file that stores the graph
+	 * @param mappedFile
+	 *            The file to keep the graph in, which is overwritten, or null to
+	 *            keep it in direct memory
+	 * @param queryCacheCapacity
+	 *            The number of query results to cache; 0 disables the cache
+	 * @return The loaded graph, which can't be changed
+	 * @throws IOException
+	 */
+	public static NetworkInfluence loadOffHeap(String graphData, String mappedFile, int queryCacheCapacity)
+			throws IOException {
+		OffHeapGraph graph = OffHeapGraph.load(graphData, mappedFile == null ? null : new File(mappedFile));
+		return new NetworkInfluence(graph, queryCacheCapacity);
+	}
+
+	/**
+	 * Opens a graph loadOffHeap() kept in mappedFile, without reading the graph
+	 * file again
+	 * 
+	 * @param mappedFile
+	 *            The file given to loadOffHeap()
+	 * @param queryCacheCapacity
+	 *            The number of query results to cache; 0 disables the cache
+	 * @return The graph, which can't be changed
+	 * @throws IOException
+	 */
+	public static NetworkInfluence openOffHeap(String mappedFile, int queryCacheCapacity) throws IOException {
+		return new NetworkInfluence(OffHeapGraph.open(new File(mappedFile)), queryCacheCapacity);
+	}
+
+	/**
+	 * Gives a vertex name the next index if it has none yet, without an
+	 * adjacency list
+	 */
+	private int nameVertex(String vertexName) {
+		Integer vertexIndex = vertexNameToInt.get(vertexName);
+		if (vertexIndex == null) {
+			vertexIndex = vertices++;
+			intToVertexName.put(vertexIndex, vertexName);
+			vertexNameToInt.put(vertexName, vertexIndex);
+		}
+		return vertexIndex.intValue();
+	}
+
+	/**
+	 * Replaces the adjacency lists by a CompressedGraph, which takes a small
+	 * fraction of their memory. Queries answer the same, but successors are
+	 * visited in increasing index order, so shortestPath may pick another path of
+	 * the same length. The graph can't be changed afterwards. An off-heap graph
+	 * is left as it is.
+	 */
+	public synchronized void compress() {
+		if (compressedGraph != null || offHeapGraph != null) {
+			return;
+		}
+		compressedGraph = CompressedGraph.of(new ListAdjacency(adjList));
+		adjList = null;
+		graphChanged();
+	}
+
+	/**
+	 * @return Whether compress() or loadCompressed() made this graph read-only
+	 */
+	public boolean isCompressed() {
+		return compressedGraph != null;
+	}
+
+	/**
+	 * @return Whether loadOffHeap() or openOffHeap() keeps this graph off the
+	 *         Java heap
+	 */
+	public boolean isOffHeap() {
+		return offHeapGraph != null;
+	}
+
+	/**
+	 * Returns the store the searches read successors from: the off-heap or
+	 * compressed graph if there is one, else a view of the adjacency lists
+	 */
+	AdjacencyStore adjacency() {
+		if (offHeapGraph != null) {
+			return offHeapGraph;
+		}
+		return compressedGraph != null ? compressedGraph : new ListAdjacency(adjList);
+	}
+
+	/**
+	 * @return The off-heap graph, or null if the graph is kept on the heap
+	 */
+	OffHeapGraph getOffHeapGraph() {
+		return offHeapGraph;
+	}
+
+	/**
+	 * @return The compressed graph, or null if the graph isn't compressed
+	 */
+	CompressedGraph getCompressedGraph() {
+		return compressedGraph;
+	}
+
+	/**
+	 * Throws if the graph was compressed or moved off the heap and so can't be
+	 * changed
+	 */
+	void requireLists() {
+		if (offHeapGraph != null) {
+			throw new IllegalStateException("The graph is kept off the heap and can't be changed");
+		}
+		if (compressedGraph != null) {
+			throw new IllegalStateException("The graph is compressed and can no longer be changed");
+		}
+	}
+
+	/**
+	 * Returns an immutable snapshot of this graph that can be shared by many
+	 * threads, with an executor of one thread per available processor for its
+	 * asynchronous queries.
+	 * 
+	 * This NetworkInfluence object itself is not thread-safe once anything
+	 * mutates it; the snapshot is unaffected by such changes.
+	 * 
+	 * @return A frozen copy of this graph
+	 */
+	public FrozenNetworkInfluence freeze() {
+		return freeze(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns an immutable snapshot of this graph that can be shared by many
+	 * threads, with an executor of the given size for its asynchronous queries.
+	 * 
+	 * @param threads
+	 *            The number of threads used to answer asynchronous queries
+	 * @return A frozen copy of this graph
+	 */
+	public FrozenNetworkInfluence freeze(int threads) {
+		return new FrozenNetworkInfluence(new NetworkInfluence(this, queryCache.getCapacity()), threads);
+	}
+
+	/**
+	 * Updates the graph with the edges added and removed by a recrawl, without
+	 * reloading it. Removed edges that aren't in the graph are ignored, and
+	 * vertices named by added edges are created if needed. Vertices are never
+	 * removed; a vertex that lost all its edges stays in the graph, isolated.
+	 * 
+	 * Like any change to the graph, this discards cached query results and the
+	 * link analysis scores, which are recomputed on their next use. It must not
+	 * run while other threads are querying this object.
+	 * 
+	 * @param delta
+	 *            The edges to add and remove
+	 */
+	public synchronized void applyDelta(GraphDelta delta) {
+		requireLists();
+		for (String[] edge : delta.getRemoved()) {
+			Integer u = vertexNameToInt.get(edge[0]);
+			Integer v = vertexNameToInt.get(edge[1]);
+			if (u != null && v != null) {
+				adjList.get(u).remove(v);
+			}
+		}
+		for (String[] edge : delta.getAdded()) {
+			int u = checkVertex(edge[0]);
+			int v = checkVertex(edge[1]);
+			if (!adjList.get(u).contains(v)) {
+				adjList.get(u).add(v);
+			}
+		}
+		graphChanged();
+	}
+
+	/**
+	 * Renumbers the vertices so related ones sit close together in memory, which
+	 * speeds up the searches behind every query on large graphs. The graph and
+	 * every query answer stay the same, except that ties in the rankings are
+	 * broken by the new numbers. See VertexOrdering for the orderings.
+	 * 
+	 * Like any change to the graph, this discards cached results, and it must not
+	 * run while other threads are querying this object.
+	 * 
+	 * @param ordering
+	 *            VertexOrdering.BFS, RCM, DEGREE or GORDER
+	 */
+	public synchronized void reorder(int ordering) {
+		requireLists();
+		int[] newIds = VertexOrdering.order(csr(), ordering);
+
+		// rebuild the lists in the new order, so their contents are allocated in
+		// that order too
+		ArrayList<ArrayList<Integer>> renumbered = new ArrayList<ArrayList<Integer>>(vertices);
+		int[] oldIds = new int[vertices];
+		for (int v = 0; v < vertices; v++) {
+			oldIds[newIds[v]] = v;
+		}
+		HashMap<Integer, String> names = new HashMap<Integer, String>(vertices);
+		for (int v = 0; v < vertices; v++) {
+			int old = oldIds[v];
+			ArrayList<Integer> successors = adjList.get(old);
+			ArrayList<Integer> list = new ArrayList<Integer>(successors.size());
+			for (int i = 0; i < successors.size(); i++) {
+				list.add(newIds[successors.get(i)]);
+			}
+			renumbered.add(list);
+			String name = intToVertexName.get(old);
+			names.put(v, name);
+			vertexNameToInt.put(name, v);
+		}
+		adjList = renumbered;
+		intToVertexName = names;
+		graphChanged();
+		renumbered(newIds);
+	}
+
+	/**
+	 * Called by reorder after the vertices were renumbered, for subclasses that
+	 * keep their own per-vertex state
+	 * 
+	 * @param newIds
+	 *            The new number of every vertex, indexed by its old number
+	 */
+	void renumbered(int[] newIds) {
+	}
+
 	/**
 	 * Checks if a vertex currently exists, and if not creates an index entry for it
 	 * 
@@ -107,7 +562,7 @@ public class NetworkInfluence {
 	 *            the name of the vertex to check
 	 * @return the number that the vertex is mapped to
 	 */
-	private int checkVertex(String vertexName) {
+	int checkVertex(String vertexName) {
 		// Try to get the index of the given vertex name
 		Integer vertexIndex = vertexNameToInt.get(vertexName);
 
@@ -129,6 +584,140 @@ public class NetworkInfluence {
 		return vertexIndex.intValue();
 	}
 
+	/**
+	 * @return The number of vertices in the graph
+	 */
+	int vertexCount() {
+		return vertices;
+	}
+
+	/**
+	 * Returns the index of a vertex, or null if there is no such vertex
+	 * 
+	 * @param vertexName
+	 *            The name of the vertex
+	 * @return The index of the vertex
+	 */
+	Integer indexOf(String vertexName) {
+		if (offHeapGraph != null) {
+			int v = offHeapGraph.indexOf(vertexName);
+			return v < 0 ? null : Integer.valueOf(v);
+		}
+		return vertexNameToInt.get(vertexName);
+	}
+
+	/**
+	 * @param v
+	 *            The index of a vertex
+	 * @return The name of the vertex
+	 */
+	String nameOf(int v) {
+		if (offHeapGraph != null) {
+			return offHeapGraph.nameOf(v);
+		}
+		return intToVertexName.get(v);
+	}
+
+	/**
+	 * Returns the list of vertices v links to. Subclasses that change the graph
+	 * edit this list directly and then call graphChanged().
+	 * 
+	 * @param v
+	 *            The index of a vertex
+	 * @return The out-neighbours of v
+	 */
+	ArrayList<Integer> neighbours(int v) {
+		requireLists();
+		return adjList.get(v);
+	}
+
+	/**
+	 * Must be called by every operation that changes the graph after it has been
+	 * loaded, so that results computed on the old graph are discarded
+	 */
+	synchronized void graphChanged() {
+		queryCache.invalidate();
+		csr = null;
+		pageRanks = null;
+		hitsScores = null;
+		components = null;
+	}
+
+	/**
+	 * Returns a CSR snapshot of the current graph, building it if needed
+	 * 
+	 * @return The CSR form of the graph
+	 */
+	synchronized CsrGraph csr() {
+		if (csr == null) {
+			csr = new CsrGraph(adjacency());
+		}
+		return csr;
+	}
+
+	/**
+	 * Returns the strongly connected components and condensation DAG of the
+	 * graph, computing them if needed
+	 * 
+	 * @return The components of the current graph
+	 */
+	public StronglyConnectedComponents getComponents() {
+		StronglyConnectedComponents c = components;
+		if (c == null) {
+			synchronized (this) {
+				if (components == null) {
+					components = new StronglyConnectedComponents(csr());
+				}
+				c = components;
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the components the searches prune with. An off-heap graph only
+	 * has them once getComponents() was called, so it never computes them for
+	 * a search. Subclasses whose graph keeps changing may search without them.
+	 * 
+	 * @return The components, or null if the searches go without
+	 */
+	StronglyConnectedComponents searchComponents() {
+		return offHeapGraph != null ? components : getComponents();
+	}
+
+	/**
+	 * Returns the id of the strongly connected component containing v. Two
+	 * vertices can reach each other exactly when they have the same id.
+	 * 
+	 * @param v
+	 *            The vertex
+	 * @return The component id of v
+	 */
+	public int componentOf(String v) {
+		return getComponents().componentOf(indexOf(v));
+	}
+
+	/**
+	 * Returns the cache holding recent query results, mainly so callers can read
+	 * its hit-rate metrics
+	 * 
+	 * @return The query cache of this graph
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Returns the latencies of the queries answered by this graph and the number
+	 * of vertices its searches visited. register() them to read them through
+	 * JMX.
+	 * 
+	 * @return The query metrics of this graph
+	 */
+	public QueryMetrics getQueryMetrics() {
+		return queryMetrics;
+	}
+
 	/**
 	 * Returns the out-degree of the vertex v
 	 * 
@@ -138,7 +727,10 @@ public class NetworkInfluence {
 	 */
 	public int outDegree(String v) {
 		// Simply return the size of the adjacency list at v
-		int vIndex = vertexNameToInt.get(v);
+		int vIndex = indexOf(v);
+		if (adjList == null) {
+			return adjacency().outDegree(vIndex);
+		}
 		return adjList.get(vIndex).size();
 	}
 
@@ -157,11 +749,50 @@ public class NetworkInfluence {
 	 *         v. This list is empty if there is no path between u and v.
 	 */
 	public ArrayList<String> shortestPath(String u, String v) {
-		// Shortcut; if the end is same as the start, return a path of just that node
-		if (u.equals(v)) {
-			ArrayList<String> path = new ArrayList<String>();
-			path.add(u);
-			return path;
+		long queryStart = System.nanoTime();
+		try {
+			// Shortcut; if the end is same as the start, return a path of just that node
+			if (u.equals(v)) {
+				ArrayList<String> path = new ArrayList<String>();
+				path.add(u);
+				return path;
+			}
+
+			// Get the start and end indices
+			int start = indexOf(u);
+			int end = indexOf(v);
+
+			// Answer from the cache if this path was asked for recently
+			String[] cached = (String[]) queryCache.get(QueryCache.SHORTEST_PATH, start, end);
+			if (cached != null) {
+				return new ArrayList<String>(Arrays.asList(cached));
+			}
+			long generation = queryCache.generation();
+
+			String[] path = computeShortestPath(start, end);
+			queryCache.put(QueryCache.SHORTEST_PATH, start, end, path, generation);
+			return new ArrayList<String>(Arrays.asList(path));
+		} finally {
+			queryMetrics.record(QueryMetrics.SHORTEST_PATH, queryStart);
+		}
+	}
+
+	/**
+	 * Computes the names of the vertices on a BFS path from start to end
+	 * 
+	 * @param start
+	 *            The index of the first vertex of the path
+	 * @param end
+	 *            The index of the last vertex of the path
+	 * @return The names of the vertices on the path, or an empty array if there is
+	 *         no path
+	 */
+	private String[] computeShortestPath(int start, int end) {
+		// If the component of start cannot reach that of end, there is no path
+		StronglyConnectedComponents sccs = searchComponents();
+		int endComponent = sccs == null ? -1 : sccs.componentOf(end);
+		if (sccs != null && !sccs.mayReach(sccs.componentOf(start), endComponent)) {
+			return new String[0];
 		}
 
 		// Initialize arrays
@@ -176,24 +807,35 @@ public class NetworkInfluence {
 			dist[i] = -1;
 		}
 
-		// Get the start and end indices
-		int start = vertexNameToInt.get(u);
-		int end = vertexNameToInt.get(v);
 		LinkedList<Integer> Q = new LinkedList<Integer>();
 
 		// Add the start vertex to the queue, with distance 0
 		Q.add(start);
 		S[start] = true;
 		dist[start] = 0;
+		int visited = 1;
 
 		boolean foundEnd = false;
 
+		// Successors are copied out of the adjacency store one vertex at a time
+		AdjacencyStore graph = adjacency();
+		int[] successors = new int[graph.maxOutDegree()];
+
 		// Perform BFS until we either found the end or have no nodes left to search
 		while (!foundEnd && !Q.isEmpty()) {
 			int x = Q.removeFirst();
-			for (int y : adjList.get(x)) {
+			int count = graph.successors(x, successors);
+			for (int i = 0; i < count; i++) {
+				int y = successors[i];
 				if (!S[y]) {
 					S[y] = true;
+					visited++;
+
+					// Don't search components that cannot lead to the end
+					if (sccs != null && !sccs.mayReach(sccs.componentOf(y), endComponent)) {
+						continue;
+					}
+
 					Q.addLast(y);
 					parent[y] = x;
 					dist[y] = dist[x] + 1;
@@ -205,20 +847,22 @@ public class NetworkInfluence {
 			}
 		}
 
+		queryMetrics.searched(QueryMetrics.SHORTEST_PATH, visited);
+
 		// If we never reached the end, there is no path from u to v
 		if (parent[end] == -1) {
-			return new ArrayList<String>();
+			return new String[0];
 		}
 
 		// Otherwise make the path
 		String[] path = new String[dist[end] + 1];
 		int curr = end;
 		for (int i = dist[end]; i >= 0; i--) {
-			path[i] = intToVertexName.get(curr);
+			path[i] = nameOf(curr);
 			curr = parent[curr];
 		}
 
-		return new ArrayList<String>(Arrays.asList(path));
+		return path;
 	}
 
 	/**
@@ -231,13 +875,55 @@ public class NetworkInfluence {
 	 * @return The distance from u to v
 	 */
 	public int distance(String u, String v) {
-		// This is almost identical to shortestPath, but we chose to duplicate the code
-		// because the string operations and parent are not needed for distance
-
-		// If the nodes are equal, distance is 0
-		if (u.equals(v)) {
-			return 0;
-		}
+		long queryStart = System.nanoTime();
+		try {
+			// This is almost identical to shortestPath, but we chose to duplicate the code
+			// because the string operations and parent are not needed for distance
+
+			// If the nodes are equal, distance is 0
+			if (u.equals(v)) {
+				return 0;
+			}
+
+			// Get the start and end indices
+			int start = indexOf(u);
+			int end = indexOf(v);
+
+			// Answer from the cache if this distance was asked for recently
+			Integer cached = (Integer) queryCache.get(QueryCache.DISTANCE, start, end);
+			if (cached != null) {
+				return cached.intValue();
+			}
+			long generation = queryCache.generation();
+
+			int distance = computeDistance(start, end);
+			queryCache.put(QueryCache.DISTANCE, start, end, Integer.valueOf(distance), generation);
+			return distance;
+		} finally {
+			queryMetrics.record(QueryMetrics.DISTANCE, queryStart);
+		}
+	}
+
+	/**
+	 * Computes the BFS distance from start to end
+	 * 
+	 * @param start
+	 *            The index of the start vertex
+	 * @param end
+	 *            The index of the end vertex
+	 * @return The distance from start to end, or -1 if end is unreachable
+	 */
+	private int computeDistance(int start, int end) {
+		if (offHeapGraph != null) {
+			return offHeapGraph.distance(start, end, queryMetrics);
+		}
+
+		// If the component of start cannot reach that of end, there is no path
+		StronglyConnectedComponents sccs = searchComponents();
+		int endComponent = sccs == null ? -1 : sccs.componentOf(end);
+		if (sccs != null && !sccs.mayReach(sccs.componentOf(start), endComponent)) {
+			return -1;
+		}
 
 		// Initialize arrays
 		boolean[] S = new boolean[vertices];
@@ -249,27 +935,39 @@ public class NetworkInfluence {
 			dist[i] = -1;
 		}
 
-		// Get the start and end indices
-		int start = vertexNameToInt.get(u);
-		int end = vertexNameToInt.get(v);
 		LinkedList<Integer> Q = new LinkedList<Integer>();
 
 		// Add start to the list
 		S[start] = true;
 		Q.addLast(start);
 		dist[start] = 0;
+		int visited = 1;
+
+		// Successors are copied out of the adjacency store one vertex at a time
+		AdjacencyStore graph = adjacency();
+		int[] successors = new int[graph.maxOutDegree()];
 
 		// Perform BFS
 		while (!Q.isEmpty()) {
 			int x = Q.removeFirst();
-			for (int y : adjList.get(x)) {
+			int count = graph.successors(x, successors);
+			for (int i = 0; i < count; i++) {
+				int y = successors[i];
 				if (!S[y]) {
 					S[y] = true;
+					visited++;
+
+					// Don't search components that cannot lead to the end
+					if (sccs != null && !sccs.mayReach(sccs.componentOf(y), endComponent)) {
+						continue;
+					}
+
 					Q.addLast(y);
 					dist[y] = dist[x] + 1;
 
 					// If we have found the end, we can just return its distance
 					if (y == end) {
+						queryMetrics.searched(QueryMetrics.DISTANCE, visited);
 						return dist[end];
 					}
 				}
@@ -277,6 +975,7 @@ public class NetworkInfluence {
 		}
 
 		// We never reach the end, return -1
+		queryMetrics.searched(QueryMetrics.DISTANCE, visited);
 		return -1;
 	}
 
@@ -290,6 +989,16 @@ public class NetworkInfluence {
 	 * @return The distance from s to v
 	 */
 	public int distance(ArrayList<String> s, String v) {
+		long queryStart = System.nanoTime();
+		int distance = computeDistance(s, v);
+		queryMetrics.record(QueryMetrics.SET_DISTANCE, queryStart);
+		return distance;
+	}
+
+	/**
+	 * Computes the BFS distance from the set s to v
+	 */
+	private int computeDistance(ArrayList<String> s, String v) {
 		// Initialize arrays
 		boolean[] S = new boolean[vertices];
 		int[] dist = new int[vertices];
@@ -301,35 +1010,64 @@ public class NetworkInfluence {
 		}
 
 		// Find the index of the end vertex
-		int end = vertexNameToInt.get(v);
+		int end = indexOf(v);
 		LinkedList<Integer> Q = new LinkedList<Integer>();
 
+		StronglyConnectedComponents sccs = searchComponents();
+		int endComponent = sccs == null ? -1 : sccs.componentOf(end);
+		boolean mayReach = false;
+		int visited = 0;
+
 		// For each of the start vertices
 		for (String u : s) {
 			// Get the index
-			int uIndex = vertexNameToInt.get(u);
+			int uIndex = indexOf(u);
 
 			// If this happens to be the end vertex, then s contains v and we return 0
 			if (uIndex == end)
 				return 0;
 
 			// Add u to the queue and mark it as visited with distance 0
+			if (!S[uIndex]) {
+				visited++;
+			}
 			S[uIndex] = true;
 			Q.addLast(uIndex);
 			dist[uIndex] = 0;
+
+			mayReach |= sccs == null || sccs.mayReach(sccs.componentOf(uIndex), endComponent);
+		}
+
+		// If no start component can reach that of the end, there is no path
+		if (!mayReach) {
+			return -1;
 		}
 
+		// Successors are copied out of the adjacency store one vertex at a time
+		AdjacencyStore graph = adjacency();
+		int[] successors = new int[graph.maxOutDegree()];
+
 		// Perform BFS
 		while (!Q.isEmpty()) {
 			int x = Q.removeFirst();
-			for (int y : adjList.get(x)) {
+			int count = graph.successors(x, successors);
+			for (int i = 0; i < count; i++) {
+				int y = successors[i];
 				if (!S[y]) {
 					S[y] = true;
+					visited++;
+
+					// Don't search components that cannot lead to the end
+					if (sccs != null && !sccs.mayReach(sccs.componentOf(y), endComponent)) {
+						continue;
+					}
+
 					Q.addLast(y);
 					dist[y] = dist[x] + 1;
 
 					// If we find the end vertex, return distance
 					if (y == end) {
+						queryMetrics.searched(QueryMetrics.SET_DISTANCE, visited);
 						return dist[y];
 					}
 				}
@@ -337,6 +1075,7 @@ public class NetworkInfluence {
 		}
 
 		// Otherwise we didn't find the end vertex, return -1
+		queryMetrics.searched(QueryMetrics.SET_DISTANCE, visited);
 		return -1;
 	}
 
@@ -348,6 +1087,85 @@ public class NetworkInfluence {
 	 * @return The influence of u as determined by the Inf() function
 	 */
 	public float influence(String u) {
+		long queryStart = System.nanoTime();
+		try {
+			// Get the start index
+			int start = indexOf(u);
+
+			// Answer from the cache if this influence was asked for recently
+			Float cached = (Float) queryCache.get(QueryCache.INFLUENCE, start, -1);
+			if (cached != null) {
+				return cached.floatValue();
+			}
+			long generation = queryCache.generation();
+
+			float influence = computeInfluence(start);
+			queryCache.put(QueryCache.INFLUENCE, start, -1, Float.valueOf(influence), generation);
+			return influence;
+		} finally {
+			queryMetrics.record(QueryMetrics.INFLUENCE, queryStart);
+		}
+	}
+
+	/**
+	 * Returns Inf(u) to within an absolute error of epsilon. The BFS stops at the
+	 * first depth d where the vertices not yet reached, each worth at most
+	 * 0.5^(d+1), can't add more than epsilon, so the result is never more than
+	 * epsilon below the exact influence. With an epsilon of 0 it is exact.
+	 * 
+	 * Approximate results are not cached.
+	 * 
+	 * @param u
+	 *            The vertex to get the influence of
+	 * @param epsilon
+	 *            The largest allowed absolute error
+	 * @return The influence of u, at most epsilon below Inf(u)
+	 */
+	public float influence(String u, double epsilon) {
+		if (epsilon <= 0) {
+			return influence(u);
+		}
+		long queryStart = System.nanoTime();
+		float influence = computeInfluence(indexOf(u), epsilon);
+		queryMetrics.record(QueryMetrics.INFLUENCE, queryStart);
+		return influence;
+	}
+
+	/**
+	 * Computes Inf(start) with a BFS from the vertex at index start
+	 * 
+	 * @param start
+	 *            The index of the vertex to get the influence of
+	 * @return The influence of the vertex
+	 */
+	float computeInfluence(int start) {
+		return computeInfluence(start, 0);
+	}
+
+	/**
+	 * Computes Inf(start) with a BFS from the vertex at index start, stopping as
+	 * soon as the rest of the BFS can't add more than epsilon
+	 * 
+	 * @param start
+	 *            The index of the vertex to get the influence of
+	 * @param epsilon
+	 *            The largest allowed absolute error
+	 * @return The influence of the vertex
+	 */
+	float computeInfluence(int start, double epsilon) {
+		if (offHeapGraph != null) {
+			return offHeapGraph.influence(start, epsilon, queryMetrics);
+		}
+
+		// A vertex alone in a component with no way out reaches nothing but itself
+		StronglyConnectedComponents sccs = searchComponents();
+		if (sccs != null) {
+			int startComponent = sccs.componentOf(start);
+			if (sccs.size(startComponent) == 1 && sccs.isSink(startComponent)) {
+				return (float)1.0;
+			}
+		}
+
 		// This is almost identical to shortestPath, but we chose to duplicate the code
 		// because the string operations and parent are not needed for distance
 
@@ -362,8 +1180,6 @@ public class NetworkInfluence {
 			dist[i] = -1;
 		}
 
-		// Get the start index
-		int start = vertexNameToInt.get(u);
 		LinkedList<Integer> Q = new LinkedList<Integer>();
 
 		// Add start to the list
@@ -373,13 +1189,30 @@ public class NetworkInfluence {
 		
 		float a = (float)0.5;
 		int currentDistance = 1;
+		int reached = 1;
+		int expandedDistance = -1;
+
+		// Successors are copied out of the adjacency store one vertex at a time
+		AdjacencyStore graph = adjacency();
+		int[] successors = new int[graph.maxOutDegree()];
 
 		// Perform BFS
 		while (!Q.isEmpty()) {
 			int x = Q.removeFirst();
-			for (int y : adjList.get(x)) {
+			if (dist[x] > expandedDistance) {
+				// Everything within dist[x] has been reached, so each vertex left is
+				// worth at most 0.5^(dist[x] + 1)
+				expandedDistance = dist[x];
+				if (epsilon > 0 && truncationError(vertices - reached, expandedDistance + 1) <= epsilon) {
+					break;
+				}
+			}
+			int count = graph.successors(x, successors);
+			for (int i = 0; i < count; i++) {
+				int y = successors[i];
 				if (!S[y]) {
 					S[y] = true;
+					reached++;
 					Q.addLast(y);
 					dist[y] = dist[x] + 1;
 					if (dist[y] > currentDistance) {
@@ -391,9 +1224,117 @@ public class NetworkInfluence {
 			}
 		}
 		
+		queryMetrics.searched(QueryMetrics.INFLUENCE, reached);
 		return influence;
 	}
 
+	/**
+	 * Returns the most influence the given number of vertices can add when none
+	 * of them is closer than distance
+	 */
+	static double truncationError(int unreached, int distance) {
+		return Math.scalb((double) unreached, -distance);
+	}
+
+	/**
+	 * Runs one complete BFS from the vertex at index start, from which the
+	 * distance, shortest path and influence queries of that source can all be
+	 * answered. Answers agree with the single queries: the paths are the ones
+	 * shortestPath finds, and the influence is summed in the same order.
+	 * 
+	 * @param start
+	 *            The index of the source vertex
+	 * @param query
+	 *            The kind of query the search is recorded as, such as
+	 *            QueryMetrics.DISTANCE
+	 * @return The search
+	 */
+	SourceSearch searchFrom(int start, int query) {
+		int[] dist = new int[vertices];
+		int[] parent = new int[vertices];
+		Arrays.fill(dist, -1);
+		Arrays.fill(parent, -1);
+
+		// the queue doubles as the order vertices were reached in
+		int[] queue = new int[vertices];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		dist[start] = 0;
+		float influence = (float)1.0;
+		float a = (float)0.5;
+		int currentDistance = 1;
+
+		AdjacencyStore graph = adjacency();
+		int[] successors = new int[graph.maxOutDegree()];
+		while (head < tail) {
+			int x = queue[head++];
+			int count = graph.successors(x, successors);
+			for (int i = 0; i < count; i++) {
+				int y = successors[i];
+				if (dist[y] == -1 && y != start) {
+					dist[y] = dist[x] + 1;
+					parent[y] = x;
+					queue[tail++] = y;
+					if (dist[y] > currentDistance) {
+						currentDistance = dist[y];
+						a *= 0.5;
+					}
+					influence += a;
+				}
+			}
+		}
+
+		queryMetrics.searched(query, tail);
+		return new SourceSearch(dist, parent, influence);
+	}
+
+	/**
+	 * The result of searchFrom: everything a BFS from one source found
+	 */
+	class SourceSearch {
+		private final int[] dist;
+		private final int[] parent;
+		private final float influence;
+
+		private SourceSearch(int[] dist, int[] parent, float influence) {
+			this.dist = dist;
+			this.parent = parent;
+			this.influence = influence;
+		}
+
+		/**
+		 * @return The distance from the source to the vertex at index end, or -1
+		 *         if it is unreachable
+		 */
+		int distance(int end) {
+			return dist[end];
+		}
+
+		/**
+		 * @return The path from the source to the vertex at index end, as
+		 *         shortestPath returns it
+		 */
+		ArrayList<String> shortestPath(int end) {
+			ArrayList<String> path = new ArrayList<String>();
+			if (dist[end] == -1) {
+				return path;
+			}
+			for (int curr = end; curr != -1; curr = parent[curr]) {
+				path.add(nameOf(curr));
+			}
+			Collections.reverse(path);
+			return path;
+		}
+
+		/**
+		 * @return The influence of the source
+		 */
+		float influence() {
+			return influence;
+		}
+	}
+
 	/**
 	 * Returns Inf(s) the influence of the given set of vertices.
 	 * 
@@ -403,6 +1344,30 @@ public class NetworkInfluence {
 	 *         function
 	 */
 	public float influence(ArrayList<String> s) {
+		return influence(s, 0);
+	}
+
+	/**
+	 * Returns Inf(s) to within an absolute error of epsilon, stopping the BFS as
+	 * influence(String, double) does. With an epsilon of 0 it is exact.
+	 * 
+	 * @param s
+	 *            The set of vertices to get the influence of
+	 * @param epsilon
+	 *            The largest allowed absolute error
+	 * @return The influence of the set, at most epsilon below Inf(s)
+	 */
+	public float influence(ArrayList<String> s, double epsilon) {
+		long queryStart = System.nanoTime();
+		float influence = computeInfluence(s, epsilon);
+		queryMetrics.record(QueryMetrics.SET_INFLUENCE, queryStart);
+		return influence;
+	}
+
+	/**
+	 * Computes Inf(s) to within epsilon with a BFS from all of s at once
+	 */
+	private float computeInfluence(ArrayList<String> s, double epsilon) {
 		// Initialize arrays
 		boolean[] S = new boolean[vertices];
 		int[] dist = new int[vertices];
@@ -417,10 +1382,15 @@ public class NetworkInfluence {
 		// queue to be used in the BFS
 		LinkedList<Integer> Q = new LinkedList<Integer>();
 
+		int reached = 0;
+
 		// For each of the start vertices
 		for (String u : s) {
 			// Get the index
-			int uIndex = vertexNameToInt.get(u);
+			int uIndex = indexOf(u);
+			if (!S[uIndex]) {
+				reached++;
+			}
 
 			// Add u to the queue and mark it as visited with distance 0
 			S[uIndex] = true;
@@ -432,13 +1402,27 @@ public class NetworkInfluence {
 		
 		float a = (float)0.5;
 		int currentDistance = 1;
+		int expandedDistance = -1;
+
+		// Successors are copied out of the adjacency store one vertex at a time
+		AdjacencyStore graph = adjacency();
+		int[] successors = new int[graph.maxOutDegree()];
 
 		// Perform BFS
 		while (!Q.isEmpty()) {
 			int x = Q.removeFirst();
-			for (int y : adjList.get(x)) {
+			if (dist[x] > expandedDistance) {
+				expandedDistance = dist[x];
+				if (epsilon > 0 && truncationError(vertices - reached, expandedDistance + 1) <= epsilon) {
+					break;
+				}
+			}
+			int count = graph.successors(x, successors);
+			for (int i = 0; i < count; i++) {
+				int y = successors[i];
 				if (!S[y]) {
 					S[y] = true;
+					reached++;
 					Q.addLast(y);
 					dist[y] = dist[x] + 1;
 					if (dist[y] > currentDistance) {
@@ -450,6 +1434,7 @@ public class NetworkInfluence {
 			}
 		}
 		
+		queryMetrics.searched(QueryMetrics.SET_INFLUENCE, reached);
 		return influence;
 	}
 
@@ -489,41 +1474,6 @@ public class NetworkInfluence {
 		}
 	}
 	
-	/**
-	 * Heapifies the given ArrayList, based on the given target node
-	 * 
-	 * @param maxHeap List to be heapified
-	 * @param size Size of the list
-	 * @param i Target node to heapify
-	 */
-	private void heapify(ArrayList<Node> maxHeap, int size, int i) {
-		//Target node to heapify
-		int largest = i;
-		//Left child of target in heap array representation
-		int left = 2*i + 1;
-		//Right child of target in heap array representation
-		int right = 2*i + 2;
-		
-		//Find which of the three nodes above has the largest key
-		if(left < size && maxHeap.get(left).getKey() > maxHeap.get(largest).getKey()) {
-			largest = left;
-		}
-		
-		if(right < size && maxHeap.get(right).getKey() > maxHeap.get(largest).getKey()) {
-			largest = right;
-		}
-		
-		//If i is not larger than its children, it is swapped with the largest and heapified again
-		if(largest != i) {
-			Node temp = new Node(maxHeap.get(i).getValue(), maxHeap.get(i).getKey());
-			maxHeap.set(i, maxHeap.get(largest));
-			maxHeap.set(largest, temp);
-			
-			heapify(maxHeap, size, largest);
-		}
-		
-	}
-	
 	/**
 	 * Returns a set of k vertices obtained by using the Degree Greedy algorithm.
 	 * 
@@ -533,36 +1483,21 @@ public class NetworkInfluence {
 	 *         algorithm
 	 */
 	public ArrayList<String> mostInfluentialDegree(int k) {
-		ArrayList<Node> maxHeap = new ArrayList<Node>();
-		for(int i = 0; i < vertices; i++) {
-			Node n = new Node(intToVertexName.get(i), outDegree(intToVertexName.get(i)));
-			
-			//Set new node at the end of the heap array
-			maxHeap.add(n);
-			
-			//Percolate new node up to maintain max heap
-			int j = i;
-			while(j != 0 && maxHeap.get((j - 1)/2).getKey() < maxHeap.get(j).getKey()) {
-				Node temp = new Node(maxHeap.get(j).getValue(), maxHeap.get(j).getKey());
-				maxHeap.set(j, maxHeap.get((j - 1)/2));
-				maxHeap.set((j - 1)/2, temp);
-				
-				j = (i - 1)/2;
-			}
-		}
-		
-		ArrayList<String> mostInfluential = new ArrayList<String>();
-		int heapSize = vertices;
-		
-		//Extract maximum value from heapy and heapify
-		for(int i = 0; i < k && i < vertices; i++) {
-			mostInfluential.add(maxHeap.get(0).getValue());
-			maxHeap.set(0, maxHeap.get(heapSize - 1));
-			heapSize--;
-			heapify(maxHeap, heapSize, 0);
+		long queryStart = System.nanoTime();
+		ArrayList<String> top = rankByDegree(k);
+		queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		return top;
+	}
+
+	/**
+	 * Does the work of mostInfluentialDegree
+	 */
+	private ArrayList<String> rankByDegree(int k) {
+		double[] degrees = new double[vertices];
+		for (int i = 0; i < vertices; i++) {
+			degrees[i] = outDegree(nameOf(i));
 		}
-		
-		return mostInfluential;
+		return topVertices(degrees, k);
 	}
 
 	/**
@@ -574,36 +1509,38 @@ public class NetworkInfluence {
 	 *         algorithm
 	 */
 	public ArrayList<String> mostInfluentialModular(int k) {
-		ArrayList<Node> maxHeap = new ArrayList<Node>();
-		for(int i = 0; i < vertices; i++) {
-			Node n = new Node(intToVertexName.get(i), influence(intToVertexName.get(i)));
-			
-			//Set new node at the end of the heap array
-			maxHeap.add(n);
-			
-			//Percolate new node up to maintain max heap
-			int j = i;
-			while(j != 0 && maxHeap.get((j - 1)/2).getKey() < maxHeap.get(j).getKey()) {
-				Node temp = new Node(maxHeap.get(j).getValue(), maxHeap.get(j).getKey());
-				maxHeap.set(j, maxHeap.get((j - 1)/2));
-				maxHeap.set((j - 1)/2, temp);
-				
-				j = (i - 1)/2;
-			}
-		}
-		
-		ArrayList<String> mostInfluential = new ArrayList<String>();
-		int heapSize = vertices;
-		
-		//Extract maximum value from heap and heapify
-		for(int i = 0; i < k && i < vertices; i++) {
-			mostInfluential.add(maxHeap.get(0).getValue());
-			maxHeap.set(0, maxHeap.get(heapSize - 1));
-			heapSize--;
-			heapify(maxHeap, heapSize, 0);
+		return mostInfluentialModular(k, 0);
+	}
+
+	/**
+	 * Returns a set of k vertices obtained by using the Modular Greedy algorithm,
+	 * with every influence computed to within epsilon as by
+	 * influence(String, double).
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @param epsilon
+	 *            The largest allowed absolute error of each influence
+	 * @return The top k influential vertices as determined by the Modular Greedy
+	 *         algorithm
+	 */
+	public ArrayList<String> mostInfluentialModular(int k, double epsilon) {
+		long queryStart = System.nanoTime();
+		ArrayList<String> top = rankModular(k, epsilon);
+		queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		return top;
+	}
+
+	/**
+	 * Does the work of mostInfluentialModular
+	 */
+	private ArrayList<String> rankModular(int k, double epsilon) {
+		double[] influences = new double[vertices];
+		for (int i = 0; i < vertices; i++) {
+			// Bypass the query cache so ranking every vertex doesn't evict hot entries
+			influences[i] = computeInfluence(i, epsilon);
 		}
-		
-		return mostInfluential;
+		return topVertices(influences, k);
 	}
 
 	/**
@@ -615,6 +1552,32 @@ public class NetworkInfluence {
 	 *         algorithm
 	 */
 	public ArrayList<String> mostInfluentialSubModular(int k) {
+		return mostInfluentialSubModular(k, 0);
+	}
+
+	/**
+	 * Returns a set of k vertices obtained by using the SubModular Greedy
+	 * algorithm, with every influence computed to within epsilon as by
+	 * influence(ArrayList, double).
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @param epsilon
+	 *            The largest allowed absolute error of each influence
+	 * @return The top k influential vertices as determined by the SubModular Greedy
+	 *         algorithm
+	 */
+	public ArrayList<String> mostInfluentialSubModular(int k, double epsilon) {
+		long queryStart = System.nanoTime();
+		ArrayList<String> top = rankSubModular(k, epsilon);
+		queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		return top;
+	}
+
+	/**
+	 * Does the work of mostInfluentialSubModular
+	 */
+	private ArrayList<String> rankSubModular(int k, double epsilon) {
 		//Set S in algorithm
 		ArrayList<String> S = new ArrayList<String>();
 		
@@ -629,17 +1592,20 @@ public class NetworkInfluence {
 			for(int i = 0; i < vertices; i++) {
 				
 				//We only care about vertices not in S
-				if(!S.contains(intToVertexName.get(i))) {
+				if(!S.contains(nameOf(i))) {
 					
 					//Temporarily add a vertex to S to see how it improves the influence of S
-					S.add(intToVertexName.get(i));
-					if(influence(S) > nextMostInfluential.getKey()) {
-						nextMostInfluential.setValue(intToVertexName.get(i));
-						nextMostInfluential.setKey(influence(S));
+					S.add(nameOf(i));
+					float influence = computeInfluence(S, epsilon);
+					// Ties go to the alphabetically first name, as in topVertices
+					if(influence > nextMostInfluential.getKey() || (influence == nextMostInfluential.getKey()
+							&& nameOf(i).compareTo(nextMostInfluential.getValue()) < 0)) {
+						nextMostInfluential.setValue(nameOf(i));
+						nextMostInfluential.setKey(influence);
 					}
 					
 					//Now remove the vertex from S to allow other nodes to be tested
-					S.remove(intToVertexName.get(i));
+					S.remove(nameOf(i));
 				}
 			}
 			
@@ -650,4 +1616,257 @@ public class NetworkInfluence {
 		return S;
 	}
 
+	/**
+	 * Returns the PageRank of the vertex v, computing the ranks of all vertices on
+	 * first use
+	 * 
+	 * @param v
+	 *            The vertex to get the PageRank of
+	 * @return The PageRank of v; the ranks of all vertices sum to 1
+	 */
+	public double pageRank(String v) {
+		return pageRanks()[indexOf(v)];
+	}
+
+	/**
+	 * Returns the HITS hub score of the vertex v
+	 * 
+	 * @param v
+	 *            The vertex to get the hub score of
+	 * @return The hub score of v
+	 */
+	public double hubScore(String v) {
+		return hitsScores()[0][indexOf(v)];
+	}
+
+	/**
+	 * Returns the HITS authority score of the vertex v
+	 * 
+	 * @param v
+	 *            The vertex to get the authority score of
+	 * @return The authority score of v
+	 */
+	public double authorityScore(String v) {
+		return hitsScores()[1][indexOf(v)];
+	}
+
+	/**
+	 * Returns the k vertices with the highest PageRank.
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @return The top k vertices by PageRank, highest first
+	 */
+	public ArrayList<String> mostInfluentialPageRank(int k) {
+		long queryStart = System.nanoTime();
+		try {
+			return topVertices(pageRanks(), k);
+		} finally {
+			queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		}
+	}
+
+	/**
+	 * Returns the k vertices with the highest HITS hub score, that is the pages
+	 * linking to the most important authorities.
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @return The top k vertices by hub score, highest first
+	 */
+	public ArrayList<String> mostInfluentialHub(int k) {
+		long queryStart = System.nanoTime();
+		try {
+			return topVertices(hitsScores()[0], k);
+		} finally {
+			queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		}
+	}
+
+	/**
+	 * Returns the k vertices with the highest HITS authority score, that is the
+	 * pages linked to by the most important hubs.
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @return The top k vertices by authority score, highest first
+	 */
+	public ArrayList<String> mostInfluentialAuthority(int k) {
+		long queryStart = System.nanoTime();
+		try {
+			return topVertices(hitsScores()[1], k);
+		} finally {
+			queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		}
+	}
+
+	/**
+	 * Returns the k vertices with the highest betweenness centrality, that is the
+	 * "bridge" pages that lie on the most shortest paths between other pages.
+	 * Estimated from enough sampled sources that every normalized score is within
+	 * 0.05 of the truth with probability at least 0.9; see Centrality.
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @return The top k vertices by estimated betweenness, highest first
+	 */
+	public ArrayList<String> mostInfluentialBetweenness(int k) {
+		return mostInfluentialBetweenness(k, Centrality.DEFAULT_EPSILON, Centrality.DEFAULT_DELTA);
+	}
+
+	/**
+	 * Returns the k vertices with the highest betweenness centrality, estimated
+	 * with Brandes' algorithm from sampled sources.
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @param epsilon
+	 *            The allowed absolute error of the betweenness normalized by n(n-2)
+	 * @param delta
+	 *            The allowed probability that some score exceeds that error
+	 * @return The top k vertices by estimated betweenness, highest first
+	 */
+	public ArrayList<String> mostInfluentialBetweenness(int k, double epsilon, double delta) {
+		long queryStart = System.nanoTime();
+		try {
+			CsrGraph g = csr();
+			int samples = Centrality.samplesFor(g.vertices, epsilon, delta);
+			return topVertices(Centrality.betweenness(g, samples, SAMPLING_SEED), k);
+		} finally {
+			queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		}
+	}
+
+	/**
+	 * Returns the k vertices with the highest harmonic closeness centrality, the
+	 * sum of 1 / distance to every other vertex. Estimated from enough sampled
+	 * targets that every normalized score is within 0.05 of the truth with
+	 * probability at least 0.9; see Centrality.
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @return The top k vertices by estimated closeness, highest first
+	 */
+	public ArrayList<String> mostInfluentialCloseness(int k) {
+		return mostInfluentialCloseness(k, Centrality.DEFAULT_EPSILON, Centrality.DEFAULT_DELTA);
+	}
+
+	/**
+	 * Returns the k vertices with the highest harmonic closeness centrality,
+	 * estimated with BFS from sampled targets.
+	 * 
+	 * @param k
+	 *            The number of vertices to output
+	 * @param epsilon
+	 *            The allowed absolute error of the closeness normalized by n
+	 * @param delta
+	 *            The allowed probability that some score exceeds that error
+	 * @return The top k vertices by estimated closeness, highest first
+	 */
+	public ArrayList<String> mostInfluentialCloseness(int k, double epsilon, double delta) {
+		long queryStart = System.nanoTime();
+		try {
+			CsrGraph g = csr();
+			int samples = Centrality.samplesFor(g.vertices, epsilon, delta);
+			return topVertices(Centrality.harmonicCloseness(g, samples, SAMPLING_SEED), k);
+		} finally {
+			queryMetrics.record(QueryMetrics.RANKING, queryStart);
+		}
+	}
+
+	/**
+	 * Returns the PageRank of every vertex, computing them if needed
+	 */
+	private synchronized double[] pageRanks() {
+		if (pageRanks == null) {
+			pageRanks = LinkAnalysis.pageRank(csr(), LinkAnalysis.DEFAULT_DAMPING, LinkAnalysis.DEFAULT_TOLERANCE,
+					LinkAnalysis.DEFAULT_MAX_ITERATIONS);
+		}
+		return pageRanks;
+	}
+
+	/**
+	 * Returns the HITS hub and authority scores of every vertex, computing them if
+	 * needed
+	 */
+	private synchronized double[][] hitsScores() {
+		if (hitsScores == null) {
+			hitsScores = LinkAnalysis.hits(csr(), LinkAnalysis.DEFAULT_TOLERANCE, LinkAnalysis.DEFAULT_MAX_ITERATIONS);
+		}
+		return hitsScores;
+	}
+
+	/**
+	 * Returns the names of the k vertices with the highest scores, highest first.
+	 * Ties are broken in favour of the alphabetically first name, so rankings
+	 * don't depend on how the vertices are numbered. Keeps only a k-element
+	 * min-heap of indices, so it runs in O(n log k) without allocating per vertex.
+	 * 
+	 * @param scores
+	 *            The score of every vertex
+	 * @param k
+	 *            The number of vertices to output
+	 * @return The names of the top k vertices
+	 */
+	ArrayList<String> topVertices(double[] scores, int k) {
+		k = Math.max(0, Math.min(k, scores.length));
+		int[] heap = new int[k];
+		int size = 0;
+
+		for (int v = 0; v < scores.length; v++) {
+			if (size < k) {
+				// Percolate the new vertex up from the end of the heap
+				int j = size++;
+				while (j > 0 && ranksBelow(scores, v, heap[(j - 1) / 2])) {
+					heap[j] = heap[(j - 1) / 2];
+					j = (j - 1) / 2;
+				}
+				heap[j] = v;
+			} else if (k > 0 && ranksBelow(scores, heap[0], v)) {
+				// v beats the weakest of the top k, so it replaces the root
+				siftDown(scores, heap, size, v);
+			}
+		}
+
+		// Repeatedly remove the weakest vertex, filling the result from the back
+		String[] top = new String[size];
+		for (int i = size - 1; i >= 0; i--) {
+			top[i] = nameOf(heap[0]);
+			size--;
+			if (size > 0) {
+				siftDown(scores, heap, size, heap[size]);
+			}
+		}
+		return new ArrayList<String>(Arrays.asList(top));
+	}
+
+	/**
+	 * Whether vertex a ranks below vertex b
+	 */
+	private boolean ranksBelow(double[] scores, int a, int b) {
+		return scores[a] < scores[b] || (scores[a] == scores[b] && a != b && nameOf(a).compareTo(nameOf(b)) > 0);
+	}
+
+	/**
+	 * Places v at the root of the min-heap and sifts it down to its position
+	 */
+	private void siftDown(double[] scores, int[] heap, int size, int v) {
+		int j = 0;
+		while (true) {
+			int child = 2 * j + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && ranksBelow(scores, heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!ranksBelow(scores, heap[child], v)) {
+				break;
+			}
+			heap[j] = heap[child];
+			j = child;
+		}
+		heap[j] = v;
+	}
+
 }
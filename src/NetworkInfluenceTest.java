@@ -1,13 +1,46 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
 public class NetworkInfluenceTest {
+	/**
+	 * Writes a graph file with the given edges (each "u v") to a temporary file
+	 * and returns its path
+	 */
+	private static String writeGraph(int numVertices, String... edges) throws IOException {
+		File f = File.createTempFile("network_influence_test", ".txt");
+		f.deleteOnExit();
+		PrintWriter writer = new PrintWriter(f, "UTF-8");
+		writer.println(numVertices);
+		for (String edge : edges) {
+			writer.println(edge);
+		}
+		writer.close();
+		return f.getAbsolutePath();
+	}
+
 	@Test
 	public void BasicGraphTest() throws FileNotFoundException {
 		NetworkInfluence NI = new NetworkInfluence("test_graph_file.txt");
@@ -131,4 +164,951 @@ public class NetworkInfluenceTest {
 		assertTrue(result.contains("A"));
 		assertEquals(result.size(), 3);
 	}
+	
+	@Test
+	public void queryCacheTest() throws IOException {
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(4, "A B", "B C", "C D", "A C"));
+		QueryCache cache = NI.getQueryCache();
+		
+		assertEquals(NI.distance("A", "D"), 2);
+		assertEquals(NI.distance("A", "D"), 2);
+		assertEquals(cache.getHitCount(), 1);
+		
+		ArrayList<String> path = NI.shortestPath("A", "D");
+		path.clear();
+		ArrayList<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "A", "C", "D");
+		assertEquals(NI.shortestPath("A", "D"), expected);
+		assertEquals(cache.getHitCount(), 2);
+		
+		assertEquals(NI.influence("A"), NI.influence("A"), 0.000001);
+		assertEquals(cache.getHitCount(), 3);
+		
+		cache.invalidate();
+		assertEquals(cache.size(), 0);
+		assertEquals(NI.distance("A", "D"), 2);
+		assertEquals(cache.getHitCount(), 3);
+
+		// the capacity bounds the whole cache, however the entries are spread
+		for (int capacity : new int[] { 1, 3, 17, 100 }) {
+			QueryCache small = new QueryCache(capacity);
+			for (int u = 0; u < 1000; u++) {
+				small.put(QueryCache.INFLUENCE, u, -1, Float.valueOf(1), small.generation());
+			}
+			assertEquals(small.size(), capacity);
+		}
+	}
+	
+	@Test
+	public void queryCacheEvictionTest() throws IOException {
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(3, "A B", "B C"), 0);
+		
+		assertEquals(NI.distance("A", "C"), 2);
+		assertEquals(NI.distance("A", "C"), 2);
+		assertEquals(NI.getQueryCache().getHitCount(), 0);
+		assertEquals(NI.getQueryCache().size(), 0);
+	}
+	
+	@Test
+	public void frozenQueriesTest() throws Exception {
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(4, "A B", "B C", "C D", "A C"));
+		FrozenNetworkInfluence frozen = NI.freeze(2);
+		
+		assertEquals(frozen.distanceAsync("A", "D").join().intValue(), 2);
+		assertEquals(frozen.influenceAsync("B").join().floatValue(), NI.influence("B"), 0.000001);
+		
+		ArrayList<String> sources = new ArrayList<String>();
+		ArrayList<String> targets = new ArrayList<String>();
+		Collections.addAll(sources, "A", "D", "B");
+		Collections.addAll(targets, "D", "A", "C");
+		assertEquals(frozen.distanceBatch(sources, targets).join().toString(), "[2, -1, 1]");
+
+		// the approximate queries and the other rankings answer as the graph does
+		assertEquals(frozen.influence("A", 0.01), NI.influence("A", 0.01), 0);
+		assertEquals(frozen.mostInfluentialModular(2, 0.01), NI.mostInfluentialModular(2, 0.01));
+		assertEquals(frozen.mostInfluentialSubModular(2, 0.01), NI.mostInfluentialSubModular(2, 0.01));
+		assertEquals(frozen.pageRank("D"), NI.pageRank("D"), 0);
+		assertEquals(frozen.mostInfluentialPageRank(2), NI.mostInfluentialPageRank(2));
+		assertEquals(frozen.mostInfluentialHub(2), NI.mostInfluentialHub(2));
+		assertEquals(frozen.mostInfluentialAuthority(2), NI.mostInfluentialAuthority(2));
+		assertEquals(frozen.mostInfluentialBetweenness(2), NI.mostInfluentialBetweenness(2));
+		assertEquals(frozen.mostInfluentialCloseness(2), NI.mostInfluentialCloseness(2));
+		frozen.close();
+
+		// after close, blocking queries still work and asynchronous ones fail
+		assertEquals(frozen.distance("A", "D"), 2);
+		boolean failed = false;
+		try {
+			frozen.distanceAsync("A", "D").get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			failed = e.getCause() instanceof IllegalStateException;
+		}
+		assertTrue(failed);
+		assertTrue(frozen.influenceBatch(sources).isCompletedExceptionally());
+	}
+	
+	@Test
+	public void pageRankTest() throws IOException {
+		// B and C both link to A, which links back to B only
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(4, "A B", "B A", "C A", "D C"));
+		
+		float total = (float) (NI.pageRank("A") + NI.pageRank("B") + NI.pageRank("C") + NI.pageRank("D"));
+		assertEquals(total, 1.0, 0.000001);
+		assertTrue(NI.pageRank("A") > NI.pageRank("B"));
+		assertTrue(NI.pageRank("B") > NI.pageRank("C"));
+		assertTrue(NI.pageRank("C") > NI.pageRank("D"));
+		
+		ArrayList<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "A", "B");
+		assertEquals(NI.mostInfluentialPageRank(2), expected);
+	}
+	
+	@Test
+	public void hitsTest() throws IOException {
+		// H1 and H2 are hubs pointing at the authorities X and Y
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(5, "H1 X", "H1 Y", "H2 X", "H2 Y", "Y Z"));
+		
+		ArrayList<String> hubs = NI.mostInfluentialHub(2);
+		assertTrue(hubs.contains("H1"));
+		assertTrue(hubs.contains("H2"));
+		
+		ArrayList<String> authorities = NI.mostInfluentialAuthority(2);
+		assertTrue(authorities.contains("X"));
+		assertTrue(authorities.contains("Y"));
+		assertEquals(NI.authorityScore("H1"), 0.0, 0.000001);
+	}
+	
+	@Test
+	public void componentsTest() throws IOException {
+		// A, B and C form a cycle leading into the cycle D, E; F only points into it
+		NetworkInfluence NI = new NetworkInfluence(
+				writeGraph(6, "A B", "B C", "C A", "C D", "D E", "E D", "F A"));
+		
+		StronglyConnectedComponents sccs = NI.getComponents();
+		assertEquals(sccs.count(), 3);
+		assertEquals(NI.componentOf("A"), NI.componentOf("C"));
+		assertEquals(NI.componentOf("D"), NI.componentOf("E"));
+		assertTrue(NI.componentOf("F") < NI.componentOf("A"));
+		assertTrue(NI.componentOf("A") < NI.componentOf("D"));
+		
+		assertEquals(NI.distance("F", "E"), 5);
+		assertEquals(NI.distance("D", "A"), -1);
+		assertEquals(NI.shortestPath("E", "F").size(), 0);
+		assertEquals(NI.influence("D"), 1.5, 0.000001);
+	}
+	
+	@Test
+	public void deepComponentsTest() throws IOException {
+		// a chain this long overflows a recursive depth-first search
+		String[] edges = new String[200000];
+		for (int i = 0; i < edges.length; i++) {
+			edges[i] = "v" + i + " v" + (i + 1);
+		}
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(edges.length + 1, edges));
+		
+		assertEquals(NI.getComponents().count(), edges.length + 1);
+		assertEquals(NI.distance("v" + edges.length, "v0"), -1);
+	}
+	
+	@Test
+	public void centralityTest() throws IOException {
+		// two triangles joined only through the bridge vertex M
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(7, "A B", "B C", "C A", "C M", "M D", "D E", "E F",
+				"F D", "F M", "M C"));
+		
+		// small graphs are sampled completely, so the scores are exact
+		ArrayList<String> expected = new ArrayList<String>();
+		expected.add("M");
+		assertEquals(NI.mostInfluentialBetweenness(1), expected);
+		assertEquals(NI.mostInfluentialCloseness(1), expected);
+		assertEquals(NI.mostInfluentialBetweenness(7).size(), 7);
+	}
+	
+	@Test
+	public void applyDeltaTest() throws IOException {
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(4, "A B", "B C", "C D"));
+		assertEquals(NI.distance("A", "D"), 3);
+		
+		GraphDelta delta = new GraphDelta();
+		delta.removeEdge("B", "C");
+		delta.addEdge("A", "D");
+		delta.addEdge("D", "E");
+		NI.applyDelta(delta);
+		
+		// the cached distance must not survive the change
+		assertEquals(NI.distance("A", "D"), 1);
+		assertEquals(NI.distance("A", "C"), -1);
+		assertEquals(NI.distance("A", "E"), 2);
+		assertEquals(NI.outDegree("B"), 0);
+		assertEquals(NI.outDegree("A"), 2);
+	}
+	
+	@Test
+	public void dynamicInfluenceTest() throws IOException {
+		DynamicNetworkInfluence NI = new DynamicNetworkInfluence(writeGraph(6, "A B", "B C", "C D", "D E", "X A"));
+		// a point query computes its own score only, a ranking all the others
+		assertEquals(NI.influence("A"), 1.9375, 0.000001);
+		assertEquals(NI.getRecomputations(), 1);
+		assertEquals(NI.getStaleCount(), 5);
+		NI.mostInfluentialModular(1);
+		assertEquals(NI.getRecomputations(), 6);
+		assertEquals(NI.getStaleCount(), 0);
+		
+		// a shortcut from A to D changes the distances from A and X, not from C
+		assertTrue(NI.addEdge("A", "D"));
+		assertEquals(NI.getStaleCount(), 2);
+		assertEquals(NI.influence("A"), 2.5, 0.000001);
+		assertEquals(NI.influence("C"), 1.75, 0.000001);
+		assertEquals(NI.getRecomputations(), 7);
+		
+		// C to D is still on a shortest path from B and C, but no longer from A
+		assertTrue(NI.removeEdge("C", "D"));
+		assertEquals(NI.getStaleCount(), 3);
+		assertEquals(NI.influence("A"), 2.5, 0.000001);
+		assertEquals(NI.influence("B"), 1.5, 0.000001);
+		assertEquals(NI.getRecomputations(), 8);
+		
+		assertTrue(NI.addVertex("F"));
+		assertTrue(NI.addEdge("E", "F"));
+		assertTrue(!NI.addEdge("E", "F"));
+		ArrayList<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "A", "X");
+		assertEquals(NI.mostInfluentialModular(2), expected);
+		assertEquals(NI.influence("X"), 2.3125, 0.000001);
+		
+		// compressed, it answers as before and refuses edits as any compressed graph
+		assertTrue(NI.addEdge("F", "A"));
+		float influence = NI.influence("F");
+		ArrayList<String> top = NI.mostInfluentialModular(3);
+		NI.compress();
+		assertTrue(NI.isCompressed());
+		assertEquals(NI.influence("F"), influence, 0);
+		assertEquals(NI.mostInfluentialModular(3), top);
+		int vertices = NI.vertexCount();
+		boolean refused = false;
+		try {
+			NI.addEdge("A", "G");
+		} catch (IllegalStateException e) {
+			refused = true;
+		}
+		assertTrue(refused);
+		assertEquals(NI.vertexCount(), vertices);
+	}
+	
+	@Test
+	public void approximateInfluenceTest() throws IOException {
+		String[] edges = new String[40];
+		for (int i = 0; i < edges.length; i++) {
+			edges[i] = "V" + i + " V" + (i + 1);
+		}
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(edges.length + 1, edges));
+		float exact = NI.influence("V0");
+		
+		for (double epsilon : new double[] { 0.5, 0.01, 1e-5 }) {
+			float approximate = NI.influence("V0", epsilon);
+			assertTrue(approximate <= exact);
+			assertTrue(exact - approximate <= epsilon);
+		}
+		assertTrue(NI.influence("V0", 0.5) < exact);
+		assertEquals(NI.influence("V0", 0), exact, 0);
+		
+		ArrayList<String> start = new ArrayList<String>();
+		start.add("V0");
+		assertTrue(exact - NI.influence(start, 0.01) <= 0.01);
+		assertEquals(NI.mostInfluentialModular(1, 0.01).get(0), "V0");
+	}
+	
+	@Test
+	public void reorderTest() throws IOException {
+		String graph = writeGraph(7, "A B", "B C", "C A", "C M", "M D", "D E", "E F", "F D", "F M", "M C");
+		NetworkInfluence original = new NetworkInfluence(graph);
+		String[] names = { "A", "B", "C", "D", "E", "F", "M" };
+		int[] orderings = { VertexOrdering.BFS, VertexOrdering.RCM, VertexOrdering.DEGREE, VertexOrdering.GORDER };
+		for (int ordering : orderings) {
+			NetworkInfluence NI = new NetworkInfluence(graph);
+			NI.reorder(ordering);
+			for (String u : names) {
+				assertEquals(NI.outDegree(u), original.outDegree(u));
+				assertEquals(NI.influence(u), original.influence(u), 0);
+				for (String v : names) {
+					assertEquals(NI.distance(u, v), original.distance(u, v));
+				}
+			}
+			assertEquals(NI.shortestPath("A", "E").size(), original.shortestPath("A", "E").size());
+		}
+		
+		// scores kept by a dynamic graph follow its vertices to their new numbers
+		DynamicNetworkInfluence dynamic = new DynamicNetworkInfluence(graph);
+		dynamic.influence("A");
+		dynamic.addEdge("A", "E");
+		dynamic.reorder(VertexOrdering.RCM);
+		assertEquals(dynamic.influence("A"), 2.75, 0.000001);
+		assertEquals(dynamic.influence("E"), original.influence("E"), 0);
+	}
+	
+	@Test
+	public void rankingTest() throws IOException {
+		int[] orderings = { VertexOrdering.BFS, VertexOrdering.RCM, VertexOrdering.DEGREE, VertexOrdering.GORDER };
+		for (int seed = 0; seed < 40; seed++) {
+			// a small random graph whose vertices are numbered out of name order,
+			// with plenty of tied scores
+			Random random = new Random(seed);
+			int n = 12;
+			ArrayList<String> edges = new ArrayList<String>();
+			for (int u = 0; u < n; u++) {
+				edges.add(String.format("V%02d V%02d", u, random.nextInt(n)));
+				for (int e = random.nextInt(3); e > 0; e--) {
+					edges.add(String.format("V%02d V%02d", u, random.nextInt(n)));
+				}
+			}
+			Collections.shuffle(edges, random);
+			String graph = writeGraph(n, edges.toArray(new String[0]));
+			NetworkInfluence NI = new NetworkInfluence(graph);
+
+			// the true top 3 by influence and by out-degree, ties to the first name
+			final NetworkInfluence scored = NI;
+			ArrayList<String> byInfluence = new ArrayList<String>();
+			ArrayList<String> byDegree = new ArrayList<String>();
+			for (int u = 0; u < n; u++) {
+				byInfluence.add(String.format("V%02d", u));
+				byDegree.add(String.format("V%02d", u));
+			}
+			Collections.sort(byInfluence, (a, b) -> scored.influence(a) != scored.influence(b)
+					? Float.compare(scored.influence(b), scored.influence(a)) : a.compareTo(b));
+			Collections.sort(byDegree, (a, b) -> scored.outDegree(a) != scored.outDegree(b)
+					? Integer.compare(scored.outDegree(b), scored.outDegree(a)) : a.compareTo(b));
+			assertEquals(NI.mostInfluentialModular(3), new ArrayList<String>(byInfluence.subList(0, 3)));
+			assertEquals(NI.mostInfluentialDegree(3), new ArrayList<String>(byDegree.subList(0, 3)));
+			assertEquals(new DynamicNetworkInfluence(graph).mostInfluentialModular(3), NI.mostInfluentialModular(3));
+
+			// renumbering the vertices leaves every ranking unchanged
+			for (int ordering : orderings) {
+				NetworkInfluence reordered = new NetworkInfluence(graph);
+				reordered.reorder(ordering);
+				assertEquals(reordered.mostInfluentialDegree(3), NI.mostInfluentialDegree(3));
+				assertEquals(reordered.mostInfluentialModular(3), NI.mostInfluentialModular(3));
+				assertEquals(reordered.mostInfluentialModular(3, 0.01), NI.mostInfluentialModular(3, 0.01));
+				assertEquals(reordered.mostInfluentialSubModular(3), NI.mostInfluentialSubModular(3));
+			}
+		}
+	}
+
+	@Test
+	public void compressedGraphTest() throws IOException {
+		// similar, overlapping lists with runs, so references and intervals are used
+		ArrayList<String> edges = new ArrayList<String>();
+		for (int u = 0; u < 60; u++) {
+			for (int v = u / 3; v < u / 3 + 8; v++) {
+				edges.add("V" + u + " V" + v);
+			}
+			int far = u * 7 % 60;
+			if (far < u / 3 || far >= u / 3 + 8) {
+				edges.add("V" + u + " V" + far);
+			}
+		}
+		String graph = writeGraph(60, edges.toArray(new String[0]));
+		NetworkInfluence lists = new NetworkInfluence(graph);
+		NetworkInfluence compressed = new NetworkInfluence(graph);
+		compressed.compress();
+		NetworkInfluence loaded = NetworkInfluence.loadCompressed(graph, 0);
+		assertTrue(loaded.isCompressed());
+		
+		CsrGraph csr = lists.csr();
+		CompressedGraph packed = CompressedGraph.of(csr);
+		int[] expected = new int[csr.maxOutDegree()];
+		int[] actual = new int[packed.maxOutDegree()];
+		for (int v = 0; v < csr.vertices; v++) {
+			int count = csr.successors(v, expected);
+			java.util.Arrays.sort(expected, 0, count);
+			assertEquals(packed.successors(v, actual), count);
+			for (int i = 0; i < count; i++) {
+				assertEquals(actual[i], expected[i]);
+			}
+		}
+		
+		for (int u = 0; u < 60; u += 7) {
+			String name = "V" + u;
+			assertEquals(compressed.outDegree(name), lists.outDegree(name));
+			assertEquals(compressed.influence(name), lists.influence(name), 0);
+			assertEquals(loaded.influence(name), lists.influence(name), 0);
+			for (int v = 0; v < 60; v += 5) {
+				assertEquals(loaded.distance(name, "V" + v), lists.distance(name, "V" + v));
+			}
+		}
+		assertEquals(loaded.mostInfluentialPageRank(3), lists.mostInfluentialPageRank(3));
+	}
+
+	@Test
+	public void offHeapTest() throws IOException {
+		// a duplicate edge, a cycle and a vertex nothing reaches; the off-heap
+		// graph names its vertices outside ASCII, the list graph as N0 to N6
+		String[] names = { "A", "Z\u00fcrich", "\u6771\u4eac", "\ud83d\ude00", "E", "F", "G" };
+		int[][] edges = { { 0, 1 }, { 0, 1 }, { 1, 2 }, { 2, 3 }, { 3, 1 }, { 3, 4 }, { 4, 5 }, { 6, 0 } };
+		String[] named = new String[edges.length];
+		String[] numbered = new String[edges.length];
+		for (int i = 0; i < edges.length; i++) {
+			named[i] = names[edges[i][0]] + " " + names[edges[i][1]];
+			numbered[i] = "N" + edges[i][0] + " N" + edges[i][1];
+		}
+		String graph = writeGraph(7, named);
+		File mapped = File.createTempFile("off_heap_test", ".bin");
+		mapped.deleteOnExit();
+
+		NetworkInfluence lists = new NetworkInfluence(writeGraph(7, numbered));
+		NetworkInfluence direct = NetworkInfluence.loadOffHeap(graph, null, 0);
+		NetworkInfluence loaded = NetworkInfluence.loadOffHeap(graph, mapped.getAbsolutePath(), 0);
+		NetworkInfluence reopened = NetworkInfluence.openOffHeap(mapped.getAbsolutePath(), 0);
+		assertTrue(direct.isOffHeap());
+		assertTrue(reopened.getOffHeapGraph().isMapped());
+		assertNull(direct.indexOf("Zurich"));
+
+		for (NetworkInfluence offHeap : new NetworkInfluence[] { direct, loaded, reopened }) {
+			for (int u = 0; u < names.length; u++) {
+				// the name as read back in the platform's charset
+				String name = offHeap.nameOf(u);
+				assertEquals(offHeap.indexOf(name).intValue(), u);
+				assertEquals(offHeap.outDegree(name), lists.outDegree("N" + u));
+				assertEquals(offHeap.influence(name), lists.influence("N" + u), 0);
+				assertEquals(offHeap.influence(name, 0.1), lists.influence("N" + u, 0.1), 0);
+				for (int w = 0; w < names.length; w++) {
+					assertEquals(offHeap.distance(name, offHeap.nameOf(w)), lists.distance("N" + u, "N" + w));
+					ArrayList<String> path = new ArrayList<String>();
+					for (String v : offHeap.shortestPath(name, offHeap.nameOf(w))) {
+						path.add("N" + offHeap.indexOf(v));
+					}
+					assertEquals(path, lists.shortestPath("N" + u, "N" + w));
+				}
+			}
+			ArrayList<String> top = new ArrayList<String>();
+			for (String v : offHeap.mostInfluentialModular(3)) {
+				top.add("N" + offHeap.indexOf(v));
+			}
+			assertEquals(top, lists.mostInfluentialModular(3));
+		}
+
+		// the duplicate edge is kept once by every backend
+		NetworkInfluence compressed = NetworkInfluence.loadCompressed(writeGraph(7, numbered), 0);
+		assertEquals(reopened.getOffHeapGraph().edgeCount(), 7L);
+		assertEquals(direct.outDegree("A"), 1);
+		assertEquals(compressed.outDegree("N0"), 1);
+		assertEquals(lists.outDegree("N0"), 1);
+		ArrayList<String> degreeTop = lists.mostInfluentialDegree(4);
+		lists.compress();
+		assertEquals(lists.outDegree("N0"), 1);
+		assertEquals(lists.mostInfluentialDegree(4), degreeTop);
+		assertEquals(compressed.mostInfluentialDegree(4), degreeTop);
+
+		boolean changed = true;
+		try {
+			direct.reorder(VertexOrdering.BFS);
+		} catch (IllegalStateException e) {
+			changed = false;
+		}
+		assertTrue(!changed);
+	}
+
+	@Test
+	public void metricsTest() throws IOException {
+		// a chain, with no query cache
+		NetworkInfluence NI = new NetworkInfluence(writeGraph(3, "A B", "B C"), 0);
+		QueryMetrics metrics = NI.getQueryMetrics();
+		NI.influence("A");
+		NI.influence("C");
+		NI.distance("A", "C");
+		NI.mostInfluentialDegree(1);
+		assertEquals(metrics.getQueryCounts().get("influence").longValue(), 2L);
+		assertEquals(metrics.getQueryCounts().get("distance").longValue(), 1L);
+		assertEquals(metrics.getQueryCounts().get("ranking").longValue(), 1L);
+		assertEquals(metrics.getQueryCounts().get("shortestPath").longValue(), 0L);
+		assertEquals(metrics.getLatencies(QueryMetrics.INFLUENCE).getCount(), 2L);
+		// C is a sink, so its influence is known without a search
+		assertEquals(metrics.getSearches(), 2L);
+		assertEquals(metrics.getVisitedVertices(), 6L);
+		metrics.reset();
+		assertEquals(metrics.getSearches(), 0L);
+		assertEquals(metrics.getQueryCounts().get("influence").longValue(), 0L);
+
+		CrawlMetrics crawl = new CrawlMetrics();
+		CrawlMetrics.CountingInputStream body = CrawlMetrics.count(new ByteArrayInputStream(new byte[100]));
+		long start = System.nanoTime();
+		while (body.read(new byte[30], 0, 30) > 0) {
+		}
+		crawl.pageScanned("/wiki/A", start, start, body, false);
+		crawl.pageFailed();
+		assertEquals(crawl.getPagesFetched(), 1L);
+		assertEquals(crawl.getBytesDownloaded(), 100L);
+		assertEquals(crawl.getTopicRejectRate(), 1.0, 0);
+		assertEquals(crawl.getFailures(), 1L);
+	}
+
+	@Test
+	public void queryServiceTest() throws Exception {
+		// a duplicate edge, a cycle and a vertex nothing reaches
+		String graph = writeGraph(7, "A B", "A B", "B C", "C D", "D B", "D E", "E F", "G A");
+		QueryService service = new QueryService(graph, 0);
+		NetworkInfluence NI = service.getGraph();
+		String[] names = { "A", "B", "C", "D", "E", "F", "G" };
+
+		// a shared search answers as the single queries do
+		for (String u : names) {
+			NetworkInfluence.SourceSearch search = NI.searchFrom(NI.indexOf(u), QueryMetrics.DISTANCE);
+			assertEquals(search.influence(), NI.influence(u), 0);
+			for (String v : names) {
+				assertEquals(search.distance(NI.indexOf(v)), NI.distance(u, v));
+				assertEquals(search.shortestPath(NI.indexOf(v)), NI.shortestPath(u, v));
+			}
+		}
+
+		service.start(0, 2);
+		try {
+			HttpClient client = HttpClient.newHttpClient();
+			String base = service.getBaseUrl();
+			assertEquals(get(client, base + "/distance?from=A&to=F"), "200 {\"distance\":5}");
+			assertEquals(get(client, base + "/distance?from=F&to=A"), "200 {\"distance\":-1}");
+			assertEquals(get(client, base + "/shortestPath?from=G&to=C"),
+					"200 {\"path\":[\"G\",\"A\",\"B\",\"C\"]}");
+			assertEquals(get(client, base + "/influence?vertex=F"), "200 {\"influence\":1.0}");
+			assertEquals(get(client, base + "/top?k=1&method=degree"),
+					"200 {\"vertices\":[\"" + NI.mostInfluentialDegree(1).get(0) + "\"]}");
+			assertEquals(get(client, base + "/distance?from=A&to=Z"), "404 {\"error\":\"Unknown vertex: Z\"}");
+			assertEquals(get(client, base + "/top?k=1&method=random").substring(0, 3), "400");
+			assertEquals(get(client, base + "/top?k=" + (QueryService.MAX_K + 1)).substring(0, 3), "400");
+			assertEquals(service.getLatencies(QueryService.DISTANCE).getCount(), 2L);
+
+			// every answer is a query of the graph, whether or not it shared a search
+			long queries = NI.getQueryMetrics().getLatencies(QueryMetrics.DISTANCE).getCount();
+			ArrayList<java.util.concurrent.CompletableFuture<HttpResponse<String>>> answers =
+					new ArrayList<java.util.concurrent.CompletableFuture<HttpResponse<String>>>();
+			for (int i = 0; i < 20; i++) {
+				answers.add(client.sendAsync(HttpRequest.newBuilder(URI.create(base + "/distance?from=A&to=" + names[i % 7]))
+						.build(), HttpResponse.BodyHandlers.ofString()));
+			}
+			for (java.util.concurrent.CompletableFuture<HttpResponse<String>> answer : answers) {
+				assertEquals(answer.get().statusCode(), 200);
+			}
+			assertEquals(NI.getQueryMetrics().getLatencies(QueryMetrics.DISTANCE).getCount(), queries + 20);
+		} finally {
+			service.stop();
+		}
+	}
+
+	@Test
+	public void graphWriterTest() throws IOException {
+		ArrayList<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "3", "/wiki/A /wiki/B", "/wiki/A /wiki/C", "/wiki/B /wiki/A");
+
+		// duplicates, a link to itself, to a non-page and through a redirect
+		GraphWriter writer = new GraphWriter();
+		writer.addRedirect("R", "B");
+		writer.addPage("A", java.util.Arrays.asList("B", "B", "A", "C", "R", "D"));
+		writer.addPage("B", java.util.Arrays.asList("A"));
+		writer.addPage("C", new ArrayList<String>());
+		writer.addPage("A", java.util.Arrays.asList("D"));
+		assertEquals(writer.getPageCount(), 3);
+		File f = File.createTempFile("network_influence_test", ".txt");
+		f.deleteOnExit();
+		assertEquals(writer.write(f.getAbsolutePath()), 3L);
+		assertEquals(java.nio.file.Files.readAllLines(f.toPath()), expected);
+
+		// the same pages merged from two writers
+		GraphWriter first = new GraphWriter();
+		first.addPage("A", java.util.Arrays.asList("B", "B", "A", "C", "R", "D"));
+		first.addRedirect("R", "B");
+		GraphWriter second = new GraphWriter();
+		second.addPage("B", java.util.Arrays.asList("A"));
+		second.addPage("C", new ArrayList<String>());
+		second.addPage("A", java.util.Arrays.asList("D"));
+		GraphWriter merged = new GraphWriter();
+		merged.addAll(first);
+		merged.addAll(second);
+		assertEquals(merged.getPageCount(), 3);
+		assertEquals(merged.write(f.getAbsolutePath()), 3L);
+		assertEquals(java.nio.file.Files.readAllLines(f.toPath()), expected);
+	}
+
+	@Test
+	public void dumpIngesterTest() throws Exception {
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("topic");
+		ArrayList<String> links = new ArrayList<String>();
+		Collections.addAll(links, "Foo_bar", "Baz");
+		assertEquals(DumpIngester.wikiLinks("topic [[foo bar|Foo]], [[Help:Contents]], [[Page#Top]], [[ baz ]]", topics),
+				links);
+		assertNull(DumpIngester.wikiLinks("[[Foo]]", topics));
+		assertEquals(DumpIngester.normalizeTitle(" hello world "), "Hello_world");
+		assertEquals(DumpIngester.normalizeTitle("Already_upper"), "Already_upper");
+		assertEquals(DumpIngester.normalizeTitle(""), "");
+
+		File xml = File.createTempFile("network_influence_test", ".xml");
+		xml.deleteOnExit();
+		PrintWriter writer = new PrintWriter(xml, "UTF-8");
+		writer.println("<mediawiki>");
+		writer.println("<page><title>Alpha</title><ns>0</ns><revision><text>topic [[beta]] [[Gamma|g]] [[Delta]]</text></revision></page>");
+		writer.println("<page><title>Beta</title><ns>0</ns><revision><text>topic [[Alpha]]</text></revision></page>");
+		writer.println("<page><title>Gamma</title><ns>0</ns><redirect title=\"Beta\" /><revision><text>#REDIRECT [[Beta]]</text></revision></page>");
+		writer.println("<page><title>Delta</title><ns>0</ns><revision><text>[[Alpha]]</text></revision></page>");
+		writer.println("<page><title>Talk:Alpha</title><ns>1</ns><revision><text>topic [[Beta]]</text></revision></page>");
+		writer.println("</mediawiki>");
+		writer.close();
+		File bz2 = new File(xml.getAbsolutePath() + ".bz2");
+		bz2.deleteOnExit();
+		assertEquals(new ProcessBuilder("bzip2", "-c", xml.getAbsolutePath()).redirectOutput(bz2).start().waitFor(),
+				0);
+
+		ArrayList<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "2", "/wiki/Alpha /wiki/Beta", "/wiki/Beta /wiki/Alpha");
+		File out = File.createTempFile("network_influence_test", ".txt");
+		out.deleteOnExit();
+		for (File dump : new File[] { xml, bz2 }) {
+			DumpIngester ingester = new DumpIngester(topics, 2);
+			assertEquals(ingester.ingest(dump, out.getAbsolutePath()), 2);
+			assertEquals(ingester.getPagesRead(), 3L);
+			assertEquals(ingester.getEdgeCount(), 2L);
+			java.util.List<String> lines = java.nio.file.Files.readAllLines(out.toPath());
+			// the parsers add the pages in any order
+			Collections.sort(lines.subList(1, lines.size()));
+			assertEquals(lines, expected);
+		}
+
+		// a damaged bzip2 file fails the ingest
+		File broken = File.createTempFile("network_influence_test", ".xml.bz2");
+		broken.deleteOnExit();
+		java.nio.file.Files.write(broken.toPath(), "not bzip2".getBytes("UTF-8"));
+		boolean failed = false;
+		try {
+			new DumpIngester(topics, 2).ingest(broken, out.getAbsolutePath());
+		} catch (IOException e) {
+			failed = true;
+		}
+		assertTrue(failed);
+	}
+
+	@Test
+	public void fetchStageCancelTest() throws Exception {
+		String[] topicWords = { "complexity" };
+		LocalPageServer server = new LocalPageServer(PageGenerator.generate(10, 3, topicWords, 1.0, 311));
+		server.setLatency(300, 0, 0);
+		server.start(4);
+		FetchStage stage = new FetchStage(PageFetcher.shared(), 1, false, () -> true);
+		CrawlMetrics metrics = new CrawlMetrics();
+		stage.setMetrics(metrics);
+		try {
+			ArrayList<String> topics = new ArrayList<String>();
+			topics.add("complexity");
+			String base = server.getBaseUrl() + "/wiki/";
+
+			// a cancelled page keeps its slot until its request is answered
+			long start = System.nanoTime();
+			assertTrue(stage.fetch(base + PageGenerator.title(0), topics).cancel(false));
+			java.util.concurrent.CompletableFuture<ArrayList<String>> next = stage.fetch(base + PageGenerator.title(1),
+					topics);
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+			assertTrue(next.get(5, TimeUnit.SECONDS) != null);
+
+			// and it is neither a page nor a failure
+			assertEquals(stage.getFailureCount(), 0L);
+			assertEquals(metrics.getFailures(), 0L);
+		} finally {
+			stage.shutdown();
+			server.stop();
+		}
+		assertTrue(stage.isShutdown());
+	}
+
+	@Test
+	public void pageFetcherTest() throws Exception {
+		StringBuilder html = new StringBuilder("<p>");
+		for (int i = 0; i < 2000; i++) {
+			html.append("complexity <a href=\"/wiki/Page\">page</a>\n");
+		}
+		HashMap<String, String> pages = new HashMap<String, String>();
+		pages.put("Page", html.toString());
+		LocalPageServer server = new LocalPageServer(pages);
+		server.start(4);
+		PageFetcher fetcher = new PageFetcher(Duration.ofSeconds(5), Duration.ofMillis(300), Duration.ofMillis(300));
+		try {
+			String url = server.getBaseUrl() + "/wiki/Page";
+
+			// the body comes gzipped and is read decompressed
+			try (InputStream in = fetcher.open(url)) {
+				assertEquals(new String(in.readAllBytes(), StandardCharsets.UTF_8), html.toString());
+			}
+			assertTrue(server.getBytesSent() < html.length() / 10);
+
+			// any status but 200 fails
+			IOException missing = openFailure(fetcher, server.getBaseUrl() + "/wiki/Missing");
+			assertTrue(missing != null && missing.getMessage().startsWith("HTTP 404"));
+
+			// headers arriving too late time out
+			server.setLatency(1000, 0, 0);
+			assertTrue(openFailure(fetcher, url) instanceof HttpTimeoutException);
+
+			// and so does a body that stalls after the headers
+			server.setLatency(0, 0, 0);
+			server.setStall(2000);
+			long start = System.nanoTime();
+			IOException stalled = null;
+			try (InputStream in = fetcher.open(url)) {
+				in.readAllBytes();
+			} catch (IOException e) {
+				stalled = e;
+			}
+			assertTrue(stalled instanceof HttpTimeoutException);
+			assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * @return Why opening the page failed, or null if it didn't
+	 */
+	private static IOException openFailure(PageFetcher fetcher, String url) {
+		try {
+			fetcher.open(url).close();
+			return null;
+		} catch (IOException e) {
+			return e;
+		}
+	}
+
+	@Test
+	public void incrementalRecrawlTest() throws Exception {
+		HashMap<String, String> pages = new HashMap<String, String>();
+		pages.put("A", "<p>topic <a href=\"/wiki/B\">b</a> <a href=\"/wiki/C\">c</a></p>");
+		pages.put("B", "<p>topic <a href=\"/wiki/A\">a</a></p>");
+		pages.put("C", "<p>topic <a href=\"/wiki/A\">a</a></p>");
+		LocalPageServer server = new LocalPageServer(pages);
+		server.start(4);
+		try {
+			ArrayList<String> topics = new ArrayList<String>();
+			topics.add("topic");
+			String graph = writeGraph(3, "/wiki/A /wiki/B", "/wiki/A /wiki/C", "/wiki/B /wiki/A", "/wiki/C /wiki/A");
+			File revisions = File.createTempFile("network_influence_test", ".tsv");
+			revisions.delete();
+			revisions.deleteOnExit();
+			IncrementalRecrawl recrawl = new IncrementalRecrawl(server.getBaseUrl(), topics, graph,
+					revisions.getAbsolutePath());
+			recrawl.setPoliteness(0, 0);
+			recrawl.setFetcher(new PageFetcher(Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(300)));
+
+			// the first refresh fetches every page
+			assertTrue(recrawl.recrawl(graph).isEmpty());
+			assertEquals(recrawl.getPagesChanged(), 3);
+
+			// a page that can't be read is kept as it was, and the rest still refreshed
+			server.putPage("B", "<p>topic <a href=\"/wiki/C\">c</a></p>");
+			server.setStall(2000);
+			assertTrue(recrawl.recrawl(graph).isEmpty());
+			assertEquals(recrawl.getPagesChecked(), 3);
+			assertEquals(recrawl.getPagesChanged(), 0);
+			assertEquals(recrawl.getPagesFailed(), 1);
+
+			// and refreshed once it can be
+			server.setStall(0);
+			GraphDelta delta = recrawl.recrawl(graph);
+			assertEquals(recrawl.getPagesChanged(), 1);
+			assertEquals(recrawl.getPagesFailed(), 0);
+			assertEquals(delta.getAdded().size(), 1);
+			assertEquals(delta.getAdded().get(0)[1], "/wiki/C");
+			assertEquals(delta.getRemoved().size(), 1);
+			assertEquals(delta.getRemoved().get(0)[1], "/wiki/A");
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void politenessThrottleTest() throws InterruptedException {
+		CrawlMetrics metrics = new CrawlMetrics();
+		PolitenessThrottle throttle = new PolitenessThrottle(2, 100, metrics);
+		long start = System.nanoTime();
+		throttle.acquire();
+		assertTrue(throttle.tryAcquire());
+		// the third request must wait for a pause, so an optional one is refused
+		assertTrue(!throttle.tryAcquire());
+		throttle.acquire();
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertTrue(metrics.getThrottleSeconds() >= 0.1);
+		assertEquals(throttle.getRequestCount(), 3L);
+		throttle.resetRequestCount();
+		assertEquals(throttle.getRequestCount(), 0L);
+
+		// without a policy nothing waits
+		PolitenessThrottle off = new PolitenessThrottle(0, 100000, null);
+		for (int i = 0; i < 1000; i++) {
+			off.acquire();
+		}
+		assertTrue(off.tryAcquire());
+	}
+
+	@Test
+	public void visitedSetTest() {
+		// sized far below what is added, so the table grows and the filter fills up
+		VisitedSet[] sets = { new CompactVisitedSet(100, false), new CompactVisitedSet(100, true),
+				new HashVisitedSet() };
+		for (VisitedSet set : sets) {
+			for (int i = 0; i < 20000; i++) {
+				assertTrue(set.add("Page_" + i));
+			}
+			for (int i = 0; i < 20000; i++) {
+				assertTrue(!set.add("Page_" + i));
+				assertTrue(set.contains("Page_" + i));
+			}
+			for (int i = 20000; i < 40000; i++) {
+				assertTrue(!set.contains("Page_" + i));
+			}
+			assertEquals(set.size(), 20000L);
+		}
+		assertTrue(CompactVisitedSet.fingerprint("Page_1") != CompactVisitedSet.fingerprint("Page_2"));
+
+		BloomFilter filter = new BloomFilter(10000);
+		Random random = new Random(311);
+		long[] added = new long[10000];
+		for (int i = 0; i < added.length; i++) {
+			added[i] = random.nextLong();
+			filter.add(added[i]);
+		}
+		for (long fp : added) {
+			assertTrue(filter.mightContain(fp));
+		}
+		// about 1% of absent fingerprints may be reported present
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.mightContain(random.nextLong())) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 300);
+	}
+
+	@Test
+	public void spillingFrontierTest() throws IOException {
+		File dir = java.nio.file.Files.createTempDirectory("network_influence_test").toFile();
+		dir.deleteOnExit();
+		// a budget of a few pages, so the tail spills and is read back many times
+		SpillingFrontier frontier = new SpillingFrontier(dir, 4096);
+		MemoryFrontier expected = new MemoryFrontier();
+		Random random = new Random(311);
+		int added = 0;
+		for (int round = 0; round < 3000; round++) {
+			// mostly adding at first, then mostly removing, until it is empty
+			if (added < 2000 && (expected.isEmpty() || random.nextInt(10) < (round < 1500 ? 7 : 3))) {
+				ArrayList<String> links = new ArrayList<String>();
+				for (int i = random.nextInt(20); i > 0; i--) {
+					links.add("Link_" + added + "_" + i);
+				}
+				frontier.add("Page_" + added, links);
+				expected.add("Page_" + added, links);
+				added++;
+			} else if (!expected.isEmpty()) {
+				FrontierPage page = frontier.remove();
+				FrontierPage want = expected.remove();
+				assertEquals(page.getPage(), want.getPage());
+				assertEquals(page.getLinks(), want.getLinks());
+			}
+			assertEquals(frontier.size(), expected.size());
+		}
+		while (!expected.isEmpty()) {
+			assertEquals(frontier.remove().getPage(), expected.remove().getPage());
+		}
+		assertTrue(frontier.isEmpty());
+		assertTrue(frontier.getSpilledPages() > 0);
+		frontier.close();
+		expected.close();
+		assertEquals(dir.list().length, 0);
+	}
+
+	@Test
+	public void focusedFrontierTest() {
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("graph theory");
+		FocusedFrontier frontier = new FocusedFrontier(topics);
+		assertEquals(frontier.topicFraction("Graph Theory"), 1.0, 0);
+		assertEquals(frontier.topicFraction("a graph"), 0.5, 0);
+
+		// higher scores first, ties in the order first offered; a second page
+		// linking to C lifts it above A, and it still comes out once
+		frontier.offer("A", 0);
+		frontier.offer("B", 1);
+		frontier.offer("C", 0);
+		frontier.offer("D", 1);
+		frontier.offer("C", 0);
+		assertEquals(frontier.size(), 4);
+		ArrayList<String> order = new ArrayList<String>();
+		while (!frontier.isEmpty()) {
+			order.add(frontier.remove());
+		}
+		ArrayList<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "B", "D", "C", "A");
+		assertEquals(order, expected);
+		assertNull(frontier.remove());
+
+		// scored by anchor text and title; visited links aren't offered
+		ScannedPage page = new ScannedPage();
+		Collections.addAll(page.links, "Cooking", "Trees", "Visited", "Graph_theory");
+		Collections.addAll(page.anchors, "recipes", "a graph", "graph theory", "graph theory");
+		VisitedSet visited = new HashVisitedSet();
+		visited.add("Visited");
+		frontier.offerLinks(page, visited);
+		assertEquals(frontier.size(), 3);
+		assertEquals(frontier.remove(), "Graph_theory");
+		assertEquals(frontier.remove(), "Trees");
+		assertEquals(frontier.remove(), "Cooking");
+	}
+
+	@Test
+	public void shardedCrawlTest() throws Exception {
+		String[] topicWords = { "complexity" };
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		LocalPageServer server = new LocalPageServer(PageGenerator.generate(60, 10, topicWords, 0.7, 311));
+		server.start(4);
+		try {
+			File out = File.createTempFile("network_influence_test", ".txt");
+			out.deleteOnExit();
+			String seed = "/wiki/" + PageGenerator.title(0);
+			WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), seed, 1000, topics, out.getAbsolutePath());
+			crawler.setPoliteness(0, 0);
+			crawler.crawl();
+			assertTrue(crawler.getMetrics().getGraphWriteSeconds() > 0);
+
+			// with more pages wanted than there are, the crawl ends when the work
+			// runs out, having kept the same pages as WikiCrawler
+			ShardedCrawl all = new ShardedCrawl(server.getBaseUrl(), seed, 1000, topics, out.getAbsolutePath(), 2);
+			all.setPoliteness(0, 0);
+			runWithin(all, 60);
+			assertEquals((long) all.getPagesKept(), crawler.getPagesAccepted());
+			assertTrue(all.getPagesKept() > 5);
+			assertTrue(all.getMetrics().getGraphWriteSeconds() > 0);
+
+			// and otherwise when exactly max pages were kept
+			ShardedCrawl some = new ShardedCrawl(server.getBaseUrl(), seed, 5, topics, out.getAbsolutePath(), 2);
+			some.setPoliteness(0, 0);
+			runWithin(some, 60);
+			assertEquals(some.getPagesKept(), 5);
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Runs a sharded crawl, failing if it hasn't ended within the given time
+	 */
+	private static void runWithin(ShardedCrawl crawl, int seconds) throws Exception {
+		java.util.concurrent.FutureTask<Void> task = new java.util.concurrent.FutureTask<Void>(() -> {
+			crawl.crawl();
+			return null;
+		});
+		Thread thread = new Thread(task, "sharded-crawl-test");
+		thread.setDaemon(true);
+		thread.start();
+		task.get(seconds, TimeUnit.SECONDS);
+	}
+
+	private static String get(HttpClient client, String url) throws Exception {
+		HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+				HttpResponse.BodyHandlers.ofString());
+		return response.statusCode() + " " + response.body();
+	}
 }
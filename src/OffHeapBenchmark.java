@@ -0,0 +1,126 @@
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * OffHeapBenchmark class
+ *
+ * Loads the same graph on the heap, as adjacency lists, and off the heap, in
+ * direct memory and mapped from a file, and compares what each costs the
+ * garbage collector: the heap it retains, the pause of a full collection, and
+ * the collections and collection time during a run of influence and distance
+ * queries, with the latency of those queries.
+ *
+ * Usage: OffHeapBenchmark [graphFile | vertices] [avgDegree] [queries]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class OffHeapBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String graphFile;
+		if (args.length > 0 && new File(args[0]).isFile()) {
+			graphFile = args[0];
+		} else {
+			int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+			int degree = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+			File f = File.createTempFile("off_heap_benchmark", ".txt");
+			f.deleteOnExit();
+			graphFile = f.getAbsolutePath();
+			GraphGenerator.writePowerLawGraph(graphFile, vertices, degree, 311);
+		}
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+		File mapped = File.createTempFile("off_heap_benchmark", ".bin");
+		mapped.deleteOnExit();
+
+		String[] backends = { "on-heap lists", "off-heap direct", "off-heap mapped", "off-heap reopened" };
+		for (String backend : backends) {
+			System.gc();
+			long before = usedMemory();
+			long start = System.nanoTime();
+			NetworkInfluence network;
+			if (backend.equals("on-heap lists")) {
+				network = new NetworkInfluence(graphFile, 0);
+			} else if (backend.equals("off-heap direct")) {
+				network = NetworkInfluence.loadOffHeap(graphFile, null, 0);
+			} else if (backend.equals("off-heap mapped")) {
+				network = NetworkInfluence.loadOffHeap(graphFile, mapped.getAbsolutePath(), 0);
+			} else {
+				network = NetworkInfluence.openOffHeap(mapped.getAbsolutePath(), 0);
+			}
+			double loadSeconds = elapsed(start);
+			System.gc();
+			double retained = (usedMemory() - before) / 1048576.0;
+			double offHeap = network.isOffHeap() ? network.getOffHeapGraph().getStorageBytes() / 1048576.0 : 0;
+
+			// a full collection has to trace whatever the graph keeps on the heap
+			start = System.nanoTime();
+			for (int i = 0; i < 3; i++) {
+				System.gc();
+			}
+			double fullGcMillis = elapsed(start) * 1000 / 3;
+
+			int n = network.vertexCount();
+			Random random = new Random(311);
+			String[] sources = new String[queries];
+			String[] targets = new String[queries];
+			for (int i = 0; i < queries; i++) {
+				sources[i] = network.nameOf(random.nextInt(n));
+				targets[i] = network.nameOf(random.nextInt(n));
+			}
+			// warm up, then time every query
+			for (int i = 0; i < Math.min(20, queries); i++) {
+				network.influence(sources[i]);
+				network.distance(sources[i], targets[i]);
+			}
+			LatencyHistogram influence = new LatencyHistogram();
+			LatencyHistogram distance = new LatencyHistogram();
+			long collections = collections();
+			long collectionMillis = collectionMillis();
+			for (int i = 0; i < queries; i++) {
+				long queryStart = System.nanoTime();
+				network.influence(sources[i]);
+				influence.record(System.nanoTime() - queryStart);
+				queryStart = System.nanoTime();
+				network.distance(sources[i], targets[i]);
+				distance.record(System.nanoTime() - queryStart);
+			}
+			collections = collections() - collections;
+			collectionMillis = collectionMillis() - collectionMillis;
+
+			System.out.printf("%-17s load %5.1f s, heap retained %6.1f MB, off-heap %6.1f MB, full GC %6.1f ms%n",
+					backend, loadSeconds, retained, offHeap, fullGcMillis);
+			System.out.printf(
+					"%-17s influence p50 %6.2f ms p99 %6.2f ms, distance p50 %6.2f ms p99 %6.2f ms, %d GCs taking %d ms%n",
+					backend, influence.percentileMillis(0.5), influence.percentileMillis(0.99),
+					distance.percentileMillis(0.5), distance.percentileMillis(0.99), collections, collectionMillis);
+			network = null;
+		}
+	}
+
+	private static long collections() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long collectionMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private static long usedMemory() {
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1000000000.0;
+	}
+}
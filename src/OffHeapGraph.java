@@ -0,0 +1,676 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * OffHeapGraph class
+ *
+ * A read-only AdjacencyStore that keeps the whole graph outside the Java heap,
+ * for graphs whose arrays would otherwise be multi-gigabyte objects the
+ * garbage collector has to keep track of. The memory is either allocated
+ * directly or mapped from a file, which can be opened again later without
+ * reading the graph file.
+ *
+ * Everything is kept in flat tables of little-endian numbers:
+ *
+ * - the index: the start of every vertex's successors (n + 1 longs), the
+ * start of every vertex's name (n + 1 longs), and an open-addressing hash
+ * table from names to vertices, holding the vertex number plus one in each
+ * used slot,
+ *
+ * - the names of all vertices one after another, in UTF-8, and
+ *
+ * - the successors of all vertices, one int each, grouped by vertex in the
+ * order the graph file lists the edges. An edge the file lists more than once
+ * is kept the first time, as in the other backends.
+ *
+ * Tables over 1 GB are split into segments, since a ByteBuffer holds at most
+ * 2 GB. Looking a name up compares it with the stored bytes directly, and
+ * influence and distance searches keep their queue and visited marks in
+ * off-heap scratch tables of their thread, so answering a query allocates
+ * nothing on the heap but its result.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the
+ * maximum heap size; a mapped file has no such limit. Either kind of memory is
+ * released once the graph is garbage collected.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+class OffHeapGraph implements AdjacencyStore {
+
+	/**
+	 * Positions within a table are the segment number shifted by this, plus the
+	 * offset
+	 */
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	/**
+	 * "OFFHEAP1", the first long of a mapped graph file
+	 */
+	private static final long MAGIC = 0x4f46464845415031L;
+
+	/**
+	 * Bytes at the start of a mapped graph file that describe its tables
+	 */
+	private static final int HEADER_BYTES = 64;
+
+	private final int vertices;
+	private final long edges;
+	private final int maxOutDegree;
+	private final int tableMask;
+
+	private final Storage index;
+	private final Storage names;
+	private final Storage targets;
+
+	/**
+	 * Positions of the name starts and of the hash table in the index; the
+	 * successor starts come first
+	 */
+	private final long nameOffsetsAt;
+	private final long tableAt;
+
+	/**
+	 * Search scratch tables of each thread
+	 */
+	private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+	private OffHeapGraph(int vertices, long edges, int maxOutDegree, int tableCapacity, Storage index,
+			Storage names, Storage targets) {
+		this.vertices = vertices;
+		this.edges = edges;
+		this.maxOutDegree = maxOutDegree;
+		this.tableMask = tableCapacity - 1;
+		this.index = index;
+		this.names = names;
+		this.targets = targets;
+		nameOffsetsAt = 8L * (vertices + 1);
+		tableAt = 2 * nameOffsetsAt;
+	}
+
+	/**
+	 * Loads the graph stored at graphData, in the format NetworkInfluence reads.
+	 * The file is read twice, and only one line of it is held on the heap at a
+	 * time. Each edge is kept once, however often the file lists it.
+	 *
+	 * @param graphData
+	 *            The absolute file path of the file that stores the graph
+	 * @param mappedFile
+	 *            The file to map the tables from, which is overwritten, or null
+	 *            to allocate them directly
+	 * @return The loaded graph
+	 * @throws IOException
+	 */
+	static OffHeapGraph load(String graphData, File mappedFile) throws IOException {
+		RandomAccessFile file = null;
+		FileChannel channel = null;
+		if (mappedFile != null) {
+			file = new RandomAccessFile(mappedFile, "rw");
+			file.setLength(0);
+			channel = file.getChannel();
+		}
+		try {
+			return load(graphData, channel);
+		} finally {
+			if (file != null) {
+				// the mappings stay valid after the file is closed
+				file.close();
+			}
+		}
+	}
+
+	private static OffHeapGraph load(String graphData, FileChannel channel) throws IOException {
+		// First pass: name the vertices, count their out-degrees into the
+		// successor starts, and build the hash table
+		int numVertices;
+		Loader loader;
+		try (BufferedReader reader = new BufferedReader(new FileReader(graphData))) {
+			numVertices = Integer.parseInt(reader.readLine().trim());
+			loader = new Loader(channel, numVertices);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] components = line.split("\\s+");
+				if (components.length != 2) {
+					throw new IllegalArgumentException("Input file misformatted: " + line);
+				}
+				int u = loader.vertex(components[0]);
+				loader.vertex(components[1]);
+				loader.index.putLong(8L * (u + 1), loader.index.getLong(8L * (u + 1)) + 1);
+			}
+		}
+		if (loader.vertices != numVertices) {
+			throw new IllegalArgumentException("The wrong number of vertices were found in the file: "
+					+ loader.vertices);
+		}
+
+		Storage index = loader.index;
+		long numEdges = 0;
+		int maxOutDegree = 0;
+		for (int v = 0; v < numVertices; v++) {
+			long degree = index.getLong(8L * (v + 1));
+			maxOutDegree = (int) Math.max(maxOutDegree, degree);
+			numEdges += degree;
+			index.putLong(8L * (v + 1), numEdges);
+		}
+		Storage names = loader.finishNames();
+		long targetsAt = align(names.position + names.bytes);
+		Storage targets = new Storage(channel, targetsAt, 4 * numEdges, true);
+
+		// Second pass: place every edge, using the successor start of its source
+		// as the next free slot; afterwards each start holds the next vertex's
+		OffHeapGraph graph = new OffHeapGraph(numVertices, numEdges, maxOutDegree, loader.tableCapacity, index,
+				names, targets);
+		try (BufferedReader reader = new BufferedReader(new FileReader(graphData))) {
+			reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] components = line.split("\\s+");
+				int u = graph.indexOf(components[0]);
+				long slot = index.getLong(8L * u);
+				targets.putInt(4 * slot, graph.indexOf(components[1]));
+				index.putLong(8L * u, slot + 1);
+			}
+		}
+		for (int v = numVertices; v > 0; v--) {
+			index.putLong(8L * v, index.getLong(8L * (v - 1)));
+		}
+		index.putLong(0, 0);
+
+		// Drop the edges listed again, marking each successor with the number of
+		// its source plus one, and move the others down over them
+		Storage seen = new Storage(null, 0, 4L * numVertices, true);
+		long kept = 0;
+		maxOutDegree = 0;
+		for (int u = 0; u < numVertices; u++) {
+			long start = kept;
+			for (long slot = index.getLong(8L * u), end = index.getLong(8L * (u + 1)); slot < end; slot++) {
+				int v = targets.getInt(4 * slot);
+				if (seen.getInt(4L * v) != u + 1) {
+					seen.putInt(4L * v, u + 1);
+					targets.putInt(4 * kept++, v);
+				}
+			}
+			index.putLong(8L * u, start);
+			maxOutDegree = (int) Math.max(maxOutDegree, kept - start);
+		}
+		index.putLong(8L * numVertices, kept);
+		if (kept < numEdges) {
+			numEdges = kept;
+			targets = targets.resize(4 * numEdges);
+		}
+		graph = new OffHeapGraph(numVertices, numEdges, maxOutDegree, loader.tableCapacity, index, names, targets);
+
+		if (channel != null) {
+			Storage header = new Storage(channel, 0, HEADER_BYTES, true);
+			header.putLong(0, MAGIC);
+			header.putLong(8, numVertices);
+			header.putLong(16, numEdges);
+			header.putLong(24, maxOutDegree);
+			header.putLong(32, loader.tableCapacity);
+			header.putLong(40, names.position);
+			header.putLong(48, names.bytes);
+			header.putLong(56, targetsAt);
+			channel.truncate(targetsAt + targets.bytes);
+			channel.force(false);
+		}
+		return graph;
+	}
+
+	/**
+	 * Maps a graph file written by load, without reading the graph again
+	 *
+	 * @param mappedFile
+	 *            The file load mapped the tables from
+	 * @return The graph
+	 * @throws IOException
+	 */
+	static OffHeapGraph open(File mappedFile) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(mappedFile, "r")) {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_BYTES) {
+				throw new IOException("Not an off-heap graph file: " + mappedFile);
+			}
+			Storage header = new Storage(channel, 0, HEADER_BYTES, false);
+			if (header.getLong(0) != MAGIC) {
+				throw new IOException("Not an off-heap graph file: " + mappedFile);
+			}
+			int numVertices = (int) header.getLong(8);
+			long numEdges = header.getLong(16);
+			int maxOutDegree = (int) header.getLong(24);
+			int tableCapacity = (int) header.getLong(32);
+			Storage index = new Storage(channel, HEADER_BYTES, indexBytes(numVertices, tableCapacity), false);
+			Storage names = new Storage(channel, header.getLong(40), header.getLong(48), false);
+			Storage targets = new Storage(channel, header.getLong(56), 4 * numEdges, false);
+			return new OffHeapGraph(numVertices, numEdges, maxOutDegree, tableCapacity, index, names, targets);
+		}
+	}
+
+	@Override
+	public int vertexCount() {
+		return vertices;
+	}
+
+	@Override
+	public long edgeCount() {
+		return edges;
+	}
+
+	@Override
+	public int outDegree(int v) {
+		return (int) (index.getLong(8L * (v + 1)) - index.getLong(8L * v));
+	}
+
+	@Override
+	public int maxOutDegree() {
+		return maxOutDegree;
+	}
+
+	@Override
+	public int successors(int v, int[] into) {
+		long from = index.getLong(8L * v);
+		long to = index.getLong(8L * (v + 1));
+		int count = 0;
+		for (long e = from; e < to; e++) {
+			into[count++] = targets.getInt(4 * e);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of a vertex, or -1 if there is no vertex of that name
+	 *
+	 * @param name
+	 *            The name of the vertex
+	 * @return The number of the vertex
+	 */
+	int indexOf(String name) {
+		return find(index, tableAt, tableMask, names, nameOffsetsAt, name);
+	}
+
+	/**
+	 * @param v
+	 *            The number of a vertex
+	 * @return The name of the vertex
+	 */
+	String nameOf(int v) {
+		long from = index.getLong(nameOffsetsAt + 8L * v);
+		byte[] bytes = new byte[(int) (index.getLong(nameOffsetsAt + 8L * (v + 1)) - from)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = names.getByte(from + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The bytes of all tables, not counting the search scratch tables
+	 */
+	long getStorageBytes() {
+		return index.bytes + names.bytes + targets.bytes;
+	}
+
+	/**
+	 * @return Whether the tables are mapped from a file
+	 */
+	boolean isMapped() {
+		return index.mapped;
+	}
+
+	/**
+	 * Computes Inf(start) as NetworkInfluence.computeInfluence does: a BFS that
+	 * adds 0.5^d for every vertex at distance d, in the same order, and stops as
+	 * soon as the rest of the search can't add more than epsilon
+	 *
+	 * @param start
+	 *            The number of the vertex to get the influence of
+	 * @param epsilon
+	 *            The largest allowed absolute error; 0 for the exact influence
+	 * @param metrics
+	 *            The metrics the search is counted in
+	 * @return The influence of the vertex
+	 */
+	float influence(int start, double epsilon, QueryMetrics metrics) {
+		Workspace w = workspaces.get();
+		int stamp = w.nextStamp();
+		w.visited.putInt(4L * start, stamp);
+		w.queue.putInt(0, start);
+		int head = 0;
+		int tail = 1;
+		float influence = (float) 1.0;
+		float a = (float) 1.0;
+		for (int distance = 0; head < tail; distance++) {
+			// the queue holds every vertex within distance, and nothing farther
+			if (epsilon > 0 && NetworkInfluence.truncationError(vertices - tail, distance + 1) <= epsilon) {
+				break;
+			}
+			a *= 0.5;
+			int levelEnd = tail;
+			while (head < levelEnd) {
+				int x = w.queue.getInt(4L * head++);
+				long to = index.getLong(8L * (x + 1));
+				for (long e = index.getLong(8L * x); e < to; e++) {
+					int y = targets.getInt(4 * e);
+					if (w.visited.getInt(4L * y) != stamp) {
+						w.visited.putInt(4L * y, stamp);
+						w.queue.putInt(4L * tail++, y);
+						influence += a;
+					}
+				}
+			}
+		}
+		metrics.searched(QueryMetrics.INFLUENCE, tail);
+		return influence;
+	}
+
+	/**
+	 * Computes the BFS distance from start to end
+	 *
+	 * @param start
+	 *            The number of the start vertex
+	 * @param end
+	 *            The number of the end vertex
+	 * @param metrics
+	 *            The metrics the search is counted in
+	 * @return The distance from start to end, or -1 if end is unreachable
+	 */
+	int distance(int start, int end, QueryMetrics metrics) {
+		if (start == end) {
+			return 0;
+		}
+		Workspace w = workspaces.get();
+		int stamp = w.nextStamp();
+		w.visited.putInt(4L * start, stamp);
+		w.queue.putInt(0, start);
+		int head = 0;
+		int tail = 1;
+		for (int distance = 1; head < tail; distance++) {
+			int levelEnd = tail;
+			while (head < levelEnd) {
+				int x = w.queue.getInt(4L * head++);
+				long to = index.getLong(8L * (x + 1));
+				for (long e = index.getLong(8L * x); e < to; e++) {
+					int y = targets.getInt(4 * e);
+					if (w.visited.getInt(4L * y) != stamp) {
+						if (y == end) {
+							metrics.searched(QueryMetrics.DISTANCE, tail + 1);
+							return distance;
+						}
+						w.visited.putInt(4L * y, stamp);
+						w.queue.putInt(4L * tail++, y);
+					}
+				}
+			}
+		}
+		metrics.searched(QueryMetrics.DISTANCE, tail);
+		return -1;
+	}
+
+	/**
+	 * Looks a name up in a hash table
+	 *
+	 * @return The vertex of that name, or -1 if there is none
+	 */
+	private static int find(Storage index, long tableAt, int tableMask, Storage names, long nameOffsetsAt,
+			String name) {
+		int slot = hash(name) & tableMask;
+		while (true) {
+			int entry = index.getInt(tableAt + 4L * slot);
+			if (entry == 0) {
+				return -1;
+			}
+			long from = index.getLong(nameOffsetsAt + 8L * (entry - 1));
+			long to = index.getLong(nameOffsetsAt + 8L * entry);
+			if (nameEquals(names, from, to, name)) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & tableMask;
+		}
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode() * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Compares a name with the UTF-8 bytes from..to, encoding it on the fly as
+	 * String.getBytes would
+	 */
+	private static boolean nameEquals(Storage names, long from, long to, String name) {
+		long p = from;
+		for (int i = 0; i < name.length(); i++) {
+			int c = name.charAt(i);
+			if (c < 0x80) {
+				if (p == to || names.getByte(p++) != c) {
+					return false;
+				}
+				continue;
+			}
+			if (Character.isSurrogate((char) c)) {
+				if (Character.isHighSurrogate((char) c) && i + 1 < name.length()
+						&& Character.isLowSurrogate(name.charAt(i + 1))) {
+					c = Character.toCodePoint((char) c, name.charAt(++i));
+				} else {
+					// unpaired surrogates are encoded as '?'
+					c = '?';
+				}
+			}
+			int length = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+			if (to - p < length) {
+				return false;
+			}
+			int lead = length == 1 ? c
+					: length == 2 ? 0xc0 | (c >> 6) : length == 3 ? 0xe0 | (c >> 12) : 0xf0 | (c >> 18);
+			if (names.getByte(p++) != (byte) lead) {
+				return false;
+			}
+			for (int shift = 6 * (length - 2); shift >= 0; shift -= 6) {
+				if (names.getByte(p++) != (byte) (0x80 | ((c >> shift) & 0x3f))) {
+					return false;
+				}
+			}
+		}
+		return p == to;
+	}
+
+	/**
+	 * Returns the hash table size for n names: a power of two of at least 2n
+	 */
+	private static int tableCapacity(int n) {
+		return (int) (Long.highestOneBit(Math.max(1, 2L * n - 1)) << 1);
+	}
+
+	private static long indexBytes(int n, int tableCapacity) {
+		return align(16L * (n + 1) + 4L * tableCapacity);
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * The state of the first pass of load: the index, filled in as vertices are
+	 * named, and the names, in a table that doubles whenever it fills up
+	 */
+	private static class Loader {
+
+		private final FileChannel channel;
+		private final int numVertices;
+		private final int tableCapacity;
+		private final Storage index;
+		private Storage names;
+		private long nameBytes;
+		private int vertices;
+
+		private Loader(FileChannel channel, int numVertices) throws IOException {
+			this.channel = channel;
+			this.numVertices = numVertices;
+			tableCapacity = tableCapacity(numVertices);
+			index = new Storage(channel, HEADER_BYTES, indexBytes(numVertices, tableCapacity), true);
+			names = new Storage(channel, HEADER_BYTES + index.bytes, 1 << 20, true);
+		}
+
+		/**
+		 * Returns the number of a vertex, giving the name the next number if it
+		 * has none yet
+		 */
+		private int vertex(String name) throws IOException {
+			long nameOffsetsAt = 8L * (numVertices + 1);
+			long tableAt = 2 * nameOffsetsAt;
+			int found = find(index, tableAt, tableCapacity - 1, names, nameOffsetsAt, name);
+			if (found >= 0) {
+				return found;
+			}
+			if (vertices == numVertices) {
+				throw new IllegalArgumentException("The wrong number of vertices were found in the file: "
+						+ (vertices + 1));
+			}
+			int v = vertices++;
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			if (nameBytes + bytes.length > names.bytes) {
+				names = names.resize(Math.max(2 * names.bytes, nameBytes + bytes.length));
+			}
+			for (byte b : bytes) {
+				names.putByte(nameBytes++, b);
+			}
+			index.putLong(nameOffsetsAt + 8L * (v + 1), nameBytes);
+
+			int slot = hash(name) & (tableCapacity - 1);
+			while (index.getInt(tableAt + 4L * slot) != 0) {
+				slot = (slot + 1) & (tableCapacity - 1);
+			}
+			index.putInt(tableAt + 4L * slot, v + 1);
+			return v;
+		}
+
+		/**
+		 * @return The names, in a table of their exact size
+		 */
+		private Storage finishNames() throws IOException {
+			return names.resize(nameBytes);
+		}
+	}
+
+	/**
+	 * A table of bytes in direct memory or mapped from part of a file, split
+	 * into segments of up to 1 GB. Positions of ints must be multiples of 4,
+	 * and of longs multiples of 8, so that no number spans two segments.
+	 */
+	private static class Storage {
+
+		private final FileChannel channel;
+		private final long position;
+		private final long bytes;
+		private final boolean mapped;
+		private final ByteBuffer[] segments;
+
+		/**
+		 * Allocates a zeroed table, in direct memory if channel is null and
+		 * otherwise mapped from the given part of its file
+		 */
+		private Storage(FileChannel channel, long position, long bytes, boolean writable) throws IOException {
+			this.channel = channel;
+			this.position = channel == null ? 0 : position;
+			this.bytes = bytes;
+			this.mapped = channel != null;
+			int count = (int) ((bytes + SEGMENT_MASK) >>> SEGMENT_BITS);
+			segments = new ByteBuffer[Math.max(1, count)];
+			for (int i = 0; i < segments.length; i++) {
+				int length = (int) Math.min(1L << SEGMENT_BITS, bytes - ((long) i << SEGMENT_BITS));
+				ByteBuffer segment;
+				if (channel == null) {
+					segment = ByteBuffer.allocateDirect(length);
+				} else {
+					FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE
+							: FileChannel.MapMode.READ_ONLY;
+					segment = channel.map(mode, position + ((long) i << SEGMENT_BITS), length);
+				}
+				segments[i] = segment.order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+
+		/**
+		 * Returns a table of the given size with the same contents, as far as
+		 * they fit. A mapped table is mapped again over the same start of the
+		 * file, which grows or shrinks with it.
+		 */
+		private Storage resize(long newBytes) throws IOException {
+			if (mapped) {
+				return new Storage(channel, position, newBytes, true);
+			}
+			Storage resized = new Storage(null, 0, newBytes, true);
+			long length = Math.min(bytes, newBytes);
+			for (int i = 0; (long) i << SEGMENT_BITS < length; i++) {
+				ByteBuffer from = segments[i].duplicate();
+				from.position(0).limit((int) Math.min(from.capacity(), length - ((long) i << SEGMENT_BITS)));
+				ByteBuffer to = resized.segments[i].duplicate();
+				to.position(0);
+				to.put(from);
+			}
+			return resized;
+		}
+
+		private byte getByte(long p) {
+			return segments[(int) (p >>> SEGMENT_BITS)].get((int) (p & SEGMENT_MASK));
+		}
+
+		private void putByte(long p, byte value) {
+			segments[(int) (p >>> SEGMENT_BITS)].put((int) (p & SEGMENT_MASK), value);
+		}
+
+		private int getInt(long p) {
+			return segments[(int) (p >>> SEGMENT_BITS)].getInt((int) (p & SEGMENT_MASK));
+		}
+
+		private void putInt(long p, int value) {
+			segments[(int) (p >>> SEGMENT_BITS)].putInt((int) (p & SEGMENT_MASK), value);
+		}
+
+		private long getLong(long p) {
+			return segments[(int) (p >>> SEGMENT_BITS)].getLong((int) (p & SEGMENT_MASK));
+		}
+
+		private void putLong(long p, long value) {
+			segments[(int) (p >>> SEGMENT_BITS)].putLong((int) (p & SEGMENT_MASK), value);
+		}
+	}
+
+	/**
+	 * The visited marks and queue of one thread's searches. A vertex is visited
+	 * when its mark equals the stamp of the current search, so the marks are
+	 * only cleared when the stamp wraps around.
+	 */
+	private class Workspace {
+
+		private final Storage visited;
+		private final Storage queue;
+		private int stamp;
+
+		private Workspace() {
+			try {
+				visited = new Storage(null, 0, 4L * vertices, true);
+				queue = new Storage(null, 0, 4L * vertices, true);
+			} catch (IOException e) {
+				// direct memory is never read from a file
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private int nextStamp() {
+			if (stamp == Integer.MAX_VALUE) {
+				for (long p = 0; p < visited.bytes; p += 4) {
+					visited.putInt(p, 0);
+				}
+				stamp = 0;
+			}
+			return ++stamp;
+		}
+	}
+}
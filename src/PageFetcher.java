@@ -0,0 +1,337 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * PageFetcher class
+ *
+ * Implements the fetch layer used by PageScanner. All requests go through one
+ * shared java.net.http.HttpClient, which keeps connections alive and reuses
+ * them between pages, and negotiates HTTP/2 with servers that support it so
+ * that concurrent requests to the same host are multiplexed over a single
+ * connection. Pages are requested gzip-compressed and decompressed while they
+ * are being read.
+ *
+ * The read timeout only bounds the wait for the response headers, so the body
+ * has a deadline of its own: once it passes, the body is closed and reading it
+ * throws an HttpTimeoutException, even if the server has stalled.
+ *
+ * Both a blocking and a non-blocking sendAsync path are offered; the blocking
+ * one simply waits for the asynchronous one.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class PageFetcher {
+
+	/**
+	 * Default time allowed to establish a connection
+	 */
+	public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+	/**
+	 * Default time allowed between sending a request and receiving its response
+	 * headers
+	 */
+	public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+	/**
+	 * Default time allowed for reading a body, from the arrival of the response
+	 * headers
+	 */
+	public static final Duration DEFAULT_BODY_TIMEOUT = Duration.ofSeconds(60);
+
+	// user agent sent with every request, as asked for by Wikimedia's robot policy
+	private static final String USER_AGENT = "WikiCrawler/1.0 (COM S 311 course project)";
+
+	// the fetcher used by PageScanners that aren't given one, created on first use
+	private static PageFetcher shared;
+
+	// closes bodies whose deadline has passed
+	private static final ScheduledThreadPoolExecutor DEADLINES = new ScheduledThreadPoolExecutor(1, task -> {
+		Thread thread = new Thread(task, "page-fetcher-deadlines");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		// most bodies are read long before their deadline
+		DEADLINES.setRemoveOnCancelPolicy(true);
+	}
+
+	// the HTTP client all requests of this fetcher go through
+	private final HttpClient client;
+
+	// the time allowed for the headers of each response
+	private final Duration readTimeout;
+	// the time allowed for reading each body
+	private final Duration bodyTimeout;
+
+	/**
+	 * Constructs a new PageFetcher with its own HTTP client and the given
+	 * timeouts, allowing DEFAULT_BODY_TIMEOUT for reading each body
+	 *
+	 * @param connectTimeout
+	 *            The time allowed to establish a connection
+	 * @param readTimeout
+	 *            The time allowed between sending a request and receiving the
+	 *            response headers
+	 */
+	public PageFetcher(Duration connectTimeout, Duration readTimeout) {
+		this(connectTimeout, readTimeout, DEFAULT_BODY_TIMEOUT);
+	}
+
+	/**
+	 * Constructs a new PageFetcher with its own HTTP client and the given timeouts
+	 *
+	 * @param connectTimeout
+	 *            The time allowed to establish a connection
+	 * @param readTimeout
+	 *            The time allowed between sending a request and receiving the
+	 *            response headers
+	 * @param bodyTimeout
+	 *            The time allowed between receiving the response headers and
+	 *            reading the end of the body
+	 */
+	public PageFetcher(Duration connectTimeout, Duration readTimeout, Duration bodyTimeout) {
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).connectTimeout(connectTimeout)
+				.followRedirects(HttpClient.Redirect.NORMAL).build();
+		this.readTimeout = readTimeout;
+		this.bodyTimeout = bodyTimeout;
+	}
+
+	/**
+	 * Returns the fetcher shared by every PageScanner that isn't given its own
+	 *
+	 * @return The shared PageFetcher
+	 */
+	public static synchronized PageFetcher shared() {
+		if (shared == null) {
+			shared = new PageFetcher(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+		}
+		return shared;
+	}
+
+	/**
+	 * Requests the given page and blocks until its response headers arrive.
+	 *
+	 * @param url
+	 *            The full URL of the page
+	 * @return A stream of the page's decompressed body; the caller must close it
+	 * @throws IOException
+	 *             If the request fails, times out, is interrupted or the server
+	 *             doesn't answer with 200
+	 */
+	public InputStream open(String url) throws IOException {
+		CompletableFuture<InputStream> body = openAsync(url);
+		try {
+			return body.get();
+		} catch (InterruptedException e) {
+			// a body arriving later is closed rather than leaked
+			body.thenAccept(in -> closeQuietly(in));
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while fetching " + url, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Requests the given page without blocking. The returned future completes as
+	 * soon as the response headers arrive; the body is then streamed, and
+	 * decompressed, while it is read.
+	 *
+	 * @param url
+	 *            The full URL of the page
+	 * @return A future of a stream of the page's decompressed body, completed
+	 *         exceptionally if the request fails, times out or the server
+	 *         doesn't answer with 200
+	 */
+	public CompletableFuture<InputStream> openAsync(final String url) {
+		HttpRequest request = request(url).GET().build();
+
+		return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).thenApply(response -> {
+			try {
+				return body(url, response);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Requests the given page only if it changed since it was last fetched, using
+	 * the validators the server sent then: If-None-Match with its ETag and
+	 * If-Modified-Since with its Last-Modified date. An unchanged page costs the
+	 * server a 304 response without a body.
+	 *
+	 * @param url
+	 *            The full URL of the page
+	 * @param known
+	 *            The validators of the copy already held, or null to fetch
+	 *            unconditionally
+	 * @return Whether the page changed, with its body and new validators if it
+	 *         did; a page that no longer exists (404 or 410) counts as changed,
+	 *         with a null body
+	 * @throws IOException
+	 *             If the request fails, times out or the server answers with
+	 *             another status
+	 */
+	public Revalidation openIfModified(String url, Revalidation known) throws IOException {
+		HttpRequest.Builder builder = request(url);
+		if (known != null && known.getEtag() != null) {
+			builder.header("If-None-Match", known.getEtag());
+		}
+		if (known != null && known.getLastModified() != null) {
+			builder.header("If-Modified-Since", known.getLastModified());
+		}
+
+		HttpResponse<InputStream> response;
+		try {
+			response = client.send(builder.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while fetching " + url, e);
+		}
+
+		if (response.statusCode() == 304 && known != null) {
+			response.body().close();
+			return new Revalidation(false, null, known.getEtag(), known.getLastModified());
+		}
+		if (response.statusCode() == 404 || response.statusCode() == 410) {
+			response.body().close();
+			return new Revalidation(true, null, null, null);
+		}
+		String etag = response.headers().firstValue("ETag").orElse(null);
+		String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+		return new Revalidation(true, body(url, response), etag, lastModified);
+	}
+
+	/**
+	 * Starts a request for the given page with the headers every request carries
+	 */
+	private HttpRequest.Builder request(String url) {
+		// HTTP/2 is negotiated during the TLS handshake; plain-text servers, such as
+		// a local stand-in, rarely support the h2c upgrade, so don't offer it
+		HttpClient.Version version = url.startsWith("https:") ? HttpClient.Version.HTTP_2
+				: HttpClient.Version.HTTP_1_1;
+		return HttpRequest.newBuilder(URI.create(url)).version(version).timeout(readTimeout)
+				.header("Accept-Encoding", "gzip").header("User-Agent", USER_AGENT);
+	}
+
+	/**
+	 * Checks the status of a response, puts the body under its deadline, and
+	 * wraps it in a decompressing stream if the server gzipped it
+	 */
+	private InputStream body(String url, HttpResponse<InputStream> response) throws IOException {
+		InputStream in = response.body();
+		if (response.statusCode() != 200) {
+			in.close();
+			throw new IOException("HTTP " + response.statusCode() + " for " + url);
+		}
+
+		in = new DeadlineInputStream(in, url, bodyTimeout);
+		String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+		if (encoding.equalsIgnoreCase("gzip")) {
+			try {
+				return new GZIPInputStream(in);
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+		return in;
+	}
+
+	private static void closeQuietly(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException e) {
+			// nobody is reading it
+		}
+	}
+
+	/**
+	 * A body that is closed when its deadline passes, after which every read
+	 * throws an HttpTimeoutException. Closing the response body also wakes up a
+	 * read blocked on a stalled server.
+	 */
+	private static class DeadlineInputStream extends FilterInputStream {
+
+		private final String url;
+		private final Duration timeout;
+		private final ScheduledFuture<?> deadline;
+		private volatile boolean expired;
+
+		private DeadlineInputStream(InputStream in, String url, Duration timeout) {
+			super(in);
+			this.url = url;
+			this.timeout = timeout;
+			this.deadline = DEADLINES.schedule(() -> {
+				expired = true;
+				closeQuietly(in);
+			}, timeout.toNanos(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkDeadline();
+			int b;
+			try {
+				b = super.read();
+			} catch (IOException e) {
+				checkDeadline();
+				throw e;
+			}
+			// a closed body may look like a short one
+			checkDeadline();
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			checkDeadline();
+			int n;
+			try {
+				n = super.read(buffer, offset, length);
+			} catch (IOException e) {
+				checkDeadline();
+				throw e;
+			}
+			checkDeadline();
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			deadline.cancel(false);
+			super.close();
+		}
+
+		private void checkDeadline() throws HttpTimeoutException {
+			if (expired) {
+				throw new HttpTimeoutException("Body of " + url + " not read within " + timeout);
+			}
+		}
+	}
+}
@@ -0,0 +1,308 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PageGenerator class
+ *
+ * Generates wiki-like HTML pages for use with LocalPageServer, so the crawler
+ * and PageScanner can be exercised without any network access. The pages
+ * follow the layout PageScanner expects from Wikipedia: navigation links
+ * before the first "&lt;p&gt;" tag, followed by paragraphs of text with
+ * "/wiki/xxx" links. Link targets are skewed towards low-numbered pages, like
+ * GraphGenerator's graphs.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class PageGenerator {
+
+	// filler words the paragraphs are made of
+	private static final String[] WORDS = { "the", "of", "a", "system", "theory", "network", "is", "and", "which",
+			"study", "model", "in", "complex", "structure", "behaviour", "field", "used", "by", "its", "between" };
+
+	/**
+	 * Returns the title of the page with the given index
+	 *
+	 * @param i
+	 *            The index of the page
+	 * @return The page title, as used after "/wiki/"
+	 */
+	public static String title(int i) {
+		return "Page_" + i;
+	}
+
+	/**
+	 * Generates numPages pages, each linking to about avgLinks others. Each page
+	 * mentions each of the topics independently with probability
+	 * topicProbability, and page 0 mentions all of them so a crawl seeded there
+	 * always starts.
+	 *
+	 * @param numPages
+	 *            The number of pages; at least 2
+	 * @param avgLinks
+	 *            The average number of links in the body of a page; at least 1
+	 * @param topics
+	 *            The topic phrases scattered over the pages
+	 * @param topicProbability
+	 *            The chance that a page mentions a given topic
+	 * @param seed
+	 *            Seed of the random generator, so runs are repeatable
+	 * @return The pages, keyed by title, in index order
+	 */
+	public static Map<String, String> generate(int numPages, int avgLinks, String[] topics, double topicProbability,
+			long seed) {
+		Random random = new Random(seed);
+		Map<String, String> pages = new LinkedHashMap<String, String>();
+		HashSet<Integer> targets = new HashSet<Integer>();
+
+		for (int i = 0; i < numPages; i++) {
+			int degree = Math.min(numPages - 1, 1 + random.nextInt(2 * avgLinks - 1));
+			targets.clear();
+			while (targets.size() < degree) {
+				int v = GraphGenerator.skewedTarget(random, numPages);
+				if (v != i) {
+					targets.add(v);
+				}
+			}
+
+			StringBuilder html = new StringBuilder(4096);
+			appendHeader(html, random, i, numPages);
+
+			// the body: one paragraph per few links, with topics mixed into the text
+			int paragraph = 0;
+			html.append("<p>");
+			for (int v : targets) {
+				appendWords(html, random, 4 + random.nextInt(8));
+				html.append("<a href=\"/wiki/").append(title(v)).append("\" title=\"").append(title(v).replace('_', ' '))
+						.append("\">").append(title(v).replace('_', ' ')).append("</a> ");
+				if (random.nextInt(4) == 0) {
+					// links to sections or other namespaces, which PageScanner skips
+					html.append("<a href=\"/wiki/").append(title(v)).append("#History\">history</a> ");
+					html.append("<a href=\"/wiki/File:Image_").append(v).append(".png\">image</a> ");
+				}
+				if (++paragraph % 3 == 0) {
+					html.append("</p>\n<p>");
+				}
+			}
+			for (String topic : topics) {
+				if (i == 0 || random.nextDouble() < topicProbability) {
+					appendWords(html, random, 3);
+					html.append(topic).append(' ');
+				}
+			}
+			appendWords(html, random, 10);
+			html.append("</p>\n</body>\n</html>\n");
+
+			pages.put(title(i), html.toString());
+		}
+		return pages;
+	}
+
+	/**
+	 * Generates numPages pages split into numSubjects subjects, for comparing
+	 * focused and BFS crawls. Page i belongs to subject i % numSubjects. Pages of
+	 * subject 0 are about the topics: each mentions each topic with probability
+	 * 0.7, while other pages mention each topic with probability 0.05. A
+	 * fraction locality of each page's links go to pages of its own subject.
+	 * Half of the anchors name the subject of the page they link to, which for
+	 * subject 0 means the topics, and a tenth of those name a random subject
+	 * instead. Page 0 mentions all of the topics.
+	 *
+	 * @param numPages
+	 *            The number of pages; at least 2 * numSubjects
+	 * @param avgLinks
+	 *            The average number of links in the body of a page; at least 1
+	 * @param topics
+	 *            The topic phrases of subject 0
+	 * @param numSubjects
+	 *            The number of subjects; at least 1
+	 * @param locality
+	 *            The fraction of links that stay within a subject
+	 * @param seed
+	 *            Seed of the random generator, so runs are repeatable
+	 * @return The pages, keyed by title, in index order
+	 */
+	public static Map<String, String> generateTopical(int numPages, int avgLinks, String[] topics, int numSubjects,
+			double locality, long seed) {
+		Random random = new Random(seed);
+		Map<String, String> pages = new LinkedHashMap<String, String>();
+		HashSet<Integer> targets = new HashSet<Integer>();
+		int perSubject = numPages / numSubjects;
+
+		for (int i = 0; i < numPages; i++) {
+			int subject = i % numSubjects;
+			int degree = Math.min(numPages - 1, 1 + random.nextInt(2 * avgLinks - 1));
+			targets.clear();
+			while (targets.size() < degree) {
+				int v;
+				if (random.nextDouble() < locality) {
+					v = GraphGenerator.skewedTarget(random, perSubject) * numSubjects + subject;
+				} else {
+					v = GraphGenerator.skewedTarget(random, numPages);
+				}
+				if (v != i && v < numPages) {
+					targets.add(v);
+				}
+			}
+
+			StringBuilder html = new StringBuilder(4096);
+			appendHeader(html, random, i, numPages);
+			html.append("<p>");
+			int paragraph = 0;
+			for (int v : targets) {
+				appendWords(html, random, 4 + random.nextInt(8));
+				html.append("<a href=\"/wiki/").append(title(v)).append("\">").append(title(v).replace('_', ' '));
+				if (random.nextInt(2) == 0) {
+					int named = random.nextInt(10) == 0 ? random.nextInt(numSubjects) : v % numSubjects;
+					html.append(' ').append(subjectName(named, topics));
+				}
+				html.append("</a> ");
+				if (++paragraph % 3 == 0) {
+					html.append("</p>\n<p>");
+				}
+			}
+			double topicProbability = subject == 0 ? 0.7 : 0.05;
+			for (String topic : topics) {
+				if (i == 0 || random.nextDouble() < topicProbability) {
+					// pages about a topic tend to mention it more than once
+					int mentions = subject == 0 ? 1 + random.nextInt(3) : 1;
+					for (int m = 0; m < mentions; m++) {
+						appendWords(html, random, 3);
+						html.append(topic).append(' ');
+					}
+				}
+			}
+			appendWords(html, random, 10);
+			html.append("</p>\n</body>\n</html>\n");
+
+			pages.put(title(i), html.toString());
+		}
+		return pages;
+	}
+
+	/**
+	 * Writes a gzipped MediaWiki pages-articles XML dump of numPages articles
+	 * with wikitext bodies, for DumpIngester. Links are skewed towards
+	 * low-numbered pages like generate's, and the topics are mentioned with the
+	 * same probabilities. Some links point to sections or other namespaces. Every
+	 * tenth page also has a redirect "Alias i", which other pages sometimes link
+	 * to instead, and every hundredth page is a talk page (namespace 1).
+	 *
+	 * @param fileName
+	 *            The file the dump is written to
+	 * @param numPages
+	 *            The number of articles; at least 2
+	 * @param avgLinks
+	 *            The average number of links in an article; at least 1
+	 * @param topics
+	 *            The topic phrases scattered over the pages
+	 * @param topicProbability
+	 *            The chance that a page mentions a given topic
+	 * @param seed
+	 *            Seed of the random generator, so runs are repeatable
+	 * @throws IOException
+	 */
+	public static void writeXmlDump(String fileName, int numPages, int avgLinks, String[] topics,
+			double topicProbability, long seed) throws IOException {
+		Random random = new Random(seed);
+		HashSet<Integer> targets = new HashSet<Integer>();
+
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(
+				new GZIPOutputStream(new FileOutputStream(fileName), 1 << 16), StandardCharsets.UTF_8), 1 << 16)) {
+			out.write("<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" xml:lang=\"en\">\n");
+			for (int i = 0; i < numPages; i++) {
+				int degree = Math.min(numPages - 1, 1 + random.nextInt(2 * avgLinks - 1));
+				targets.clear();
+				while (targets.size() < degree) {
+					int v = GraphGenerator.skewedTarget(random, numPages);
+					if (v != i) {
+						targets.add(v);
+					}
+				}
+
+				StringBuilder text = new StringBuilder(4096);
+				text.append("{{Infobox|name=Page ").append(i).append("}}\n'''Page ").append(i).append("''' is ");
+				for (int v : targets) {
+					appendWords(text, random, 4 + random.nextInt(8));
+					if (v % 10 == 0 && random.nextInt(2) == 0) {
+						text.append("[[Alias ").append(v).append("]] ");
+					} else {
+						text.append("[[Page ").append(v).append("|page ").append(v).append("]] ");
+					}
+					if (random.nextInt(4) == 0) {
+						text.append("[[Page ").append(v).append("#History|history]] ");
+						text.append("[[File:Image_").append(v).append(".png|thumb|an &amp; image]] ");
+					}
+				}
+				for (String topic : topics) {
+					if (i == 0 || random.nextDouble() < topicProbability) {
+						appendWords(text, random, 3);
+						text.append(topic).append(' ');
+					}
+				}
+				text.append("\n[[Category:Generated pages]]");
+
+				writeXmlPage(out, i % 100 == 99 ? "Talk:Page " + i : "Page " + i, i % 100 == 99 ? 1 : 0, null,
+						text.toString());
+				if (i % 10 == 0) {
+					writeXmlPage(out, "Alias " + i, 0, "Page " + i, "#REDIRECT [[Page " + i + "]]");
+				}
+			}
+			out.write("</mediawiki>\n");
+		}
+	}
+
+	/**
+	 * Writes one page element of an XML dump; the text must already be escaped
+	 */
+	private static void writeXmlPage(Writer out, String title, int namespace, String redirect, String text)
+			throws IOException {
+		out.write("  <page>\n    <title>" + title + "</title>\n    <ns>" + namespace + "</ns>\n");
+		if (redirect != null) {
+			out.write("    <redirect title=\"" + redirect + "\" />\n");
+		}
+		out.write("    <revision>\n      <text xml:space=\"preserve\">");
+		out.write(text);
+		out.write("</text>\n    </revision>\n  </page>\n");
+	}
+
+	/**
+	 * Returns the words naming a subject: the topics for subject 0, and two
+	 * filler words for the others
+	 */
+	private static String subjectName(int subject, String[] topics) {
+		if (subject == 0) {
+			return String.join(" ", topics);
+		}
+		return WORDS[subject % WORDS.length] + " " + WORDS[(subject / WORDS.length + 7 * subject) % WORDS.length];
+	}
+
+	/**
+	 * Appends the start of page i up to its first paragraph, with navigation
+	 * links that PageScanner ignores
+	 */
+	private static void appendHeader(StringBuilder html, Random random, int i, int numPages) {
+		html.append("<!DOCTYPE html>\n<html>\n<head><title>").append(title(i)).append("</title></head>\n<body>\n");
+		html.append("<div id=\"nav\"><a href=\"/wiki/Main_Page\">Main page</a> ")
+				.append("<a href=\"/wiki/Special:Random\">Random</a> ")
+				.append("<a href=\"/wiki/Page_").append(random.nextInt(numPages)).append("\">Featured</a></div>\n");
+	}
+
+	/**
+	 * Appends count random filler words
+	 */
+	private static void appendWords(StringBuilder html, Random random, int count) {
+		for (int w = 0; w < count; w++) {
+			html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+	}
+}
@@ -2,9 +2,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.LongConsumer;
 
 /**
  * PageScanner class
@@ -20,16 +24,47 @@ public class PageScanner {
 
 	// the string of the URL this PageScanner is for
 	private String Url;
+	// the fetcher used to download the page
+	private PageFetcher fetcher;
+	// the metrics the page is recorded in, or null
+	private CrawlMetrics metrics;
 
 	/**
-	 * Constructs a new PageScanner that can read the given web page.
+	 * Constructs a new PageScanner that can read the given web page, fetching it
+	 * through the shared PageFetcher.
 	 * 
 	 * @param Url
 	 *            The URL of the web page this PageScanner will read - expects the
 	 *            full URL
 	 */
 	public PageScanner(String Url) {
+		this(Url, PageFetcher.shared());
+	}
+
+	/**
+	 * Constructs a new PageScanner that can read the given web page, fetching it
+	 * through the given PageFetcher.
+	 * 
+	 * @param Url
+	 *            The URL of the web page this PageScanner will read - expects the
+	 *            full URL
+	 * @param fetcher
+	 *            The fetcher used to download the page
+	 */
+	public PageScanner(String Url, PageFetcher fetcher) {
 		this.Url = Url;
+		this.fetcher = fetcher;
+	}
+
+	/**
+	 * Makes this PageScanner record the download and scan of its page in the
+	 * given metrics
+	 * 
+	 * @param metrics
+	 *            The metrics of the crawl, or null to record nothing
+	 */
+	public void setMetrics(CrawlMetrics metrics) {
+		this.metrics = metrics;
 	}
 
 	/**
@@ -44,6 +79,134 @@ public class PageScanner {
 	 *         minus the base URL
 	 */
 	public ArrayList<String> getLinks(ArrayList<String> topics) throws IOException {
+		// open the web page and scan it as it streams in
+		return scan(topics, null);
+	}
+
+	/**
+	 * Does the same as getLinks, but also records the anchor text of every link
+	 * and how densely the page mentions the topics.
+	 * 
+	 * @param topics
+	 * @return The scanned page, or null if the page doesn't contain all of the
+	 *         topics
+	 */
+	public ScannedPage scanPage(ArrayList<String> topics) throws IOException {
+		ScannedPage page = new ScannedPage();
+		if (scan(topics, page) == null) {
+			return null;
+		}
+		return page;
+	}
+
+	/**
+	 * Does the same as getLinks, but without blocking the calling thread. The
+	 * request is sent asynchronously, and once the response starts arriving the
+	 * page is scanned on parseExecutor.
+	 * 
+	 * @param topics
+	 * @param parseExecutor
+	 *            The executor the page is scanned on
+	 * @return A future of the links on the page, or of null if the page doesn't
+	 *         contain all of the topics
+	 */
+	public CompletableFuture<ArrayList<String>> getLinksAsync(final ArrayList<String> topics, Executor parseExecutor) {
+		return getLinksAsync(topics, parseExecutor, null);
+	}
+
+	/**
+	 * Does the same as getLinksAsync(ArrayList, Executor), and also reports how
+	 * long the response headers took to arrive, before the page is scanned
+	 * 
+	 * @param responseNanos
+	 *            Given the nanoseconds from the request to its response headers,
+	 *            or null
+	 */
+	CompletableFuture<ArrayList<String>> getLinksAsync(final ArrayList<String> topics, Executor parseExecutor,
+			final LongConsumer responseNanos) {
+		final long requestNanos = System.nanoTime();
+		CompletableFuture<InputStream> response = fetcher.openAsync(Url);
+		if (responseNanos != null) {
+			response = response.thenApply(inStream -> {
+				responseNanos.accept(System.nanoTime() - requestNanos);
+				return inStream;
+			});
+		}
+		CompletableFuture<ArrayList<String>> links = response.thenApplyAsync(inStream -> {
+			try {
+				return scan(inStream, topics, null, requestNanos);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, parseExecutor);
+		if (metrics != null) {
+			links.whenComplete((result, error) -> {
+				// a page the crawler cancelled didn't fail
+				if (error != null && !FetchStage.isCancellation(error)) {
+					metrics.pageFailed();
+				}
+			});
+		}
+		return links;
+	}
+
+	/**
+	 * Fetches the page and scans it, recording both in the metrics if there are
+	 * any
+	 */
+	private ArrayList<String> scan(ArrayList<String> topics, ScannedPage page) throws IOException {
+		if (metrics == null) {
+			try (InputStream inStream = fetcher.open(Url)) {
+				return scanLinks(inStream, topics, page);
+			}
+		}
+		long requestNanos = System.nanoTime();
+		try {
+			return scan(fetcher.open(Url), topics, page, requestNanos);
+		} catch (IOException e) {
+			metrics.pageFailed();
+			throw e;
+		}
+	}
+
+	/**
+	 * Scans the body of the page, recording the scan in the metrics if there are
+	 * any. Closes the body, even if the scan fails.
+	 */
+	private ArrayList<String> scan(InputStream inStream, ArrayList<String> topics, ScannedPage page,
+			long requestNanos) throws IOException {
+		try (InputStream in = inStream) {
+			if (metrics == null) {
+				return scanLinks(in, topics, page);
+			}
+			long scanStartNanos = System.nanoTime();
+			CrawlMetrics.CountingInputStream body = CrawlMetrics.count(in);
+			ArrayList<String> links = scanLinks(body, topics, page);
+			metrics.pageScanned(Url, requestNanos, scanStartNanos, body, links != null);
+			return links;
+		}
+	}
+
+	/**
+	 * Scans a page read from the given stream, following the rules of getLinks.
+	 * Closes the stream when done.
+	 * 
+	 * @param inStream
+	 *            The body of the page
+	 * @param topics
+	 * @return The links on the page, or null if it doesn't contain all of the
+	 *         topics
+	 */
+	static ArrayList<String> scanLinks(InputStream inStream, ArrayList<String> topics) throws IOException {
+		return scanLinks(inStream, topics, null);
+	}
+
+	/**
+	 * Scans a page like scanLinks(InputStream, ArrayList), and if page isn't
+	 * null, also fills in its links, their anchor text and the topic counts.
+	 */
+	static ArrayList<String> scanLinks(InputStream inStream, ArrayList<String> topics, ScannedPage page)
+			throws IOException {
 
 		int topicsSize = 0;
 		if (topics != null) {
@@ -51,10 +214,8 @@ public class PageScanner {
 		}
 		boolean[] isPresent = new boolean[topicsSize];
 
-		// open the web page and read the content with a BufferedReader
-		URL url = new URL(Url);
-		InputStream inStream = url.openStream();
-		BufferedReader bReader = new BufferedReader(new InputStreamReader(inStream));
+		// read the content with a BufferedReader
+		BufferedReader bReader = new BufferedReader(new InputStreamReader(inStream, StandardCharsets.UTF_8));
 		// string buffer to hold each line scanned in the page
 		String line;
 		// boolean to mark if the <p> has been found yet
@@ -81,6 +242,9 @@ public class PageScanner {
 							isPresent[i] = true;
 						}
 					}
+					if (page != null) {
+						countTopics(topicsToken, topics, page);
+					}
 					tempScanner.close();
 					// if found, set the boolean
 					start = true;
@@ -92,6 +256,9 @@ public class PageScanner {
 							// check if it is valid
 							if (!(linksToken.contains("#") || linksToken.contains(":"))) {
 								links.add(linksToken);
+								if (page != null) {
+									page.anchors.add(anchorText(line, sc.match().end()));
+								}
 							}
 						}
 					}
@@ -104,6 +271,9 @@ public class PageScanner {
 						isPresent[i] = true;
 					}
 				}
+				if (page != null) {
+					countTopics(line, topics, page);
+				}
 				// for each each link found
 				while (sc.findInLine("<a href=\"/wiki/") != null) {
 					if (sc.hasNext()) {
@@ -112,6 +282,9 @@ public class PageScanner {
 						// check if it is valid
 						if (!(token.contains("#") || token.contains(":"))) {
 							links.add(token);
+							if (page != null) {
+								page.anchors.add(anchorText(line, sc.match().end()));
+							}
 						}
 					}
 				}
@@ -127,6 +300,40 @@ public class PageScanner {
 			}
 		}
 
+		if (page != null) {
+			page.links.addAll(links);
+		}
 		return links;
 	}
+
+	/**
+	 * Adds the topic occurrences and the length of a line of text to page
+	 */
+	private static void countTopics(String text, ArrayList<String> topics, ScannedPage page) {
+		page.textLength += text.length();
+		for (int i = 0; i < topics.size(); i++) {
+			String topic = topics.get(i);
+			for (int at = text.indexOf(topic); at >= 0; at = text.indexOf(topic, at + topic.length())) {
+				page.topicOccurrences++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the text between the end of a link's URL and the following "</a>",
+	 * without any tags, or "" if the link doesn't end on the same line
+	 * 
+	 * @param line
+	 *            The line holding the link
+	 * @param urlEnd
+	 *            The index just past the link's URL
+	 */
+	static String anchorText(String line, int urlEnd) {
+		int open = line.indexOf('>', urlEnd);
+		int close = line.indexOf("</a>", urlEnd);
+		if (open < 0 || close < open) {
+			return "";
+		}
+		return line.substring(open + 1, close).replaceAll("<[^>]*>", "").trim();
+	}
 }
\ No newline at end of file
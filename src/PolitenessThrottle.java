@@ -0,0 +1,114 @@
+/**
+ * PolitenessThrottle class
+ *
+ * The politeness policy of a crawler: after every requestsPerPause requests it
+ * pauses for pauseMillis before allowing the next one. A requestsPerPause of 0
+ * turns the policy off, for example for a local server. Every pause is
+ * recorded in the crawl's metrics, if it has any.
+ *
+ * The throttle may be shared by threads. A pause waits on the throttle rather
+ * than sleeping, so optional requests, such as hedges, can still ask it with
+ * tryAcquire during a pause and be refused.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class PolitenessThrottle {
+
+	// at most this many requests before pausing
+	private final int requestsPerPause;
+	// how long to pause, in milliseconds
+	private final long pauseMillis;
+	// the metrics pauses are recorded in, or null
+	private final CrawlMetrics metrics;
+
+	// requests made since the last pause
+	private int requests;
+	// whether a pause is going on
+	private boolean pausing;
+	// requests allowed since the count was last reset
+	private long requestCount;
+
+	/**
+	 * Constructs a new PolitenessThrottle
+	 *
+	 * @param requestsPerPause
+	 *            The number of requests made between pauses, or 0 for no pauses
+	 * @param pauseMillis
+	 *            The length of each pause
+	 * @param metrics
+	 *            The metrics every pause is recorded in, or null
+	 */
+	public PolitenessThrottle(int requestsPerPause, long pauseMillis, CrawlMetrics metrics) {
+		this.requestsPerPause = requestsPerPause;
+		this.pauseMillis = pauseMillis;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Counts one more request, pausing first if requestsPerPause requests have
+	 * been made since the last pause. Should be called before reading from a
+	 * page.
+	 *
+	 * @throws InterruptedException
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (pausing) {
+			wait();
+		}
+		if (requestsPerPause > 0 && requests >= requestsPerPause) {
+			requests = 0;
+			pausing = true;
+			long pauseStart = System.nanoTime();
+			try {
+				long end = System.currentTimeMillis() + pauseMillis;
+				for (long left = pauseMillis; left > 0; left = end - System.currentTimeMillis()) {
+					wait(left);
+				}
+			} finally {
+				pausing = false;
+				notifyAll();
+				if (metrics != null) {
+					metrics.throttled(System.nanoTime() - pauseStart);
+				}
+			}
+		}
+		requests++;
+		requestCount++;
+	}
+
+	/**
+	 * Counts one more request if the policy allows it without pausing
+	 *
+	 * @return Whether the request may be made
+	 */
+	public synchronized boolean tryAcquire() {
+		if (pausing || (requestsPerPause > 0 && requests >= requestsPerPause)) {
+			return false;
+		}
+		requests++;
+		requestCount++;
+		return true;
+	}
+
+	/**
+	 * @return The number of requests made between pauses, or 0 for no pauses
+	 */
+	public int getRequestsPerPause() {
+		return requestsPerPause;
+	}
+
+	/**
+	 * @return The number of requests allowed since resetRequestCount()
+	 */
+	public synchronized long getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Starts counting requests from 0 again; the policy itself carries on
+	 */
+	public synchronized void resetRequestCount() {
+		requestCount = 0;
+	}
+}
@@ -0,0 +1,306 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueryCache class
+ *
+ * Implements a bounded, least-recently-used cache for the results of
+ * NetworkInfluence queries. Entries are keyed by the type of query and the
+ * vertex indices it was asked about. The cache is split into independently
+ * locked segments so that many threads can look up results at once without
+ * contending on a single lock.
+ *
+ * The cache is invalidated as a whole by calling invalidate(), which
+ * NetworkInfluence does whenever the graph is mutated.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class QueryCache {
+
+	/**
+	 * Query type of a cached influence(String) result
+	 */
+	static final byte INFLUENCE = 0;
+
+	/**
+	 * Query type of a cached distance(String, String) result
+	 */
+	static final byte DISTANCE = 1;
+
+	/**
+	 * Query type of a cached shortestPath(String, String) result
+	 */
+	static final byte SHORTEST_PATH = 2;
+
+	/**
+	 * Most independently locked segments
+	 */
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * The segments the entries are spread across
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * Maximum number of entries this cache holds across all segments
+	 */
+	private final int capacity;
+
+	/**
+	 * Counters for the hit-rate metrics
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Incremented on every invalidation, so that results computed against an
+	 * older graph are not stored after the cache has been cleared
+	 */
+	private volatile long generation;
+
+	/**
+	 * Constructs a new QueryCache that holds at most capacity entries. A capacity
+	 * of 0 creates a cache that never stores anything.
+	 *
+	 * @param capacity
+	 *            The maximum number of query results to hold
+	 */
+	public QueryCache(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Cache capacity must not be negative: " + capacity);
+		}
+		this.capacity = capacity;
+
+		// Small caches get fewer segments, a power of two so segmentFor can mask,
+		// and the remainder of the capacity goes to the first segments so the
+		// segments hold exactly capacity entries between them
+		int count = Integer.highestOneBit(Math.max(1, Math.min(SEGMENTS, capacity)));
+		segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Returns the cached result of the given query, or null if it is not cached
+	 *
+	 * @param type
+	 *            The query type
+	 * @param u
+	 *            The index of the first vertex of the query
+	 * @param v
+	 *            The index of the second vertex of the query, or -1 if the query
+	 *            only has one vertex
+	 * @return The cached result, or null
+	 */
+	Object get(byte type, int u, int v) {
+		if (capacity == 0) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		Key key = new Key(type, u, v);
+		Object value = segmentFor(key).get(key);
+		if (value == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the current generation of the cache. Callers read this before
+	 * computing a result and hand it back to put().
+	 *
+	 * @return The number of invalidations so far
+	 */
+	long generation() {
+		return generation;
+	}
+
+	/**
+	 * Stores the result of the given query, unless the cache has been invalidated
+	 * since the result was computed. The value must not be modified after it has
+	 * been stored, since it is shared with every later lookup.
+	 *
+	 * @param type
+	 *            The query type
+	 * @param u
+	 *            The index of the first vertex of the query
+	 * @param v
+	 *            The index of the second vertex of the query, or -1 if the query
+	 *            only has one vertex
+	 * @param value
+	 *            The result of the query
+	 * @param computedAt
+	 *            The generation read before the result was computed
+	 */
+	void put(byte type, int u, int v, Object value, long computedAt) {
+		if (capacity == 0) {
+			return;
+		}
+
+		Key key = new Key(type, u, v);
+		segmentFor(key).putIfCurrent(key, value, computedAt);
+	}
+
+	/**
+	 * Removes every entry from the cache. Called whenever the graph the results
+	 * were computed on changes.
+	 */
+	public synchronized void invalidate() {
+		// Bump the generation first so that a put racing with this call is either
+		// rejected or cleared below
+		generation++;
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+		invalidations.incrementAndGet();
+	}
+
+	/**
+	 * @return The maximum number of entries this cache holds
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The number of entries currently held
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	/**
+	 * @return The fraction of lookups that were answered from the cache, or 0 if
+	 *         there have been no lookups
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0.0 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("QueryCache[size=%d/%d, hits=%d, misses=%d, hitRate=%.3f, evictions=%d]", size(),
+				capacity, getHitCount(), getMissCount(), getHitRate(), getEvictionCount());
+	}
+
+	/**
+	 * Picks the segment responsible for the given key
+	 */
+	private Segment segmentFor(Key key) {
+		// Spread the hash bits so neighbouring vertex indices land in different
+		// segments
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+
+	/**
+	 * Private internal class holding one lock-protected slice of the cache. Uses a
+	 * LinkedHashMap in access order so the eldest entry is always the least
+	 * recently used one.
+	 *
+	 */
+	private class Segment extends LinkedHashMap<Key, Object> {
+
+		private static final long serialVersionUID = 1L;
+
+		// the most entries this segment may hold
+		private final int maxEntries;
+
+		private Segment(int maxEntries) {
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		public synchronized Object get(Object key) {
+			return super.get(key);
+		}
+
+		private synchronized void putIfCurrent(Key key, Object value, long computedAt) {
+			if (computedAt == generation) {
+				super.put(key, value);
+			}
+		}
+
+		@Override
+		public synchronized void clear() {
+			super.clear();
+		}
+
+		@Override
+		public synchronized int size() {
+			return super.size();
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+			if (size() > maxEntries) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Private internal class identifying one query by its type and vertex indices
+	 *
+	 */
+	private static class Key {
+		private final byte type;
+		private final int u;
+		private final int v;
+
+		private Key(byte type, int u, int v) {
+			this.type = type;
+			this.u = u;
+			this.v = v;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return type == other.type && u == other.u && v == other.v;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * (31 * type + u)) + v;
+		}
+	}
+}
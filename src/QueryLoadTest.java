@@ -0,0 +1,157 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueryLoadTest class
+ *
+ * A load-test client for QueryService. Client threads send a mix of distance,
+ * shortest path and influence requests, each as soon as the last was
+ * answered, for a fixed time. Their sources come from a small set of hot
+ * vertices, as when analysts study a few pages, and their targets from the
+ * whole graph. It reports the throughput and the latency percentiles the
+ * clients saw, and how many requests the service answered with shared
+ * searches.
+ *
+ * Without a service URL it starts a QueryService in this JVM, and runs the
+ * load twice, without and then with the sharing of searches.
+ *
+ * Usage: QueryLoadTest [graphFile | vertices | serviceUrl] [clients] [seconds]
+ * [hotSources]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class QueryLoadTest {
+
+	private static final String[] ENDPOINTS = { "distance", "shortestPath", "influence" };
+
+	public static void main(String[] args) throws Exception {
+		String target = args.length > 0 ? args[0] : "100000";
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		int hotSources = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+		if (target.startsWith("http")) {
+			// an already running service; vertex names are guessed from the generator
+			List<String> names = new ArrayList<String>();
+			for (int i = 0; i < 1000; i++) {
+				names.add(GraphGenerator.vertexName(i));
+			}
+			run(target, names, clients, seconds, hotSources);
+			return;
+		}
+
+		String graphFile = target;
+		if (!new File(target).isFile()) {
+			File f = File.createTempFile("query_load_test", ".txt");
+			f.deleteOnExit();
+			graphFile = f.getAbsolutePath();
+			GraphGenerator.writePowerLawGraph(graphFile, Integer.parseInt(target), 10, 311);
+		}
+
+		// the cache is off, so requests repeated by chance are not free
+		QueryService service = new QueryService(graphFile, 0);
+		NetworkInfluence graph = service.getGraph();
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < graph.vertexCount(); i++) {
+			names.add(graph.nameOf(i));
+		}
+		service.start(0, Runtime.getRuntime().availableProcessors());
+		try {
+			System.out.println("Warming up:");
+			run(service.getBaseUrl(), names, clients, seconds / 2, hotSources);
+			for (boolean batching : new boolean[] { false, true }) {
+				service.setBatching(batching);
+				long searches = service.getSearches();
+				long batched = service.getBatchedRequests();
+				System.out.println(batching ? "Shared searches:" : "One query per request:");
+				run(service.getBaseUrl(), names, clients, seconds, hotSources);
+				System.out.printf("  %d requests answered by %d shared searches%n",
+						service.getBatchedRequests() - batched, service.getSearches() - searches);
+			}
+		} finally {
+			service.stop();
+		}
+	}
+
+	/**
+	 * Runs the load against the service at baseUrl and prints what the clients
+	 * saw
+	 */
+	private static void run(final String baseUrl, final List<String> names, int clients, double seconds,
+			final int hotSources) throws InterruptedException {
+		final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		final LatencyHistogram[] latencies = new LatencyHistogram[ENDPOINTS.length];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+		final LatencyHistogram all = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final long end = System.nanoTime() + (long) (seconds * 1000000000L);
+		final CountDownLatch done = new CountDownLatch(clients);
+
+		long start = System.nanoTime();
+		for (int c = 0; c < clients; c++) {
+			final long seed = c;
+			Thread t = new Thread(() -> {
+				Random random = new Random(seed);
+				try {
+					while (System.nanoTime() < end) {
+						int endpoint = random.nextInt(10) < 5 ? 0 : random.nextInt(10) < 6 ? 1 : 2;
+						String from = names.get(random.nextInt(Math.min(hotSources, names.size())));
+						String to = names.get(random.nextInt(names.size()));
+						String query = endpoint == 2 ? "vertex=" + encode(from)
+								: "from=" + encode(from) + "&to=" + encode(to);
+						HttpRequest request = HttpRequest
+								.newBuilder(URI.create(baseUrl + "/" + ENDPOINTS[endpoint] + "?" + query)).build();
+
+						long sent = System.nanoTime();
+						try {
+							HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+							if (response.statusCode() != 200) {
+								errors.incrementAndGet();
+								continue;
+							}
+						} catch (IOException e) {
+							errors.incrementAndGet();
+							continue;
+						}
+						long latency = System.nanoTime() - sent;
+						latencies[endpoint].record(latency);
+						all.record(latency);
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				} finally {
+					done.countDown();
+				}
+			});
+			t.setDaemon(true);
+			t.start();
+		}
+		done.await();
+		double elapsed = (System.nanoTime() - start) / 1000000000.0;
+
+		System.out.printf("  %d clients: %.0f requests/sec, p50 %.2f ms, p99 %.2f ms, %d errors%n", clients,
+				all.getCount() / elapsed, all.percentileMillis(0.50), all.percentileMillis(0.99), errors.get());
+		for (int i = 0; i < ENDPOINTS.length; i++) {
+			System.out.printf("  %-13s %7d requests, p50 %.2f ms, p99 %.2f ms%n", ENDPOINTS[i],
+					latencies[i].getCount(), latencies[i].percentileMillis(0.50), latencies[i].percentileMillis(0.99));
+		}
+	}
+
+	private static String encode(String name) {
+		return URLEncoder.encode(name, StandardCharsets.UTF_8);
+	}
+}
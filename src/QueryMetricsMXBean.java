@@ -0,0 +1,53 @@
+import java.util.Map;
+
+/**
+ * QueryMetricsMXBean interface
+ *
+ * The attributes QueryMetrics shows through JMX. Maps are keyed by query kind:
+ * influence, setInfluence, distance, setDistance, shortestPath and ranking.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public interface QueryMetricsMXBean {
+
+	/**
+	 * @return The number of queries answered of each kind
+	 */
+	Map<String, Long> getQueryCounts();
+
+	/**
+	 * @return The mean latency of each kind of query, in milliseconds
+	 */
+	Map<String, Double> getMeanMillis();
+
+	/**
+	 * @return The median latency of each kind of query, in milliseconds
+	 */
+	Map<String, Double> getP50Millis();
+
+	/**
+	 * @return The 99th percentile latency of each kind of query, in milliseconds
+	 */
+	Map<String, Double> getP99Millis();
+
+	/**
+	 * @return The number of searches run, including those of rankings
+	 */
+	long getSearches();
+
+	/**
+	 * @return The number of vertices visited by all searches
+	 */
+	long getVisitedVertices();
+
+	/**
+	 * @return The mean number of vertices a search visits
+	 */
+	double getMeanVisitedPerSearch();
+
+	/**
+	 * Clears all figures
+	 */
+	void reset();
+}
@@ -0,0 +1,559 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * QueryService class
+ *
+ * A long-running HTTP service answering queries on one NetworkInfluence graph,
+ * loaded once when the service is constructed. Requests are GETs and answers
+ * are JSON:
+ *
+ * /distance?from=u&to=v gives {"distance":d}, -1 if v can't be reached.
+ * /shortestPath?from=u&to=v gives {"path":[...]}, empty if there is no path.
+ * /influence?vertex=u gives {"influence":x}.
+ * /top?k=k&method=m gives {"vertices":[...]}, where m is degree (the
+ * default), modular, subModular, pageRank, hub or authority, and k is at most
+ * MAX_K.
+ * /stats gives the request count and latency percentiles of every endpoint,
+ * and how many searches answered how many requests.
+ *
+ * An unknown vertex is answered with 404, a malformed request with 400 and a
+ * ranking request while too many rankings are waiting with 503, all with
+ * {"error":"..."}.
+ *
+ * Distance, shortest path and influence requests are queued by their source
+ * vertex. When a search thread takes a source, it answers every request for
+ * it that arrived in the meantime with one complete BFS. A source asked for
+ * only once is answered by the ordinary query instead, which can stop early
+ * and uses the query cache. Batches form by themselves when requests arrive
+ * faster than they are answered, so no request is held back waiting for
+ * others. Rankings are computed on a pool of RANKING_THREADS threads of their
+ * own, so a slow one never holds up the HTTP threads, and kept, since the
+ * graph never changes. Every answer, shared search or not, is recorded in the
+ * graph's QueryMetrics.
+ *
+ * The JDK's HTTP server reads its TCP_NODELAY setting once per JVM, so main
+ * turns it on; a program embedding the service should start the JVM with
+ * -Dsun.net.httpserver.nodelay=true to avoid delayed-ACK stalls.
+ *
+ * Usage: QueryService graphFile [port] [searchThreads]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class QueryService {
+
+	/**
+	 * Endpoints, as their latencies are kept
+	 */
+	public static final int DISTANCE = 0;
+	public static final int SHORTEST_PATH = 1;
+	public static final int INFLUENCE = 2;
+	public static final int TOP = 3;
+
+	private static final String[] ENDPOINTS = { "distance", "shortestPath", "influence", "top" };
+
+	// the kind of query each search endpoint is recorded as in QueryMetrics
+	private static final int[] QUERIES = { QueryMetrics.DISTANCE, QueryMetrics.SHORTEST_PATH,
+			QueryMetrics.INFLUENCE };
+
+	private static final List<String> METHODS = Arrays.asList("degree", "modular", "subModular", "pageRank", "hub",
+			"authority");
+
+	/**
+	 * The largest k a ranking may be asked for
+	 */
+	public static final int MAX_K = 1000;
+
+	/**
+	 * Threads computing rankings, and rankings that may wait for one
+	 */
+	static final int RANKING_THREADS = 2;
+	static final int RANKING_QUEUE = 16;
+
+	// the graph; nothing but this service holds it, so concurrent queries are
+	// safe
+	private final NetworkInfluence graph;
+
+	// batches waiting for a search in arrival order, and those still open to
+	// more requests by source
+	private final LinkedBlockingQueue<Batch> batches = new LinkedBlockingQueue<Batch>();
+	private final Map<Integer, Batch> pending = new HashMap<Integer, Batch>();
+
+	// rankings computed or being computed, by method and k
+	private final Map<String, CompletableFuture<ArrayList<String>>> rankings =
+			new ConcurrentHashMap<String, CompletableFuture<ArrayList<String>>>();
+
+	private final LatencyHistogram[] latencies = new LatencyHistogram[ENDPOINTS.length];
+	private final AtomicLong searches = new AtomicLong();
+	private final AtomicLong batchedRequests = new AtomicLong();
+
+	private volatile boolean batching = true;
+
+	private HttpServer server;
+	private ExecutorService httpExecutor;
+	private ExecutorService searchExecutor;
+	private ExecutorService rankingExecutor;
+
+	/**
+	 * Loads the graph the service will answer queries on
+	 *
+	 * @param graphData
+	 *            The graph file, in the format NetworkInfluence reads
+	 * @param queryCacheCapacity
+	 *            The number of query results to cache; 0 disables the cache
+	 * @throws IOException
+	 */
+	public QueryService(String graphData, int queryCacheCapacity) throws IOException {
+		this.graph = new NetworkInfluence(graphData, queryCacheCapacity);
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: QueryService graphFile [port] [searchThreads]");
+			return;
+		}
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8311;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		// without TCP_NODELAY, small responses on kept-alive connections wait out
+		// the client's delayed ACK, adding about 40 ms to every request
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+
+		long start = System.nanoTime();
+		QueryService service = new QueryService(args[0], NetworkInfluence.DEFAULT_QUERY_CACHE_CAPACITY);
+		service.start(port, threads);
+		System.out.printf("Loaded %d vertices in %.1f seconds; listening on %s%n", service.graph.vertexCount(),
+				(System.nanoTime() - start) / 1000000000.0, service.getBaseUrl());
+	}
+
+	/**
+	 * Starts the service on the loopback interface
+	 *
+	 * @param port
+	 *            The port to listen on, or 0 for any free port
+	 * @param searchThreads
+	 *            The number of threads running searches
+	 * @throws IOException
+	 */
+	public void start(int port, int searchThreads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+		httpExecutor = Executors.newFixedThreadPool(Math.max(2, searchThreads));
+		server.setExecutor(httpExecutor);
+		searchExecutor = Executors.newFixedThreadPool(searchThreads);
+		rankingExecutor = new ThreadPoolExecutor(RANKING_THREADS, RANKING_THREADS, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(RANKING_QUEUE));
+		for (int i = 0; i < searchThreads; i++) {
+			searchExecutor.execute(() -> {
+				try {
+					while (true) {
+						answer(batches.take());
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				}
+			});
+		}
+
+		server.createContext("/distance", exchange -> handle(exchange, DISTANCE));
+		server.createContext("/shortestPath", exchange -> handle(exchange, SHORTEST_PATH));
+		server.createContext("/influence", exchange -> handle(exchange, INFLUENCE));
+		server.createContext("/top", exchange -> handle(exchange, TOP));
+		server.createContext("/stats", exchange -> {
+			try {
+				respond(exchange, 200, stats());
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * Stops the service
+	 */
+	public void stop() {
+		server.stop(0);
+		httpExecutor.shutdownNow();
+		searchExecutor.shutdownNow();
+		rankingExecutor.shutdownNow();
+	}
+
+	/**
+	 * @return The base URL of the service
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Turns the sharing of searches between requests for the same source on or
+	 * off; it is on by default. Without it every request is its own query.
+	 */
+	public void setBatching(boolean batching) {
+		this.batching = batching;
+	}
+
+	/**
+	 * @param endpoint
+	 *            The endpoint, such as DISTANCE
+	 * @return The latencies of its requests, from arrival to response
+	 */
+	public LatencyHistogram getLatencies(int endpoint) {
+		return latencies[endpoint];
+	}
+
+	/**
+	 * @return The number of shared searches run
+	 */
+	public long getSearches() {
+		return searches.get();
+	}
+
+	/**
+	 * @return The number of requests answered by shared searches
+	 */
+	public long getBatchedRequests() {
+		return batchedRequests.get();
+	}
+
+	/**
+	 * @return The graph the service answers queries on
+	 */
+	NetworkInfluence getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Parses a request and either answers it or queues it for a search
+	 */
+	private void handle(HttpExchange exchange, int endpoint) {
+		long start = System.nanoTime();
+		try {
+			Map<String, String> params = parameters(exchange.getRequestURI().getRawQuery());
+			if (endpoint == TOP) {
+				top(exchange, params.get("method"), params.get("k"), start);
+				return;
+			}
+
+			String from = params.get(endpoint == INFLUENCE ? "vertex" : "from");
+			String to = params.get("to");
+			if (from == null || (endpoint != INFLUENCE && to == null)) {
+				throw new IllegalArgumentException("Missing vertex");
+			}
+			Integer source = vertex(from);
+			Integer target = endpoint == INFLUENCE ? null : vertex(to);
+			Request request = new Request(exchange, endpoint, start, from, to,
+					target == null ? -1 : target.intValue());
+
+			synchronized (pending) {
+				Batch batch = batching ? pending.get(source) : null;
+				if (batch == null) {
+					batch = new Batch(source);
+					if (batching) {
+						pending.put(source, batch);
+					}
+					batches.add(batch);
+				}
+				batch.requests.add(request);
+			}
+		} catch (IllegalArgumentException e) {
+			error(exchange, 400, e.getMessage());
+		} catch (UnknownVertexException e) {
+			error(exchange, 404, e.getMessage());
+		}
+	}
+
+	/**
+	 * Answers every request of a batch, closing it to new requests first
+	 */
+	private void answer(Batch batch) {
+		synchronized (pending) {
+			pending.remove(batch.source, batch);
+		}
+
+		NetworkInfluence.SourceSearch search = null;
+		long searchStart = System.nanoTime();
+		if (batch.requests.size() > 1) {
+			search = graph.searchFrom(batch.source, QueryMetrics.DISTANCE);
+			searches.incrementAndGet();
+			batchedRequests.addAndGet(batch.requests.size());
+		}
+		for (Request request : batch.requests) {
+			String body;
+			try {
+				if (request.endpoint == DISTANCE) {
+					int d = search != null ? search.distance(request.target) : graph.distance(request.from, request.to);
+					body = "{\"distance\":" + d + "}";
+				} else if (request.endpoint == SHORTEST_PATH) {
+					ArrayList<String> path = search != null ? search.shortestPath(request.target)
+							: graph.shortestPath(request.from, request.to);
+					body = "{\"path\":" + json(path) + "}";
+				} else {
+					float influence = search != null ? search.influence() : graph.influence(request.from);
+					body = "{\"influence\":" + influence + "}";
+				}
+			} catch (RuntimeException e) {
+				error(request.exchange, 500, String.valueOf(e.getMessage()));
+				continue;
+			}
+			if (search != null) {
+				// the single queries record themselves
+				graph.getQueryMetrics().record(QUERIES[request.endpoint], searchStart);
+			}
+			latencies[request.endpoint].record(System.nanoTime() - request.startNanos);
+			try {
+				respond(request.exchange, 200, body);
+			} catch (IOException e) {
+				// the client went away
+			} finally {
+				request.exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Answers a top-k request once its ranking is ready, starting it on the
+	 * ranking pool if nobody asked for it before
+	 */
+	private void top(final HttpExchange exchange, String method, String k, final long start) {
+		final String m = method == null ? "degree" : method;
+		final int count;
+		try {
+			count = k == null ? 10 : Integer.parseInt(k);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad k: " + k);
+		}
+		if (count < 1 || count > MAX_K) {
+			throw new IllegalArgumentException("Bad k: " + k);
+		}
+		if (!METHODS.contains(m)) {
+			throw new IllegalArgumentException("Unknown method: " + m);
+		}
+
+		// only a future goes into the map, so no lock is held while ranking
+		final String key = m + " " + count;
+		CompletableFuture<ArrayList<String>> ranking = rankings.get(key);
+		if (ranking == null) {
+			final CompletableFuture<ArrayList<String>> computing = new CompletableFuture<ArrayList<String>>();
+			ranking = rankings.putIfAbsent(key, computing);
+			if (ranking == null) {
+				ranking = computing;
+				try {
+					rankingExecutor.execute(() -> {
+						try {
+							computing.complete(rank(m, count));
+						} catch (RuntimeException e) {
+							rankings.remove(key, computing);
+							computing.completeExceptionally(e);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					rankings.remove(key, computing);
+					computing.completeExceptionally(e);
+				}
+			}
+		}
+
+		ranking.whenComplete((top, error) -> {
+			if (error instanceof RejectedExecutionException) {
+				error(exchange, 503, "Too many rankings waiting");
+			} else if (error != null) {
+				error(exchange, 500, String.valueOf(error.getMessage()));
+			} else {
+				latencies[TOP].record(System.nanoTime() - start);
+				try {
+					respond(exchange, 200, "{\"vertices\":" + json(top) + "}");
+				} catch (IOException e) {
+					// the client went away
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Computes the top count vertices by the given method
+	 */
+	private ArrayList<String> rank(String method, int count) {
+		if (method.equals("degree")) {
+			return graph.mostInfluentialDegree(count);
+		} else if (method.equals("modular")) {
+			return graph.mostInfluentialModular(count);
+		} else if (method.equals("subModular")) {
+			return graph.mostInfluentialSubModular(count);
+		} else if (method.equals("pageRank")) {
+			return graph.mostInfluentialPageRank(count);
+		} else if (method.equals("hub")) {
+			return graph.mostInfluentialHub(count);
+		}
+		return graph.mostInfluentialAuthority(count);
+	}
+
+	/**
+	 * Returns the JSON statistics of every endpoint
+	 */
+	private String stats() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < ENDPOINTS.length; i++) {
+			LatencyHistogram h = latencies[i];
+			sb.append(json(ENDPOINTS[i])).append(String.format(
+					":{\"count\":%d,\"meanMillis\":%.3f,\"p50Millis\":%.3f,\"p99Millis\":%.3f,\"maxMillis\":%.3f},",
+					h.getCount(), h.getMeanNanos() / 1e6, h.percentileMillis(0.50), h.percentileMillis(0.99),
+					h.getMaxNanos() / 1e6));
+		}
+		sb.append("\"searches\":").append(searches.get());
+		sb.append(",\"batchedRequests\":").append(batchedRequests.get()).append("}");
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the index of the named vertex
+	 */
+	private Integer vertex(String name) throws UnknownVertexException {
+		Integer v = graph.indexOf(name);
+		if (v == null) {
+			throw new UnknownVertexException("Unknown vertex: " + name);
+		}
+		return v;
+	}
+
+	private void error(HttpExchange exchange, int status, String message) {
+		try {
+			respond(exchange, status, "{\"error\":" + json(message) + "}");
+		} catch (IOException e) {
+			// the client went away
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	/**
+	 * Parses a query string into its decoded parameters
+	 */
+	private static Map<String, String> parameters(String query) {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		if (query == null) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+	}
+
+	private static String json(List<String> values) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(json(values.get(i)));
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Quotes a string for JSON
+	 */
+	static String json(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Private internal class holding the requests for one source that will share
+	 * a search
+	 */
+	private static class Batch {
+		private final int source;
+		private final List<Request> requests = new ArrayList<Request>();
+
+		private Batch(int source) {
+			this.source = source;
+		}
+	}
+
+	/**
+	 * Private internal class holding a request that waits for a search
+	 */
+	private static class Request {
+		private final HttpExchange exchange;
+		private final int endpoint;
+		private final long startNanos;
+		private final String from;
+		private final String to;
+		private final int target;
+
+		private Request(HttpExchange exchange, int endpoint, long startNanos, String from, String to, int target) {
+			this.exchange = exchange;
+			this.endpoint = endpoint;
+			this.startNanos = startNanos;
+			this.from = from;
+			this.to = to;
+			this.target = target;
+		}
+	}
+
+	/**
+	 * Thrown for a request naming a vertex the graph doesn't have
+	 */
+	private static class UnknownVertexException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		private UnknownVertexException(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * RecrawlBenchmark class
+ *
+ * Crawls generated pages on a LocalPageServer, changes a few percent of them,
+ * and compares refreshing the graph with a full crawl against an incremental
+ * recrawl. It reports the requests, bytes and time each needs. It then checks
+ * that applying the recrawl's delta to the old graph gives the same graph as
+ * loading the refreshed file.
+ *
+ * Usage: RecrawlBenchmark [maxPages] [fraction of pages changed]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class RecrawlBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int max = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		double changed = args.length > 1 ? Double.parseDouble(args[1]) : 0.02;
+
+		String[] topicWords = { "complexity" };
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		int numPages = max * 5;
+		LocalPageServer server = new LocalPageServer(PageGenerator.generate(numPages, 30, topicWords, 0.5, 311));
+		server.start(8);
+		try {
+			run(server, max, changed, topicWords, topics, numPages);
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static void run(LocalPageServer server, int max, double changed, String[] topicWords,
+			ArrayList<String> topics, int numPages) throws Exception {
+
+		File oldGraph = File.createTempFile("recrawl_benchmark", ".txt");
+		File newGraph = File.createTempFile("recrawl_benchmark", ".txt");
+		File revisions = File.createTempFile("recrawl_benchmark", ".rev");
+		oldGraph.deleteOnExit();
+		newGraph.deleteOnExit();
+		revisions.deleteOnExit();
+		revisions.delete();
+
+		WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), max, topics,
+				oldGraph.getAbsolutePath());
+		crawler.setPoliteness(0, 0);
+		long[] before = counters(server);
+		crawler.crawl();
+		report("full crawl", server, before);
+
+		IncrementalRecrawl recrawl = new IncrementalRecrawl(server.getBaseUrl(), topics, oldGraph.getAbsolutePath(),
+				revisions.getAbsolutePath());
+		recrawl.setPoliteness(0, 0);
+		before = counters(server);
+		GraphDelta delta = recrawl.recrawl(oldGraph.getAbsolutePath());
+		report("first recrawl (no revisions yet), delta " + delta, server, before);
+
+		// replace some pages by other versions, and take a few off the topics
+		Map<String, String> otherVersions = PageGenerator.generate(numPages, 30, topicWords, 0.5, 312);
+		Random random = new Random(311);
+		List<String> titles = readTitles(oldGraph);
+		HashSet<String> touched = new HashSet<String>();
+		while (touched.size() < changed * titles.size()) {
+			String title = titles.get(random.nextInt(titles.size()));
+			if (touched.add(title)) {
+				if (touched.size() % 10 == 0) {
+					// no longer about the topics; removing it would break the full crawl
+					server.putPage(title, "<html><body><p>Moved.</p></body></html>");
+				} else {
+					server.putPage(title, otherVersions.get(title));
+				}
+			}
+		}
+		System.out.printf("Changed %d of %d pages%n", touched.size(), titles.size());
+
+		before = counters(server);
+		delta = recrawl.recrawl(newGraph.getAbsolutePath());
+		report("incremental recrawl, " + recrawl.getPagesChanged() + " changed, " + recrawl.getPagesDropped()
+				+ " dropped, delta " + delta, server, before);
+
+		File fullGraph = File.createTempFile("recrawl_benchmark", ".txt");
+		fullGraph.deleteOnExit();
+		crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), max, topics,
+				fullGraph.getAbsolutePath());
+		crawler.setPoliteness(0, 0);
+		before = counters(server);
+		crawler.crawl();
+		report("full crawl again", server, before);
+
+		// the old graph with the delta applied must match the refreshed graph
+		NetworkInfluence patched = new NetworkInfluence(oldGraph.getAbsolutePath());
+		patched.applyDelta(delta);
+		NetworkInfluence reloaded = new NetworkInfluence(newGraph.getAbsolutePath());
+		int mismatches = 0;
+		for (String title : readTitles(newGraph)) {
+			if (patched.outDegree("/wiki/" + title) != reloaded.outDegree("/wiki/" + title)) {
+				mismatches++;
+			}
+		}
+		System.out.printf("Patched graph: %d out-degree mismatches, top PageRank %s vs %s%n", mismatches,
+				patched.mostInfluentialPageRank(3), reloaded.mostInfluentialPageRank(3));
+	}
+
+	/**
+	 * Returns the titles of the vertices of a graph file
+	 */
+	private static List<String> readTitles(File graph) throws Exception {
+		HashSet<String> seen = new HashSet<String>();
+		ArrayList<String> titles = new ArrayList<String>();
+		List<String> lines = Files.readAllLines(graph.toPath());
+		for (String line : lines.subList(1, lines.size())) {
+			for (String vertex : line.split(" ")) {
+				String title = vertex.substring("/wiki/".length());
+				if (seen.add(title)) {
+					titles.add(title);
+				}
+			}
+		}
+		return titles;
+	}
+
+	private static long[] counters(LocalPageServer server) {
+		return new long[] { server.getRequestCount(), server.getBytesSent(), System.nanoTime() };
+	}
+
+	private static void report(String label, LocalPageServer server, long[] before) {
+		System.out.printf("%-60s %5d requests, %8.1f KB, %.2f s%n", label, server.getRequestCount() - before[0],
+				(server.getBytesSent() - before[1]) / 1024.0, (System.nanoTime() - before[2]) / 1000000000.0);
+	}
+}
@@ -0,0 +1,107 @@
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ReorderBenchmark class
+ *
+ * Times BFS-based queries and PageRank on a graph as loaded, and after
+ * renumbering its vertices with each VertexOrdering. The generated graph has
+ * its edges shuffled, so the vertices are numbered in a scattered order as in
+ * a graph file merged from many sources; a graph file given on the command
+ * line is used as it is.
+ *
+ * Usage: ReorderBenchmark [graphFile | vertices] [avgDegree]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ReorderBenchmark {
+
+	private static final int[] ORDERINGS = { 0, VertexOrdering.BFS, VertexOrdering.RCM, VertexOrdering.DEGREE,
+			VertexOrdering.GORDER };
+
+	public static void main(String[] args) throws Exception {
+		String graphFile;
+		if (args.length > 0 && new File(args[0]).isFile()) {
+			graphFile = args[0];
+		} else {
+			int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+			int degree = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+			File f = File.createTempFile("reorder_benchmark", ".txt");
+			f.deleteOnExit();
+			graphFile = f.getAbsolutePath();
+			GraphGenerator.writePowerLawGraph(graphFile, vertices, degree, 311);
+
+			List<String> lines = Files.readAllLines(f.toPath());
+			List<String> edges = lines.subList(1, lines.size());
+			Collections.shuffle(edges, new Random(311));
+			try (PrintWriter writer = new PrintWriter(f, "UTF-8")) {
+				for (String line : lines) {
+					writer.println(line);
+				}
+			}
+		}
+
+		String[] sources = null;
+		float[] expected = null;
+		for (int ordering : ORDERINGS) {
+			NetworkInfluence network = new NetworkInfluence(graphFile, 0);
+			int n = network.vertexCount();
+			if (sources == null) {
+				Random random = new Random(311);
+				sources = new String[20];
+				for (int i = 0; i < sources.length; i++) {
+					sources[i] = network.nameOf(random.nextInt(n));
+				}
+			}
+
+			String label = ordering == 0 ? "as loaded" : VertexOrdering.name(ordering);
+			long start = System.nanoTime();
+			if (ordering != 0) {
+				network.reorder(ordering);
+			}
+			double reorderSeconds = elapsed(start);
+
+			// warm up, then time full searches from each source
+			float[] influence = new float[sources.length];
+			for (int i = 0; i < sources.length; i++) {
+				influence[i] = network.influence(sources[i]);
+			}
+			network.getQueryCache().invalidate();
+			start = System.nanoTime();
+			for (int i = 0; i < sources.length; i++) {
+				influence[i] = network.influence(sources[i]);
+			}
+			double influenceMillis = elapsed(start) * 1000 / sources.length;
+
+			start = System.nanoTime();
+			for (int i = 0; i < sources.length; i++) {
+				network.distance(sources[i], sources[(i + 1) % sources.length]);
+			}
+			double distanceMillis = elapsed(start) * 1000 / sources.length;
+
+			start = System.nanoTime();
+			network.mostInfluentialPageRank(10);
+			double pageRankSeconds = elapsed(start);
+
+			boolean same = true;
+			if (expected == null) {
+				expected = influence;
+			}
+			for (int i = 0; i < influence.length; i++) {
+				same &= influence[i] == expected[i];
+			}
+			System.out.printf(
+					"%-9s reorder %6.2f s, influence %7.2f ms, distance %6.2f ms, PageRank %5.2f s, same answers: %b%n",
+					label, reorderSeconds, influenceMillis, distanceMillis, pageRankSeconds, same);
+		}
+	}
+
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1000000000.0;
+	}
+}
@@ -0,0 +1,62 @@
+import java.io.InputStream;
+
+/**
+ * Revalidation class
+ * 
+ * The answer to a conditional request made by PageFetcher.openIfModified:
+ * whether the page changed, its body if it did, and the validators (ETag and
+ * Last-Modified) to send with the next conditional request for it.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class Revalidation {
+
+	// whether the page changed since the validators sent with the request
+	private final boolean modified;
+	// the page's body if it changed, or null
+	private final InputStream body;
+	// the validators of the current version, each null if the server sent none
+	private final String etag;
+	private final String lastModified;
+
+	/**
+	 * Constructs a new Revalidation
+	 * 
+	 * @param modified
+	 *            Whether the page changed
+	 * @param body
+	 *            The page's body if it changed, or null
+	 * @param etag
+	 *            The page's ETag, or null
+	 * @param lastModified
+	 *            The page's Last-Modified date, or null
+	 */
+	public Revalidation(boolean modified, InputStream body, String etag, String lastModified) {
+		this.modified = modified;
+		this.body = body;
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * @return A stream of the page's decompressed body if it changed, which the
+	 *         caller must close, or null; null with isModified() true means the
+	 *         page no longer exists
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+}
@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+
+/**
+ * ScannedPage class
+ * 
+ * What PageScanner.scanPage learns about a page besides its links: the anchor
+ * text of each link and how densely the page's text mentions the topics. The
+ * focused crawl uses these to guess which links lead to relevant pages.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ScannedPage {
+
+	// the links on the page, minus "/wiki/"
+	final ArrayList<String> links = new ArrayList<String>();
+	// the anchor text of each link, in the same order
+	final ArrayList<String> anchors = new ArrayList<String>();
+	// number of times any topic occurs in the text after the first <p> tag
+	int topicOccurrences;
+	// number of characters of text after the first <p> tag
+	long textLength;
+
+	public ArrayList<String> getLinks() {
+		return links;
+	}
+
+	public ArrayList<String> getAnchors() {
+		return anchors;
+	}
+
+	/**
+	 * @return The number of topic occurrences per thousand characters of text
+	 */
+	public double getTopicDensity() {
+		return textLength == 0 ? 0 : topicOccurrences * 1000.0 / textLength;
+	}
+}
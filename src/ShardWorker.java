@@ -0,0 +1,419 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * ShardWorker class
+ *
+ * One worker process of a ShardedCrawl. The titles are split between the
+ * workers by a hash of the title, and each worker owns the visited set and the
+ * frontier of its share. A worker fetches the titles in its frontier in FIFO
+ * order. Every page containing all the topics is kept, once the coordinator
+ * allows it, and its links are sent to the workers owning them. Links for
+ * other workers are sent in batches over one TCP connection per pair of
+ * workers, and links for itself go straight into its own frontier.
+ *
+ * The worker answers the coordinator's status requests with whether it is
+ * idle and how many links it has sent and received, so the coordinator can
+ * tell when the whole crawl has run out of work. When told to finish, it stops
+ * sending links, since the other workers may already have exited, sends the
+ * pages it kept to the coordinator and exits.
+ *
+ * Started by ShardedCrawl; the arguments are the coordinator's port, the
+ * shard number, the number of shards, the base URL, the seed title, the
+ * politeness policy (requests per pause and pause length) and the topics.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ShardWorker {
+
+	// messages from a worker to the coordinator
+	static final byte HELLO = 1;
+	static final byte PERMIT_REQUEST = 2;
+	static final byte STATUS = 3;
+	static final byte PAGES = 4;
+
+	// messages from the coordinator to a worker
+	static final byte PEERS = 11;
+	static final byte PERMIT = 12;
+	static final byte STATUS_REQUEST = 13;
+	static final byte FINISH = 14;
+
+	// message from one worker to another
+	static final byte LINKS = 21;
+
+	/**
+	 * Links collected for another worker before they are sent
+	 */
+	static final int BATCH_SIZE = 256;
+
+	/**
+	 * Longest time links wait for a batch to fill up, in milliseconds
+	 */
+	static final long BATCH_MILLIS = 20;
+
+	/**
+	 * Returns the shard owning a title
+	 *
+	 * @param title
+	 *            The page title, without "/wiki/"
+	 * @param shards
+	 *            The number of shards
+	 * @return The shard number, from 0 to shards - 1
+	 */
+	static int shardOf(String title, int shards) {
+		return (int) Math.floorMod(CompactVisitedSet.fingerprint(title), (long) shards);
+	}
+
+	// which shard this is, out of how many
+	private final int shard;
+	private final int shards;
+	// where pages are fetched from, and what they must contain
+	private final String baseUrl;
+	private final ArrayList<String> topics;
+	// politeness policy of this worker
+	private final PolitenessThrottle throttle;
+
+	// connection to the coordinator; writes are synchronized on coordinatorOut
+	private final Socket coordinator;
+	private final DataInputStream coordinatorIn;
+	private final DataOutputStream coordinatorOut;
+	// the coordinator's answers to permit requests
+	private final BlockingQueue<Boolean> permits = new ArrayBlockingQueue<Boolean>(1);
+
+	// connections to the other workers, by shard; null for this one and for
+	// workers that went away
+	private DataOutputStream[] peers;
+	// links waiting to be sent to each shard, and when they were last sent
+	private ArrayList<ArrayList<String>> outgoing = new ArrayList<ArrayList<String>>();
+	private long lastFlush = System.currentTimeMillis();
+
+	// the titles of this shard seen so far, and those still to be fetched
+	private final VisitedSet visited = new HashVisitedSet();
+	private final ArrayDeque<String> frontier = new ArrayDeque<String>();
+	// the pages kept, with their links
+	private final ArrayList<FrontierPage> kept = new ArrayList<FrontierPage>();
+
+	// the following are guarded by this worker's lock
+	// links received from other workers and not yet taken by the crawl loop
+	private final ArrayDeque<String> incoming = new ArrayDeque<String>();
+	// whether the crawl loop has nothing to do
+	private boolean idle;
+	// whether the coordinator said to finish
+	private boolean finishing;
+	private long linksSent;
+	private long linksReceived;
+
+	/**
+	 * Connects to the coordinator and the other workers
+	 */
+	private ShardWorker(int coordinatorPort, int shard, int shards, String baseUrl, int requestsPerPause,
+			long pauseMillis, ArrayList<String> topics) throws IOException {
+		this.shard = shard;
+		this.shards = shards;
+		this.baseUrl = baseUrl;
+		this.throttle = new PolitenessThrottle(requestsPerPause, pauseMillis, null);
+		this.topics = topics;
+
+		// listen for the other workers before telling the coordinator the port
+		final ServerSocket server = new ServerSocket(0, shards, InetAddress.getLoopbackAddress());
+		coordinator = new Socket(InetAddress.getLoopbackAddress(), coordinatorPort);
+		coordinator.setTcpNoDelay(true);
+		coordinatorIn = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+		coordinatorOut = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+		synchronized (coordinatorOut) {
+			coordinatorOut.writeByte(HELLO);
+			coordinatorOut.writeInt(shard);
+			coordinatorOut.writeInt(server.getLocalPort());
+			coordinatorOut.flush();
+		}
+
+		startDaemon("shard-" + shard + "-acceptor", () -> {
+			try {
+				while (true) {
+					final Socket peer = server.accept();
+					startDaemon("shard-" + shard + "-peer", () -> receiveLinks(peer));
+				}
+			} catch (IOException e) {
+				// the worker is exiting
+			}
+		});
+
+		// the coordinator answers with the ports of all workers
+		if (coordinatorIn.readByte() != PEERS) {
+			throw new IOException("Expected the list of workers from the coordinator");
+		}
+		peers = new DataOutputStream[shards];
+		for (int s = 0; s < shards; s++) {
+			int port = coordinatorIn.readInt();
+			outgoing.add(new ArrayList<String>());
+			if (s != shard) {
+				Socket peer = new Socket(InetAddress.getLoopbackAddress(), port);
+				peer.setTcpNoDelay(true);
+				peers[s] = new DataOutputStream(new BufferedOutputStream(peer.getOutputStream(), 1 << 16));
+			}
+		}
+
+		startDaemon("shard-" + shard + "-coordinator", () -> serveCoordinator());
+	}
+
+	/**
+	 * Crawls until the coordinator says to finish, then sends the kept pages
+	 */
+	private void run(String seedUrl) throws IOException, InterruptedException {
+		if (shardOf(seedUrl, shards) == shard) {
+			offer(seedUrl);
+		}
+
+		boolean crawling = true;
+		while (true) {
+			String title = frontier.poll();
+			if (title == null) {
+				flushAll();
+				synchronized (this) {
+					while (incoming.isEmpty() && !finishing) {
+						idle = true;
+						wait();
+					}
+					idle = false;
+					if (finishing) {
+						break;
+					}
+					for (String link : incoming) {
+						offer(link);
+					}
+					incoming.clear();
+				}
+				continue;
+			}
+			if (!crawling) {
+				continue;
+			}
+
+			throttle.acquire();
+			ArrayList<String> links = new PageScanner(baseUrl + "/wiki/" + title).getLinks(topics);
+			if (links != null) {
+				if (!requestPermit()) {
+					// the coordinator has all the pages it needs; drain until told to finish
+					crawling = false;
+					continue;
+				}
+				kept.add(new FrontierPage(title, links));
+				for (String link : links) {
+					int owner = shardOf(link, shards);
+					if (owner == shard) {
+						offer(link);
+					} else {
+						outgoing.get(owner).add(link);
+						if (outgoing.get(owner).size() >= BATCH_SIZE) {
+							flush(owner);
+						}
+					}
+				}
+			}
+
+			if (System.currentTimeMillis() - lastFlush >= BATCH_MILLIS) {
+				flushAll();
+			}
+			synchronized (this) {
+				for (String link : incoming) {
+					offer(link);
+				}
+				incoming.clear();
+				if (finishing) {
+					break;
+				}
+			}
+		}
+
+		sendPages();
+	}
+
+	/**
+	 * Adds a title of this shard to the frontier unless it was seen before
+	 */
+	private void offer(String title) {
+		if (visited.add(title)) {
+			frontier.add(title);
+		}
+	}
+
+	/**
+	 * Asks the coordinator whether another page may be kept
+	 */
+	private boolean requestPermit() throws IOException, InterruptedException {
+		synchronized (coordinatorOut) {
+			coordinatorOut.writeByte(PERMIT_REQUEST);
+			coordinatorOut.flush();
+		}
+		return permits.take();
+	}
+
+	/**
+	 * Sends the links waiting for every other shard
+	 */
+	private void flushAll() {
+		for (int s = 0; s < shards; s++) {
+			if (!outgoing.get(s).isEmpty()) {
+				flush(s);
+			}
+		}
+		lastFlush = System.currentTimeMillis();
+	}
+
+	/**
+	 * Sends the links waiting for one shard as a batch, or drops them once the
+	 * crawl is finishing
+	 */
+	private void flush(int owner) {
+		ArrayList<String> batch = outgoing.get(owner);
+		DataOutputStream out = peers[owner];
+		synchronized (this) {
+			if (finishing || out == null) {
+				batch.clear();
+				return;
+			}
+			// counted before sending, so links in flight always show as sent but not
+			// yet received
+			linksSent += batch.size();
+		}
+		try {
+			out.writeByte(LINKS);
+			out.writeInt(batch.size());
+			for (String link : batch) {
+				out.writeUTF(link);
+			}
+			out.flush();
+		} catch (IOException e) {
+			// a worker only exits once the coordinator said to finish, which this one
+			// may not have read yet, and then the links aren't needed
+			peers[owner] = null;
+		}
+		batch.clear();
+	}
+
+	/**
+	 * Reads batches of links sent by another worker into incoming
+	 */
+	private void receiveLinks(Socket peer) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(peer.getInputStream(), 1 << 16))) {
+			while (in.readByte() == LINKS) {
+				int count = in.readInt();
+				ArrayList<String> batch = new ArrayList<String>(count);
+				for (int i = 0; i < count; i++) {
+					batch.add(in.readUTF());
+				}
+				synchronized (this) {
+					incoming.addAll(batch);
+					linksReceived += count;
+					notifyAll();
+				}
+			}
+		} catch (EOFException e) {
+			// the other worker is done
+		} catch (IOException e) {
+			System.err.println("Shard " + shard + " lost a peer: " + e);
+		}
+	}
+
+	/**
+	 * Answers the coordinator's messages until it says to finish
+	 */
+	private void serveCoordinator() {
+		try {
+			while (true) {
+				byte message = coordinatorIn.readByte();
+				if (message == PERMIT) {
+					permits.put(coordinatorIn.readBoolean());
+				} else if (message == STATUS_REQUEST) {
+					boolean isIdle;
+					long sent;
+					long received;
+					synchronized (this) {
+						isIdle = idle && incoming.isEmpty();
+						sent = linksSent;
+						received = linksReceived;
+					}
+					synchronized (coordinatorOut) {
+						coordinatorOut.writeByte(STATUS);
+						coordinatorOut.writeBoolean(isIdle);
+						coordinatorOut.writeLong(sent);
+						coordinatorOut.writeLong(received);
+						coordinatorOut.flush();
+					}
+				} else if (message == FINISH) {
+					synchronized (this) {
+						finishing = true;
+						notifyAll();
+					}
+					// a crawl loop waiting for a permit must not wait forever
+					permits.offer(false);
+					return;
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			System.err.println("Shard " + shard + " lost the coordinator: " + e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Sends the kept pages and their links to the coordinator
+	 */
+	private void sendPages() throws IOException {
+		synchronized (coordinatorOut) {
+			coordinatorOut.writeByte(PAGES);
+			coordinatorOut.writeInt(kept.size());
+			for (FrontierPage page : kept) {
+				coordinatorOut.writeUTF(page.page);
+				coordinatorOut.writeInt(page.links.size());
+				for (String link : page.links) {
+					coordinatorOut.writeUTF(link);
+				}
+			}
+			coordinatorOut.flush();
+		}
+		for (DataOutputStream peer : peers) {
+			if (peer != null) {
+				try {
+					peer.close();
+				} catch (IOException e) {
+					// the other worker exited first
+				}
+			}
+		}
+		coordinator.close();
+	}
+
+	private static void startDaemon(String name, Runnable task) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 7) {
+			System.err.println("Usage: ShardWorker port shard shards baseUrl seed requestsPerPause pauseMillis "
+					+ "[topics...]");
+			System.exit(2);
+		}
+		ArrayList<String> topics = new ArrayList<String>();
+		for (int i = 7; i < args.length; i++) {
+			topics.add(args[i]);
+		}
+		ShardWorker worker = new ShardWorker(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+				Integer.parseInt(args[2]), args[3], Integer.parseInt(args[5]), Long.parseLong(args[6]), topics);
+		worker.run(args[4]);
+	}
+}
@@ -0,0 +1,412 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShardedCrawl class
+ *
+ * Runs a crawl split over several ShardWorker processes on this machine and
+ * merges their pages into one graph file, in the format WikiCrawler writes.
+ * The titles are split between the workers by a hash of the title, so each
+ * worker only keeps the visited set and frontier of its share. A worker fetches
+ * and parses its own pages and sends every link to the worker owning it, in
+ * batches over local TCP connections.
+ *
+ * This coordinator starts the workers and tells each one where the others
+ * listen. It hands out permits so exactly max pages containing the topics are
+ * kept. It polls the workers to detect when the crawl runs out of work: that
+ * is when every worker is idle, every link sent has been received, and nothing
+ * changed between two polls in a row. It then collects every worker's pages and
+ * writes the graph.
+ *
+ * Unlike WikiCrawler, a page is fetched at most once even if it fails the
+ * topics, and the pages are fetched in roughly but not exactly BFS order.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ShardedCrawl {
+
+	/**
+	 * Time between two polls of the workers' status, in milliseconds
+	 */
+	private static final long POLL_MILLIS = 20;
+
+	// the base URL prefixed to every page
+	private final String baseUrl;
+	// the seed page, without "/wiki/"
+	private final String seedUrl;
+	// the number of pages containing the topics to keep
+	private final int max;
+	private final ArrayList<String> topics;
+	private final String fileName;
+	private final int shards;
+	// politeness policy shared by all workers
+	private int requestsPerPause = 25;
+	private long pauseMillis = 3000;
+	// extra JVM options for the workers, like a heap size
+	private final ArrayList<String> workerJvmOptions = new ArrayList<String>();
+
+	// the connection to each worker, by shard
+	private Connection[] workers;
+	// pages kept so far, guarded by this crawl's lock
+	private int granted;
+	private int pagesKept;
+	private long edges;
+	// the coordinator's own figures
+	private final CrawlMetrics metrics = new CrawlMetrics();
+
+	/**
+	 * Constructs a new ShardedCrawl
+	 *
+	 * @param baseUrl
+	 *            The base URL prefixed to every "/wiki/xxx" link
+	 * @param seedUrl
+	 *            The URL of the page the crawl starts on
+	 * @param max
+	 *            The number of pages containing all the topics to find
+	 * @param topics
+	 *            The keywords every page in the graph contains
+	 * @param fileName
+	 *            The file the graph is written to
+	 * @param shards
+	 *            The number of worker processes
+	 */
+	public ShardedCrawl(String baseUrl, String seedUrl, int max, ArrayList<String> topics, String fileName,
+			int shards) {
+		if (shards < 1) {
+			throw new IllegalArgumentException("Need at least one shard: " + shards);
+		}
+		this.baseUrl = baseUrl;
+		this.seedUrl = seedUrl.startsWith("/wiki/") ? seedUrl.substring("/wiki/".length()) : seedUrl;
+		this.max = max;
+		this.topics = topics;
+		this.fileName = fileName;
+		this.shards = shards;
+	}
+
+	/**
+	 * Changes the politeness policy of the whole crawl, as in
+	 * WikiCrawler.setPoliteness. Each worker is allowed its share of the
+	 * requests between pauses.
+	 *
+	 * @param requestsPerPause
+	 *            The number of requests made between pauses, or 0 for no pauses
+	 * @param pauseMillis
+	 *            The length of each pause
+	 */
+	public void setPoliteness(int requestsPerPause, long pauseMillis) {
+		this.requestsPerPause = requestsPerPause;
+		this.pauseMillis = pauseMillis;
+	}
+
+	/**
+	 * Adds an option for the JVMs the workers run in, such as "-Xmx2g"
+	 *
+	 * @param option
+	 *            The option
+	 */
+	public void addWorkerJvmOption(String option) {
+		workerJvmOptions.add(option);
+	}
+
+	/**
+	 * @return The number of pages in the graph written by the last crawl
+	 */
+	public int getPagesKept() {
+		return pagesKept;
+	}
+
+	/**
+	 * @return The number of edges in the graph written by the last crawl
+	 */
+	public long getEdgeCount() {
+		return edges;
+	}
+
+	/**
+	 * @return The metrics of the coordinator for the current or last crawl.
+	 *         Pages are fetched by the workers, so of the figures only the
+	 *         graph write time is recorded here.
+	 */
+	public CrawlMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Starts the workers, crawls until max pages were kept or no work is left,
+	 * and writes the graph
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void crawl() throws IOException, InterruptedException {
+		granted = 0;
+		metrics.reset();
+		ArrayList<Process> processes = new ArrayList<Process>();
+		ArrayList<Connection> connections = new ArrayList<Connection>();
+		boolean done = false;
+		try (ServerSocket server = new ServerSocket(0, shards, InetAddress.getLoopbackAddress())) {
+			for (int s = 0; s < shards; s++) {
+				processes.add(startWorker(server.getLocalPort(), s));
+			}
+
+			// every worker says hello with the port it listens on
+			workers = new Connection[shards];
+			int[] ports = new int[shards];
+			server.setSoTimeout(60000);
+			for (int i = 0; i < shards; i++) {
+				Connection worker = new Connection(server.accept());
+				connections.add(worker);
+				if (worker.in.readByte() != ShardWorker.HELLO) {
+					throw new IOException("Expected a worker to say hello");
+				}
+				int shard = worker.in.readInt();
+				ports[shard] = worker.in.readInt();
+				workers[shard] = worker;
+			}
+			for (Connection worker : workers) {
+				worker.out.writeByte(ShardWorker.PEERS);
+				for (int port : ports) {
+					worker.out.writeInt(port);
+				}
+				worker.out.flush();
+			}
+
+			final GraphWriter graph = new GraphWriter();
+			for (int s = 0; s < shards; s++) {
+				final Connection worker = workers[s];
+				Thread reader = new Thread(() -> serve(worker, graph), "sharded-crawl-" + s);
+				reader.setDaemon(true);
+				reader.start();
+			}
+
+			waitUntilDone();
+
+			for (Connection worker : workers) {
+				synchronized (worker) {
+					worker.out.writeByte(ShardWorker.FINISH);
+					worker.out.flush();
+				}
+			}
+			synchronized (this) {
+				for (Connection worker : workers) {
+					while (!worker.finished && worker.error == null) {
+						wait();
+					}
+					if (worker.error != null) {
+						throw worker.error;
+					}
+				}
+			}
+
+			long startGraph = System.nanoTime();
+			pagesKept = graph.getPageCount();
+			edges = graph.write(fileName);
+			metrics.graphWritten(System.nanoTime() - startGraph);
+			done = true;
+		} finally {
+			for (Connection worker : connections) {
+				worker.close();
+			}
+			// after a failure the workers are stopped at once; otherwise they get 10
+			// seconds between them to exit
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			for (Process process : processes) {
+				if (!done || !process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					process.destroyForcibly();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts the worker process of one shard
+	 */
+	private Process startWorker(int port, int shard) throws IOException {
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+		command.addAll(workerJvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("ShardWorker");
+		command.add(Integer.toString(port));
+		command.add(Integer.toString(shard));
+		command.add(Integer.toString(shards));
+		command.add(baseUrl);
+		command.add(seedUrl);
+		command.add(Integer.toString(requestsPerPause > 0 ? Math.max(1, requestsPerPause / shards) : 0));
+		command.add(Long.toString(pauseMillis));
+		if (topics != null) {
+			command.addAll(topics);
+		}
+		return new ProcessBuilder(command).inheritIO().start();
+	}
+
+	/**
+	 * Polls the workers until max pages were kept, or until two polls in a row
+	 * found every worker idle with every link sent also received
+	 */
+	private void waitUntilDone() throws IOException, InterruptedException {
+		long[] previous = null;
+		while (true) {
+			synchronized (this) {
+				if (granted >= max) {
+					return;
+				}
+				for (Connection worker : workers) {
+					worker.status = null;
+				}
+			}
+			for (Connection worker : workers) {
+				synchronized (worker) {
+					worker.out.writeByte(ShardWorker.STATUS_REQUEST);
+					worker.out.flush();
+				}
+			}
+
+			long[] totals = new long[3];
+			synchronized (this) {
+				for (Connection worker : workers) {
+					while (worker.status == null && worker.error == null && granted < max) {
+						wait();
+					}
+					if (worker.error != null) {
+						throw worker.error;
+					}
+					if (granted >= max) {
+						return;
+					}
+					totals[0] += worker.status[0];
+					totals[1] += worker.status[1];
+					totals[2] += worker.status[2];
+				}
+			}
+
+			// totals: busy workers, links sent, links received
+			if (totals[0] == 0 && totals[1] == totals[2] && previous != null && previous[1] == totals[1]
+					&& previous[2] == totals[2] && previous[0] == 0) {
+				return;
+			}
+			previous = totals;
+			Thread.sleep(POLL_MILLIS);
+		}
+	}
+
+	/**
+	 * Reads a worker's messages: permit requests, status answers, and finally its
+	 * pages, which go into graph
+	 */
+	private void serve(Connection worker, GraphWriter graph) {
+		try {
+			while (true) {
+				byte message = worker.in.readByte();
+				if (message == ShardWorker.PERMIT_REQUEST) {
+					boolean permitted;
+					synchronized (this) {
+						permitted = granted < max;
+						if (permitted) {
+							granted++;
+						}
+						notifyAll();
+					}
+					synchronized (worker) {
+						worker.out.writeByte(ShardWorker.PERMIT);
+						worker.out.writeBoolean(permitted);
+						worker.out.flush();
+					}
+				} else if (message == ShardWorker.STATUS) {
+					long[] status = { worker.in.readBoolean() ? 0 : 1, worker.in.readLong(), worker.in.readLong() };
+					synchronized (this) {
+						worker.status = status;
+						notifyAll();
+					}
+				} else if (message == ShardWorker.PAGES) {
+					int count = worker.in.readInt();
+					for (int i = 0; i < count; i++) {
+						String page = worker.in.readUTF();
+						int numLinks = worker.in.readInt();
+						ArrayList<String> links = new ArrayList<String>(numLinks);
+						for (int j = 0; j < numLinks; j++) {
+							links.add(worker.in.readUTF());
+						}
+						graph.addPage(page, links);
+					}
+					synchronized (this) {
+						worker.finished = true;
+						notifyAll();
+					}
+					return;
+				} else {
+					throw new IOException("Unexpected message from a worker: " + message);
+				}
+			}
+		} catch (IOException e) {
+			synchronized (this) {
+				worker.error = e;
+				notifyAll();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 5) {
+			System.out.println("Usage: ShardedCrawl baseUrl seed max output shards [topics...]");
+			return;
+		}
+		ArrayList<String> topics = new ArrayList<String>();
+		for (int i = 5; i < args.length; i++) {
+			topics.add(args[i]);
+		}
+		ShardedCrawl crawl = new ShardedCrawl(args[0], args[1], Integer.parseInt(args[2]), topics, args[3],
+				Integer.parseInt(args[4]));
+		long start = System.nanoTime();
+		crawl.crawl();
+		System.out.printf("%d pages, %d edges in %.1f s, graph written in %.3f s%n", crawl.getPagesKept(),
+				crawl.getEdgeCount(), (System.nanoTime() - start) / 1000000000.0,
+				crawl.getMetrics().getGraphWriteSeconds());
+	}
+
+	/**
+	 * The coordinator's connection to one worker. Writes are synchronized on the
+	 * connection; the other fields are guarded by the ShardedCrawl's lock.
+	 */
+	private static class Connection {
+
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		// the last status: 1 if busy else 0, links sent, links received
+		private long[] status;
+		// whether the worker's pages have been read
+		private boolean finished;
+		// why the connection failed, if it did
+		private IOException error;
+
+		private Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		/**
+		 * Closes the socket, which also ends the thread reading from it
+		 */
+		private void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing more to read or write
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * ShardedCrawlBenchmark class
+ *
+ * Crawls generated pages on a LocalPageServer with injected latency, once with
+ * a single WikiCrawler and then with ShardedCrawl over a growing number of
+ * worker processes, and reports the time taken. Each graph is loaded into
+ * NetworkInfluence to check it is complete.
+ *
+ * Usage: ShardedCrawlBenchmark [maxPages] [latencyMs] [max shards]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class ShardedCrawlBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int max = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long latency = args.length > 1 ? Long.parseLong(args[1]) : 5;
+		int maxShards = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		String[] topicWords = { "complexity" };
+		ArrayList<String> topics = new ArrayList<String>();
+		topics.add("complexity");
+		LocalPageServer server = new LocalPageServer(PageGenerator.generate(max * 10, 30, topicWords, 0.5, 311));
+		server.start(32);
+		server.setLatency(latency, 0, 0);
+		System.out.printf("Injected latency: %d ms%n", latency);
+
+		File out = File.createTempFile("sharded_crawl_benchmark", ".txt");
+		out.deleteOnExit();
+
+		WikiCrawler crawler = new WikiCrawler(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), max, topics,
+				out.getAbsolutePath());
+		crawler.setPoliteness(0, 0);
+		long requestsBefore = server.getRequestCount();
+		long start = System.nanoTime();
+		crawler.crawl();
+		report("WikiCrawler", start, server.getRequestCount() - requestsBefore, out);
+
+		for (int shards = 1; shards <= maxShards; shards *= 2) {
+			ShardedCrawl crawl = new ShardedCrawl(server.getBaseUrl(), "/wiki/" + PageGenerator.title(0), max, topics,
+					out.getAbsolutePath(), shards);
+			crawl.setPoliteness(0, 0);
+			requestsBefore = server.getRequestCount();
+			start = System.nanoTime();
+			crawl.crawl();
+			report(shards + " shards", start, server.getRequestCount() - requestsBefore, out);
+		}
+
+		server.stop();
+	}
+
+	private static void report(String label, long start, long requests, File graph) throws Exception {
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+		NetworkInfluence influence = new NetworkInfluence(graph.getAbsolutePath());
+		System.out.printf("%-12s %6.2f s, %5d requests, %6.1f requests/sec, top pages %s%n", label, seconds, requests,
+				requests / seconds, influence.mostInfluentialPageRank(2));
+	}
+}
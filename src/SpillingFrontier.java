@@ -0,0 +1,305 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * SpillingFrontier class
+ *
+ * Frontier for crawls whose queue doesn't fit in memory. Pages are kept in two
+ * in-memory segments: the head, which pages are removed from, and the tail,
+ * which new pages are added to. Once the tail grows past half the memory
+ * budget, it is written as one segment to the end of an append-only log file.
+ * When the head runs empty, the oldest segment on disk is read back into it,
+ * or once the log is drained, the tail becomes the new head. Pages therefore
+ * come back out in exactly the order they went in, and at most about the
+ * memory budget is spent on pages at any time.
+ *
+ * The log is written and read sequentially through a FileChannel with a direct
+ * buffer, so spilling costs little more than the encoding. The log is
+ * truncated whenever every spilled page has been read back, and deleted when
+ * the frontier is closed.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class SpillingFrontier implements Frontier {
+
+	/**
+	 * Size of the buffer pages are encoded into and decoded from
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	// the memory pages may use before the tail is spilled, in bytes
+	private final long memoryBudget;
+	// the log file and the channel it is accessed through
+	private final File logFile;
+	private final FileChannel channel;
+
+	// pages being removed, oldest first, and their estimated size
+	private ArrayDeque<FrontierPage> head = new ArrayDeque<FrontierPage>();
+	private long headBytes;
+	// pages most recently added, oldest first, and their estimated size
+	private ArrayDeque<FrontierPage> tail = new ArrayDeque<FrontierPage>();
+	private long tailBytes;
+
+	// number of pages in each segment on disk, oldest first
+	private final ArrayDeque<Integer> segments = new ArrayDeque<Integer>();
+	// position in the log the next segment is written at, and read from
+	private long writePosition;
+	private long readPosition;
+	// buffer shared by writing and reading, which never overlap
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private long size;
+	private long spilledPages;
+	private long spilledBytes;
+
+	/**
+	 * Constructs a new, empty frontier
+	 *
+	 * @param dir
+	 *            The directory the log file is created in
+	 * @param memoryBudgetBytes
+	 *            The memory the pages held in memory may use, in bytes
+	 * @throws IOException
+	 */
+	public SpillingFrontier(File dir, long memoryBudgetBytes) throws IOException {
+		if (memoryBudgetBytes <= 0) {
+			throw new IllegalArgumentException("The memory budget must be positive: " + memoryBudgetBytes);
+		}
+		this.memoryBudget = memoryBudgetBytes;
+		this.logFile = File.createTempFile("frontier", ".log", dir);
+		this.channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	@Override
+	public void add(String page, ArrayList<String> links) throws IOException {
+		tail.addLast(new FrontierPage(page, links));
+		tailBytes += estimateSize(page, links);
+		size++;
+		if (tailBytes > memoryBudget / 2) {
+			if (head.isEmpty() && segments.isEmpty()) {
+				// nothing is ahead of the tail, so it can simply move to the head
+				promoteTail();
+			} else {
+				spillTail();
+			}
+		}
+	}
+
+	@Override
+	public FrontierPage remove() throws IOException {
+		if (head.isEmpty()) {
+			if (!segments.isEmpty()) {
+				readSegment();
+			} else {
+				promoteTail();
+			}
+		}
+		FrontierPage page = head.removeFirst();
+		headBytes -= estimateSize(page.page, page.links);
+		size--;
+		return page;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of pages written to disk so far
+	 */
+	public long getSpilledPages() {
+		return spilledPages;
+	}
+
+	/**
+	 * @return The number of bytes written to disk so far
+	 */
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/**
+	 * @return The estimated memory used by the pages held in memory, in bytes
+	 */
+	public long getMemoryBytes() {
+		return headBytes + tailBytes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		head.clear();
+		tail.clear();
+		segments.clear();
+		size = 0;
+		channel.close();
+		logFile.delete();
+	}
+
+	/**
+	 * Makes the tail the new head; only valid while the head and the log are
+	 * empty
+	 */
+	private void promoteTail() {
+		ArrayDeque<FrontierPage> empty = head;
+		head = tail;
+		headBytes = tailBytes;
+		tail = empty;
+		tailBytes = 0;
+	}
+
+	/**
+	 * Writes the whole tail to the end of the log as one segment
+	 */
+	private void spillTail() throws IOException {
+		buffer.clear();
+		int count = tail.size();
+		for (FrontierPage page : tail) {
+			putString(page.page);
+			ensureWritable(4);
+			buffer.putInt(page.links.size());
+			for (String link : page.links) {
+				putString(link);
+			}
+		}
+		flush();
+		segments.addLast(count);
+		spilledPages += count;
+		tail.clear();
+		tailBytes = 0;
+	}
+
+	/**
+	 * Reads the oldest segment of the log into the head
+	 */
+	private void readSegment() throws IOException {
+		int count = segments.removeFirst();
+		buffer.clear().flip();
+		for (int i = 0; i < count; i++) {
+			String page = getString();
+			ensureReadable(4);
+			int numLinks = buffer.getInt();
+			ArrayList<String> links = new ArrayList<String>(numLinks);
+			for (int j = 0; j < numLinks; j++) {
+				links.add(getString());
+			}
+			head.addLast(new FrontierPage(page, links));
+			headBytes += estimateSize(page, links);
+		}
+		// bytes read ahead past the segment belong to the next one
+		readPosition -= buffer.remaining();
+
+		if (segments.isEmpty()) {
+			// the log is drained, so it can start over from the beginning
+			channel.truncate(0);
+			readPosition = 0;
+			writePosition = 0;
+		}
+	}
+
+	/**
+	 * Encodes a string as its length followed by its UTF-8 bytes
+	 */
+	private void putString(String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		ensureWritable(4 + bytes.length);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Decodes a string written by putString
+	 */
+	private String getString() throws IOException {
+		ensureReadable(4);
+		int length = buffer.getInt();
+		ensureReadable(length);
+		String s;
+		if (buffer.hasArray()) {
+			s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return s;
+	}
+
+	/**
+	 * Makes room for the given number of bytes in the write buffer, flushing it
+	 * to the log if needed
+	 */
+	private void ensureWritable(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		flush();
+		if (buffer.capacity() < bytes) {
+			buffer = ByteBuffer.allocateDirect(bytes);
+		}
+	}
+
+	/**
+	 * Writes the contents of the write buffer to the end of the log, leaving the
+	 * buffer empty
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			int written = channel.write(buffer, writePosition);
+			writePosition += written;
+			spilledBytes += written;
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Makes sure the given number of bytes can be read from the read buffer,
+	 * reading more of the log if needed
+	 */
+	private void ensureReadable(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		if (buffer.capacity() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+			larger.put(buffer);
+			buffer = larger;
+		} else {
+			buffer.compact();
+		}
+		while (buffer.position() < bytes) {
+			int read = channel.read(buffer, readPosition);
+			if (read < 0) {
+				throw new IOException("Frontier log ended early: " + logFile);
+			}
+			readPosition += read;
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Estimates the memory a page and its links use on the heap: about 40 bytes
+	 * per String plus one byte per character, and a reference per link
+	 */
+	private static long estimateSize(String page, ArrayList<String> links) {
+		long bytes = 64 + 40 + page.length() + 8L * links.size();
+		for (String link : links) {
+			bytes += 40 + link.length();
+		}
+		return bytes;
+	}
+}
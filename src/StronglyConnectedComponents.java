@@ -0,0 +1,259 @@
+import java.util.Arrays;
+
+/**
+ * StronglyConnectedComponents class
+ *
+ * Computes the strongly connected components of a CsrGraph with an iterative
+ * version of Tarjan's algorithm, along with the condensation DAG that has one
+ * vertex per component. The explicit stacks mean deep graphs, such as long
+ * chains of pages, cannot overflow the call stack.
+ *
+ * Components are numbered in topological order of the condensation, so every
+ * edge between two different components goes from a lower to a higher
+ * component id. Each component also records its level, the length of the
+ * longest DAG path ending at it. Both give O(1) proofs that a vertex cannot
+ * reach another one.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class StronglyConnectedComponents {
+
+	/**
+	 * Component id of every vertex
+	 */
+	private final int[] component;
+
+	/**
+	 * Number of components
+	 */
+	private final int count;
+
+	/**
+	 * Number of vertices in every component
+	 */
+	private final int[] size;
+
+	/**
+	 * Length of the longest condensation path ending at every component
+	 */
+	private final int[] level;
+
+	/**
+	 * Start of each component's successors in dagTargets; has count + 1 entries
+	 */
+	private final int[] dagOffsets;
+
+	/**
+	 * Distinct successor components of every component, grouped by component
+	 */
+	private final int[] dagTargets;
+
+	/**
+	 * Computes the components and condensation of the given graph
+	 *
+	 * @param g
+	 *            The graph
+	 */
+	StronglyConnectedComponents(CsrGraph g) {
+		int n = g.vertices;
+		component = new int[n];
+
+		// Tarjan's discovery index and low-link of every vertex; index 0 means unseen
+		int[] index = new int[n];
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+
+		// Tarjan's component stack
+		int[] stack = new int[n];
+		int stackSize = 0;
+
+		// the explicit DFS call stack: a vertex and the next edge to look at
+		int[] callVertex = new int[n];
+		int[] callEdge = new int[n];
+
+		int nextIndex = 1;
+		int found = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != 0) {
+				continue;
+			}
+
+			// "call" root
+			int depth = 0;
+			callVertex[0] = root;
+			callEdge[0] = g.outOffsets[root];
+			index[root] = low[root] = nextIndex++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+
+			while (depth >= 0) {
+				int v = callVertex[depth];
+				int e = callEdge[depth];
+
+				if (e < g.outOffsets[v + 1]) {
+					// look at the next edge of v
+					callEdge[depth] = e + 1;
+					int w = g.outTargets[e];
+					if (index[w] == 0) {
+						// "recurse" into w
+						depth++;
+						callVertex[depth] = w;
+						callEdge[depth] = g.outOffsets[w];
+						index[w] = low[w] = nextIndex++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+					} else if (onStack[w] && index[w] < low[v]) {
+						low[v] = index[w];
+					}
+					continue;
+				}
+
+				// all edges of v are done; if v is a root, pop its component
+				if (low[v] == index[v]) {
+					int w;
+					do {
+						w = stack[--stackSize];
+						onStack[w] = false;
+						component[w] = found;
+					} while (w != v);
+					found++;
+				}
+
+				// "return" to the caller, passing up the low-link
+				depth--;
+				if (depth >= 0) {
+					int caller = callVertex[depth];
+					if (low[v] < low[caller]) {
+						low[caller] = low[v];
+					}
+				}
+			}
+		}
+		count = found;
+
+		// Tarjan finds components in reverse topological order; flip the ids so
+		// edges go from lower to higher ids
+		size = new int[count];
+		for (int v = 0; v < n; v++) {
+			component[v] = count - 1 - component[v];
+			size[component[v]]++;
+		}
+
+		// group the vertices by component so the DAG can be built one component at a
+		// time
+		int[] memberOffsets = new int[count + 1];
+		for (int c = 0; c < count; c++) {
+			memberOffsets[c + 1] = memberOffsets[c] + size[c];
+		}
+		int[] members = new int[n];
+		int[] next = Arrays.copyOf(memberOffsets, count);
+		for (int v = 0; v < n; v++) {
+			members[next[component[v]]++] = v;
+		}
+
+		// collect the distinct successor components of every component
+		dagOffsets = new int[count + 1];
+		int[] targets = new int[Math.max(16, count)];
+		int edges = 0;
+		int[] lastSeen = new int[count];
+		Arrays.fill(lastSeen, -1);
+		for (int c = 0; c < count; c++) {
+			for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+				int v = members[m];
+				for (int i = g.outOffsets[v]; i < g.outOffsets[v + 1]; i++) {
+					int d = component[g.outTargets[i]];
+					if (d != c && lastSeen[d] != c) {
+						lastSeen[d] = c;
+						if (edges == targets.length) {
+							targets = Arrays.copyOf(targets, edges * 2);
+						}
+						targets[edges++] = d;
+					}
+				}
+			}
+			dagOffsets[c + 1] = edges;
+		}
+		dagTargets = Arrays.copyOf(targets, edges);
+
+		// longest-path levels, visiting components in topological order
+		level = new int[count];
+		for (int c = 0; c < count; c++) {
+			for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++) {
+				int d = dagTargets[i];
+				if (level[c] + 1 > level[d]) {
+					level[d] = level[c] + 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param v
+	 *            The index of a vertex
+	 * @return The id of the component containing v
+	 */
+	public int componentOf(int v) {
+		return component[v];
+	}
+
+	/**
+	 * @return The number of strongly connected components
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * @param c
+	 *            A component id
+	 * @return The number of vertices in component c
+	 */
+	public int size(int c) {
+		return size[c];
+	}
+
+	/**
+	 * @param c
+	 *            A component id
+	 * @return The length of the longest condensation path ending at c
+	 */
+	public int level(int c) {
+		return level[c];
+	}
+
+	/**
+	 * @param c
+	 *            A component id
+	 * @return The ids of the components that c has an edge to
+	 */
+	public int[] successors(int c) {
+		return Arrays.copyOfRange(dagTargets, dagOffsets[c], dagOffsets[c + 1]);
+	}
+
+	/**
+	 * @param c
+	 *            A component id
+	 * @return Whether no edge leaves component c
+	 */
+	public boolean isSink(int c) {
+		return dagOffsets[c] == dagOffsets[c + 1];
+	}
+
+	/**
+	 * Checks in O(1) whether component c might be able to reach component d. A
+	 * false answer is a proof that no path exists; a true answer still needs a
+	 * search to confirm, unless c and d are the same component.
+	 *
+	 * @param c
+	 *            The source component
+	 * @param d
+	 *            The target component
+	 * @return false if c certainly cannot reach d
+	 */
+	public boolean mayReach(int c, int d) {
+		// every DAG edge increases both the id and the level
+		return c == d || (c < d && level[c] < level[d]);
+	}
+}
@@ -0,0 +1,376 @@
+import java.util.Arrays;
+
+/**
+ * VertexOrdering class
+ *
+ * Computes new vertex numberings that place related vertices next to each
+ * other, for NetworkInfluence.reorder. Vertices are numbered in the order the
+ * graph file names them, so the neighbours of a vertex, and the entries for
+ * them in the arrays a BFS keeps, are scattered over memory. After
+ * renumbering, a search touches fewer cache lines and pages.
+ *
+ * Every ordering treats the edges as undirected when deciding what is
+ * related, and returns the new number of every vertex, indexed by its old
+ * number:
+ *
+ * - BFS numbers vertices in the order of a breadth-first search, started from
+ * the vertex of highest degree of each connected part,
+ *
+ * - RCM is the reverse Cuthill-McKee order: a BFS from a vertex of lowest
+ * degree that visits the neighbours of each vertex from lowest to highest
+ * degree, reversed. It keeps the neighbours of every vertex in a narrow band,
+ *
+ * - DEGREE numbers vertices from highest to lowest degree, so the hubs most
+ * searches pass through share a few cache lines, and
+ *
+ * - GORDER is a greedy ordering after Gorder (Wei et al., 2016): the next
+ * vertex is always the one sharing the most edges and in-neighbours with the
+ * last WINDOW vertices numbered.
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class VertexOrdering {
+
+	/**
+	 * Breadth-first order
+	 */
+	public static final int BFS = 1;
+
+	/**
+	 * Reverse Cuthill-McKee order
+	 */
+	public static final int RCM = 2;
+
+	/**
+	 * Highest degree first
+	 */
+	public static final int DEGREE = 3;
+
+	/**
+	 * Greedy Gorder-like order
+	 */
+	public static final int GORDER = 4;
+
+	/**
+	 * Number of recently numbered vertices GORDER scores candidates against
+	 */
+	static final int WINDOW = 5;
+
+	/**
+	 * Returns the new number of every vertex under the given ordering
+	 *
+	 * @param g
+	 *            The graph
+	 * @param ordering
+	 *            BFS, RCM, DEGREE or GORDER
+	 * @return The new number of each vertex, indexed by its current number
+	 */
+	static int[] order(CsrGraph g, int ordering) {
+		int[] sequence;
+		switch (ordering) {
+		case BFS:
+			sequence = bfs(g, byDegree(g, false), false);
+			break;
+		case RCM:
+			sequence = bfs(g, byDegree(g, true), true);
+			reverse(sequence);
+			break;
+		case DEGREE:
+			sequence = byDegree(g, false);
+			break;
+		case GORDER:
+			sequence = gorder(g);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown vertex ordering: " + ordering);
+		}
+
+		int[] newIds = new int[g.vertices];
+		for (int i = 0; i < sequence.length; i++) {
+			newIds[sequence[i]] = i;
+		}
+		return newIds;
+	}
+
+	/**
+	 * Returns the name of an ordering, for messages
+	 *
+	 * @param ordering
+	 *            BFS, RCM, DEGREE or GORDER
+	 * @return Its name
+	 */
+	public static String name(int ordering) {
+		switch (ordering) {
+		case BFS:
+			return "BFS";
+		case RCM:
+			return "RCM";
+		case DEGREE:
+			return "degree";
+		case GORDER:
+			return "Gorder";
+		default:
+			return "unknown";
+		}
+	}
+
+	/**
+	 * Returns the vertices sorted by total degree, lowest or highest first. Ties
+	 * keep their current order.
+	 */
+	private static int[] byDegree(CsrGraph g, boolean ascending) {
+		int n = g.vertices;
+		// counting sort on the degree, which is at most the number of edge ends
+		int maxDegree = 0;
+		for (int v = 0; v < n; v++) {
+			maxDegree = Math.max(maxDegree, degree(g, v));
+		}
+		int[] start = new int[maxDegree + 2];
+		for (int v = 0; v < n; v++) {
+			int d = degree(g, v);
+			start[(ascending ? d : maxDegree - d) + 1]++;
+		}
+		for (int d = 0; d <= maxDegree; d++) {
+			start[d + 1] += start[d];
+		}
+		int[] sorted = new int[n];
+		for (int v = 0; v < n; v++) {
+			int d = degree(g, v);
+			sorted[start[ascending ? d : maxDegree - d]++] = v;
+		}
+		return sorted;
+	}
+
+	private static int degree(CsrGraph g, int v) {
+		return g.outDegree(v) + g.inDegree(v);
+	}
+
+	/**
+	 * Numbers the vertices in BFS order over the undirected edges, starting a
+	 * new search from the first unvisited vertex of starts whenever one runs
+	 * out. If byDegree, the neighbours of each vertex are visited from lowest to
+	 * highest degree, as Cuthill-McKee does.
+	 */
+	private static int[] bfs(CsrGraph g, int[] starts, boolean byDegree) {
+		int n = g.vertices;
+		boolean[] visited = new boolean[n];
+		int[] queue = new int[n];
+		int tail = 0;
+		int head = 0;
+		for (int s : starts) {
+			if (visited[s]) {
+				continue;
+			}
+			visited[s] = true;
+			queue[tail++] = s;
+			while (head < tail) {
+				int x = queue[head++];
+				int first = tail;
+				tail = visit(g.outTargets, g.outOffsets[x], g.outOffsets[x + 1], visited, queue, tail);
+				tail = visit(g.inSources, g.inOffsets[x], g.inOffsets[x + 1], visited, queue, tail);
+				if (byDegree) {
+					sortByDegree(g, queue, first, tail);
+				}
+			}
+		}
+		return queue;
+	}
+
+	private static int visit(int[] targets, int from, int to, boolean[] visited, int[] queue, int tail) {
+		for (int i = from; i < to; i++) {
+			int y = targets[i];
+			if (!visited[y]) {
+				visited[y] = true;
+				queue[tail++] = y;
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * Sorts a run of the queue by degree, by insertion if it is short as most
+	 * are; each run holds the new neighbours of one vertex
+	 */
+	private static void sortByDegree(CsrGraph g, int[] queue, int from, int to) {
+		if (to - from > 32) {
+			Integer[] run = new Integer[to - from];
+			for (int i = from; i < to; i++) {
+				run[i - from] = queue[i];
+			}
+			Arrays.sort(run, (a, b) -> Integer.compare(degree(g, a), degree(g, b)));
+			for (int i = from; i < to; i++) {
+				queue[i] = run[i - from];
+			}
+			return;
+		}
+		for (int i = from + 1; i < to; i++) {
+			int v = queue[i];
+			int d = degree(g, v);
+			int j = i - 1;
+			while (j >= from && degree(g, queue[j]) > d) {
+				queue[j + 1] = queue[j];
+				j--;
+			}
+			queue[j + 1] = v;
+		}
+	}
+
+	private static void reverse(int[] a) {
+		for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+			int t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+
+	/**
+	 * Greedy Gorder: repeatedly numbers the unnumbered vertex with the highest
+	 * score against the last WINDOW numbered vertices. A candidate scores one
+	 * for every edge between it and a window vertex, and one for every
+	 * in-neighbour it shares with one. When no candidate scores above zero, the
+	 * unnumbered vertex of highest in-degree comes next.
+	 *
+	 * Scores are kept up to date as vertices enter and leave the window. Hubs
+	 * with more than sqrt(n) successors are left out of the shared in-neighbour
+	 * count, as in Gorder, since each would touch a large part of the graph every
+	 * time one of its successors is numbered.
+	 */
+	private static int[] gorder(CsrGraph g) {
+		int n = g.vertices;
+		int hubDegree = (int) Math.sqrt(n) + 1;
+		int[] score = new int[n];
+		boolean[] placed = new boolean[n];
+		int[] sequence = new int[n];
+		LongHeap heap = new LongHeap();
+
+		// the fallback order when the window has no related candidates left
+		int[] byInDegree = new int[n];
+		Integer[] boxed = new Integer[n];
+		for (int v = 0; v < n; v++) {
+			boxed[v] = v;
+		}
+		Arrays.sort(boxed, (a, b) -> Integer.compare(g.inDegree(b), g.inDegree(a)));
+		for (int v = 0; v < n; v++) {
+			byInDegree[v] = boxed[v];
+		}
+		int nextFallback = 0;
+
+		for (int i = 0; i < n; i++) {
+			int v = -1;
+			while (!heap.isEmpty()) {
+				long top = heap.poll();
+				int candidate = Integer.MAX_VALUE - (int) top;
+				int key = (int) (top >>> 32);
+				// skip entries of placed vertices and entries whose score changed since
+				if (!placed[candidate] && score[candidate] == key && key > 0) {
+					v = candidate;
+					break;
+				}
+			}
+			if (v < 0) {
+				while (placed[byInDegree[nextFallback]]) {
+					nextFallback++;
+				}
+				v = byInDegree[nextFallback];
+			}
+
+			placed[v] = true;
+			sequence[i] = v;
+			update(g, v, 1, score, placed, heap, hubDegree);
+			if (i >= WINDOW) {
+				update(g, sequence[i - WINDOW], -1, score, placed, heap, hubDegree);
+			}
+			if (heap.size > 8L * n + 1024) {
+				// mostly outdated entries by now; keep only the current scores
+				heap.size = 0;
+				for (int u = 0; u < n; u++) {
+					if (!placed[u] && score[u] > 0) {
+						heap.add(((long) score[u] << 32) | (Integer.MAX_VALUE - u));
+					}
+				}
+			}
+		}
+		return sequence;
+	}
+
+	/**
+	 * Adds change to the score of every unplaced vertex related to v, and queues
+	 * the new scores
+	 */
+	private static void update(CsrGraph g, int v, int change, int[] score, boolean[] placed, LongHeap heap,
+			int hubDegree) {
+		for (int i = g.outOffsets[v]; i < g.outOffsets[v + 1]; i++) {
+			bump(g.outTargets[i], change, score, placed, heap);
+		}
+		for (int i = g.inOffsets[v]; i < g.inOffsets[v + 1]; i++) {
+			int w = g.inSources[i];
+			bump(w, change, score, placed, heap);
+			if (g.outDegree(w) <= hubDegree) {
+				// siblings: the other successors of v's in-neighbour w
+				for (int j = g.outOffsets[w]; j < g.outOffsets[w + 1]; j++) {
+					bump(g.outTargets[j], change, score, placed, heap);
+				}
+			}
+		}
+	}
+
+	private static void bump(int u, int change, int[] score, boolean[] placed, LongHeap heap) {
+		if (!placed[u]) {
+			score[u] += change;
+			if (score[u] > 0) {
+				// highest score first, then lowest vertex number
+				heap.add(((long) score[u] << 32) | (Integer.MAX_VALUE - u));
+			}
+		}
+	}
+
+	/**
+	 * Binary max-heap of longs, without the boxing of a PriorityQueue
+	 */
+	private static class LongHeap {
+
+		private long[] heap = new long[1024];
+		private int size;
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+
+		private void add(long value) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, 2 * size);
+			}
+			int j = size++;
+			while (j > 0 && heap[(j - 1) / 2] < value) {
+				heap[j] = heap[(j - 1) / 2];
+				j = (j - 1) / 2;
+			}
+			heap[j] = value;
+		}
+
+		private long poll() {
+			long top = heap[0];
+			long last = heap[--size];
+			int j = 0;
+			while (true) {
+				int child = 2 * j + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && heap[child + 1] > heap[child]) {
+					child++;
+				}
+				if (heap[child] <= last) {
+					break;
+				}
+				heap[j] = heap[child];
+				j = child;
+			}
+			if (size > 0) {
+				heap[j] = last;
+			}
+			return top;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * VisitedSet interface
+ * 
+ * The set of page titles the crawler has already visited. Implemented exactly
+ * by HashVisitedSet, and approximately but in far less memory by
+ * CompactVisitedSet.
+ * 
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public interface VisitedSet {
+
+	/**
+	 * Adds a title to the set
+	 * 
+	 * @param title
+	 *            The page title
+	 * @return true if the title was not in the set before
+	 */
+	boolean add(String title);
+
+	/**
+	 * Checks whether a title is in the set
+	 * 
+	 * @param title
+	 *            The page title
+	 * @return true if the title is in the set
+	 */
+	boolean contains(String title);
+
+	/**
+	 * @return The number of titles in the set
+	 */
+	long size();
+}
@@ -0,0 +1,95 @@
+import java.util.HashSet;
+
+/**
+ * VisitedSetBenchmark class
+ *
+ * Measures the memory per title and the lookup rate of the visited sets. The
+ * compact set is filled with 10^7 titles by default; the HashSet of Strings is
+ * measured with a tenth as many, since at full size it may not fit the heap.
+ *
+ * Usage: VisitedSetBenchmark [titles]
+ *
+ * @author Jacob Feddersen, Luke Heilman, John Wahlig
+ *
+ */
+public class VisitedSetBenchmark {
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+		runCompact(n, false);
+		runCompact(n, true);
+		runHashSet(n / 10);
+	}
+
+	private static void runCompact(int n, boolean offHeap) {
+		CompactVisitedSet set = new CompactVisitedSet(n, offHeap);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			set.add(title(i));
+		}
+		double insertSeconds = elapsed(start);
+
+		String label = offHeap ? "compact, off-heap" : "compact, on-heap";
+		System.out.printf("%-20s %d titles, %.1f bytes/title, %.0f inserts/sec%n", label, set.size(),
+				(double) set.sizeInBytes() / set.size(), n / insertSeconds);
+		lookups(label, set, n);
+	}
+
+	private static void runHashSet(int n) {
+		System.gc();
+		long before = usedHeap();
+		HashVisitedSet set = new HashVisitedSet();
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			set.add(title(i));
+		}
+		double insertSeconds = elapsed(start);
+		System.gc();
+		long bytes = usedHeap() - before;
+
+		System.out.printf("%-20s %d titles, %.1f bytes/title, %.0f inserts/sec%n", "HashSet<String>", set.size(),
+				(double) bytes / set.size(), n / insertSeconds);
+		lookups("HashSet<String>", set, n);
+	}
+
+	/**
+	 * Times lookups of titles that are present and titles that are not
+	 */
+	private static void lookups(String label, VisitedSet set, int n) {
+		int found = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			if (set.contains(title(i))) {
+				found++;
+			}
+		}
+		double hitSeconds = elapsed(start);
+
+		int falsePositives = 0;
+		start = System.nanoTime();
+		for (int i = n; i < 2 * n; i++) {
+			if (set.contains(title(i))) {
+				falsePositives++;
+			}
+		}
+		double missSeconds = elapsed(start);
+
+		System.out.printf("%-20s %.0f hit lookups/sec (%d found), %.0f miss lookups/sec (%d false positives)%n", label,
+				n / hitSeconds, found, n / missSeconds, falsePositives);
+	}
+
+	private static String title(int i) {
+		return "Some_Wikipedia_Article_" + i;
+	}
+
+	private static long usedHeap() {
+		Runtime r = Runtime.getRuntime();
+		return r.totalMemory() - r.freeMemory();
+	}
+
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1000000000.0;
+	}
+}
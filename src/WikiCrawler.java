@@ -1,9 +1,11 @@
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * WikiCrawler class
@@ -21,6 +23,8 @@ public class WikiCrawler {
 	// static final String BASE_URL = "http://web.cs.iastate.edu/~pavan";
 	static final String BASE_URL = "https://en.wikipedia.org";
 
+	// the base URL this crawler prefixes to every page
+	private String baseUrl;
 	// holds the seed URL
 	private String seedUrl;
 	// holds the maximum number of pages to visit
@@ -29,8 +33,28 @@ public class WikiCrawler {
 	private ArrayList<String> topics;
 	// file path and name of the output file
 	private String fileName;
-	// variable to hold number of requests made to pages
-	private int requests;
+	// politeness policy, which also counts the requests made to pages
+	private PolitenessThrottle throttle;
+	// concurrent fetch stage, or null to fetch one page at a time
+	private FetchStage fetchStage;
+	// the settings the fetch stage is made with
+	private int fetchConcurrency;
+	private boolean hedgeRequests;
+	// expected number of visited titles for the compact visited set, or 0 to use
+	// an exact HashSet
+	private long compactVisitedTitles;
+	// whether the compact visited set is kept off the Java heap
+	private boolean compactVisitedOffHeap;
+	// directory the frontier spills to, or null to keep the frontier in memory
+	private File spillDir;
+	// memory the spilling frontier may use before it spills, in bytes
+	private long spillMemoryBudget;
+	// whether links are fetched best-first instead of in BFS order
+	private boolean focused;
+	// number of pages accepted into the graph by the last crawl
+	private long pagesAccepted;
+	// latencies, counters and gauges of the current or last crawl
+	private final CrawlMetrics metrics = new CrawlMetrics();
 
 	/**
 	 * Constructs a new WikiCrawler with the given seedURL. It will look for
@@ -47,6 +71,26 @@ public class WikiCrawler {
 	 *            The file path and name of the txt file the crawler will output to
 	 */
 	public WikiCrawler(String seedUrl, int max, ArrayList<String> topics, String fileName) {
+		this(BASE_URL, seedUrl, max, topics, fileName);
+	}
+
+	/**
+	 * Constructs a new WikiCrawler that crawls the site at baseUrl instead of
+	 * BASE_URL, for example a local server holding saved pages.
+	 * 
+	 * @param baseUrl
+	 *            The base URL prefixed to every "/wiki/xxx" link
+	 * @param seedUrl
+	 *            The URL to the wikipage that the crawler will start on
+	 * @param max
+	 *            The maximum number of sites the wikicrawler will visit
+	 * @param topics
+	 *            List of keywords the crawler will look for
+	 * @param fileName
+	 *            The file path and name of the txt file the crawler will output to
+	 */
+	public WikiCrawler(String baseUrl, String seedUrl, int max, ArrayList<String> topics, String fileName) {
+		this.baseUrl = baseUrl;
 		// remove "/wiki/" from each url during processing to speed it up
 		Scanner sc = new Scanner(seedUrl);
 		sc.findInLine("/wiki/");
@@ -55,159 +99,404 @@ public class WikiCrawler {
 		this.max = max;
 		this.topics = topics;
 		this.fileName = fileName;
-		// requests used to follow politeness policy
-		requests = 0;
+		// 3 seconds after every 25 requests
+		throttle = new PolitenessThrottle(25, 3000, metrics);
+	}
+
+	/**
+	 * Changes the politeness policy: the crawler sleeps for pauseMillis after every
+	 * requestsPerPause requests. The default is 3 seconds after every 25 requests;
+	 * a requestsPerPause of 0 turns the policy off, for example for a local
+	 * server.
+	 * 
+	 * @param requestsPerPause
+	 *            The number of requests made between pauses, or 0 for no pauses
+	 * @param pauseMillis
+	 *            The length of each pause
+	 */
+	public void setPoliteness(int requestsPerPause, long pauseMillis) {
+		throttle = new PolitenessThrottle(requestsPerPause, pauseMillis, metrics);
+	}
+
+	/**
+	 * Makes the crawler fetch the links of each page concurrently instead of one
+	 * at a time. The number of requests in flight adapts to the server's latency
+	 * and errors, up to maxConcurrency, and never exceeds the number of requests
+	 * the politeness policy allows between pauses. The crawled graph is the same
+	 * as in sequential mode, because the results are still accepted in link
+	 * order; near the end a few more pages than needed may be fetched. The fetch
+	 * stage is shut down when a crawl ends, and started again by the next one.
+	 * 
+	 * @param maxConcurrency
+	 *            The most requests ever in flight
+	 * @param hedgeRequests
+	 *            Whether requests slower than the 95th percentile latency are sent
+	 *            a second time
+	 */
+	public void setConcurrentFetching(int maxConcurrency, boolean hedgeRequests) {
+		if (throttle.getRequestsPerPause() > 0) {
+			maxConcurrency = Math.min(maxConcurrency, throttle.getRequestsPerPause());
+		}
+		fetchConcurrency = maxConcurrency;
+		this.hedgeRequests = hedgeRequests;
+		startFetchStage();
+	}
+
+	/**
+	 * Replaces the fetch stage by a new one, shutting the old one down
+	 */
+	private void startFetchStage() {
+		if (fetchStage != null) {
+			fetchStage.shutdown();
+		}
+		fetchStage = new FetchStage(PageFetcher.shared(), fetchConcurrency, hedgeRequests, () -> throttle.tryAcquire());
+		fetchStage.setMetrics(metrics);
+	}
+
+	/**
+	 * Makes the crawler remember fetched titles in a CompactVisitedSet of 64-bit
+	 * fingerprints instead of a HashSet of Strings, which cuts the memory per
+	 * title by an order of magnitude for very large crawls. Most fetched pages
+	 * usually fail the topics, so the set holds far more titles than the graph.
+	 * A fingerprint collision makes the crawler skip a page it hasn't fetched;
+	 * see CompactVisitedSet for how rarely that happens.
+	 * 
+	 * @param expectedTitles
+	 *            The number of titles the set is sized for; it grows if needed
+	 * @param offHeap
+	 *            Whether to keep the fingerprints outside the Java heap
+	 */
+	public void setCompactVisitedSet(long expectedTitles, boolean offHeap) {
+		compactVisitedTitles = Math.max(1, expectedTitles);
+		compactVisitedOffHeap = offHeap;
+	}
+
+	/**
+	 * Makes the crawler keep its BFS queue in a SpillingFrontier, which writes
+	 * older parts of the queue to disk once it outgrows the memory budget, for
+	 * crawls whose frontier doesn't fit in memory. Pages are still visited in
+	 * the same order.
+	 * 
+	 * @param dir
+	 *            The directory the queue is spilled to
+	 * @param memoryBudgetBytes
+	 *            The memory the queue may use, in bytes
+	 */
+	public void setSpillingFrontier(File dir, long memoryBudgetBytes) {
+		if (memoryBudgetBytes <= 0) {
+			throw new IllegalArgumentException("The memory budget must be positive: " + memoryBudgetBytes);
+		}
+		spillDir = dir;
+		spillMemoryBudget = memoryBudgetBytes;
+	}
+
+	/**
+	 * Makes the crawler fetch the most promising links first instead of in BFS
+	 * order. Links are ranked by a FocusedFrontier from their anchor text, their
+	 * title and how densely the page they were found on mentions the topics, so
+	 * max relevant pages are usually found with far fewer requests. Every
+	 * fetched page is remembered, so pages failing the topics are never fetched
+	 * twice. A focused crawl fetches one page at a time and ignores
+	 * setConcurrentFetching and setSpillingFrontier.
+	 * 
+	 * @param focused
+	 *            Whether to crawl best-first
+	 */
+	public void setFocusedCrawl(boolean focused) {
+		this.focused = focused;
+	}
+
+	/**
+	 * @return The number of pages requested by the last crawl
+	 */
+	public long getPagesRequested() {
+		return throttle.getRequestCount();
+	}
+
+	/**
+	 * @return The number of pages that contained all the topics in the last crawl
+	 */
+	public long getPagesAccepted() {
+		return pagesAccepted;
+	}
+
+	/**
+	 * @return The fraction of the pages requested by the last crawl that
+	 *         contained all the topics
+	 */
+	public double getAcceptanceRate() {
+		long pagesRequested = throttle.getRequestCount();
+		return pagesRequested == 0 ? 0 : (double) pagesAccepted / pagesRequested;
+	}
+
+	/**
+	 * @return The metrics of the current or last crawl: page latencies, bytes,
+	 *         reject rate, frontier size and throttle time
+	 */
+	public CrawlMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return The concurrent fetch stage of the current or last crawl, with its
+	 *         latency and throughput figures, or null if pages are fetched one at
+	 *         a time
+	 */
+	public FetchStage getFetchStage() {
+		return fetchStage;
 	}
 
 	/**
 	 * Constructs a directed graph of the wikipages the WikiCrawler is assigned to.
 	 * The constructed graph only contains pages that contain all of the keywords
-	 * stored in topics.
+	 * stored in topics. Every page is fetched at most once per crawl, including
+	 * pages that fail the topics.
 	 */
 	public void crawl() throws IOException, InterruptedException {
-		// the queue for the BFS search - will only store pages that meet the topics
-		// requirements
-		LinkedList<VertexWithLinks> queue = new LinkedList<VertexWithLinks>();
-		// vertices used to construct the graph
-		HashSet<VertexWithLinks> vertices = new HashSet<VertexWithLinks>();
-		// visited set for the BFS search
-		HashSet<String> visited = new HashSet<String>();
+		throttle.resetRequestCount();
+		metrics.reset();
+		if (fetchStage != null && fetchStage.isShutdown()) {
+			startFetchStage();
+		}
+		try {
+			if (focused) {
+				crawlFocused();
+				return;
+			}
+
+			// the queue for the BFS search - will only store pages that meet the topics
+			// requirements
+			Frontier queue;
+			if (spillDir != null) {
+				queue = new SpillingFrontier(spillDir, spillMemoryBudget);
+			} else {
+				queue = new MemoryFrontier();
+			}
+			try {
+				crawl(queue);
+			} finally {
+				queue.close();
+			}
+		} finally {
+			// its figures stay readable through getFetchStage()
+			if (fetchStage != null) {
+				fetchStage.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Runs the BFS of crawl() using the given queue, then writes the graph
+	 */
+	private void crawl(Frontier queue) throws IOException, InterruptedException {
+		// accepted pages go straight into the graph, so their links are kept only
+		// as title numbers and not alongside the frontier's copy
+		GraphWriter graph = new GraphWriter();
+		// every page fetched, whether or not it contained the topics
+		VisitedSet visited = newVisitedSet();
 
 		// scan the seedUrl
-		PageScanner firstScanner = new PageScanner(BASE_URL + "/wiki/" + seedUrl);
+		PageScanner firstScanner = scanner(seedUrl);
 		ArrayList<String> seedLinks;
 
 		// check requests number before reading from a page
-		bufferRequests();
+		throttle.acquire();
+		visited.add(seedUrl);
 		// only add to the queue if topics requirement is met
 		if ((seedLinks = firstScanner.getLinks(topics)) != null) {
-			queue.add(new VertexWithLinks(seedUrl, seedLinks));
-			vertices.add(new VertexWithLinks(seedUrl, seedLinks));
-			visited.add(seedUrl);
+			queue.add(seedUrl, seedLinks);
+			graph.addPage(seedUrl, seedLinks);
 		}
 
 		// main loop of the BFS - this does run even after all max vertices are visited
-		while ((!queue.isEmpty()) && vertices.size() < max) {
+		while ((!queue.isEmpty()) && graph.getPageCount() < max) {
 			// remove page from front of queue
-			VertexWithLinks currentPage = queue.remove();
+			FrontierPage currentPage = queue.remove();
+			metrics.frontierSize(queue.size());
+
+			if (fetchStage != null) {
+				crawlLinksConcurrently(currentPage, queue, graph, visited);
+				continue;
+			}
 
 			// loop over each link in the currentPage - note this also checks if less than
 			// max pages are in visited
 			for (String link : currentPage.links) {
-				if (vertices.size() == max) {
+				if (graph.getPageCount() == max) {
 					break;
 				}
 
-				// if it hasn't been visited
-				if (!visited.contains(link)) {
+				// if it hasn't been fetched yet
+				if (visited.add(link)) {
 
 					// check if it contains all the topics
-					PageScanner testScanner = new PageScanner(BASE_URL + "/wiki/" + link);
+					PageScanner testScanner = scanner(link);
 					ArrayList<String> temp;
 					// check requests number before reading from a page
-					bufferRequests();
+					throttle.acquire();
 					if ((temp = testScanner.getLinks(topics)) != null) {
-						// if it does, add to the queue and visited
-						queue.add(new VertexWithLinks(link, temp));
-						vertices.add(new VertexWithLinks(link, temp));
-						visited.add(link);
+						// if it does, add to the queue and the graph
+						queue.add(link, temp);
+						graph.addPage(link, temp);
 					}
 				}
 			}
 
 		}
-		// after the BFS, construct the graph with the found vertices and their edges
-		constructGraph(vertices);
+		// after the BFS, write the graph of the accepted pages
+		constructGraph(graph);
 	}
 
 	/**
-	 * Checks how many page requests have been made. Sleeps before making a 26th
-	 * request. Should be called before reading from a page.
+	 * Crawls best-first: repeatedly fetches the most promising link in a
+	 * FocusedFrontier, and offers the links of every page containing all the
+	 * topics to it, then writes the graph
 	 */
-	private void bufferRequests() throws InterruptedException {
-		// sleep and reset requests if 25 have been made
-		if (requests == 25) {
-			requests = 0;
-			System.out.println("Sleeping...");
-			Thread.sleep(3000);
+	private void crawlFocused() throws IOException, InterruptedException {
+		// the accepted pages
+		GraphWriter graph = new GraphWriter();
+		// every page fetched, whether or not it contained the topics
+		VisitedSet visited = newVisitedSet();
+		FocusedFrontier candidates = new FocusedFrontier(topics);
+
+		String link = seedUrl;
+		while (link != null && graph.getPageCount() < max) {
+			if (visited.add(link)) {
+				// check requests number before reading from a page
+				throttle.acquire();
+				ScannedPage page = scanner(link).scanPage(topics);
+				if (page != null) {
+					graph.addPage(link, page.getLinks());
+					candidates.offerLinks(page, visited);
+				}
+			}
+			link = candidates.remove();
+			metrics.frontierSize(candidates.size());
 		}
-		// increase the number of requests
-		requests++;
+		constructGraph(graph);
 	}
 
 	/**
-	 * This method actually prints the graph to the file, given the vertices and
-	 * their edges.
-	 * 
-	 * @param vertices
-	 *            The set of vertices in the graph
-	 * @param edges
-	 *            The set of edges in the graph
+	 * @return A PageScanner for the page of the given title, recording in the
+	 *         metrics
 	 */
-	private void constructGraph(HashSet<VertexWithLinks> pages) throws IOException {
-		long startGraph = System.nanoTime();
+	private PageScanner scanner(String title) {
+		PageScanner scanner = new PageScanner(baseUrl + "/wiki/" + title);
+		scanner.setMetrics(metrics);
+		return scanner;
+	}
 
-		// writer used to print the graph
-		PrintWriter writer = new PrintWriter(fileName, "UTF-8");
-
-		VertexWithLinks[] pagesArray = pages.toArray(new VertexWithLinks[pages.size()]);
-
-		// clear the file
-		writer.write(pagesArray.length + System.getProperty("line.separator"));
-
-		// for each node
-		for (int i = 0; i < pagesArray.length; i++) {
-			// for each node
-			for (int j = 0; j < pagesArray.length; j++) {
-				if (i != j) {
-					// if the nodes are different, and there is a link between them, add it to the
-					// graph
-					if (pagesArray[i].hashedLinks.contains(pagesArray[j].vertex)) {
-						// have to add "/wiki/" back to links for the output
-						writer.write("/wiki/" + pagesArray[i].vertex + " " + "/wiki/" + pagesArray[j].vertex
-								+ System.getProperty("line.separator"));
-					}
-				}
+	/**
+	 * @return A new, empty visited set of the configured kind
+	 */
+	private VisitedSet newVisitedSet() {
+		if (compactVisitedTitles > 0) {
+			return new CompactVisitedSet(compactVisitedTitles, compactVisitedOffHeap);
+		}
+		return new HashVisitedSet();
+	}
+
+	/**
+	 * Does the work of one iteration of the BFS loop in crawl() with the
+	 * concurrent fetch stage: requests every unfetched link of currentPage, with
+	 * as many in flight as the fetch stage allows, and accepts the results in
+	 * link order until max pages have been found.
+	 */
+	private void crawlLinksConcurrently(FrontierPage currentPage, Frontier queue,
+			GraphWriter graph, VisitedSet visited) throws IOException, InterruptedException {
+		// requests in flight, oldest first
+		ArrayDeque<PendingPage> pending = new ArrayDeque<PendingPage>();
+
+		for (String link : currentPage.links) {
+			// accept whatever has already arrived at the head of the line
+			while (!pending.isEmpty() && pending.peek().links.isDone()) {
+				accept(pending.poll(), queue, graph);
+			}
+			if (graph.getPageCount() >= max) {
+				break;
+			}
+
+			// a page is marked when requested, so duplicates aren't fetched twice
+			if (visited.add(link)) {
+				// check requests number before reading from a page
+				throttle.acquire();
+				pending.add(new PendingPage(link, fetchStage.fetch(baseUrl + "/wiki/" + link, topics)));
 			}
 		}
 
-		writer.close();
-		long graphEnd = System.nanoTime();
+		// wait for the rest, in order
+		while (!pending.isEmpty()) {
+			PendingPage page = pending.poll();
+			if (graph.getPageCount() >= max) {
+				page.links.cancel(false);
+			} else {
+				accept(page, queue, graph);
+			}
+		}
+	}
 
-		double crawlElapsed = (graphEnd - startGraph) / 1000000000.0;
-		System.out.printf("Time to construct graph: %f seconds%n", crawlElapsed);
+	/**
+	 * Waits for a requested page and adds it to the graph if it contains all the
+	 * topics
+	 */
+	private void accept(PendingPage page, Frontier queue, GraphWriter graph) throws IOException {
+		if (graph.getPageCount() >= max) {
+			return;
+		}
+
+		ArrayList<String> links;
+		try {
+			links = page.links.join();
+		} catch (CompletionException e) {
+			// surface fetch failures the same way the sequential crawl does
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+
+		if (links != null) {
+			queue.add(page.vertex, links);
+			graph.addPage(page.vertex, links);
+		}
+	}
 
+	/**
+	 * This method actually prints the graph to the file, given the accepted
+	 * pages and their links.
+	 * 
+	 * @param graph
+	 *            The accepted pages
+	 */
+	private void constructGraph(GraphWriter graph) throws IOException {
+		long startGraph = System.nanoTime();
+		pagesAccepted = graph.getPageCount();
+
+		// the writer keeps only the links between crawled pages, in time
+		// proportional to the number of links
+		graph.write(fileName);
+		metrics.graphWritten(System.nanoTime() - startGraph);
 	}
 
 	/**
-	 * Private internal class to couple a page (stored as a string) with its links
-	 * (stored as a ArrayList of strings). Mainly used by the queue in the BFS
-	 * search in WikiCrawler.
+	 * Private internal class coupling a requested page with the future of its
+	 * links, while the concurrent fetch stage works on it.
 	 *
 	 */
-	private class VertexWithLinks {
+	private class PendingPage {
 
 		// the page itself
 		private String vertex;
-		// the links in the page
-		private ArrayList<String> links;
-		// copy of the links ArrayList in a hash set to decrease time of using
-		// contains()
-		private HashSet<String> hashedLinks;
-
-		/**
-		 * Constructs a new VertexWithLinks object. Couples the vertex and links
-		 * together.
-		 * 
-		 * @param vertex
-		 *            The name of the page
-		 * @param links
-		 *            The list of links on the page
-		 */
-		private VertexWithLinks(String vertex, ArrayList<String> links) {
+		// the links in the page, or null if the page fails the topics requirement
+		private CompletableFuture<ArrayList<String>> links;
+
+		private PendingPage(String vertex, CompletableFuture<ArrayList<String>> links) {
 			this.vertex = vertex;
 			this.links = links;
-			hashedLinks = new HashSet<String>(links);
 		}
 	}
 